@@ -0,0 +1,240 @@
+package com.composum.sling.clientlibs.processor;
+
+import com.composum.sling.clientlibs.handle.FileHandle;
+import com.composum.sling.clientlibs.service.ClientlibConfiguration;
+import com.composum.sling.clientlibs.service.ClientlibProcessor;
+import com.composum.sling.core.util.ResourceUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.jackrabbit.api.ReferenceBinary;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A persistent cache of the processed (minified, URL mapped) content of the single files embedded in client
+ * libraries. The fragments are stored below {@link #FRAGMENTS_FOLDER} of the clientlib cache root and are keyed by
+ * a fingerprint of the files content and of the processing parameters - so a rebuild of a client library has to
+ * process only the changed files and concatenates the cached fragments of all other files. Files passed through
+ * unchanged by the processor are not cached. Fragments older than the configured cache time are removed by
+ * {@link #evict()}.
+ * <p>
+ * Each fragment is committed on its own with the resolver of the cache, which should be a separate administrative
+ * resolver - parallel builds storing the same fragment are not failing therefore.
+ */
+public class ClientlibFragmentCache implements Closeable {
+
+    private static final Logger LOG = getLogger(ClientlibFragmentCache.class);
+
+    /** The folder within the clientlib cache root containing the fragments. */
+    public static final String FRAGMENTS_FOLDER = "fragments";
+
+    public static final Map<String, Object> CRUD_FRAGMENT_CONTENT_PROPS;
+
+    static {
+        CRUD_FRAGMENT_CONTENT_PROPS = new HashMap<>();
+        CRUD_FRAGMENT_CONTENT_PROPS.put(ResourceUtil.PROP_PRIMARY_TYPE, ResourceUtil.TYPE_UNSTRUCTURED);
+    }
+
+    protected final ResourceResolver resolver;
+    protected final String fragmentsRoot;
+    protected final ClientlibConfiguration.Config config;
+
+    /**
+     * @param resolver  an administrative resolver exclusively used (and closed) by this cache
+     * @param cacheRoot the root folder of the clientlib cache
+     */
+    public ClientlibFragmentCache(@NotNull final ResourceResolver resolver, @NotNull final String cacheRoot,
+                                  @NotNull final ClientlibConfiguration.Config config) {
+        this.resolver = resolver;
+        this.fragmentsRoot = cacheRoot + "/" + FRAGMENTS_FOLDER;
+        this.config = config;
+    }
+
+    /**
+     * Determines the key of the processed content of a file: the content fingerprint (the binary reference of the
+     * repository or a digest of the content) combined with the path and the
+     * {@link ClientlibProcessor#getProcessingKey(ProcessorContext) processing key} of the processor.
+     *
+     * @return the fingerprint; null if the file has no content or the processor doesn't change the content
+     */
+    @Nullable
+    public String fingerprint(@NotNull final FileHandle file, @NotNull final ClientlibProcessor processor,
+                              @NotNull final ProcessorContext context)
+            throws IOException {
+        String processingKey = processor.getProcessingKey(context);
+        if (processingKey == null) {
+            return null;
+        }
+        String contentFingerprint = contentFingerprint(file);
+        if (contentFingerprint == null) {
+            return null;
+        }
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        update(digest, contentFingerprint);
+        update(digest, file.getResource().getPath());
+        update(digest, processingKey);
+        return new String(org.apache.commons.codec.binary.Hex.encodeHex(digest.digest()));
+    }
+
+    protected void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Uses the content identity of the repository if available, otherwise the digest of the content.
+     */
+    @Nullable
+    protected String contentFingerprint(@NotNull final FileHandle file) throws IOException {
+        Binary binary = ResourceUtil.getBinaryData(file.getResource());
+        if (binary instanceof ReferenceBinary) {
+            String reference = ((ReferenceBinary) binary).getReference();
+            if (reference != null) {
+                return reference;
+            }
+        }
+        try (InputStream content = file.getStream()) {
+            return content != null ? DigestUtils.sha256Hex(content) : null;
+        }
+    }
+
+    /**
+     * Writes the cached fragment to the output and restores the processing hints of the fragment.
+     *
+     * @return true, if the fragment was found and written
+     */
+    public boolean deliver(@NotNull final String fingerprint, @NotNull final OutputStream output,
+                           @NotNull final ProcessorContext context)
+            throws IOException {
+        Resource fragment = resolver.getResource(getPath(fingerprint));
+        if (fragment != null) {
+            FileHandle file = new FileHandle(fragment);
+            try (InputStream content = file.getStream()) {
+                if (content != null) {
+                    ValueMap values = file.getContent().getValueMap();
+                    for (String key : new String[]{ResourceUtil.PROP_MIME_TYPE, ResourceUtil.PROP_ENCODING}) {
+                        String value = values.get(key, String.class);
+                        if (value != null) {
+                            context.hint(key, value);
+                        }
+                    }
+                    ProcessorStreams.copy(content, output);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the processed content of a file with the String hints of the processing.
+     */
+    public void store(@NotNull final String fingerprint, @NotNull final ByteArrayOutputStream content,
+                      @NotNull final ProcessorContext context) {
+        String path = getPath(fingerprint);
+        try {
+            if (resolver.getResource(path) == null) {
+                Resource folder = ResourceUtil.getOrCreateResource(resolver,
+                        ResourceUtil.getParent(path), ResourceUtil.TYPE_SLING_FOLDER);
+                Resource fragment = resolver.create(folder, ResourceUtil.getName(path), FileHandle.CRUD_FILE_PROPS);
+                Map<String, Object> properties = new HashMap<>(CRUD_FRAGMENT_CONTENT_PROPS);
+                for (Map.Entry<String, Object> hint : context.getHints().entrySet()) {
+                    if (hint.getValue() instanceof String) {
+                        properties.put(hint.getKey(), hint.getValue());
+                    }
+                }
+                properties.put(ResourceUtil.PROP_LAST_MODIFIED, Calendar.getInstance());
+                properties.put(ResourceUtil.PROP_DATA, content.toInputStream());
+                resolver.create(fragment, ResourceUtil.CONTENT_NODE, properties);
+                resolver.commit();
+            }
+        } catch (PersistenceException | RepositoryException ex) {
+            // probably a parallel creation of the same fragment - that's no problem
+            LOG.debug("fragment ''{}'' not stored: {}", path, ex.toString());
+            refresh();
+        }
+    }
+
+    /**
+     * Removes the fragments stored before the configured cache time; fragments of files still in use are processed
+     * and stored again on the next rebuild of their client library.
+     *
+     * @return the number of removed fragments
+     */
+    public int evict() {
+        int removed = 0;
+        long cacheTime = TimeUnit.SECONDS.toMillis(config.clientlibs_fragment_cache_time());
+        Resource root = resolver.getResource(fragmentsRoot);
+        if (cacheTime > 0 && root != null) {
+            long outdated = System.currentTimeMillis() - cacheTime;
+            for (Resource bucket : root.getChildren()) {
+                List<Resource> expired = new ArrayList<>();
+                for (Resource fragment : bucket.getChildren()) {
+                    Resource content = fragment.getChild(ResourceUtil.CONTENT_NODE);
+                    Calendar stored = content != null
+                            ? content.getValueMap().get(ResourceUtil.PROP_LAST_MODIFIED, Calendar.class) : null;
+                    if (stored == null || stored.getTimeInMillis() < outdated) {
+                        expired.add(fragment);
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    try {
+                        for (Resource fragment : expired) {
+                            resolver.delete(fragment);
+                        }
+                        resolver.commit();
+                        removed += expired.size();
+                    } catch (PersistenceException ex) {
+                        // probably a parallel eviction - the remaining fragments are removed next time
+                        LOG.debug("fragments of ''{}'' not removed: {}", bucket.getPath(), ex.toString());
+                        refresh();
+                    }
+                }
+            }
+            LOG.debug("{} outdated fragments removed", removed);
+        }
+        return removed;
+    }
+
+    protected String getPath(@NotNull final String fingerprint) {
+        return fragmentsRoot + "/" + fingerprint.substring(0, 2) + "/" + fingerprint;
+    }
+
+    protected void refresh() {
+        resolver.revert();
+        try {
+            Objects.requireNonNull(resolver.adaptTo(Session.class)).refresh(false);
+        } catch (RepositoryException ex) {
+            LOG.warn(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        resolver.close();
+    }
+}
@@ -9,9 +9,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.Writer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -28,18 +27,23 @@ public class CssUrlMapper implements ClientlibProcessor {
     @Override
     public InputStream processContent(final InputStream source, final ProcessorContext context)
             throws IOException {
-        final PipedOutputStream outputStream = new PipedOutputStream();
-        InputStream result = new PipedInputStream(outputStream);
-        context.execute(() -> {
-            try (OutputStreamWriter writer = new OutputStreamWriter(outputStream)) {
-                String css = IOUtils.toString(source, DEFAULT_CHARSET);
+        return ProcessorStreams.pull(this, source, context);
+    }
+
+    /**
+     * The URL mapping needs the whole CSS content, therefore the content is collected and mapped on close.
+     */
+    @Override
+    public OutputStream processingSink(final OutputStream target, final ProcessorContext context) {
+        return new ProcessorStreams.BufferingSink(target) {
+            @Override
+            protected void process(InputStream content, OutputStream target) throws IOException {
+                Writer writer = new OutputStreamWriter(target, DEFAULT_CHARSET);
+                String css = IOUtils.toString(content, DEFAULT_CHARSET);
                 map(css, writer, context);
                 writer.flush();
-            } catch (IOException ex) {
-                LOG.error(ex.getMessage(), ex);
             }
-        });
-        return result;
+        };
     }
 
     public void map(String css, Writer writer, ProcessorContext context) {
@@ -66,6 +70,24 @@ public class CssUrlMapper implements ClientlibProcessor {
         }
     }
 
+    /**
+     * The mapping depends on the context path and (if mapped) on the host of the request.
+     */
+    @Override
+    public String getProcessingKey(ProcessorContext context) {
+        SlingHttpServletRequest request = context.getRequest();
+        StringBuilder key = new StringBuilder(getClass().getName());
+        key.append(":").append(context.mapClientlibURLs());
+        if (request != null) {
+            key.append(":").append(request.getContextPath());
+            if (context.mapClientlibURLs()) {
+                key.append(":").append(request.getScheme()).append("://")
+                        .append(request.getServerName()).append(":").append(request.getServerPort());
+            }
+        }
+        return key.toString();
+    }
+
     public String map(ProcessorContext context, String url) {
         SlingHttpServletRequest request = context.getRequest();
         return context.mapClientlibURLs()
@@ -2,7 +2,6 @@ package com.composum.sling.clientlibs.processor;
 
 import com.composum.sling.clientlibs.service.ClientlibService;
 import com.composum.sling.core.util.ResourceUtil;
-import org.apache.commons.io.IOUtils;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
@@ -10,8 +9,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 @Component(
@@ -28,21 +27,22 @@ public class DefaultGzipProcessor implements GzipProcessor {
             throws IOException {
         InputStream result = source;
         if (source != null) {
-            context.hint(ResourceUtil.PROP_ENCODING, ClientlibService.ENCODING_GZIP);
-            final PipedOutputStream outputStream = new PipedOutputStream();
-            result = new PipedInputStream(outputStream);
-            final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
-            context.execute(() -> {
-                try {
-                    IOUtils.copy(source, gzipOutputStream);
-                    gzipOutputStream.flush();
-                } catch (IOException ex) {
-                    LOG.error(ex.getMessage(), ex);
-                } finally {
-                    IOUtils.closeQuietly(gzipOutputStream);
-                }
-            });
+            result = ProcessorStreams.pull(this, source, context);
         }
         return result;
     }
+
+    /**
+     * Compresses with the best compression level since the compressed content is built once and cached.
+     */
+    @Override
+    public OutputStream processingSink(final OutputStream target, ProcessorContext context)
+            throws IOException {
+        context.hint(ResourceUtil.PROP_ENCODING, ClientlibService.ENCODING_GZIP);
+        return new GZIPOutputStream(target, ProcessorStreams.BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
 }
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Since there is currently (as of mid-2017) no Java javascript minifier library that works sufficiently well, this does nothing
@@ -37,4 +38,17 @@ public class DefaultJavascriptProcessor extends AbstractClientlibRenderer implem
         return source;
     }
 
+    @Override
+    public OutputStream processingSink(final OutputStream target, ProcessorContext context) {
+        context.hint(ResourceUtil.PROP_MIME_TYPE, "application/javascript");
+        return target;
+    }
+
+    /**
+     * @return null - the content is passed through unchanged, caching the fragments would only duplicate them
+     */
+    @Override
+    public String getProcessingKey(ProcessorContext context) {
+        return null;
+    }
 }
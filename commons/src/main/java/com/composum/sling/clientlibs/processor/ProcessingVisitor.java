@@ -9,7 +9,8 @@ import com.composum.sling.clientlibs.handle.ClientlibVisitor;
 import com.composum.sling.clientlibs.handle.FileHandle;
 import com.composum.sling.clientlibs.service.ClientlibProcessor;
 import com.composum.sling.clientlibs.service.ClientlibService;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.slf4j.Logger;
@@ -38,7 +39,8 @@ public class ProcessingVisitor extends AbstractClientlibVisitor {
      *
      * @param service   the service
      * @param output    the output stream to write to. Is not closed in this class - remember to close it outside.
-     * @param processor optional processor we pipe our output through.
+     * @param processor optional processor we pipe our output through - each embedded file is processed separately
+     *                  within the current thread.
      * @param context   the context where we keep some data
      */
     public ProcessingVisitor(ClientlibElement owner, ClientlibService service, OutputStream output,
@@ -65,16 +67,36 @@ public class ProcessingVisitor extends AbstractClientlibVisitor {
             resource = service.getMinifiedSibling(resource);
         }
         FileHandle file = new FileHandle(resource);
+        ClientlibFragmentCache fragmentCache = processor != null ? context.getFragmentCache() : null;
+        String fingerprint = fragmentCache != null ? fragmentCache.fingerprint(file, processor, context) : null;
+        if (fingerprint != null && fragmentCache.deliver(fingerprint, output, context)) {
+            LOG.trace("Used cached fragment for {}", clientlibFile);
+            output.write('\n');
+            output.write('\n');
+            return;
+        }
         InputStream content = file.getStream();
         if (content != null) {
             try {
+                OutputStream sink = new ProcessorStreams.UnclosableSink(output);
+                ByteArrayOutputStream fragment = null;
+                if (fingerprint != null) {
+                    fragment = new ByteArrayOutputStream();
+                    sink = new TeeOutputStream(sink, fragment);
+                }
                 if (processor != null) {
-                    content = processor.processContent(content, context);
+                    sink = processor.processingSink(sink, context);
+                }
+                try {
+                    ProcessorStreams.copy(content, sink);
+                } finally {
+                    sink.close();
+                }
+                if (fragment != null) {
+                    fragmentCache.store(fingerprint, fragment, context);
                 }
-                IOUtils.copy(content, output);
                 output.write('\n');
                 output.write('\n');
-                output.flush();
             } finally {
                 content.close();
             }
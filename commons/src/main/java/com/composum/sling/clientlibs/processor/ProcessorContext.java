@@ -26,6 +26,7 @@ public class ProcessorContext {
     protected final Map<String, Object> hints = Collections.synchronizedMap(new HashMap<>());
     protected final boolean mapClientlibURLs;
     protected final boolean useMinifiedFiles;
+    protected ClientlibFragmentCache fragmentCache;
 
     public ProcessorContext(final SlingHttpServletRequest request,
                             final ResourceResolver resolver,
@@ -37,7 +38,9 @@ public class ProcessorContext {
         this.executorService = executorService;
         this.mapClientlibURLs = mapClientlibURLs;
         this.useMinifiedFiles = useMinifiedFiles;
-        request.setAttribute(CONTEXT_KEY, this);
+        if (request != null) { // null for background processing
+            request.setAttribute(CONTEXT_KEY, this);
+        }
     }
 
     public SlingHttpServletRequest getRequest() {
@@ -56,6 +59,15 @@ public class ProcessorContext {
         return useMinifiedFiles;
     }
 
+    /** The cache of processed file contents, if available. */
+    public ClientlibFragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    public void setFragmentCache(ClientlibFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
     /** Schedules the runnable for execution in the future. */
     public void execute(Runnable runnable) {
         executorService.execute(runnable);
@@ -4,9 +4,14 @@ import com.composum.sling.clientlibs.service.ClientlibProcessor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Chains several processors. The processing is done stage by stage within the calling thread - each stage writes
+ * its result into the sink of the next stage (see {@link #processingSink(OutputStream, ProcessorContext)}).
+ */
 public class ProcessorPipeline implements ClientlibProcessor {
 
     protected List<ClientlibProcessor> processors;
@@ -35,10 +40,37 @@ public class ProcessorPipeline implements ClientlibProcessor {
     @Override
     public InputStream processContent(InputStream stream, ProcessorContext context)
             throws IOException {
+        return stream != null ? ProcessorStreams.pull(this, stream, context) : null;
+    }
+
+    /**
+     * Builds the chain of sinks from the last to the first processor; the returned sink is the one of the first
+     * processor, closing it closes all stages and the target at the end.
+     */
+    @Override
+    public OutputStream processingSink(OutputStream target, ProcessorContext context)
+            throws IOException {
+        OutputStream sink = target;
+        for (int i = processors.size(); --i >= 0; ) {
+            sink = processors.get(i).processingSink(sink, context);
+        }
+        return sink;
+    }
+
+    /**
+     * @return the keys of all processors which are changing the content; null if no processor changes the content
+     */
+    @Override
+    public String getProcessingKey(ProcessorContext context) {
+        StringBuilder key = null;
         for (ClientlibProcessor processor : processors) {
-            stream = processor.processContent(stream, context);
+            String processorKey = processor.getProcessingKey(context);
+            if (processorKey != null) {
+                key = key == null ? new StringBuilder(getClass().getName()) : key;
+                key.append("|").append(processorKey);
+            }
         }
-        return stream;
+        return key != null ? key.toString() : null;
     }
 
     @Override
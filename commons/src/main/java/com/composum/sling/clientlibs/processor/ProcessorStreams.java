@@ -0,0 +1,106 @@
+package com.composum.sling.clientlibs.processor;
+
+import com.composum.sling.clientlibs.service.ClientlibProcessor;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Helpers for the push based, single threaded processing of client library content - see
+ * {@link ClientlibProcessor#processingSink(OutputStream, ProcessorContext)}.
+ */
+public final class ProcessorStreams {
+
+    /** The buffer size used for copying content through the processing stages. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private ProcessorStreams() {
+    }
+
+    /** Copies the input into the output using a large buffer; closes neither stream. */
+    public static long copy(InputStream input, OutputStream output) throws IOException {
+        return IOUtils.copyLarge(input, output, new byte[BUFFER_SIZE]);
+    }
+
+    /**
+     * Runs the push variant of a processor within the current thread and returns the result as stream - the
+     * implementation of the pull variant for processors based on their {@link ClientlibProcessor#processingSink}.
+     *
+     * @param source the content to process; closed by this method
+     */
+    public static InputStream pull(ClientlibProcessor processor, InputStream source, ProcessorContext context)
+            throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (InputStream input = source;
+             OutputStream sink = processor.processingSink(result, context)) {
+            copy(input, sink);
+        }
+        return result.toInputStream();
+    }
+
+    /**
+     * An output stream which passes everything through but doesn't close the target stream on close - used to
+     * process several embedded files separately into one common output.
+     */
+    public static class UnclosableSink extends FilterOutputStream {
+
+        public UnclosableSink(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * A sink for processors which need the whole content at once (e.g. for regex based transformations): collects
+     * everything written and performs the transformation into the target on close; closes the target afterwards.
+     */
+    public abstract static class BufferingSink extends OutputStream {
+
+        protected final OutputStream target;
+        protected final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        private boolean closed;
+
+        public BufferingSink(OutputStream target) {
+            this.target = target;
+        }
+
+        /** Transforms the collected content into the target; the target must not be closed here. */
+        protected abstract void process(InputStream content, OutputStream target) throws IOException;
+
+        @Override
+        public void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    process(buffer.toInputStream(), target);
+                    target.flush();
+                } finally {
+                    target.close();
+                }
+            }
+        }
+    }
+}
@@ -12,9 +12,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.Writer;
 
 @Component(
         property = {
@@ -40,20 +40,38 @@ public class YUICssProcessor extends AbstractClientlibRenderer implements CssPro
         if (source != null) {
             context.hint(ResourceUtil.PROP_MIME_TYPE, "text/css");
             if (context.useMinifiedFiles() && clientlibConfig.getConfig().css_minimize()) {
-                final PipedOutputStream outputStream = new PipedOutputStream();
-                result = new PipedInputStream(outputStream);
-                context.execute(() -> {
-                    try (OutputStreamWriter writer = new OutputStreamWriter(outputStream);
-                         InputStreamReader sourceReader = new InputStreamReader(source, DEFAULT_CHARSET)) {
+                result = ProcessorStreams.pull(this, source, context);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The compressor reads the whole CSS content, therefore the content is collected and compressed on close.
+     */
+    @Override
+    public OutputStream processingSink(final OutputStream target, ProcessorContext context) {
+        context.hint(ResourceUtil.PROP_MIME_TYPE, "text/css");
+        if (context.useMinifiedFiles() && clientlibConfig.getConfig().css_minimize()) {
+            return new ProcessorStreams.BufferingSink(target) {
+                @Override
+                protected void process(InputStream content, OutputStream target) throws IOException {
+                    Writer writer = new OutputStreamWriter(target, DEFAULT_CHARSET);
+                    try (InputStreamReader sourceReader = new InputStreamReader(content, DEFAULT_CHARSET)) {
                         final CssCompressor compressor = new CssCompressor(sourceReader);
                         compressor.compress(writer, clientlibConfig.getConfig().css_line_break());
-                        writer.flush();
-                    } catch (IOException ex) {
-                        LOG.error(ex.getMessage(), ex);
                     }
-                });
-            }
+                    writer.flush();
+                }
+            };
         }
-        return result;
+        return target;
+    }
+
+    @Override
+    public String getProcessingKey(ProcessorContext context) {
+        return context.useMinifiedFiles() && clientlibConfig.getConfig().css_minimize()
+                ? getClass().getName() + ":" + clientlibConfig.getConfig().css_line_break()
+                : null;
     }
 }
@@ -0,0 +1,146 @@
+package com.composum.sling.clientlibs.service;
+
+import org.apache.sling.api.SlingException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A concurrent, size and time bounded cache for the paths of the client libraries of a category. Concurrent misses
+ * for the same category are loaded only once - the other requests are waiting for the result of that load. The
+ * cache is invalidated as a whole on changes of client libraries; loads started before an invalidation are not used
+ * afterwards.
+ */
+public class CategoryPathCache {
+
+    protected final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong loadTime = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+    protected final AtomicLong invalidations = new AtomicLong();
+
+    protected volatile int maxSize;
+    protected volatile long timeToLive;
+
+    /**
+     * @param maxSize    the maximum number of cached categories - a limit is necessary since otherwise we'd be open
+     *                   to a DOS attack by retrieving random categories
+     * @param timeToLive the time in milliseconds a loaded entry is used
+     */
+    public CategoryPathCache(int maxSize, long timeToLive) {
+        configure(maxSize, timeToLive);
+    }
+
+    public void configure(int maxSize, long timeToLive) {
+        this.maxSize = Math.max(1, maxSize);
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the cached paths of the category or loads them if not cached or expired.
+     *
+     * @param loader retrieves the paths of a category; called at most once at a time per category
+     */
+    @NotNull
+    public List<String> get(@NotNull final String category, @NotNull final Function<String, List<String>> loader) {
+        while (true) {
+            Entry entry = entries.get(category);
+            if (entry != null && entry.isValid()) {
+                hits.incrementAndGet();
+                return entry.await();
+            }
+            Entry fresh = new Entry();
+            boolean loading = entry == null
+                    ? entries.putIfAbsent(category, fresh) == null
+                    : entries.replace(category, entry, fresh);
+            if (loading) {
+                misses.incrementAndGet();
+                long begin = System.nanoTime();
+                try {
+                    List<String> paths = Collections.unmodifiableList(new ArrayList<>(loader.apply(category)));
+                    fresh.paths.complete(paths);
+                    return paths;
+                } catch (RuntimeException ex) {
+                    entries.remove(category, fresh);
+                    fresh.paths.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    loadTime.addAndGet(System.nanoTime() - begin);
+                    evictIfNeeded();
+                }
+            }
+            // another request replaced the entry in the meantime - check again
+        }
+    }
+
+    /** Drops all entries, e.g. on changes of client libraries or of the permission plugins. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+        invalidations.incrementAndGet();
+    }
+
+    /** Removes the oldest entries if there are too many. */
+    protected void evictIfNeeded() {
+        int excess = entries.size() - maxSize;
+        if (excess > 0) {
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().created));
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                Map.Entry<String, Entry> candidate = candidates.get(i);
+                if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /** A human readable summary of the cache usage. */
+    @NotNull
+    public String getStatistics() {
+        long loads = misses.get();
+        return "entries: " + entries.size() + " (max " + maxSize + ", " +
+                TimeUnit.MILLISECONDS.toSeconds(timeToLive) + "s)" +
+                ", hits: " + hits.get() + ", misses: " + loads +
+                ", average load time: " + (loads > 0 ? TimeUnit.NANOSECONDS.toMillis(loadTime.get() / loads) : 0) +
+                "ms, evictions: " + evictions.get() + ", invalidations: " + invalidations.get();
+    }
+
+    protected class Entry {
+
+        protected final long created = System.currentTimeMillis();
+        protected final long entryGeneration = generation.get();
+        protected final CompletableFuture<List<String>> paths = new CompletableFuture<>();
+
+        /** Entries in loading are valid until the load fails; loaded entries until they expire. */
+        protected boolean isValid() {
+            return entryGeneration == generation.get() &&
+                    (!paths.isDone() || created >= System.currentTimeMillis() - timeToLive);
+        }
+
+        protected List<String> await() {
+            try {
+                return paths.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new SlingException("loading of clientlib category failed", ex.getCause());
+            }
+        }
+    }
+}
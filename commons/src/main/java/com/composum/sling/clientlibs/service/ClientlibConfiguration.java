@@ -90,12 +90,30 @@ public interface ClientlibConfiguration {
         )
         boolean clientlibs_url_map() default true;
 
+        @AttributeDefinition(
+                name = "Fragment Cache",
+                description = "if 'true' the processed content of each embedded file is cached, so that a rebuild of a client library processes only changed files"
+        )
+        boolean clientlibs_fragment_cache() default true;
+
+        @AttributeDefinition(
+                name = "Fragment Cache Time",
+                description = "the time (in seconds) a processed file is kept in the fragment cache; outdated fragments are removed during the rebuilds of client libraries. <=0 means no removal."
+        )
+        int clientlibs_fragment_cache_time() default 604800;
+
         @AttributeDefinition(
                 name = "Resolver Cache Time",
                 description = "the time (in seconds) the clientlib resolver caches the locations of all client libraries for a category. <=0 means no caching."
         )
         int clientlibs_resolver_cache_time() default 60;
 
+        @AttributeDefinition(
+                name = "Resolver Cache Size",
+                description = "the maximum number of categories the clientlib resolver caches the locations for"
+        )
+        int clientlibs_resolver_cache_size() default 100;
+
         @AttributeDefinition(
                 name = "Threadpool min",
                 description = "the minimum size of the thread pool for clientlib processing (must be '10' or greater)"
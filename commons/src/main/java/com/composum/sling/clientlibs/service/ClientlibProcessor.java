@@ -1,9 +1,11 @@
 package com.composum.sling.clientlibs.service;
 
 import com.composum.sling.clientlibs.processor.ProcessorContext;
+import com.composum.sling.clientlibs.processor.ProcessorStreams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /** Modifies the content of resources embedded in a client library. */
 public interface ClientlibProcessor {
@@ -19,4 +21,42 @@ public interface ClientlibProcessor {
      */
     InputStream processContent(InputStream sourceStream, ProcessorContext context)
             throws IOException;
+
+    /**
+     * Push variant of {@link #processContent(InputStream, ProcessorContext)} for in-thread streaming: returns a sink
+     * which transforms everything written to it and writes the result into the given target. Closing the returned
+     * sink completes the transformation and closes the target. No additional threads are used by the processors
+     * of this bundle.
+     * <p>
+     * The default implementation collects the written content and applies
+     * {@link #processContent(InputStream, ProcessorContext)} on close - for processors implementing only the pull
+     * variant.
+     *
+     * @param target  the stream the transformation result is written to
+     * @param context the processing context
+     * @return the sink to write the original content to - might also be the target itself if switched off
+     */
+    default OutputStream processingSink(OutputStream target, ProcessorContext context)
+            throws IOException {
+        return new ProcessorStreams.BufferingSink(target) {
+            @Override
+            protected void process(InputStream content, OutputStream target) throws IOException {
+                try (InputStream result = processContent(content, context)) {
+                    ProcessorStreams.copy(result, target);
+                }
+            }
+        };
+    }
+
+    /**
+     * The processing parameters which are determining the result besides the content - a part of the key of the
+     * processing results cached in the {@link com.composum.sling.clientlibs.processor.ClientlibFragmentCache}.
+     * The default implementation uses the class of the processor - processors with a configuration which changes
+     * the result must add the effective configuration values.
+     *
+     * @return the key of the processing; null if the processor doesn't change the content (nothing to cache)
+     */
+    default String getProcessingKey(ProcessorContext context) {
+        return getClass().getName();
+    }
 }
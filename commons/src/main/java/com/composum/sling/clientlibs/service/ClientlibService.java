@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Various internal functionality about client libraries.
@@ -25,6 +27,7 @@ import java.util.Calendar;
 public interface ClientlibService {
 
     String ENCODING_GZIP = "gzip";
+    String ENCODING_BROTLI = "br";
 
     /**
      * Resolves the element corresponding to the ref.
@@ -48,13 +51,26 @@ public interface ClientlibService {
     void renderClientlibLinks(ClientlibElement clientlib, Writer writer, SlingHttpServletRequest request,
                               RendererContext context) throws IOException, RepositoryException;
 
+    /**
+     * The content encodings for which precompressed variants of the cached content can be delivered.
+     *
+     * The identity is always available and not part of the list. The default are the identity and gzip as
+     * delivered by the implementations before the precompressed variants were introduced.
+     *
+     * @return the encodings in the order of preference; empty if only the identity is available
+     */
+    @NotNull
+    default List<String> getContentEncodings() {
+        return Collections.singletonList(ENCODING_GZIP);
+    }
+
     /**
      * Writes the content to a cache if it wasn't there, and returns a collection of information to be put into the
      * response headers.
      *
      * @param clientlibRef      reference to the clientlib / category to render
      * @param minified          when true, the minified version
-     * @param encoding          the needed encoding, if applicable
+     * @param encoding          the needed encoding, if applicable - one of the {@link #getContentEncodings()}
      * @param forceRefreshCache if true, the cache will be refreshed even if it is up to date
      * @param requestedHash     the hash value the client requested
      * @param ifModifiedSince   the value of the If-Modified-Since header, if present
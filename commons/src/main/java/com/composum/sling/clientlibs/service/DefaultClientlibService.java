@@ -10,6 +10,7 @@ import com.composum.sling.clientlibs.handle.ClientlibLink;
 import com.composum.sling.clientlibs.handle.ClientlibRef;
 import com.composum.sling.clientlibs.handle.ClientlibResourceFolder;
 import com.composum.sling.clientlibs.handle.FileHandle;
+import com.composum.sling.clientlibs.processor.ClientlibFragmentCache;
 import com.composum.sling.clientlibs.processor.CssProcessor;
 import com.composum.sling.clientlibs.processor.CssUrlMapper;
 import com.composum.sling.clientlibs.processor.GzipProcessor;
@@ -18,6 +19,7 @@ import com.composum.sling.clientlibs.processor.LinkRenderer;
 import com.composum.sling.clientlibs.processor.ProcessingVisitor;
 import com.composum.sling.clientlibs.processor.ProcessorContext;
 import com.composum.sling.clientlibs.processor.ProcessorPipeline;
+import com.composum.sling.clientlibs.processor.ProcessorStreams;
 import com.composum.sling.clientlibs.processor.RendererContext;
 import com.composum.sling.clientlibs.processor.UpdateTimeVisitor;
 import com.composum.sling.core.ResourceHandle;
@@ -26,10 +28,10 @@ import com.composum.sling.core.concurrent.SequencerService;
 import com.composum.sling.core.filter.ResourceFilter;
 import com.composum.sling.core.util.ResourceUtil;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.sling.api.SlingException;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.resource.LoginException;
@@ -39,6 +41,9 @@ import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.Constants;
@@ -57,12 +62,11 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.query.Query;
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -74,15 +78,16 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -97,11 +102,14 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Service related to {@link Clientlib} .
  */
 @Component(
+        service = {ClientlibService.class, ResourceChangeListener.class},
         property = {
-                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Clientlib Service: Delivers the composed clientlib content bundled and compressed."
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Clientlib Service: Delivers the composed clientlib content bundled and compressed.",
+                ResourceChangeListener.PATHS + "=/apps",
+                ResourceChangeListener.PATHS + "=/libs"
         }
 )
-public class DefaultClientlibService implements ClientlibService {
+public class DefaultClientlibService implements ClientlibService, ResourceChangeListener, ExternalResourceChangeListener {
 
     public static final String MINIFIED_SELECTOR = ".min";
     public static final Pattern UNMINIFIED_PATTERN = Pattern.compile("^(.+/)([^/]+)(\\.min)?(\\.[^.]+)$");
@@ -120,6 +128,15 @@ public class DefaultClientlibService implements ClientlibService {
      */
     protected static final String CATEGORYCACHE = "categorycache";
 
+    /**
+     * The size up to which the processed content of a client library is buffered in memory before it's stored in
+     * the cache file; larger content is buffered in a temporary file.
+     */
+    protected static final int CONTENT_MEMORY_THRESHOLD = 1024 * 1024;
+
+    /** The interval of the removal of outdated fragments from the {@link ClientlibFragmentCache}. */
+    public static final long FRAGMENT_EVICTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
     static {
         CRUD_CACHE_FOLDER_PROPS = new HashMap<>();
         CRUD_CACHE_FOLDER_PROPS.put(com.composum.sling.core.util.ResourceUtil.PROP_PRIMARY_TYPE, ResourceUtil
@@ -161,32 +178,48 @@ public class DefaultClientlibService implements ClientlibService {
     )
     protected final List<ClientlibPermissionPlugin> permissionPlugins = new CopyOnWriteArrayList<>();
 
+    /**
+     * The processing itself is done within the requesting thread; the pool is kept for the
+     * {@link ProcessorContext#execute(Runnable)} of processors which are implementing their own threading.
+     */
     protected ThreadPoolExecutor executorService = null;
 
     protected EnumMap<Type, ClientlibRenderer> rendererMap;
     protected EnumMap<Type, ClientlibProcessor> processorMap;
 
     /**
-     * Cache (String, Pair<Long, List<String>>) that maps categories to a pair of the query time and the resulting list
-     * of paths to client libraries with that path. We set an arbitrary limit of 100 since otherwise we'd be open to a
-     * DOS attack by retrieving random categories.
+     * The processors which are creating the precompressed variants of the cached content by content encoding - in
+     * the order of preference for the delivery.
+     */
+    protected Map<String, ClientlibProcessor> encoderMap;
+
+    /**
+     * Cache that maps categories to the list of paths to client libraries with that category; configured by
+     * {@link ClientlibConfiguration.Config#clientlibs_resolver_cache_size()} and
+     * {@link ClientlibConfiguration.Config#clientlibs_resolver_cache_time()}.
      */
-    protected final LRUMap /*String, Pair<Long, List<String>>*/ categoryToPathCache = new LRUMap(100);
+    protected final CategoryPathCache categoryToPathCache = new CategoryPathCache(100, TimeUnit.SECONDS.toMillis(60));
 
-    protected synchronized void bindPermissionPlugin(ClientlibPermissionPlugin permissionPlugin) {
+    /** The time of the next removal of outdated fragments. */
+    protected final AtomicLong nextFragmentEviction = new AtomicLong();
+
+    protected void bindPermissionPlugin(ClientlibPermissionPlugin permissionPlugin) {
         permissionPlugins.add(permissionPlugin);
-        categoryToPathCache.clear();
+        categoryToPathCache.invalidate();
     }
 
-    protected synchronized void unbindPermissionPlugin(ClientlibPermissionPlugin permissionPlugin) {
+    protected void unbindPermissionPlugin(ClientlibPermissionPlugin permissionPlugin) {
         permissionPlugins.remove(permissionPlugin);
-        categoryToPathCache.clear();
+        categoryToPathCache.invalidate();
     }
 
     @Modified
     @Activate
     protected void activate(ComponentContext context) {
         ClientlibConfiguration.Config config = getClientlibConfig();
+        categoryToPathCache.configure(config.clientlibs_resolver_cache_size(),
+                TimeUnit.SECONDS.toMillis(config.clientlibs_resolver_cache_time()));
+        categoryToPathCache.invalidate();
         executorService = new ThreadPoolExecutor(config.clientlibs_threadpool_min(), config.clientlibs_threadpool_max(),
                 200L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
         rendererMap = new EnumMap<>(Type.class);
@@ -197,6 +230,31 @@ public class DefaultClientlibService implements ClientlibService {
         processorMap.put(Type.js, javascriptProcessor);
         processorMap.put(Type.css, getClientlibConfig().clientlibs_url_map() ? new ProcessorPipeline(new
                 CssUrlMapper(), cssProcessor) : cssProcessor);
+        encoderMap = new LinkedHashMap<>();
+        if (config.gzip_enabled() && gzipProcessor != null) {
+            encoderMap.put(ENCODING_GZIP, gzipProcessor);
+        }
+    }
+
+    /**
+     * Invalidates the category cache on changes of client library structures below the search paths - changes of
+     * file contents (below a jcr:content node) are irrelevant for the category resolution.
+     */
+    @Override
+    public void onChange(@NotNull List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            if (!change.getPath().contains("/" + ResourceUtil.CONTENT_NODE)) {
+                LOG.debug("category cache invalidated by {} of ''{}''", change.getType(), change.getPath());
+                categoryToPathCache.invalidate();
+                return;
+            }
+        }
+    }
+
+    /** A summary of the usage of the category cache - for the console. */
+    @NotNull
+    public String getCategoryCacheStatistics() {
+        return categoryToPathCache.getStatistics();
     }
 
     @Deactivate
@@ -335,27 +393,7 @@ public class DefaultClientlibService implements ClientlibService {
         long cacheTime = TimeUnit.SECONDS.toMillis(getClientlibConfig().clientlibs_resolver_cache_time());
         if (cacheTime <= 0) return retrieveResourcesForCategoryUncached(category, resolver);
 
-        List<String> paths = null;
-        long currentTimeMillis = System.currentTimeMillis();
-        synchronized (categoryToPathCache) {
-            @SuppressWarnings("unchecked")
-            Pair<Long, List<String>> cacheEntry = (Pair<Long, List<String>>) categoryToPathCache.get(category);
-            if (null != cacheEntry && cacheEntry.getLeft() >= (currentTimeMillis - cacheTime))
-                paths = cacheEntry.getRight();
-        }
-
-        if (null == paths) {
-            paths = new ArrayList<>();
-            try (ResourceResolver administrativeResolver = createAdministrativeResolver()) {
-                List<Resource> resourcesForAdmin = retrieveResourcesForCategoryUncached(category,
-                        administrativeResolver);
-                for (Resource resource : resourcesForAdmin) paths.add(resource.getPath());
-            }
-
-            synchronized (categoryToPathCache) {
-                categoryToPathCache.put(category, Pair.of(currentTimeMillis, paths));
-            }
-        }
+        List<String> paths = categoryToPathCache.get(category, this::retrieveCategoryPaths);
 
         // retrieve with the users resolver
         List<Resource> resources = new ArrayList<>();
@@ -368,6 +406,17 @@ public class DefaultClientlibService implements ClientlibService {
         return resources;
     }
 
+    /** Retrieves the paths of all client libraries of a category with an administrative resolver. */
+    protected List<String> retrieveCategoryPaths(String category) {
+        List<String> paths = new ArrayList<>();
+        try (ResourceResolver administrativeResolver = createAdministrativeResolver()) {
+            List<Resource> resourcesForAdmin = retrieveResourcesForCategoryUncached(category,
+                    administrativeResolver);
+            for (Resource resource : resourcesForAdmin) paths.add(resource.getPath());
+        }
+        return paths;
+    }
+
     protected List<Resource> retrieveResourcesForCategoryUncached(String category, ResourceResolver resolver) {
         List<Resource> resources = new ArrayList<>();
         Set<String> foundlibs = new HashSet<>();
@@ -442,6 +491,12 @@ public class DefaultClientlibService implements ClientlibService {
         return clientlibConfig.getConfig();
     }
 
+    @Override
+    @NotNull
+    public List<String> getContentEncodings() {
+        return encoderMap != null ? new ArrayList<>(encoderMap.keySet()) : Collections.emptyList();
+    }
+
     @Override
     public void renderClientlibLinks(ClientlibElement clientlib, Writer writer, SlingHttpServletRequest request,
                                      RendererContext context) throws
@@ -462,19 +517,38 @@ public class DefaultClientlibService implements ClientlibService {
      * We try to handle the following conditions. If the user cannot access the cache, the cache-file should not be
      * recreated. If a parallel process recreates the cache-file before this process manages to acquire the lock to
      * recreate it, it should not be recreated again.
+     * <p>
+     * The processed content is cached uncompressed; the variants for the {@link #getContentEncodings()} are derived
+     * from that once - in the background after each rebuild or, if not available yet, on request.
      */
     @Override
     public ClientlibInfo prepareContent(SlingHttpServletRequest request, final ClientlibRef clientlibRef, boolean
             minified, String rawEncoding, boolean forceRefreshCache, String requestedHash, long ifModifiedSince) throws
             IOException, RepositoryException {
+        ClientlibInfo fileHints = prepareIdentityContent(request, clientlibRef, minified, forceRefreshCache,
+                requestedHash, ifModifiedSince);
+        final String encoding = adjustEncoding(rawEncoding);
+        if (null != fileHints && null != encoding) {
+            fileHints = prepareEncodedContent(request.getResourceResolver(), clientlibRef, minified, encoding,
+                    fileHints);
+        }
+        return fileHints;
+    }
+
+    /**
+     * Prepares the uncompressed cache content - see {@link #prepareContent}.
+     */
+    protected ClientlibInfo prepareIdentityContent(SlingHttpServletRequest request, final ClientlibRef clientlibRef,
+                                                   boolean minified, boolean forceRefreshCache, String requestedHash,
+                                                   long ifModifiedSince)
+            throws IOException, RepositoryException {
         ClientlibElement element = resolve(clientlibRef, request.getResourceResolver());
         if (null == element) {
             LOG.error("No client libraries found for {}", clientlibRef);
             throw new FileNotFoundException("No client libraries for " + clientlibRef);
         }
 
-        final String encoding = adjustEncoding(rawEncoding);
-        String cachePath = getCachePath(clientlibRef, minified, encoding);
+        String cachePath = getCachePath(clientlibRef, minified, null);
 
         FileHandle cacheFile = new FileHandle(lazyCreationService.waitForInitialization(request.getResourceResolver(), cachePath));
         ClientlibInfo fileHints = getFileHints(cacheFile, element.makeLink());
@@ -536,7 +610,7 @@ public class DefaultClientlibService implements ClientlibService {
                             getClientlibConfig().clientlibs_minified_use() && !getClientlibConfig().debug());
 
                     LazyCreationService.InitializationStrategy initializer = initializationStrategy(clientlibRef,
-                            encoding, hash, context);
+                            hash, context);
 
                     Resource resource = lazyCreationService.getOrCreate(request.getResourceResolver(), cachePath,
                             LazyCreationService.IDENTITY_RETRIEVER, creationStrategy(), initializer,
@@ -545,12 +619,65 @@ public class DefaultClientlibService implements ClientlibService {
                 }
 
                 fileHints = getFileHints(cacheFile, element.makeLink());
+                if (refreshNeeded && null != fileHints) {
+                    prepareEncodedVariants(clientlibRef, minified, fileHints);
+                }
             }
         }
         LOG.debug("Hints: {}", fileHints);
         return fileHints;
     }
 
+    /**
+     * Derives the compressed variant for one content encoding from the uncompressed cache content if the variant
+     * doesn't exist or doesn't match the hash of the uncompressed content.
+     *
+     * @param identityHints the hints of the prepared uncompressed content
+     * @return the hints of the compressed variant
+     */
+    protected ClientlibInfo prepareEncodedContent(ResourceResolver resolver, final ClientlibRef clientlibRef,
+                                                  boolean minified, String encoding, ClientlibInfo identityHints)
+            throws RepositoryException {
+        String cachePath = getCachePath(clientlibRef, minified, encoding);
+        FileHandle cacheFile = new FileHandle(lazyCreationService.waitForInitialization(resolver, cachePath));
+        ClientlibInfo fileHints = getFileHints(cacheFile, identityHints.link);
+        if (null == fileHints || !StringUtils.equals(identityHints.hash, fileHints.hash)) {
+            try (ResourceResolver adminResolver = createAdministrativeResolver()) {
+                Resource cacheEntry = adminResolver.getResource(cachePath);
+                if (cacheEntry != null && !StringUtils.equals(identityHints.hash,
+                        new FileHandle(cacheEntry).getContent().getProperty(PROP_HASH))) {
+                    LOG.info("deleting to be refreshed ''{}''...", cacheEntry);
+                    adminResolver.delete(cacheEntry);
+                    adminResolver.commit();
+                }
+                Resource resource = lazyCreationService.getOrCreate(resolver, cachePath,
+                        LazyCreationService.IDENTITY_RETRIEVER, creationStrategy(),
+                        encodingStrategy(getCachePath(clientlibRef, minified, null), encoding),
+                        CRUD_CACHE_FOLDER_PROPS);
+                fileHints = getFileHints(new FileHandle(resource), identityHints.link);
+            } catch (PersistenceException ex) {
+                throw new RepositoryException(ex.getMessage(), ex);
+            }
+        }
+        return fileHints;
+    }
+
+    /**
+     * Schedules the creation of all compressed variants of freshly built uncompressed content in the background.
+     */
+    protected void prepareEncodedVariants(final ClientlibRef clientlibRef, final boolean minified,
+                                          final ClientlibInfo identityHints) {
+        for (final String encoding : encoderMap.keySet()) {
+            executorService.execute(() -> {
+                try (ResourceResolver adminResolver = createAdministrativeResolver()) {
+                    prepareEncodedContent(adminResolver, clientlibRef, minified, encoding, identityHints);
+                } catch (Exception ex) {
+                    LOG.error("Error creating the ''{}'' variant of ''{}'': {}", encoding, clientlibRef, ex.toString());
+                }
+            });
+        }
+    }
+
     protected LazyCreationService.CreationStrategy creationStrategy() {
         return (adminResolver, parent, name) -> {
             Resource cacheEntry = adminResolver.create(parent, name, FileHandle.CRUD_FILE_PROPS);
@@ -563,7 +690,7 @@ public class DefaultClientlibService implements ClientlibService {
     }
 
     protected LazyCreationService.InitializationStrategy initializationStrategy(
-            final ClientlibRef clientlibRef, final String encoding, final String hash, final ProcessorContext context) {
+            final ClientlibRef clientlibRef, final String hash, final ProcessorContext context) {
         return (adminResolver, cacheEntry) -> {
             try {
                 FileHandle cacheFile = new FileHandle(cacheEntry);
@@ -571,24 +698,60 @@ public class DefaultClientlibService implements ClientlibService {
                     LOG.debug("create clientlib cache content ''{}''...", cacheFile.getResource()
                             .getPath());
 
-                    final PipedOutputStream outputStream = new PipedOutputStream();
-                    InputStream inputStream = new PipedInputStream(outputStream);
-                    Future<Void> result = startProcessing(clientlibRef, encoding, context, outputStream);
-                    if (ENCODING_GZIP.equals(encoding)) {
-                        inputStream = gzipProcessor.processContent(inputStream, context);
+                    DeferredFileOutputStream buffer = createContentBuffer();
+                    try {
+                        try (OutputStream sink = buffer) {
+                            processContent(clientlibRef, context, sink);
+                        }
+                        storeContent(adminResolver, cacheFile, buffer, context.getHints(), hash);
+                    } finally {
+                        discardContentBuffer(buffer);
                     }
-                    cacheFile.storeContent(inputStream);
-
-                    ModifiableValueMap contentValues = Objects.requireNonNull(cacheFile.getContent().adaptTo
-                            (ModifiableValueMap.class));
-                    contentValues.put(ResourceUtil.PROP_LAST_MODIFIED,
-                            Calendar.getInstance());
-                    contentValues.putAll(context.getHints());
-                    contentValues.put(PROP_HASH, hash);
 
-                    adminResolver.commit();
-                    result.get(); // transport any exceptions here
+                    LOG.info("clientlib cache content ''{}'' created", cacheFile.getResource().getPath());
+                } else {
+                    LOG.error("can't create cache content in '{}'!", cacheFile.getResource().getPath());
+                }
+            } catch (Exception e) {
+                LOG.error("Error when initializing content in " + cacheEntry + "; deleting the file", e);
+                refreshSession(adminResolver, false);
+                adminResolver.delete(cacheEntry);
+                throw new PersistenceException("" + e, e);
+            }
+        };
+    }
 
+    /**
+     * Creates a compressed variant by pushing the uncompressed cache content through the encoder.
+     *
+     * @param identityPath the path of the uncompressed cache file
+     */
+    protected LazyCreationService.InitializationStrategy encodingStrategy(
+            final String identityPath, final String encoding) {
+        return (adminResolver, cacheEntry) -> {
+            try {
+                FileHandle cacheFile = new FileHandle(cacheEntry);
+                FileHandle identityFile = new FileHandle(adminResolver.getResource(identityPath));
+                if (cacheFile.isValid() && identityFile.isValid()) {
+                    final ProcessorContext context = new ProcessorContext(null, adminResolver, executorService,
+                            false, false);
+                    Map<String, Object> hints = new HashMap<>();
+                    String mimeType = identityFile.getContent().getProperty(ResourceUtil.PROP_MIME_TYPE);
+                    if (mimeType != null) {
+                        hints.put(ResourceUtil.PROP_MIME_TYPE, mimeType);
+                    }
+                    DeferredFileOutputStream buffer = createContentBuffer();
+                    try {
+                        try (InputStream content = Objects.requireNonNull(identityFile.getStream());
+                             OutputStream sink = encoderMap.get(encoding).processingSink(buffer, context)) {
+                            ProcessorStreams.copy(content, sink);
+                        }
+                        hints.putAll(context.getHints());
+                        storeContent(adminResolver, cacheFile, buffer, hints,
+                                identityFile.getContent().getProperty(PROP_HASH));
+                    } finally {
+                        discardContentBuffer(buffer);
+                    }
                     LOG.info("clientlib cache content ''{}'' created", cacheFile.getResource().getPath());
                 } else {
                     LOG.error("can't create cache content in '{}'!", cacheFile.getResource().getPath());
@@ -602,25 +765,77 @@ public class DefaultClientlibService implements ClientlibService {
         };
     }
 
+    protected DeferredFileOutputStream createContentBuffer() {
+        return new DeferredFileOutputStream(CONTENT_MEMORY_THRESHOLD, "clientlib-", ".tmp", null);
+    }
+
+    protected void discardContentBuffer(DeferredFileOutputStream buffer) {
+        if (buffer.getFile() != null) {
+            FileUtils.deleteQuietly(buffer.getFile());
+        }
+    }
+
     /**
-     * Starts the processing (generation of the embedded content) of the clientlib / -category in the background.
+     * Stores the buffered content with the processing hints and the hash in the cache file and commits.
      */
-    protected Future<Void> startProcessing(final ClientlibRef clientlibRef, String encoding,
-                                           final ProcessorContext context, final OutputStream outputStream) {
-        final ClientlibProcessor processor = processorMap.get(clientlibRef.type);
+    protected void storeContent(ResourceResolver adminResolver, FileHandle cacheFile, DeferredFileOutputStream buffer,
+                                Map<String, Object> hints, String hash)
+            throws IOException {
+        try (InputStream inputStream = buffer.isInMemory()
+                ? new ByteArrayInputStream(buffer.getData())
+                : new FileInputStream(buffer.getFile())) {
+            cacheFile.storeContent(inputStream);
+
+            ModifiableValueMap contentValues = Objects.requireNonNull(cacheFile.getContent().adaptTo
+                    (ModifiableValueMap.class));
+            contentValues.put(ResourceUtil.PROP_LAST_MODIFIED,
+                    Calendar.getInstance());
+            contentValues.putAll(hints);
+            contentValues.put(PROP_HASH, hash);
+
+            adminResolver.commit();
+        }
+    }
 
-        return context.submit(() -> {
-            try (ResourceResolver processingAdminResolver = createAdministrativeResolver()) {
-                // retrieve clientlibs again since we need another resolver (not threadsafe)
-                ClientlibElement adminElement = resolve(clientlibRef, processingAdminResolver);
-                ProcessingVisitor visitor = new ProcessingVisitor(adminElement, DefaultClientlibService.this,
-                        outputStream, processor, context);
-                visitor.execute();
-            } finally {
-                IOUtils.closeQuietly(outputStream);
+    /**
+     * Generates the embedded content of the clientlib / -category within the current thread - each embedded file
+     * is pushed through the processors of the clientlib type into the output. If configured, the processed files
+     * are taken from the {@link ClientlibFragmentCache} - only changed files are processed again.
+     *
+     * @param outputStream the target of the processed content; not closed here
+     */
+    protected void processContent(final ClientlibRef clientlibRef, final ProcessorContext context,
+                                  final OutputStream outputStream)
+            throws IOException, RepositoryException {
+        final ClientlibProcessor processor = processorMap.get(clientlibRef.type);
+        ClientlibElement adminElement = resolve(clientlibRef, context.getResolver());
+        ClientlibFragmentCache fragmentCache = getClientlibConfig().clientlibs_fragment_cache()
+                ? new ClientlibFragmentCache(createAdministrativeResolver(),
+                getClientlibConfig().clientlibs_cache_root(), getClientlibConfig())
+                : null;
+        try {
+            context.setFragmentCache(fragmentCache);
+            ProcessingVisitor visitor = new ProcessingVisitor(adminElement, this,
+                    outputStream, processor, context);
+            visitor.execute();
+            if (fragmentCache != null && isFragmentEvictionDue()) {
+                fragmentCache.evict();
             }
-            return null;
-        });
+        } finally {
+            context.setFragmentCache(null);
+            if (fragmentCache != null) {
+                fragmentCache.close();
+            }
+        }
+    }
+
+    /**
+     * @return true, if the removal of outdated fragments is due; only one caller gets true within each interval
+     */
+    protected boolean isFragmentEvictionDue() {
+        long now = System.currentTimeMillis();
+        long next = nextFragmentEviction.get();
+        return now >= next && nextFragmentEviction.compareAndSet(next, now + FRAGMENT_EVICTION_INTERVAL);
     }
 
     protected ClientlibInfo getFileHints(final FileHandle file, ClientlibLink link) {
@@ -679,8 +894,11 @@ public class DefaultClientlibService implements ClientlibService {
         return cacheRoot + cacheKey;
     }
 
+    /**
+     * @return the encoding if a variant for this encoding is available, null (the identity) otherwise
+     */
     protected String adjustEncoding(String encoding) {
-        if (ENCODING_GZIP.equals(encoding) && !getClientlibConfig().gzip_enabled()) {
+        if (encoding != null && (encoderMap == null || !encoderMap.containsKey(encoding))) {
             encoding = null;
         }
         return encoding;
@@ -808,6 +1026,7 @@ public class DefaultClientlibService implements ClientlibService {
         Resource cacheRoot = Objects.requireNonNull(resolver.getResource(cacheRootPath));
         List<String> subpaths = new ArrayList<>(Arrays.asList(resolver.getSearchPath()));
         subpaths.add(CATEGORYCACHE);
+        subpaths.add(ClientlibFragmentCache.FRAGMENTS_FOLDER);
         for (String child : subpaths) {
             Resource childResource = cacheRoot.getChild(StringUtils.removeStart(child, "/"));
             if (childResource != null) {
@@ -20,6 +20,9 @@ import javax.jcr.RepositoryException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -46,14 +49,12 @@ public abstract class AbstractClientlibServlet extends SlingSafeMethodsServlet {
 
         try {
 
-            String encoding = null;
             boolean refreshCache = false;
             String header;
 
-            header = request.getHeader(HttpUtil.HEADER_ACCEPT_ENCODING);
-            if (StringUtils.isNotBlank(header) && header.contains("gzip")) {
-                encoding = ClientlibService.ENCODING_GZIP;
-            }
+            List<String> availableEncodings = getClientlibService().getContentEncodings();
+            String encoding = negotiateEncoding(request.getHeader(HttpUtil.HEADER_ACCEPT_ENCODING),
+                    availableEncodings);
 
             header = request.getHeader(HttpUtil.HEADER_CACHE_CONTROL);
             if (StringUtils.isNotBlank(header) && getConfig().rerender_on_nocache()) {
@@ -85,6 +86,8 @@ public abstract class AbstractClientlibServlet extends SlingSafeMethodsServlet {
                 }
                 if (hints.encoding != null) {
                     response.setHeader(HttpUtil.HEADER_CONTENT_ENCODING, hints.encoding);
+                }
+                if (!availableEncodings.isEmpty()) {
                     response.setHeader(HttpUtil.HEADER_VARY, HttpUtil.HEADER_ACCEPT_ENCODING);
                 }
                 if (hints.size != null) {
@@ -130,6 +133,55 @@ public abstract class AbstractClientlibServlet extends SlingSafeMethodsServlet {
         }
     }
 
+    /**
+     * Chooses the best available content encoding wrt. the q-values of the Accept-Encoding header; on equal
+     * q-values the order of the available encodings decides. The identity is chosen only if it's explicitly
+     * preferred over all available encodings.
+     *
+     * @param header    the value of the Accept-Encoding header
+     * @param available the available encodings in the order of preference
+     * @return the chosen encoding; null for the identity
+     */
+    protected String negotiateEncoding(String header, List<String> available) {
+        if (StringUtils.isBlank(header) || available.isEmpty()) {
+            return null;
+        }
+        Map<String, Float> accepted = new HashMap<>();
+        for (String coding : StringUtils.split(header, ',')) {
+            String[] params = StringUtils.split(coding, ';');
+            if (params.length > 0 && StringUtils.isNotBlank(params[0])) {
+                float quality = 1f;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            quality = Float.parseFloat(param.substring(2).trim());
+                        } catch (NumberFormatException ignored) {
+                            quality = 0f;
+                        }
+                    }
+                }
+                String name = params[0].trim().toLowerCase();
+                accepted.put("x-gzip".equals(name) ? ClientlibService.ENCODING_GZIP : name, quality);
+            }
+        }
+        Float wildcard = accepted.get("*");
+        String encoding = null;
+        float best = 0f;
+        for (String candidate : available) {
+            Float quality = accepted.containsKey(candidate) ? accepted.get(candidate) : wildcard;
+            if (quality != null && quality > best) {
+                encoding = candidate;
+                best = quality;
+            }
+        }
+        Float identity = accepted.get("identity");
+        if (encoding != null && identity != null && identity > best) {
+            encoding = null;
+        }
+        return encoding;
+    }
+
     protected String makeUrl(SlingHttpServletRequest request, ClientlibLink link, boolean minified) {
         String uri = makeUri(minified, link);
         String url;
@@ -12,6 +12,7 @@ import com.composum.sling.clientlibs.handle.ClientlibResourceFolder;
 import com.composum.sling.clientlibs.handle.ClientlibVisitor;
 import com.composum.sling.clientlibs.processor.AbstractClientlibVisitor;
 import com.composum.sling.clientlibs.service.ClientlibService;
+import com.composum.sling.clientlibs.service.DefaultClientlibService;
 import com.composum.sling.core.util.XSS;
 import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.io.IOUtils;
@@ -157,6 +158,7 @@ public class ClientlibDebugConsolePlugin extends HttpServlet {
             }
             processor.printForm();
             processor.printVerification();
+            processor.printCacheStatistics();
 
             List<Type> printTypes = processor.requestedType == null ? Arrays.asList(Type.values()) : Collections.singletonList(processor.requestedType);
             for (Type type : printTypes) {
@@ -306,6 +308,14 @@ public class ClientlibDebugConsolePlugin extends HttpServlet {
             }
         }
 
+        protected void printCacheStatistics() {
+            if (clientlibService instanceof DefaultClientlibService) {
+                writer.println("<hr/><h3>Category cache:</h3><pre>");
+                writer.println(((DefaultClientlibService) clientlibService).getCategoryCacheStatistics());
+                writer.println("</pre>");
+            }
+        }
+
         /**
          * Prints all client libraries readable for the impersonation user.
          */
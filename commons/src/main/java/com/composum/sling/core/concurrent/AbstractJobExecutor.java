@@ -11,8 +11,6 @@ import org.apache.sling.event.jobs.Job;
 import org.apache.sling.event.jobs.consumer.JobExecutionContext;
 import org.apache.sling.event.jobs.consumer.JobExecutionResult;
 import org.apache.sling.event.jobs.consumer.JobExecutor;
-import org.osgi.service.component.ComponentContext;
-import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
@@ -40,8 +38,13 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -77,6 +80,12 @@ public abstract class AbstractJobExecutor<Result> implements JobExecutor, EventH
 
     public static final String AUDIT_ROOT_PATH = "/var/audit/jobs/";
 
+    /** The interval (ms) in which a running job is checked for a stop request and its output is flushed. */
+    public static final long SUPERVISION_INTERVAL = 500L;
+
+    /** The default maximum number of jobs of one executor running in parallel. */
+    public static final int DEFAULT_JOB_POOL_SIZE = 5;
+
     public static final Map<String, Object> CRUD_AUDIT_FOLDER_PROPS;
 
     static {
@@ -85,6 +94,9 @@ public abstract class AbstractJobExecutor<Result> implements JobExecutor, EventH
         CRUD_AUDIT_FOLDER_PROPS = Collections.unmodifiableMap(map);
     }
 
+    /** The pool shared by all jobs of this executor; created on demand, shut down by {@link #shutdownJobPool()}. */
+    private volatile ExecutorService jobPool;
+
     @NotNull
     protected abstract ResourceResolverFactory getResolverFactory();
 
@@ -175,22 +187,34 @@ public abstract class AbstractJobExecutor<Result> implements JobExecutor, EventH
         try {
             try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
                  PrintWriter out = new PrintWriter(new OutputStreamWriter(fileOutputStream, "UTF-8"))) {
-                final ExecutorService executorService = Executors.newSingleThreadExecutor();
+                final Future<Result> submit = getJobPool().submit(
+                        createCallable(job, context, adminResolver, out));
                 try {
-                    final Future<Result> submit = executorService.submit(
-                            createCallable(job, context, adminResolver, out));
-                    while (!submit.isDone()) {
-                        Thread.yield();
-                        out.flush();
-                        if (context.isStopped()) {
-                            LOG.warn("context for job:{} stopped", reference);
-                            executorService.shutdownNow();
-                            // magic string. message must not be changed!
-                            return context.result().message("execution stopped").cancelled();
+                    Object run = null;
+                    boolean done = false;
+                    while (!done) {
+                        try {
+                            run = submit.get(SUPERVISION_INTERVAL, TimeUnit.MILLISECONDS);
+                            done = true;
+                        } catch (TimeoutException ignore) {
+                            out.flush();
+                            JobUtil.outputChanged();
+                            if (context.isStopped()) {
+                                LOG.warn("context for job:{} stopped", reference);
+                                submit.cancel(true);
+                                // magic string. message must not be changed!
+                                return context.result().message("execution stopped").cancelled();
+                            }
                         }
                     }
-                    final Object run = submit.get();
+                    out.flush();
+                    JobUtil.outputChanged();
                     return context.result().message(String.valueOf(run)).succeeded();
+                } catch (InterruptedException e) {
+                    LOG.warn("supervision of job:{} interrupted", reference);
+                    submit.cancel(true);
+                    Thread.currentThread().interrupt();
+                    return context.result().message("execution stopped").cancelled();
                 } catch (ExecutionException e) {
                     final Throwable cause = e.getCause();
                     if (cause instanceof JobFailureException) {
@@ -219,6 +243,7 @@ public abstract class AbstractJobExecutor<Result> implements JobExecutor, EventH
                     }});
                 }
                 final boolean deleted = tempFile.delete();
+                JobUtil.outputChanged();
                 final Set<String> propertyNames = job.getPropertyNames();
                 final ModifiableValueMap map = auditResource.adaptTo(ModifiableValueMap.class);
                 for (String propertyName : propertyNames) {
@@ -237,6 +262,50 @@ public abstract class AbstractJobExecutor<Result> implements JobExecutor, EventH
         }
     }
 
+    /**
+     * The maximum number of jobs of this executor running in parallel; further jobs are waiting for a free thread.
+     */
+    protected int getJobPoolSize() {
+        return DEFAULT_JOB_POOL_SIZE;
+    }
+
+    /**
+     * Returns the bounded pool with named threads shared by all jobs of this executor.
+     */
+    protected ExecutorService getJobPool() {
+        ExecutorService pool = jobPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = jobPool;
+                if (pool == null) {
+                    final String prefix = "composum-job-" + getJobTopic().replaceAll("[^A-Za-z0-9]+", "-") + "-";
+                    final AtomicInteger counter = new AtomicInteger();
+                    final ThreadFactory threadFactory = runnable -> {
+                        Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+                    int size = Math.max(1, getJobPoolSize());
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), threadFactory);
+                    executor.allowCoreThreadTimeOut(true);
+                    jobPool = pool = executor;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Stops all running jobs of this executor - to call on deactivation of the executor service.
+     */
+    protected synchronized void shutdownJobPool() {
+        if (jobPool != null) {
+            jobPool.shutdownNow();
+            jobPool = null;
+        }
+    }
+
     /**
      * Can be overwritten to handle some cleanup or logging when job is finished.
      */
@@ -23,6 +23,45 @@ import static com.composum.sling.core.concurrent.AbstractJobExecutor.JOB_OUTFILE
  */
 public class JobUtil {
 
+    /** the monitor signalled by the job executors on each flush of a job output */
+    private static final Object OUTPUT_MONITOR = new Object();
+
+    /**
+     * Signals new output (or the end of the output) of a job to the requests waiting for it.
+     */
+    public static void outputChanged() {
+        synchronized (OUTPUT_MONITOR) {
+            OUTPUT_MONITOR.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the output file of a job is longer than the offset, the file is removed (the job is finished)
+     * or the timeout is reached; the waiting thread is woken up by the {@link #outputChanged()} signal of the
+     * job executor.
+     *
+     * @return the current length of the output file
+     */
+    public static long awaitOutput(File file, long offset, long timeout) {
+        long length = file.length();
+        if (timeout > 0 && length <= offset && file.exists()) {
+            final long stop = System.currentTimeMillis() + timeout;
+            synchronized (OUTPUT_MONITOR) {
+                long remaining;
+                while ((length = file.length()) <= offset && file.exists()
+                        && (remaining = stop - System.currentTimeMillis()) > 0) {
+                    try {
+                        OUTPUT_MONITOR.wait(remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        return length;
+    }
+
     @Nullable
     public static JobFacade getJobById(JobManager jobManager, ResourceResolver resolver, String jobId) {
         Job job = jobManager.getJobById(jobId);
@@ -56,6 +56,36 @@ public @interface GenericProxyConfig {
     )
     String referencePath();
 
+    @AttributeDefinition(
+            description = "the maximum number of pooled connections to one target host (route)"
+    )
+    int max_connections_per_route() default 20;
+
+    @AttributeDefinition(
+            description = "the maximum number of pooled connections of this service"
+    )
+    int max_connections_total() default 100;
+
+    @AttributeDefinition(
+            description = "the timeout (ms) for establishing a connection to the target"
+    )
+    int connect_timeout() default 5000;
+
+    @AttributeDefinition(
+            description = "the timeout (ms) waiting for data from the target"
+    )
+    int socket_timeout() default 30000;
+
+    @AttributeDefinition(
+            description = "the timeout (ms) waiting for a free connection of the pool"
+    )
+    int connection_request_timeout() default 5000;
+
+    @AttributeDefinition(
+            description = "the time (s) an idle connection is kept alive if the target doesn't declare a time"
+    )
+    int keep_alive_time() default 30;
+
     @AttributeDefinition()
     String webconsole_configurationFactory_nameHint() default
             "{name} (enabled: {enabled}, target: {targetPattern}, url: {targetUrl}, ref: {referencePath})";
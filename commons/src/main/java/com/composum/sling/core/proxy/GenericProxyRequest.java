@@ -5,10 +5,14 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
@@ -22,6 +26,7 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.ServiceScope;
 import org.osgi.service.http.HttpService;
@@ -47,12 +52,16 @@ import javax.xml.transform.stream.StreamSource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -68,25 +77,102 @@ public class GenericProxyRequest implements GenericProxyService {
     public static final Pattern XML_CONTENT_URL = Pattern.compile("^.*/[^/]+\\.(html|xml)(\\?.*)?$");
     public static final Pattern XML_CONTENT_TYPE = Pattern.compile("^text/(html|xml)(;.*)?$");
 
+    public static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
     protected GenericProxyConfig config;
 
     protected Pattern targetPattern;
 
     protected BundleContext bundleContext;
 
+    /** the connection pool shared by all requests of this service */
+    protected PoolingHttpClientConnectionManager connectionManager;
+    protected CloseableHttpClient httpClient;
+
+    protected final AtomicLong requestCount = new AtomicLong();
+    protected final AtomicLong failureCount = new AtomicLong();
+    protected final AtomicLong requestTime = new AtomicLong();
+    protected final AtomicLong maxRequestTime = new AtomicLong();
+
     @Activate
     @Modified
     protected void activate(final ComponentContext context, final GenericProxyConfig config) {
         this.bundleContext = context.getBundleContext();
         this.config = config;
+        closeHttpClient();
         if (config.enabled()) {
             String rule = config.targetPattern();
             if (StringUtils.isNotBlank(rule)) {
                 targetPattern = Pattern.compile(rule.startsWith("/") ? ("^" + rule) : rule);
             }
+            httpClient = createHttpClient(config);
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        closeHttpClient();
+    }
+
+    /**
+     * @return a client with a connection pool for all requests of this service using the configured limits
+     */
+    @NotNull
+    protected CloseableHttpClient createHttpClient(@NotNull final GenericProxyConfig config) {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(1, config.max_connections_total()));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, config.max_connections_per_route()));
+        connectionManager.setValidateAfterInactivity(2000);
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.connect_timeout())
+                .setSocketTimeout(config.socket_timeout())
+                .setConnectionRequestTimeout(config.connection_request_timeout())
+                .build();
+        final long keepAlive = TimeUnit.SECONDS.toMillis(Math.max(0, config.keep_alive_time()));
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, httpContext) -> {
+                    long declared = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, httpContext);
+                    return declared > 0 ? declared : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(Math.max(1L, keepAlive), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    protected void closeHttpClient() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException ex) {
+                LOG.warn(ex.toString());
+            }
+            httpClient = null;
+            connectionManager = null;
         }
     }
 
+    @Override
+    @NotNull
+    public Map<String, Object> getStatistics() {
+        final Map<String, Object> statistics = new LinkedHashMap<>();
+        final long requests = requestCount.get();
+        statistics.put("requests", requests);
+        statistics.put("failures", failureCount.get());
+        statistics.put("averageTime", requests > 0 ? requestTime.get() / requests : 0L);
+        statistics.put("maxTime", maxRequestTime.get());
+        final PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager != null) {
+            final PoolStats pool = manager.getTotalStats();
+            statistics.put("leased", pool.getLeased());
+            statistics.put("available", pool.getAvailable());
+            statistics.put("pending", pool.getPending());
+            statistics.put("max", pool.getMax());
+        }
+        return statistics;
+    }
+
     @Override
     @NotNull
     public String getName() {
@@ -156,10 +242,15 @@ public class GenericProxyRequest implements GenericProxyService {
             throws Exception {
         String targetUrl = getTargetUrl(request, targetRef, matcher);
         if (StringUtils.isNotBlank(targetUrl)) {
-            CloseableHttpClient client = HttpClients.createDefault();
+            CloseableHttpClient client = httpClient;
+            if (client == null) {
+                throw new IllegalStateException("proxy service not active (" + config.name() + ")");
+            }
             HttpGet httpGet = new HttpGet(targetUrl);
             httpGet.addHeader("Cookie", request.getHeader("Cookie"));
             LOG.info("proxy request '{}'", httpGet.getRequestLine());
+            final long start = System.currentTimeMillis();
+            boolean success = false;
             try (CloseableHttpResponse targetResponse = client.execute(httpGet)) {
                 final HttpEntity entity = targetResponse.getEntity();
                 if (entity != null) {
@@ -167,6 +258,15 @@ public class GenericProxyRequest implements GenericProxyService {
                 } else {
                     LOG.warn("response is NULL ({})", targetUrl);
                 }
+                success = true;
+            } finally {
+                final long time = System.currentTimeMillis() - start;
+                requestCount.incrementAndGet();
+                requestTime.addAndGet(time);
+                maxRequestTime.accumulateAndGet(time, Math::max);
+                if (!success) {
+                    failureCount.incrementAndGet();
+                }
             }
         } else {
             LOG.info("no target URL: NOP ({})", targetRef);
@@ -227,11 +327,14 @@ public class GenericProxyRequest implements GenericProxyService {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("pumping non XML content...");
                 }
-                // stream entity response (probably filtered by the reader)
-                response.setContentLength((int) entity.getContentLength());
-                try (Reader entityReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
-                    IOUtils.copy(entityReader, response.getWriter());
+                // stream the entity bytes unchanged without buffering
+                final long contentLength = entity.getContentLength();
+                if (contentLength >= 0) {
+                    response.setHeader("Content-Length", Long.toString(contentLength));
                 }
+                final OutputStream output = response.getOutputStream();
+                IOUtils.copyLarge(inputStream, output, new byte[STREAM_BUFFER_SIZE]);
+                output.flush();
             }
         }
     }
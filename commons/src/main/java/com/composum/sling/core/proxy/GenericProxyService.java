@@ -5,6 +5,8 @@ import org.apache.sling.api.SlingHttpServletResponse;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * the proxy request service interface
@@ -29,4 +31,12 @@ public interface GenericProxyService {
                     @NotNull SlingHttpServletResponse response,
                     @NotNull String targetUrl)
             throws IOException;
+
+    /**
+     * @return the usage statistics of the service (request count, latency, connection pool state)
+     */
+    @NotNull
+    default Map<String, Object> getStatistics() {
+        return Collections.emptyMap();
+    }
 }
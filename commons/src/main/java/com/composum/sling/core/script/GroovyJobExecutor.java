@@ -93,6 +93,7 @@ public class GroovyJobExecutor extends AbstractJobExecutor<Object> {
 
     @Deactivate
     protected void deactivate() {
+        shutdownJobPool();
         groovySetupScript = null;
     }
 
@@ -0,0 +1,56 @@
+package com.composum.sling.core.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.jcr.Session;
+import java.util.Set;
+
+/**
+ * Provides the effective (transitive) group memberships of the session users; the memberships are cached
+ * for each user and dropped on changes of the authorizables. The change count of the authorizables can be
+ * used to invalidate other caches derived from the authorizables.
+ */
+public interface MembershipService {
+
+    interface Membership {
+
+        /**
+         * @return the ID of the user; maybe empty for an anonymous session
+         */
+        @NotNull
+        String getUserId();
+
+        /**
+         * @return 'true' if the authorizable of the session is an existing user
+         */
+        boolean isUser();
+
+        /**
+         * @return 'true' if the user is the 'admin' user
+         */
+        boolean isAdmin();
+
+        /**
+         * @return 'true' if the user is (transitive) member of the group
+         */
+        boolean isMemberOf(@NotNull String groupId);
+
+        /**
+         * @return the IDs of all groups the user is (transitive) member of
+         */
+        @NotNull
+        Set<String> getGroups();
+    }
+
+    /**
+     * @return the memberships of the user of the session
+     */
+    @NotNull
+    Membership getMembership(@NotNull Session session);
+
+    /**
+     * @return a counter incremented on each observed change of the authorizables (except login tokens);
+     * a value derived from the authorizables is up to date as long as the counter is unchanged
+     */
+    long getChangeCount();
+}
@@ -0,0 +1,176 @@
+package com.composum.sling.core.service.impl;
+
+import com.composum.sling.core.service.MembershipService;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.jackrabbit.api.security.user.User;
+import org.apache.jackrabbit.api.security.user.UserManager;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the group closure of the recently checked users; the cache is dropped on each change in the home of
+ * the authorizables (except login tokens) and the entries are refreshed after their time to live.
+ */
+@Component(
+        service = {MembershipService.class, ResourceChangeListener.class},
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Membership Service",
+                ResourceChangeListener.PATHS + "=/home",
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class CoreMembershipService implements MembershipService, ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoreMembershipService.class);
+
+    /** the maximum number of users with cached memberships */
+    public static final int MAX_ENTRIES = 1000;
+
+    /** the time the memberships are used (a safety net for changes not observed) */
+    public static final long MEMBERSHIP_TTL = TimeUnit.MINUTES.toMillis(5);
+
+    protected static class UserMembership implements Membership {
+
+        protected final String userId;
+        protected final boolean user;
+        protected final boolean admin;
+        protected final Set<String> groups;
+        protected final long created = System.currentTimeMillis();
+
+        protected UserMembership(@NotNull final String userId, @NotNull final Session session) {
+            this.userId = userId;
+            boolean user = false;
+            boolean admin = false;
+            Set<String> groups = Collections.emptySet();
+            if (StringUtils.isNotBlank(userId) && session instanceof JackrabbitSession) {
+                try {
+                    final UserManager userManager = ((JackrabbitSession) session).getUserManager();
+                    final Authorizable authorizable = userManager.getAuthorizable(userId);
+                    if (authorizable != null) {
+                        user = authorizable instanceof User;
+                        admin = user && ((User) authorizable).isAdmin();
+                        groups = new HashSet<>();
+                        final Iterator<Group> memberOf = authorizable.memberOf();
+                        while (memberOf != null && memberOf.hasNext()) {
+                            groups.add(memberOf.next().getID());
+                        }
+                    }
+                } catch (RepositoryException ex) {
+                    LOG.error(ex.getMessage(), ex);
+                }
+            }
+            this.user = user;
+            this.admin = admin;
+            this.groups = Collections.unmodifiableSet(groups);
+        }
+
+        protected boolean isValid() {
+            return created + MEMBERSHIP_TTL > System.currentTimeMillis();
+        }
+
+        @Override
+        @NotNull
+        public String getUserId() {
+            return userId;
+        }
+
+        @Override
+        public boolean isUser() {
+            return user;
+        }
+
+        @Override
+        public boolean isAdmin() {
+            return admin;
+        }
+
+        @Override
+        public boolean isMemberOf(@NotNull final String groupId) {
+            return groups.contains(groupId);
+        }
+
+        @Override
+        @NotNull
+        public Set<String> getGroups() {
+            return groups;
+        }
+    }
+
+    protected final Map<String, UserMembership> memberships =
+            new LinkedHashMap<String, UserMembership>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UserMembership> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    /** incremented on each relevant change; memberships determined during a change are not cached */
+    protected long changeCount = 0;
+
+    @Override
+    @NotNull
+    public Membership getMembership(@NotNull final Session session) {
+        final String userId = StringUtils.defaultString(session.getUserID());
+        UserMembership membership;
+        final long changes;
+        synchronized (memberships) {
+            changes = changeCount;
+            membership = memberships.get(userId);
+        }
+        if (membership == null || !membership.isValid()) {
+            membership = new UserMembership(userId, session);
+            synchronized (memberships) {
+                if (changes == changeCount) {
+                    memberships.put(userId, membership);
+                }
+            }
+        }
+        return membership;
+    }
+
+    @Override
+    public long getChangeCount() {
+        synchronized (memberships) {
+            return changeCount;
+        }
+    }
+
+    @Override
+    public void onChange(@NotNull final List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            // the login tokens are changed on each login - not relevant for the memberships
+            if (!change.getPath().contains("/.tokens")) {
+                synchronized (memberships) {
+                    changeCount++;
+                    if (!memberships.isEmpty()) {
+                        LOG.debug("authorizables changed ({}), memberships dropped", change.getPath());
+                        memberships.clear();
+                    }
+                }
+                break;
+            }
+        }
+    }
+}
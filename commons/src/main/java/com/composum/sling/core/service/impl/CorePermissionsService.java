@@ -1,14 +1,11 @@
 package com.composum.sling.core.service.impl;
 
+import com.composum.sling.core.service.MembershipService;
 import com.composum.sling.core.service.PermissionsService;
-import org.apache.jackrabbit.api.JackrabbitSession;
-import org.apache.jackrabbit.api.security.user.Authorizable;
-import org.apache.jackrabbit.api.security.user.Group;
-import org.apache.jackrabbit.api.security.user.User;
-import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +23,9 @@ public class CorePermissionsService implements PermissionsService {
 
     private static final Logger LOG = LoggerFactory.getLogger(CorePermissionsService.class);
 
+    @Reference
+    private MembershipService membershipService;
+
     /**
      * @param session         the current session
      * @param authorizableIds a list of group ids to check
@@ -33,20 +33,14 @@ public class CorePermissionsService implements PermissionsService {
      */
     @Override
     public String isMemberOfOne(Session session, String... authorizableIds) {
-        try {
-            UserManager userManager = ((JackrabbitSession) session).getUserManager();
-            Authorizable user = userManager.getAuthorizable(session.getUserID());
-            for (String authorizableId : authorizableIds) {
-                Authorizable authorizable = userManager.getAuthorizable(authorizableId);
-                if (authorizable instanceof Group && ((Group) authorizable).isMember(user)) {
-                    return authorizableId;
-                }
-            }
-            if (user instanceof User && ((User) user).isAdmin()) {
-                return ""; // always 'include' 'admin' user but no specific group returned
+        final MembershipService.Membership membership = membershipService.getMembership(session);
+        for (String authorizableId : authorizableIds) {
+            if (membership.isMemberOf(authorizableId)) {
+                return authorizableId;
             }
-        } catch (RepositoryException ex) {
-            LOG.error(ex.getMessage(), ex);
+        }
+        if (membership.isAdmin()) {
+            return ""; // always 'include' 'admin' user but no specific group returned
         }
         return null;
     }
@@ -58,23 +52,16 @@ public class CorePermissionsService implements PermissionsService {
      */
     @Override
     public boolean isMemberOfAll(Session session, String... authorizableIds) {
-        try {
-            UserManager userManager = ((JackrabbitSession) session).getUserManager();
-            Authorizable user = userManager.getAuthorizable(session.getUserID());
-            if (user instanceof User && ((User) user).isAdmin()) {
-                return true; // always include 'admin' user
-            }
-            for (String authorizableId : authorizableIds) {
-                Authorizable authorizable = userManager.getAuthorizable(authorizableId);
-                if (!(authorizable instanceof Group) || !((Group) authorizable).isMember(user)) {
-                    return false;
-                }
+        final MembershipService.Membership membership = membershipService.getMembership(session);
+        if (membership.isAdmin()) {
+            return true; // always include 'admin' user
+        }
+        for (String authorizableId : authorizableIds) {
+            if (!membership.isMemberOf(authorizableId)) {
+                return false;
             }
-            return true;
-        } catch (RepositoryException ex) {
-            LOG.error(ex.getMessage(), ex);
         }
-        return false;
+        return true;
     }
 
     /**
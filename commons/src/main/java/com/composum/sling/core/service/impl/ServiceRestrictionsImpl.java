@@ -1,11 +1,10 @@
 package com.composum.sling.core.service.impl;
 
+import com.composum.sling.core.service.MembershipService;
 import com.composum.sling.core.service.ServiceRestrictions;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.jackrabbit.api.security.user.Authorizable;
-import org.apache.jackrabbit.api.security.user.Group;
-import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.jetbrains.annotations.NotNull;
@@ -15,6 +14,7 @@ import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -26,7 +26,6 @@ import javax.jcr.Session;
 import javax.servlet.http.HttpSession;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -79,6 +78,9 @@ public class ServiceRestrictionsImpl implements ServiceRestrictions {
 
     private final Map<Permission, Set<String>> userOptions = Collections.synchronizedMap(new HashMap<>());
 
+    @Reference
+    private MembershipService membershipService;
+
     private BundleContext bundleContext;
 
     private Config config;
@@ -111,7 +113,8 @@ public class ServiceRestrictionsImpl implements ServiceRestrictions {
     public boolean isUserOptionAllowed(@NotNull final SlingHttpServletRequest request,
                                        @NotNull final Permission permission) {
         final String userId = request.getResourceResolver().getUserID();
-        Authorizable authorizable = null;
+        MembershipService.Membership membership = null;
+        boolean membershipRead = false;
         for (Permission option : userOptions.keySet()) {
             if (option.compareTo(permission) >= 0) {
                 for (String name : userOptions.get(option)) {
@@ -122,20 +125,15 @@ public class ServiceRestrictionsImpl implements ServiceRestrictions {
                         if (userId.equals(name)) {
                             return true;
                         }
-                        if (authorizable == null) {
-                            authorizable = getAuthorizable(request);
+                        if (!membershipRead) {
+                            membership = getMembership(request);
+                            membershipRead = true;
+                        }
+                        if (membership == null) {
+                            continue; // blank entries and user IDs are still checked
                         }
-                        try {
-                            final Iterator<Group> groups;
-                            if (authorizable != null && (groups = authorizable.memberOf()) != null) {
-                                while (groups.hasNext()) {
-                                    if (groups.next().getID().equals(name)) {
-                                        return true;
-                                    }
-                                }
-                            }
-                        } catch (RepositoryException ex) {
-                            LOG.error(ex.getMessage(), ex);
+                        if (membership.isMemberOf(name)) {
+                            return true;
                         }
                     }
                 }
@@ -226,29 +224,26 @@ public class ServiceRestrictionsImpl implements ServiceRestrictions {
         return null;
     }
 
+    /**
+     * @return the (cached) group memberships of the request user; 'null' if no user session available
+     */
+    @Nullable
+    protected MembershipService.Membership getMembership(@NotNull final SlingHttpServletRequest request) {
+        final Session session = request.getResourceResolver().adaptTo(Session.class);
+        return session != null && StringUtils.isNotBlank(session.getUserID())
+                ? membershipService.getMembership(session) : null;
+    }
+
     public boolean checkAuthorizables(@NotNull final SlingHttpServletRequest request,
                                       @Nullable String restrictions) {
         if (StringUtils.isNotBlank(restrictions) && restrictions.startsWith(AUTHORIZABLE_RESTRICTION_PREFIX)) {
-            Authorizable authorizable = getAuthorizable(request);
-            if (authorizable instanceof User) {
-                try {
-                    final String name = authorizable.getID();
-                    for (String id : StringUtils.split(restrictions
-                            .substring(AUTHORIZABLE_RESTRICTION_PREFIX.length()), ",")) {
-                        if (authorizable.getID().equals(id)) {
-                            return true;
-                        }
-                        final Iterator<Group> groups;
-                        if ((groups = authorizable.memberOf()) != null) {
-                            while (groups.hasNext()) {
-                                if (groups.next().getID().equals(id)) {
-                                    return true;
-                                }
-                            }
-                        }
+            final MembershipService.Membership membership = getMembership(request);
+            if (membership != null && membership.isUser()) {
+                for (String id : StringUtils.split(restrictions
+                        .substring(AUTHORIZABLE_RESTRICTION_PREFIX.length()), ",")) {
+                    if (membership.getUserId().equals(id) || membership.isMemberOf(id)) {
+                        return true;
                     }
-                } catch (RepositoryException ex) {
-                    LOG.error(ex.getMessage(), ex);
                 }
             }
             return false;
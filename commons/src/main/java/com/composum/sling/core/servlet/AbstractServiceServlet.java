@@ -47,6 +47,7 @@ public abstract class AbstractServiceServlet extends SlingAllMethodsServlet impl
 
     public static final String PARAM_FILE = "file";
     public static final String PARAM_CMD = "cmd";
+    public static final String PARAM_CURSOR = "cursor";
     public static final String PARAM_FILTER = "filter";
     public static final String PARAM_ID = "id";
     public static final String PARAM_INDEX = "index";
@@ -54,10 +55,12 @@ public abstract class AbstractServiceServlet extends SlingAllMethodsServlet impl
     public static final String PARAM_LABEL = "label";
     public static final String PARAM_MIME_TYPE = "mimeType";
     public static final String PARAM_NAME = "name";
+    public static final String PARAM_OFFSET = "offset";
     public static final String PARAM_PATH = "path";
     public static final String PARAM_BEFORE = "before";
     public static final String PARAM_QUERY = "query";
     public static final String PARAM_RESOURCE_TYPE = "resourceType";
+    public static final String PARAM_SIZE = "size";
     public static final String PARAM_TITLE = "title";
     public static final String PARAM_TYPE = "type";
     public static final String PARAM_URL = "url";
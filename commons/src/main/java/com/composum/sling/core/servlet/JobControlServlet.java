@@ -6,11 +6,13 @@ import com.composum.sling.core.Restricted;
 import com.composum.sling.core.concurrent.JobFacade;
 import com.composum.sling.core.concurrent.JobUtil;
 import com.composum.sling.core.service.RestrictedService;
+import com.composum.sling.core.util.HttpUtil;
 import com.composum.sling.core.util.RequestUtil;
 import com.composum.sling.core.util.ResourceUtil;
 import com.composum.sling.core.util.ResponseUtil;
 import com.composum.sling.core.util.XSS;
 import com.google.gson.stream.JsonWriter;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.api.JackrabbitSession;
 import org.apache.sling.api.SlingHttpServletRequest;
@@ -31,6 +33,7 @@ import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.jcr.Binary;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.servlet.Servlet;
@@ -42,6 +45,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -83,6 +89,15 @@ public class JobControlServlet extends AbstractServiceServlet {
 
     public enum Operation {job, jobs, outfile, cleanup}
 
+    /** Parameter for the offset of the requested job output (alternative to a 'Range' header). */
+    public static final String PARAM_OFFSET = "offset";
+    /** Parameter for the maximum time (ms) to wait for new job output (long polling). */
+    public static final String PARAM_WAIT = "wait";
+    /** Response header with the offset for the next request of the job output. */
+    public static final String HEADER_OUTPUT_OFFSET = "X-Output-Offset";
+
+    public static final long MAX_OUTPUT_WAIT = 20000L;
+
     protected ServletOperationSet<Extension, Operation> operations = new ServletOperationSet<>(Extension.json);
 
     @Reference
@@ -128,7 +143,11 @@ public class JobControlServlet extends AbstractServiceServlet {
     }
 
     /**
-     * Gets a part of the named temp. outputfile.
+     * Gets a part of the named temp. outputfile. The output of a job is an append-only channel: the client requests
+     * the bytes from a given offset (by a 'Range: bytes=offset-' header or an 'offset' parameter) and gets only the
+     * new output. With a 'wait' parameter (ms) the request is held open until new output is available or the job
+     * output is finished (long polling); the waiting request is woken up by the job executor on each flush of the
+     * output. The response contains the explicit length and the next offset to request.
      */
     private class GetOutfile implements ServletOperation {
 
@@ -142,13 +161,32 @@ public class JobControlServlet extends AbstractServiceServlet {
                 final String path = job.getProperty("outfile", String.class);
                 final String range = request.getHeader("Range");
                 final List<Range> ranges = decodeRange(range);
+                final String offsetParam = request.getParameter(PARAM_OFFSET);
+                if (StringUtils.isNotBlank(offsetParam)) {
+                    Range offsetRange = new Range();
+                    try {
+                        offsetRange.start = Long.parseLong(offsetParam);
+                    } catch (NumberFormatException ex) {
+                        offsetRange.start = -1L;
+                    }
+                    if (offsetRange.start < 0) {
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid offset: " + offsetParam);
+                        return;
+                    }
+                    ranges.clear();
+                    ranges.add(offsetRange);
+                }
                 final File file = new File(path);
+                final Long offset = ranges.isEmpty() ? null : ranges.get(0).start;
+                final long wait = Math.min((long) RequestUtil.getParameter(request, PARAM_WAIT, 0), MAX_OUTPUT_WAIT);
+                final long available = offset != null && wait > 0
+                        ? JobUtil.awaitOutput(file, offset, wait)
+                        : file.length();
                 response.setCharacterEncoding("UTF-8");
                 response.setContentType("text/plain;charset=utf-8");
                 if (file.exists()) {
-                    try (final ServletOutputStream outputStream = response.getOutputStream();
-                         final InputStream inputStream = new FileInputStream(file)) {
-                        writeStream(ranges, outputStream, inputStream);
+                    try (final FileInputStream inputStream = new FileInputStream(file)) {
+                        writeStream(ranges, response, inputStream.getChannel(), available);
                     } catch (FileNotFoundException e) {
                         response.sendError(HttpServletResponse.SC_NOT_FOUND, path);
                     }
@@ -159,9 +197,9 @@ public class JobControlServlet extends AbstractServiceServlet {
                         final Resource audit = resources.next();
                         final Resource outfileResource = resolver.getResource(audit, path.substring(path.lastIndexOf(File.separator) + 1));
                         if (outfileResource != null) {
-                            try (final ServletOutputStream outputStream = response.getOutputStream();
-                                 final InputStream inputStream = outfileResource.adaptTo(InputStream.class)) {
-                                writeStream(ranges, outputStream, inputStream);
+                            final Long size = getBinarySize(outfileResource);
+                            try (final InputStream inputStream = outfileResource.adaptTo(InputStream.class)) {
+                                writeStream(ranges, response, inputStream, size);
                             }
                         }
                     }
@@ -171,29 +209,80 @@ public class JobControlServlet extends AbstractServiceServlet {
             }
         }
 
-        private void writeStream(List<Range> ranges, ServletOutputStream outputStream, InputStream inputStream) throws IOException {
-            long end = Long.MAX_VALUE;
-            long pos = 0L;
+        @Nullable
+        private Long getBinarySize(Resource outfileResource) {
+            Binary binary = ResourceUtil.getBinaryData(outfileResource);
+            try {
+                return binary != null ? binary.getSize() : null;
+            } catch (RepositoryException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Determines the requested section [start, end) of the output wrt. the available length.
+         */
+        private long[] getSection(List<Range> ranges, long length) {
+            long start = 0L;
+            long end = length;
             if (!ranges.isEmpty()) {
                 final Range range1 = ranges.get(0);
                 if (range1.start != null) {
-                    pos = inputStream.skip(range1.start);
+                    start = Math.min(range1.start, length);
+                    if (range1.end != null) {
+                        end = Math.min(range1.end + 1, length);
+                    }
+                } else if (range1.suffixLength != null) {
+                    start = Math.max(0L, length - range1.suffixLength);
                 }
-                if (range1.end != null) {
-                    end = range1.end;
+            }
+            return new long[]{start, Math.max(start, end)};
+        }
+
+        private void writeHeaders(SlingHttpServletResponse response, long start, long end) {
+            response.setHeader(HttpUtil.HEADER_CONTENT_LENGTH, Long.toString(end - start));
+            response.setHeader(HEADER_OUTPUT_OFFSET, Long.toString(end));
+        }
+
+        private void writeStream(List<Range> ranges, SlingHttpServletResponse response,
+                                 FileChannel channel, long length) throws IOException {
+            final long[] section = getSection(ranges, length);
+            writeHeaders(response, section[0], section[1]);
+            try (final ServletOutputStream outputStream = response.getOutputStream()) {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long position = section[0];
+                while (position < section[1]) {
+                    long transferred = channel.transferTo(position, section[1] - position, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
                 }
             }
-            int read;
-            while ((read = inputStream.read()) >= 0 && !(pos > end)) {
-                outputStream.write(read);
-                pos++;
+        }
+
+        private void writeStream(List<Range> ranges, SlingHttpServletResponse response,
+                                 InputStream inputStream, Long size) throws IOException {
+            if (size == null) {
+                final byte[] content = IOUtils.toByteArray(inputStream);
+                final long[] section = getSection(ranges, content.length);
+                writeHeaders(response, section[0], section[1]);
+                try (final ServletOutputStream outputStream = response.getOutputStream()) {
+                    outputStream.write(content, (int) section[0], (int) (section[1] - section[0]));
+                }
+            } else {
+                final long[] section = getSection(ranges, size);
+                writeHeaders(response, section[0], section[1]);
+                try (final ServletOutputStream outputStream = response.getOutputStream()) {
+                    IOUtils.copyLarge(inputStream, outputStream, section[0], section[1] - section[0]);
+                }
             }
         }
 
         class Range {
-            Integer start;
-            Integer end;
-            Integer suffixLength;
+            Long start;
+            Long end;
+            Long suffixLength;
         }
 
         private List<Range> decodeRange(String rangeHeader) {
@@ -212,20 +301,24 @@ public class JobControlServlet extends AbstractServiceServlet {
                 Matcher byteRangeSetMatcher = byteRangeSetPattern.matcher(byteRangeSet);
                 while (byteRangeSetMatcher.find()) {
                     Range range = new Range();
-                    if (byteRangeSetMatcher.group("byteRangeSpec") != null) {
-                        String start = byteRangeSetMatcher.group("firstBytePos");
-                        String end = byteRangeSetMatcher.group("lastBytePos");
-                        range.start = Integer.valueOf(start);
-                        range.end = end == null ? null : Integer.valueOf(end);
-                    } else if (byteRangeSetMatcher.group("suffixByteRangeSpec") != null) {
-                        range.suffixLength = Integer.valueOf(byteRangeSetMatcher.group("suffixLength"));
-                    } else {
-                        return Collections.emptyList();
+                    try {
+                        if (byteRangeSetMatcher.group("byteRangeSpec") != null) {
+                            String start = byteRangeSetMatcher.group("firstBytePos");
+                            String end = byteRangeSetMatcher.group("lastBytePos");
+                            range.start = Long.valueOf(start);
+                            range.end = end == null ? null : Long.valueOf(end);
+                        } else if (byteRangeSetMatcher.group("suffixByteRangeSpec") != null) {
+                            range.suffixLength = Long.valueOf(byteRangeSetMatcher.group("suffixLength"));
+                        } else {
+                            return new ArrayList<>();
+                        }
+                    } catch (NumberFormatException ex) { // a position out of the range of a long
+                        return new ArrayList<>();
                     }
                     ranges.add(range);
                 }
             } else {
-                return Collections.emptyList();
+                return new ArrayList<>();
             }
             return ranges;
         }
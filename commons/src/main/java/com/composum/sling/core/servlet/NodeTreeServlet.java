@@ -34,8 +34,11 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class NodeTreeServlet extends AbstractServiceServlet {
 
@@ -148,7 +151,7 @@ public abstract class NodeTreeServlet extends AbstractServiceServlet {
 
             response.setStatus(HttpServletResponse.SC_OK);
 
-            writeJsonNode(jsonWriter, strategy, resource, labelType, false);
+            writeJsonNode(jsonWriter, strategy, resource, labelType, false, TreePage.of(request));
         }
     }
 
@@ -159,6 +162,48 @@ public abstract class NodeTreeServlet extends AbstractServiceServlet {
         return items;
     }
 
+    /**
+     * extension hook: 'true' if the children are delivered in the order of the repository (not changed by
+     * {@link #prepareTreeItems(ResourceHandle, List)}); in this case the children are written (and paged)
+     * directly from the iterator without collecting all children before; 'false' by default to keep the
+     * {@link #prepareTreeItems(ResourceHandle, List)} hook of subclasses effective
+     */
+    protected boolean isNaturalOrder(ResourceHandle resource) {
+        return false;
+    }
+
+    /**
+     * The requested page of the children of a tree node ('offset' and 'size' parameters).
+     */
+    public static class TreePage {
+
+        public final long offset;
+        public final int size;
+
+        public TreePage(long offset, int size) {
+            this.offset = Math.max(0L, offset);
+            this.size = Math.max(1, size);
+        }
+
+        /**
+         * @return the requested page; 'null' if no page is requested (all children are delivered)
+         */
+        @Nullable
+        public static TreePage of(@NotNull final SlingHttpServletRequest request) {
+            String offset = request.getParameter(PARAM_OFFSET);
+            String size = request.getParameter(PARAM_SIZE);
+            if (StringUtils.isNotBlank(offset) || StringUtils.isNotBlank(size)) {
+                try {
+                    return new TreePage(StringUtils.isNotBlank(offset) ? Long.parseLong(offset) : 0L,
+                            StringUtils.isNotBlank(size) ? Integer.parseInt(size) : Integer.MAX_VALUE);
+                } catch (NumberFormatException ex) {
+                    LOG.warn("invalid page parameters: {}", ex.getMessage());
+                }
+            }
+            return null;
+        }
+    }
+
     //
     // JSON helpers
     //
@@ -166,50 +211,119 @@ public abstract class NodeTreeServlet extends AbstractServiceServlet {
     public void writeJsonNode(JsonWriter writer, TreeNodeStrategy nodeStrategy,
                               ResourceHandle resource, LabelType labelType, boolean isVirtual)
             throws IOException {
+        writeJsonNode(writer, nodeStrategy, resource, labelType, isVirtual, null);
+    }
+
+    public void writeJsonNode(JsonWriter writer, TreeNodeStrategy nodeStrategy,
+                              ResourceHandle resource, LabelType labelType, boolean isVirtual,
+                              @Nullable TreePage page)
+            throws IOException {
         writer.beginObject();
-        writeJsonNodeData(writer, nodeStrategy, resource, labelType, isVirtual);
+        writeJsonNodeData(writer, nodeStrategy, resource, labelType, isVirtual, page);
         writer.endObject();
     }
 
     public void writeJsonNodeData(JsonWriter writer, TreeNodeStrategy nodeStrategy,
                                   ResourceHandle resource, LabelType labelType, boolean isVirtual)
             throws IOException {
+        writeJsonNodeData(writer, nodeStrategy, resource, labelType, isVirtual, null);
+    }
+
+    /**
+     * Writes the node with its children; if a page is requested only the children of the page are written
+     * followed by the 'paging' data of the page (offset, size, count, the 'next' offset if more children
+     * are present, and the 'total' number of children - a lower bound if not 'exact').
+     */
+    public void writeJsonNodeData(JsonWriter writer, TreeNodeStrategy nodeStrategy,
+                                  ResourceHandle resource, LabelType labelType, boolean isVirtual,
+                                  @Nullable TreePage page)
+            throws IOException {
         ResourceFilter filter = nodeStrategy.getFilter();
         writeNodeIdentifiers(writer, nodeStrategy, resource, labelType, isVirtual);
         writeNodeTreeType(writer, filter, resource, isVirtual);
         writeNodeJcrState(writer, resource);
-        List<Resource> children = new ArrayList<>();
-        boolean hasChildren = false;
-        for (Resource child : nodeStrategy.getChildren(resource)) {
-            hasChildren = true;
-            if (filter.accept(child) &&
-                    // filter out additional synthetic folders in addition to the 1st level '//...' nodes (AEM 6.1 !?)
-                    !(ResourceUtil.containsPath(children, child) && ResourceUtil.isSyntheticResource(child))) {
-                children.add(ResourceHandle.use(child));
-            }
-        }
-        if (!hasChildren) {
+        Iterator<Resource> iterator = nodeStrategy.getChildren(resource).iterator();
+        if (!iterator.hasNext()) {
             if (!isVirtual) {
                 addVirtualContent(writer, nodeStrategy, resource, labelType);
             }
         } else {
-            children = prepareTreeItems(resource, children);
+            final long offset = page != null ? page.offset : 0L;
+            final long size = page != null ? page.size : Long.MAX_VALUE;
+            Set<String> paths = new HashSet<>();
+            long total = 0;
+            int count = 0;
+            boolean more = false;
             writer.name("children").beginArray();
-            for (Resource child : children) {
-                ResourceHandle handle = ResourceHandle.use(child);
-                writer.beginObject();
-                writeNodeIdentifiers(writer, nodeStrategy, ResourceHandle.use(child), labelType, isVirtual);
-                writeNodeTreeType(writer, filter, handle, isVirtual);
-                writeNodeJcrState(writer, handle);
-                writer.name("state").beginObject(); // that's the 'jstree' state object
-                writer.name("loaded").value(false);
-                writer.endObject();
-                writer.endObject();
+            if (isNaturalOrder(resource)) {
+                while (iterator.hasNext()) {
+                    Resource child = iterator.next();
+                    if (acceptTreeItem(filter, paths, child)) {
+                        if (total >= offset) {
+                            if (count >= size) {
+                                more = true;
+                                break;
+                            }
+                            writeTreeItem(writer, nodeStrategy, filter, ResourceHandle.use(child), labelType, isVirtual);
+                            count++;
+                        }
+                        total++;
+                    }
+                }
+            } else {
+                List<Resource> children = new ArrayList<>();
+                while (iterator.hasNext()) {
+                    Resource child = iterator.next();
+                    if (acceptTreeItem(filter, paths, child)) {
+                        children.add(ResourceHandle.use(child));
+                    }
+                }
+                children = prepareTreeItems(resource, children);
+                total = children.size();
+                for (long index = offset; index < total && count < size; index++) {
+                    writeTreeItem(writer, nodeStrategy, filter,
+                            ResourceHandle.use(children.get((int) index)), labelType, isVirtual);
+                    count++;
+                }
+                more = offset + count < total;
             }
             writer.endArray();
+            if (page != null) {
+                writer.name("paging").beginObject();
+                writer.name("offset").value(offset);
+                writer.name("size").value(page.size);
+                writer.name("count").value(count);
+                if (more) {
+                    writer.name("next").value(offset + count);
+                }
+                writer.name("total").value(more && total <= offset + count ? offset + count + 1 : total);
+                writer.name("exact").value(!more || total > offset + count);
+                writer.endObject();
+            }
         }
     }
 
+    /**
+     * filters the children; additional synthetic folders are dropped in addition to the 1st level '//...'
+     * nodes (AEM 6.1 !?)
+     */
+    protected boolean acceptTreeItem(ResourceFilter filter, Set<String> paths, Resource child) {
+        return filter.accept(child) && (paths.add(child.getPath()) || !ResourceUtil.isSyntheticResource(child));
+    }
+
+    protected void writeTreeItem(JsonWriter writer, TreeNodeStrategy nodeStrategy, ResourceFilter filter,
+                                 ResourceHandle handle, LabelType labelType, boolean isVirtual)
+            throws IOException {
+        writer.beginObject();
+        writeNodeIdentifiers(writer, nodeStrategy, handle, labelType, isVirtual);
+        writeNodeTreeType(writer, filter, handle, isVirtual);
+        writeNodeJcrState(writer, handle);
+        writer.name("state").beginObject(); // that's the 'jstree' state object
+        writer.name("loaded").value(false);
+        writer.endObject();
+        writer.endObject();
+    }
+
     public void writeNodeTreeType(JsonWriter writer, ResourceFilter filter,
                                   ResourceHandle resource, boolean isVirtual)
             throws IOException {
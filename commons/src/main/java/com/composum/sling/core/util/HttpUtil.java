@@ -5,9 +5,13 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.servlets.HttpConstants;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import javax.servlet.http.HttpSession;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * A basic class for all '/bin/{service}/path/to/resource' servlets.
@@ -26,6 +30,123 @@ public class HttpUtil extends HttpConstants {
     public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
 
     public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_ETAG = "ETag";
+
+    public static final String HEADER_RANGE = "Range";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+    public static final String VALUE_BYTES = "bytes";
+
+    /**
+     * A range of bytes of a content; the positions of the first and of the last byte (inclusive).
+     */
+    public static class ByteRange {
+
+        public final long first;
+        public final long last;
+
+        public ByteRange(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        public long getLength() {
+            return last - first + 1;
+        }
+
+        /**
+         * @return the value of the 'Content-Range' header of this range of a content of the given size
+         */
+        @NotNull
+        public String getContentRange(long size) {
+            return VALUE_BYTES + " " + first + "-" + last + "/" + size;
+        }
+    }
+
+    /**
+     * Parses the byte ranges of a {@link #HEADER_RANGE} header for a content of the given size; overlapping or
+     * adjacent ranges are combined.
+     *
+     * @param rangeHeader the value of the 'Range' header
+     * @param size        the size of the requested content
+     * @return the satisfiable ranges; 'null' if there is no or an invalid header (the complete content should be
+     * delivered); an empty list if no range is satisfiable
+     */
+    @Nullable
+    public static List<ByteRange> getRanges(@Nullable String rangeHeader, long size) {
+        if (StringUtils.isBlank(rangeHeader) || !(rangeHeader = rangeHeader.trim()).startsWith(VALUE_BYTES + "=")) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        try {
+            for (String spec : StringUtils.split(rangeHeader.substring(VALUE_BYTES.length() + 1), ',')) {
+                String firstPos = StringUtils.substringBefore(spec, "-").trim();
+                String lastPos = StringUtils.substringAfter(spec, "-").trim();
+                if (!spec.contains("-") || (firstPos.isEmpty() && lastPos.isEmpty())) {
+                    return null;
+                }
+                long first;
+                long last;
+                if (firstPos.isEmpty()) { // suffix range: the last n bytes
+                    first = Math.max(0L, size - Long.parseLong(lastPos));
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(firstPos);
+                    if (lastPos.isEmpty()) {
+                        last = size - 1;
+                    } else if ((last = Long.parseLong(lastPos)) < first) {
+                        return null;
+                    } else {
+                        last = Math.min(last, size - 1);
+                    }
+                }
+                if (first < size && first <= last) {
+                    ranges.add(new ByteRange(first, last));
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (ranges.size() > 1) {
+            ranges.sort(Comparator.comparingLong(range -> range.first));
+            List<ByteRange> combined = new ArrayList<>();
+            ByteRange current = ranges.get(0);
+            for (ByteRange range : ranges.subList(1, ranges.size())) {
+                if (range.first <= current.last + 1) {
+                    current = new ByteRange(current.first, Math.max(current.last, range.last));
+                } else {
+                    combined.add(current);
+                    current = range;
+                }
+            }
+            combined.add(current);
+            ranges = combined;
+        }
+        return ranges;
+    }
+
+    /**
+     * Checks an entity tag against the value of an {@link #HEADER_IF_NONE_MATCH} header (weak comparison).
+     *
+     * @param ifNoneMatch the value of the 'If-None-Match' header, a list of entity tags or '*'
+     * @param eTag        the entity tag of the resource to be submitted
+     * @return 'true' if the resource transmission can be skipped since the browser has the current version
+     */
+    public static boolean matchesETag(@Nullable String ifNoneMatch, @Nullable String eTag) {
+        if (StringUtils.isNotBlank(ifNoneMatch) && eTag != null) {
+            if ("*".equals(ifNoneMatch.trim())) {
+                return true;
+            }
+            String opaqueTag = StringUtils.removeStart(eTag, "W/");
+            for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+                if (opaqueTag.equals(StringUtils.removeStart(tag.trim(), "W/"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
     /**
      * Checks whether we can skip transmission of a resource because of a recent enough {@link #HEADER_IF_MODIFIED_SINCE}
@@ -0,0 +1,148 @@
+package com.composum.sling.clientlibs.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link CategoryPathCache}.
+ */
+public class CategoryPathCacheTest {
+
+    protected final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    protected final Function<String, List<String>> loader = category -> {
+        loads.computeIfAbsent(category, key -> new AtomicInteger()).incrementAndGet();
+        return Arrays.asList("/libs/" + category + "/a", "/libs/" + category + "/b");
+    };
+
+    protected int loads(String category) {
+        AtomicInteger count = loads.get(category);
+        return count != null ? count.get() : 0;
+    }
+
+    @Test
+    public void cachedUntilInvalidated() {
+        CategoryPathCache cache = new CategoryPathCache(10, TimeUnit.HOURS.toMillis(1));
+        List<String> paths = cache.get("cat", loader);
+        assertEquals(Arrays.asList("/libs/cat/a", "/libs/cat/b"), paths);
+        assertSame(paths, cache.get("cat", loader));
+        assertEquals(1, loads("cat"));
+
+        cache.invalidate();
+        assertEquals(paths, cache.get("cat", loader));
+        assertEquals(2, loads("cat"));
+    }
+
+    @Test
+    public void concurrentMissesAreLoadedOnce() throws Exception {
+        CategoryPathCache cache = new CategoryPathCache(10, TimeUnit.HOURS.toMillis(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, List<String>> blockingLoader = category -> {
+            loading.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return loader.apply(category);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("cat", blockingLoader)));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("cat", blockingLoader)));
+            }
+            Thread.sleep(100); // let the other requests wait for the running load
+            release.countDown();
+            List<String> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<List<String>> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads("cat"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoadIsNotCached() throws Exception {
+        CategoryPathCache cache = new CategoryPathCache(10, TimeUnit.HOURS.toMillis(1));
+        try {
+            cache.get("cat", category -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("failure of the loader not thrown");
+        } catch (IllegalStateException expected) {
+            assertEquals("failed", expected.getMessage());
+        }
+        assertEquals(Arrays.asList("/libs/cat/a", "/libs/cat/b"), cache.get("cat", loader));
+        assertEquals(1, loads("cat"));
+    }
+
+    @Test
+    public void loadDuringInvalidationIsNotUsed() throws Exception {
+        CategoryPathCache cache = new CategoryPathCache(10, TimeUnit.HOURS.toMillis(1));
+        List<String> stale = cache.get("cat", category -> {
+            cache.invalidate(); // a change of the clientlibs while loading
+            return Collections.singletonList("/libs/stale");
+        });
+        assertEquals(Collections.singletonList("/libs/stale"), stale);
+        assertEquals(Arrays.asList("/libs/cat/a", "/libs/cat/b"), cache.get("cat", loader));
+        assertEquals(1, loads("cat"));
+    }
+
+    @Test
+    public void expiredEntriesAreReloaded() {
+        CategoryPathCache cache = new CategoryPathCache(10, TimeUnit.HOURS.toMillis(1));
+        cache.get("cat", loader);
+        cache.get("cat", loader);
+        assertEquals(1, loads("cat"));
+
+        cache.configure(10, -TimeUnit.HOURS.toMillis(1)); // everything loaded before is expired
+        cache.get("cat", loader);
+        assertEquals(2, loads("cat"));
+        cache.get("cat", loader);
+        assertEquals(3, loads("cat"));
+    }
+
+    @Test
+    public void oldestEntriesAreEvicted() throws Exception {
+        CategoryPathCache cache = new CategoryPathCache(2, TimeUnit.HOURS.toMillis(1));
+        for (String category : Arrays.asList("a", "b", "c")) {
+            cache.get(category, loader);
+            Thread.sleep(5); // distinct creation times
+        }
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), cache.entries.keySet());
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains("evictions: 1"));
+
+        cache.get("c", loader);
+        assertEquals(1, loads("c"));
+        cache.get("a", loader);
+        assertEquals(2, loads("a"));
+        assertFalse(cache.entries.containsKey("b"));
+        assertEquals(2, cache.entries.size());
+    }
+}
@@ -0,0 +1,65 @@
+package com.composum.sling.core.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the range and entity tag handling of {@link HttpUtil}.
+ */
+public class HttpUtilTest {
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    @Test
+    public void ranges() {
+        ec.checkThat(HttpUtil.getRanges(null, 1000), nullValue());
+        ec.checkThat(HttpUtil.getRanges("items=0-10", 1000), nullValue());
+        ec.checkThat(HttpUtil.getRanges("bytes=10-5", 1000), nullValue());
+        ec.checkThat(HttpUtil.getRanges("bytes=x-5", 1000), nullValue());
+
+        List<HttpUtil.ByteRange> ranges = HttpUtil.getRanges("bytes=0-99", 1000);
+        ec.checkThat(ranges.size(), is(1));
+        ec.checkThat(ranges.get(0).getLength(), is(100L));
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 0-99/1000"));
+
+        ranges = HttpUtil.getRanges("bytes=900-", 1000);
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 900-999/1000"));
+        ranges = HttpUtil.getRanges("bytes=-100", 1000);
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 900-999/1000"));
+        ranges = HttpUtil.getRanges("bytes=-2000", 1000);
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 0-999/1000"));
+        ranges = HttpUtil.getRanges("bytes=900-5000000000", 1000);
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 900-999/1000"));
+
+        // large content (> 2GB)
+        ranges = HttpUtil.getRanges("bytes=4000000000-", 5000000000L);
+        ec.checkThat(ranges.get(0).getLength(), is(1000000000L));
+
+        // not satisfiable
+        ec.checkThat(HttpUtil.getRanges("bytes=1000-", 1000).size(), is(0));
+
+        // multiple ranges; overlapping ranges are combined
+        ranges = HttpUtil.getRanges("bytes=500-599, 0-99, 50-149,-10", 1000);
+        ec.checkThat(ranges.size(), is(3));
+        ec.checkThat(ranges.get(0).getContentRange(1000), is("bytes 0-149/1000"));
+        ec.checkThat(ranges.get(1).getContentRange(1000), is("bytes 500-599/1000"));
+        ec.checkThat(ranges.get(2).getContentRange(1000), is("bytes 990-999/1000"));
+    }
+
+    @Test
+    public void eTags() {
+        ec.checkThat(HttpUtil.matchesETag(null, "\"abc\""), is(false));
+        ec.checkThat(HttpUtil.matchesETag("\"abc\"", null), is(false));
+        ec.checkThat(HttpUtil.matchesETag("\"abc\"", "\"abc\""), is(true));
+        ec.checkThat(HttpUtil.matchesETag("\"xyz\", W/\"abc\"", "\"abc\""), is(true));
+        ec.checkThat(HttpUtil.matchesETag("\"xyz\"", "\"abc\""), is(false));
+        ec.checkThat(HttpUtil.matchesETag("*", "\"abc\""), is(true));
+    }
+}
@@ -0,0 +1,67 @@
+package com.composum.sling.nodes.consoleplugin;
+
+import com.composum.sling.nodes.mount.remote.RemoteProvider;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.sling.spi.resource.provider.ResourceProvider;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Displays the state of the connection pools of the remote resource providers. Use as console plugin:
+ * http://localhost:9090/system/console/remoteproviders
+ */
+@Component(service = Servlet.class,
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Remote Provider Plugin",
+                "felix.webconsole.category=Composum",
+                "felix.webconsole.label=remoteproviders",
+                "felix.webconsole.title=Remote Providers"
+        })
+public class RemoteProviderConsolePlugin extends HttpServlet {
+
+    protected final List<RemoteProvider> providers = new CopyOnWriteArrayList<>();
+
+    @Reference(service = ResourceProvider.class, policy = ReferencePolicy.DYNAMIC,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            target = "(component.name=com.composum.sling.nodes.mount.remote.RemoteProvider)")
+    protected void addProvider(ResourceProvider<?> provider) {
+        if (provider instanceof RemoteProvider) {
+            providers.add((RemoteProvider) provider);
+        }
+    }
+
+    protected void removeProvider(ResourceProvider<?> provider) {
+        providers.remove(provider);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/html; charset=UTF-8");
+        PrintWriter writer = response.getWriter();
+        writer.println("<html><body><h2>Remote Resource Providers</h2>");
+        if (providers.isEmpty()) {
+            writer.println("<p>no remote resource provider active</p>");
+        } else {
+            writer.println("<table class=\"nicetable\"><tr><th>Provider Root</th><th>Statistics</th></tr>");
+            for (RemoteProvider provider : providers) {
+                writer.append("<tr><td>").append(StringEscapeUtils.escapeHtml4(provider.getProviderRoot()))
+                        .append("</td><td>").append(StringEscapeUtils.escapeHtml4(provider.getStatistics()))
+                        .append("</td></tr>\n");
+            }
+            writer.println("</table>");
+        }
+        writer.println("</body></html>");
+    }
+}
@@ -0,0 +1,212 @@
+package com.composum.sling.nodes.mount.remote;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The provider wide cache of the data loaded from the remote system, shared by all resolvers of the provider.
+ * The cache stores snapshots of the loaded properties and children (the resource objects itself are bound to
+ * their resolver); an entry is used without request during its time to live and revalidated by a conditional
+ * request (if the remote system has delivered validators) afterwards. Changes committed by the RemoteWriter
+ * are dropping the entries of the affected resources.
+ */
+public class RemoteCache {
+
+    /**
+     * the snapshot of a loaded resource; the values of a 'non existing' resource are 'null'
+     */
+    public static class Entry {
+
+        protected final Map<String, Object> values;
+        protected final Map<String, Map<String, Object>> children;
+        protected final String eTag;
+        protected final String lastModified;
+        protected volatile long validated;
+
+        protected Entry(@Nullable final RemoteResource resource,
+                        @Nullable final String eTag, @Nullable final String lastModified) {
+            if (resource != null) {
+                values = new HashMap<>(resource.values);
+                children = new LinkedHashMap<>();
+                if (resource.children != null) {
+                    for (Map.Entry<String, Resource> child : resource.children.entrySet()) {
+                        if (child.getValue() instanceof RemoteResource) {
+                            children.put(child.getKey(), new HashMap<>(((RemoteResource) child.getValue()).values));
+                        }
+                    }
+                }
+            } else {
+                values = null;
+                children = null;
+            }
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.validated = System.currentTimeMillis();
+        }
+
+        public boolean exists() {
+            return values != null;
+        }
+
+        public boolean isRevalidatable() {
+            return eTag != null || lastModified != null;
+        }
+
+        @Nullable
+        public String getETag() {
+            return eTag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * marks the entry as valid (again), e.g. after a 'not modified' response
+         */
+        public void touch() {
+            validated = System.currentTimeMillis();
+        }
+
+        /**
+         * Copies the snapshot into the resource; the children are created without their children (not loaded).
+         */
+        public void restore(@NotNull final RemoteReader reader, @NotNull final RemoteResource resource) {
+            resource.values = new ValueMapDecorator(restore(reader, values));
+            resource.children = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<String, Object>> entry : children.entrySet()) {
+                RemoteResource child = new RemoteResource(resource.resolver, resource.getPath() + "/" + entry.getKey());
+                child.values = new ValueMapDecorator(Collections.unmodifiableMap(restore(reader, entry.getValue())));
+                resource.children.put(entry.getKey(), child);
+            }
+        }
+
+        /**
+         * the binaries are streams and must not be shared - each resource gets its own binary instances
+         */
+        protected Map<String, Object> restore(@NotNull final RemoteReader reader,
+                                              @NotNull final Map<String, Object> snapshot) {
+            Map<String, Object> values = new TreeMap<>(snapshot);
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (entry.getValue() instanceof RemoteReader.RemoteBinary) {
+                    entry.setValue(reader.new RemoteBinary(((RemoteReader.RemoteBinary) entry.getValue()).propertyPath));
+                }
+            }
+            return values;
+        }
+    }
+
+    protected final Map<String, Entry> entries;
+    protected final int maxSize;
+    protected final long timeToLive;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong revalidations = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize    the maximum number of cached resources
+     * @param timeToLive the time (seconds) an entry is used without revalidation; the cache is disabled if <= 0
+     */
+    public RemoteCache(int maxSize, int timeToLive) {
+        this.maxSize = Math.max(1, maxSize);
+        this.timeToLive = TimeUnit.SECONDS.toMillis(timeToLive);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > RemoteCache.this.maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return timeToLive > 0;
+    }
+
+    /**
+     * @return the entry of the path if cached, maybe an expired one
+     */
+    @Nullable
+    public Entry get(@NotNull final String path) {
+        if (isEnabled()) {
+            synchronized (entries) {
+                return entries.get(path);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 'true' if the entry can be used without revalidation
+     */
+    public boolean isValid(@NotNull final Entry entry) {
+        return entry.validated + timeToLive > System.currentTimeMillis();
+    }
+
+    /**
+     * counts the usage of an entry for the statistics
+     */
+    public void used(@Nullable final Entry entry, boolean revalidated) {
+        (entry == null ? misses : revalidated ? revalidations : hits).incrementAndGet();
+    }
+
+    /**
+     * stores the snapshot of a loaded resource; a 'null' resource is stored as 'non existing'
+     */
+    public void put(@NotNull final String path, @Nullable final RemoteResource resource,
+                    @Nullable final String eTag, @Nullable final String lastModified) {
+        if (isEnabled()) {
+            Entry entry = new Entry(resource, eTag, lastModified);
+            synchronized (entries) {
+                entries.put(path, entry);
+            }
+        }
+    }
+
+    /**
+     * drops the entries of the resource, of its descendants and of its parent (the parent holds the children)
+     */
+    public void invalidate(@NotNull final String path) {
+        final String parentPath = path.contains("/") ? path.substring(0, Math.max(1, path.lastIndexOf('/'))) : null;
+        synchronized (entries) {
+            Iterator<String> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (key.equals(path) || key.startsWith(path + "/") || key.equals(parentPath)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return a human readable summary of the cache usage
+     */
+    @NotNull
+    public String getStatistics() {
+        final int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return "cache entries: " + size + " (max " + maxSize + ", " + TimeUnit.MILLISECONDS.toSeconds(timeToLive) + "s)"
+                + ", hits: " + hits.get() + ", revalidated: " + revalidations.get() + ", misses: " + misses.get();
+    }
+}
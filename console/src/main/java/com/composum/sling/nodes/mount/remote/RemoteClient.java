@@ -7,13 +7,18 @@ import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.pool.PoolStats;
 import org.apache.jackrabbit.webdav.DavConstants;
 import org.apache.jackrabbit.webdav.client.methods.HttpPropfind;
 import org.jetbrains.annotations.NotNull;
@@ -25,6 +30,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,10 +56,26 @@ final class RemoteClient {
     @NotNull
     private final List<Header> defaultHeaders;
 
+    protected final int poolSize;
+    protected final int idleTimeout;
+    protected final int connectTimeout;
+    protected final int socketTimeout;
+
+    /** the long living client with the connection pool used for all requests of the provider */
+    private transient volatile CloseableHttpClient httpClient;
+    private transient PoolingHttpClientConnectionManager connectionManager;
+
+    protected final AtomicLong requestCount = new AtomicLong();
+    protected final AtomicLong requestTime = new AtomicLong();
+
     protected RemoteClient(@NotNull final RemoteProvider provider, @NotNull final RemoteProvider.Config config,
                            @NotNull final Collection<String> builderKeys) {
         this.provider = provider;
         this.builderKeys = builderKeys;
+        this.poolSize = Math.max(1, config.connection_pool_size());
+        this.idleTimeout = Math.max(1, config.connection_idle_timeout());
+        this.connectTimeout = config.connect_timeout();
+        this.socketTimeout = config.socket_timeout();
 
         Matcher matcher = REMOTE_URL_PATTERN.matcher(config.remote_url());
         if (matcher.matches()) {
@@ -142,10 +165,11 @@ final class RemoteClient {
     //
 
     /**
-     * request execution in the remote clients HTTP context
+     * request execution in the remote clients HTTP context; the entity of the response must be consumed
+     * or closed to release the connection into the pool
      */
     public HttpResponse execute(@NotNull final HttpUriRequest request) throws IOException {
-        return execute(buildClient(), request);
+        return execute(getClient(), request);
     }
 
     /**
@@ -153,7 +177,13 @@ final class RemoteClient {
      */
     public HttpResponse execute(@NotNull final HttpClient client, @NotNull final HttpUriRequest request)
             throws IOException {
-        return client.execute(request, getClientContext());
+        final long start = System.currentTimeMillis();
+        try {
+            return client.execute(request, createClientContext());
+        } finally {
+            requestCount.incrementAndGet();
+            requestTime.addAndGet(System.currentTimeMillis() - start);
+        }
     }
 
     /**
@@ -170,18 +200,100 @@ final class RemoteClient {
     }
 
     /**
-     * @return the client to load remote resources
+     * @return a context for one request execution sharing the configured authentication of the clients context
+     * (the context holds the state of a request and cannot be shared by concurrent requests)
+     */
+    protected HttpClientContext createClientContext() {
+        HttpClientContext template = getClientContext();
+        HttpClientContext context = HttpClientContext.create();
+        context.setCredentialsProvider(template.getCredentialsProvider());
+        context.setAuthCache(template.getAuthCache());
+        return context;
+    }
+
+    /**
+     * @return the shared client to load remote resources (built on first use)
+     */
+    @NotNull
+    protected HttpClient getClient() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    httpClient = client = buildClient();
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @return a client with a connection pool to load remote resources
      */
     @NotNull
-    protected HttpClient buildClient() {
+    protected CloseableHttpClient buildClient() {
+        connectionManager = new PoolingHttpClientConnectionManager(idleTimeout, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(poolSize);
+        connectionManager.setDefaultMaxPerRoute(poolSize);
         HttpClientBuilder builder = HttpClientBuilder.create()
-                .setDefaultHeaders(defaultHeaders);
+                .setDefaultHeaders(defaultHeaders)
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(socketTimeout)
+                        .setConnectionRequestTimeout(socketTimeout)
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long declared = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return declared > 0 ? declared : TimeUnit.SECONDS.toMillis(idleTimeout);
+                })
+                .disableConnectionState()
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout, TimeUnit.SECONDS);
         for (RemoteClientBuilder clientBuilder : getBuilders()) {
             clientBuilder.configure(builder);
         }
         return builder.build();
     }
 
+    /**
+     * closes the client and its connections - on deactivation of the provider
+     */
+    protected synchronized void close() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException ex) {
+                LOG.warn(ex.toString());
+            }
+            httpClient = null;
+            connectionManager = null;
+        }
+    }
+
+    /**
+     * @return a summary of the connection pool state and the request statistics
+     */
+    @NotNull
+    public String getStatistics() {
+        final long requests = requestCount.get();
+        final StringBuilder builder = new StringBuilder()
+                .append("requests: ").append(requests)
+                .append(", average time: ").append(requests > 0 ? requestTime.get() / requests : 0).append("ms");
+        final PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager != null) {
+            final PoolStats pool = manager.getTotalStats();
+            builder.append(", connections leased: ").append(pool.getLeased())
+                    .append(", available: ").append(pool.getAvailable())
+                    .append(", pending: ").append(pool.getPending())
+                    .append(", max: ").append(pool.getMax());
+        } else {
+            builder.append(", no connection pool");
+        }
+        return builder.toString();
+    }
+
     /**
      * @return the client builder set (lazy loaded to ensure that they are registered already)
      */
@@ -25,6 +25,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -45,6 +52,9 @@ public class RemoteProvider extends ResourceProvider<Object> {
 
     private static final Logger LOG = LoggerFactory.getLogger(RemoteProvider.class);
 
+    /** the maximum number of waiting prefetch loads; further prefetch requests are dropped */
+    public static final int PREFETCH_QUEUE_SIZE = 200;
+
     @ObjectClassDefinition(name = "Composum Nodes Remote Resource Provider")
     public @interface Config {
 
@@ -106,6 +116,66 @@ public class RemoteProvider extends ResourceProvider<Object> {
         )
         String[] request_headers();
 
+        @AttributeDefinition(
+                name = "Connection Pool Size",
+                description = "the maximum number of concurrent connections to the remote system"
+        )
+        int connection_pool_size() default 20;
+
+        @AttributeDefinition(
+                name = "Connection Idle Timeout",
+                description = "the time (seconds) an idle connection is kept alive in the pool"
+        )
+        int connection_idle_timeout() default 30;
+
+        @AttributeDefinition(
+                name = "Connect Timeout",
+                description = "the timeout (ms) for establishing a connection to the remote system"
+        )
+        int connect_timeout() default 10000;
+
+        @AttributeDefinition(
+                name = "Socket Timeout",
+                description = "the timeout (ms) waiting for data (and for a free connection of the pool)"
+        )
+        int socket_timeout() default 60000;
+
+        @AttributeDefinition(
+                name = "Cache Size",
+                description = "the maximum number of remote resources cached for all requests"
+        )
+        int cache_size() default 1000;
+
+        @AttributeDefinition(
+                name = "Cache Time to Live",
+                description = "the time (seconds) a cached resource is used without revalidation; '0' disables the cache"
+        )
+        int cache_ttl() default 30;
+
+        @AttributeDefinition(
+                name = "Prefetch Depth",
+                description = "the number of tree levels loaded (and cached) with one request; '1' loads each node on its own"
+        )
+        int prefetch_depth() default 2;
+
+        @AttributeDefinition(
+                name = "Prefetch Threads",
+                description = "the number of threads loading the children of a loaded node in the background; '0' disables the prefetch (requires the cache)"
+        )
+        int prefetch_threads() default 4;
+
+        @AttributeDefinition(
+                name = "Commit Threads",
+                description = "the number of uploads of a commit transferred in parallel; '1' transfers all changes one after another"
+        )
+        int commit_threads() default 4;
+
+        @AttributeDefinition(
+                name = "Commit Batch Size",
+                description = "the maximum number of resource modifications combined in one POST request; '1' disables the combination"
+        )
+        int commit_batch_size() default 100;
+
         @AttributeDefinition()
         String webconsole_configurationFactory_nameHint()
                 default "local: {provider.root}, remote: {remote.url}, extensions: {client.configuration}";
@@ -122,6 +192,11 @@ public class RemoteProvider extends ResourceProvider<Object> {
     protected List<Pattern> ignoredPathPatterns;
 
     protected RemoteClient remoteClient;
+    protected RemoteCache remoteCache;
+    protected int prefetchDepth;
+    protected ExecutorService prefetchPool;
+    protected ExecutorService commitPool;
+    protected int commitBatchSize;
     protected RemoteReader remoteReader;
     protected RemoteWriter remoteWriter;
 
@@ -139,15 +214,37 @@ public class RemoteProvider extends ResourceProvider<Object> {
         for (String rule : config.ignored_patterns()) {
             ignoredPathPatterns.add(Pattern.compile(rule.replaceAll("\\$\\{root}", localRoot)));
         }
+        if (remoteClient != null) {
+            remoteClient.close();
+        }
         remoteClient = new RemoteClient(this, config, Arrays.asList(config.client_configuration()));
+        remoteCache = new RemoteCache(config.cache_size(), config.cache_ttl());
+        prefetchDepth = Math.max(1, config.prefetch_depth());
+        commitBatchSize = Math.max(1, config.commit_batch_size());
+        shutdownPools();
+        if (config.prefetch_threads() > 0 && remoteCache.isEnabled()) {
+            prefetchPool = createPool("prefetch", config.prefetch_threads(),
+                    new LinkedBlockingQueue<>(PREFETCH_QUEUE_SIZE));
+        }
+        if (config.commit_threads() > 1) {
+            commitPool = createPool("commit", config.commit_threads(), new LinkedBlockingQueue<>());
+        }
         remoteReader = new RemoteReader(this);
         remoteWriter = new RemoteWriter(this);
     }
 
     @Deactivate
     protected void deactivate() {
+        shutdownPools();
         remoteWriter = null;
         remoteReader = null;
+        if (remoteCache != null) {
+            remoteCache.clear();
+        }
+        remoteCache = null;
+        if (remoteClient != null) {
+            remoteClient.close();
+        }
         remoteClient = null;
         ignoredPathPatterns = null;
         searchPath = null;
@@ -156,6 +253,30 @@ public class RemoteProvider extends ResourceProvider<Object> {
         bundleContext = null;
     }
 
+    protected ExecutorService createPool(@NotNull final String name, int size,
+                                         @NotNull final BlockingQueue<Runnable> queue) {
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "composum-remote-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, queue, threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    protected void shutdownPools() {
+        if (prefetchPool != null) {
+            prefetchPool.shutdownNow();
+            prefetchPool = null;
+        }
+        if (commitPool != null) {
+            commitPool.shutdown(); // running uploads are finished
+            commitPool = null;
+        }
+    }
+
     /**
      * @return 'true' if the path is part of the local repository tree (starts with the provider root)
      */
@@ -197,6 +318,18 @@ public class RemoteProvider extends ResourceProvider<Object> {
         return false;
     }
 
+    /**
+     * @return the remote URL and the statistics of the connection pool and of the cache
+     */
+    @NotNull
+    public String getStatistics() {
+        final RemoteClient client = remoteClient;
+        final RemoteCache cache = remoteCache;
+        return client != null && cache != null
+                ? client.remoteUrl + " - " + client.getStatistics() + ", " + cache.getStatistics()
+                : "inactive";
+    }
+
     /**
      * @return the mount point of this provider in the repository tree
      */
@@ -3,10 +3,13 @@ package com.composum.sling.nodes.mount.remote;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.MalformedJsonException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.MultiStatus;
@@ -39,12 +42,18 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static javax.servlet.http.HttpServletResponse.SC_MULTIPLE_CHOICES;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_ACCEPTABLE;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static javax.servlet.http.HttpServletResponse.SC_NO_CONTENT;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 import static org.apache.jackrabbit.webdav.DavServletResponse.SC_MULTI_STATUS;
@@ -67,6 +76,9 @@ public class RemoteReader {
     public static final String DAV_TYPE_FOLDER = DAV_NS + "folder";
     public static final String DAV_TYPE_UNKNOWN = DAV_NS + "unknown";
 
+    /** the paths of the resources in the queue of the prefetch pool */
+    protected final Set<String> prefetching = ConcurrentHashMap.newKeySet();
+
     public RemoteReader(@NotNull final RemoteProvider provider) {
         this.provider = provider;
     }
@@ -89,26 +101,63 @@ public class RemoteReader {
     @Nullable
     public RemoteResource loadResource(@NotNull final RemoteResource resource,
                                        boolean isKnownChild) {
+        RemoteResource result = loadResource(resource, isKnownChild, true);
+        if (result != null) {
+            prefetch(result);
+        }
+        return result;
+    }
+
+    /**
+     * @param requested 'false' if the resource is loaded by a prefetch in the background
+     */
+    @Nullable
+    protected RemoteResource loadResource(@NotNull final RemoteResource resource,
+                                          boolean isKnownChild, boolean requested) {
         RemoteResource result = resource;
         resource.children = null;
         resource.values = new ValueMapDecorator(new TreeMap<>());
         String path = resource.getPath();
         String logHint = null;
-        HttpClient httpClient = provider.remoteClient.buildClient();
         if (!provider.ignoreIt(path)) {
-            int statusCode = loadJsonResource(resource, httpClient);
-            if (statusCode == SC_OK) {
-                logHint = ".JSON";
+            RemoteCache cache = provider.remoteCache;
+            RemoteCache.Entry cached = cache.get(path);
+            if (cached != null && !cached.exists() && isKnownChild) {
+                cached = null; // a known child must be loaded to mark it as not accessible
+            }
+            if (cached != null && cache.isValid(cached)) {
+                cache.used(cached, false);
+                result = restore(resource, cached);
+                logHint = "cache";
             } else {
-                statusCode = loadDavResource(resource, httpClient);
-                if (statusCode == SC_OK || statusCode == SC_MULTI_STATUS) {
-                    logHint = "--DAV";
-                } else if (statusCode == SC_NOT_FOUND && !isKnownChild) {
-                    result = null;
+                HttpClient httpClient = provider.remoteClient.getClient();
+                String[] validators = new String[2];
+                int statusCode = loadJsonResource(resource, httpClient, cached, validators);
+                if (statusCode == SC_NOT_MODIFIED && cached != null) {
+                    cached.touch();
+                    cache.used(cached, true);
+                    result = restore(resource, cached);
+                    logHint = "--304";
                 } else {
-                    resource.children = new LinkedHashMap<>();
-                    resource.values.put(JcrConstants.JCR_PRIMARYTYPE, "not:accessible");
-                    logHint = "---??";
+                    cache.used(null, false);
+                    if (statusCode == SC_OK) {
+                        cache.put(path, resource, validators[0], validators[1]);
+                        cacheDescendants(cache, resource);
+                        logHint = requested ? ".JSON" : ".JSON(prefetch)";
+                    } else {
+                        statusCode = loadDavResource(resource, httpClient);
+                        if (statusCode == SC_OK || statusCode == SC_MULTI_STATUS) {
+                            cache.put(path, resource, null, null);
+                            logHint = "--DAV";
+                        } else if (statusCode == SC_NOT_FOUND && !isKnownChild) {
+                            cache.put(path, null, null, null);
+                            result = null;
+                        } else {
+                            resource.children = new LinkedHashMap<>();
+                            resource.values.put(JcrConstants.JCR_PRIMARYTYPE, "not:accessible");
+                            logHint = "---??";
+                        }
+                    }
                 }
             }
         } else {
@@ -117,12 +166,70 @@ public class RemoteReader {
         if (result != null) {
             result.values = new ValueMapDecorator(Collections.unmodifiableMap(result.values));
         }
-        if (LOG.isDebugEnabled() && logHint != null) {
+        if (LOG.isDebugEnabled() && logHint != null && result != null) {
             LOG.debug("load{} ({}): {}", logHint, resource.getPath(), result.children.size());
         }
         return result;
     }
 
+    /**
+     * Stores the completely loaded descendants of a resource loaded with a depth greater than 1.
+     */
+    protected void cacheDescendants(@NotNull final RemoteCache cache, @NotNull final RemoteResource resource) {
+        for (Resource child : resource.children.values()) {
+            RemoteResource remoteChild = (RemoteResource) child;
+            if (remoteChild.children != null) {
+                cache.put(remoteChild.getPath(), remoteChild, null, null);
+                cacheDescendants(cache, remoteChild);
+            }
+        }
+    }
+
+    /**
+     * Loads the children of a resource which are not loaded completely in the background to fill the cache
+     * before the children are requested, e.g. the sibling folders of an opened folder in a tree.
+     */
+    protected void prefetch(@NotNull final RemoteResource resource) {
+        final ExecutorService pool = provider.prefetchPool;
+        final RemoteCache cache = provider.remoteCache;
+        if (pool != null && resource.children != null) {
+            for (Resource child : resource.children.values()) {
+                final RemoteResource remoteChild = (RemoteResource) child;
+                final String path = remoteChild.getPath();
+                if (remoteChild.children == null && cache.get(path) == null && prefetching.add(path)) {
+                    try {
+                        pool.execute(() -> {
+                            try {
+                                if (cache.get(path) == null) {
+                                    loadResource(new RemoteResource(remoteChild.resolver, path), true, false);
+                                }
+                            } catch (RuntimeException ex) {
+                                LOG.debug("prefetch of '{}' failed: {}", path, ex.toString());
+                            } finally {
+                                prefetching.remove(path);
+                            }
+                        });
+                    } catch (RejectedExecutionException ex) {
+                        prefetching.remove(path); // queue is full or pool is shut down - load it on request
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the resource filled with the cached data or 'null' if the cached resource doesn't exist
+     */
+    @Nullable
+    protected RemoteResource restore(@NotNull final RemoteResource resource, @NotNull final RemoteCache.Entry cached) {
+        if (cached.exists()) {
+            cached.restore(this, resource);
+            return resource;
+        }
+        return null;
+    }
+
     //
     // WebDAV based fallback...
     //
@@ -152,8 +259,9 @@ public class RemoteReader {
         LOG.debug("DAV.load({}) - '{}'", resource.getPath(), url);
         try {
             HttpPropfind davGet = provider.remoteClient.buildPropfind(url);
+            HttpResponse response = null;
             try {
-                HttpResponse response = provider.remoteClient.execute(httpClient, davGet);
+                response = provider.remoteClient.execute(httpClient, davGet);
                 statusCode = response.getStatusLine().getStatusCode();
                 if (statusCode == SC_MULTI_STATUS) {
                     String path = resource.getPath();
@@ -186,6 +294,10 @@ public class RemoteReader {
             } catch (DavException ex) {
                 LOG.error("DAV exception loading '{}': {}", url, ex.toString());
                 statusCode = SC_NOT_ACCEPTABLE;
+            } finally {
+                if (response != null) {
+                    EntityUtils.consumeQuietly(response.getEntity()); // release the connection
+                }
             }
         } catch (IOException ex) {
             LOG.error("IO exception loading '{}': {}", url, ex.toString());
@@ -254,36 +366,74 @@ public class RemoteReader {
 
     @NotNull
     public String getJsonUrl(@NotNull final String path) {
+        return getJsonUrl(path, 1);
+    }
+
+    /**
+     * @param depth the number of levels of the subtree to load
+     */
+    @NotNull
+    public String getJsonUrl(@NotNull final String path, int depth) {
         String httpUrl = provider.remoteClient.getHttpUrl(path);
-        return httpUrl.replaceAll("\\.", "%2E") + (path.endsWith("/") ? "" : "/") + ".1.json";
+        return httpUrl.replaceAll("\\.", "%2E") + (path.endsWith("/") ? "" : "/") + "." + depth + ".json";
     }
 
     /**
      * The preferred resource loading using the default Sling GET servlet to read
-     * the properties and children of the resource to load.
+     * the properties and children of the resource to load. The subtree is loaded with the
+     * configured prefetch depth; if the remote system refuses this depth (the size limit of
+     * the JSON rendering is exceeded) the resource is loaded with depth 1.
      *
      * @param resource   the resource to load / update
      * @param httpClient the client instance to execute the request
+     * @param cached     the cached data of the resource to revalidate by a conditional request
+     * @param validators the array to store the 'ETag' and the 'Last-Modified' value of the response
      * @return the status code of the request response
      */
     protected int loadJsonResource(@NotNull final RemoteResource resource,
-                                   @NotNull final HttpClient httpClient) {
+                                   @NotNull final HttpClient httpClient,
+                                   @Nullable final RemoteCache.Entry cached,
+                                   @NotNull final String[] validators) {
+        int depth = provider.prefetchDepth;
+        int statusCode = loadJsonResource(resource, httpClient, cached, validators, depth);
+        if (statusCode == SC_MULTIPLE_CHOICES && depth > 1) {
+            statusCode = loadJsonResource(resource, httpClient, cached, validators, 1);
+        }
+        return statusCode;
+    }
+
+    protected int loadJsonResource(@NotNull final RemoteResource resource,
+                                   @NotNull final HttpClient httpClient,
+                                   @Nullable final RemoteCache.Entry cached,
+                                   @NotNull final String[] validators, int depth) {
         int statusCode;
-        String url = getJsonUrl(resource);
+        String url = getJsonUrl(resource.getPath(), depth);
         LOG.debug("JSON.load({}) - '{}'", resource.getPath(), url);
         HttpGet httpGet = provider.remoteClient.buildHttpGet(url);
+        if (cached != null && cached.exists()) {
+            if (cached.getETag() != null) {
+                httpGet.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                httpGet.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
         try {
             HttpResponse response = provider.remoteClient.execute(httpClient, httpGet);
             statusCode = response.getStatusLine().getStatusCode();
+            Header eTag = response.getFirstHeader(HttpHeaders.ETAG);
+            Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+            validators[0] = eTag != null ? eTag.getValue() : null;
+            validators[1] = lastModified != null ? lastModified.getValue() : null;
             if (statusCode == SC_OK) {
                 try (InputStream stream = response.getEntity().getContent();
                      InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
                      JsonReader jsonReader = new JsonReader(reader)) {
                     loadJsonResource(resource, jsonReader);
-                    if (resource.children == null) { // no children found but searched for - store empty set
-                        resource.children = new LinkedHashMap<>();
-                    }
+                    complete(resource, depth);
                 }
+            } else {
+                EntityUtils.consumeQuietly(response.getEntity()); // release the connection
             }
         } catch (MalformedJsonException mfex) {
             statusCode = SC_NOT_ACCEPTABLE;
@@ -294,6 +444,20 @@ public class RemoteReader {
         return statusCode;
     }
 
+    /**
+     * Marks the resources above the loaded depth as loaded completely.
+     */
+    protected void complete(@NotNull final RemoteResource resource, int depth) {
+        if (depth > 0) {
+            if (resource.children == null) { // no children found but searched for - store empty set
+                resource.children = new LinkedHashMap<>();
+            }
+            for (Resource child : resource.children.values()) {
+                complete((RemoteResource) child, depth - 1);
+            }
+        }
+    }
+
     protected void loadJsonResource(@NotNull final RemoteResource resource,
                                     @NotNull final JsonReader jsonReader)
             throws IOException {
@@ -558,7 +722,7 @@ public class RemoteReader {
                 LOG.error(ex.getMessage(), ex);
             }
             String url = provider.remoteClient.getHttpUrl(propertyPath);
-            HttpGet httpGet = provider.remoteClient.buildHttpGet(url);
+            httpGet = provider.remoteClient.buildHttpGet(url);
             try {
                 HttpResponse response = provider.remoteClient.execute(httpGet);
                 StatusLine statusLine = response.getStatusLine();
@@ -568,11 +732,13 @@ public class RemoteReader {
                         break;
                     default:
                         content = new ByteArrayInputStream(new byte[0]);
+                        EntityUtils.consumeQuietly(response.getEntity());
                         release();
                         break;
                 }
             } catch (IOException ex) {
                 LOG.error("exception loading '{}': {}", url, ex.toString());
+                content = new ByteArrayInputStream(new byte[0]);
                 release();
             }
         }
@@ -596,6 +762,11 @@ public class RemoteReader {
             return content().read();
         }
 
+        @Override
+        public int read(@NotNull final byte[] buffer, int offset, int length) throws IOException {
+            return content().read(buffer, offset, length);
+        }
+
         @Override
         public void close() throws IOException {
             if (content != null) {
@@ -12,6 +12,7 @@ import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.Resource;
@@ -25,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import javax.jcr.PropertyType;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -33,8 +35,13 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class RemoteWriter {
 
@@ -46,6 +53,9 @@ public class RemoteWriter {
 
         public final RemoteResource resource;
 
+        /** the status code of the POST request of the change; '0' if not transferred, '-1' on transfer errors */
+        protected volatile int status;
+
         protected ResourceChange(RemoteResource resource) {
             this.resource = resource;
         }
@@ -53,6 +63,14 @@ public class RemoteWriter {
         @NotNull
         public abstract ChangeType getChangeType();
 
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isFailed() {
+            return status < 0 || status >= 300;
+        }
+
         protected abstract boolean commit(RemoteWriter writer) throws IOException;
     }
 
@@ -91,17 +109,47 @@ public class RemoteWriter {
             put(designated.getPath(), new ResourceMove(designated, source, order));
         }
 
+        /**
+         * Commits the changes in their order; subsequent modifications are combined in one request and
+         * subsequent uploads are transferred in parallel (if configured).
+         */
         public boolean commit(@NotNull final RemoteWriter writer) throws IOException {
             boolean changesMade = false;
             if (LOG.isDebugEnabled()) {
                 LOG.debug("commit({})...", size());
             }
+            final List<ResourceChange> changes = new ArrayList<>(values());
             try {
-                for (ResourceChange change : values()) {
-                    changesMade = change.commit(writer) || changesMade;
+                int index = 0;
+                while (index < changes.size()) {
+                    ResourceChange change = changes.get(index);
+                    int end = index + 1;
+                    if (change instanceof ResourceModify) {
+                        while (end < changes.size() && end - index < writer.provider.commitBatchSize
+                                && changes.get(end) instanceof ResourceModify) {
+                            end++;
+                        }
+                        changesMade = writer.commitBatch(changes.subList(index, end)) || changesMade;
+                    } else if (change instanceof ResourceUpload) {
+                        while (end < changes.size() && changes.get(end) instanceof ResourceUpload) {
+                            end++;
+                        }
+                        changesMade = writer.commitParallel(changes.subList(index, end)) || changesMade;
+                    } else {
+                        changesMade = change.commit(writer) || changesMade;
+                    }
+                    index = end;
                 }
             } finally {
                 clear();
+                if (LOG.isWarnEnabled()) {
+                    for (ResourceChange change : changes) {
+                        if (change.isFailed()) {
+                            LOG.warn("commit.failed: {}({}): {}",
+                                    change.getChangeType(), change.resource.getPath(), change.getStatus());
+                        }
+                    }
+                }
             }
             return changesMade;
         }
@@ -127,6 +175,74 @@ public class RemoteWriter {
         return changeSet.commit(this);
     }
 
+    /**
+     * Combines the modifications of several resources in one request to their common parent using
+     * relative property names ('./child/property') supported by the Sling POST servlet.
+     */
+    protected boolean commitBatch(@NotNull final List<ResourceChange> batch) throws IOException {
+        if (batch.size() == 1) {
+            return batch.get(0).commit(this);
+        }
+        String root = batch.get(0).resource.getPath();
+        for (ResourceChange change : batch) {
+            String path = change.resource.getPath();
+            while (!path.equals(root) && !path.startsWith(root.endsWith("/") ? root : root + "/")) {
+                root = StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(root, "/"), "/");
+            }
+        }
+        Map<String, ContentBody> parts = new LinkedHashMap<>();
+        Parameters parameters = new Parameters();
+        for (ResourceChange change : batch) {
+            String path = change.resource.getPath();
+            String prefix = path.equals(root) ? "./"
+                    : "./" + path.substring(root.endsWith("/") ? root.length() : root.length() + 1) + "/";
+            buildForm(change.resource, prefix, parts, parameters);
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("batch({}): changes:{}, parts:{}, parameters:{}", root, batch.size(), parts.size(), parameters.size());
+        }
+        ResourceChange first = batch.get(0);
+        boolean changesMade = parts.size() > 0
+                ? postMultipart(first, root, parts, parameters)
+                : postForm(first, root, parameters);
+        for (ResourceChange change : batch) {
+            change.status = first.status;
+        }
+        return changesMade;
+    }
+
+    /**
+     * Transfers independent changes (uploads) in parallel using the commit pool of the provider.
+     */
+    protected boolean commitParallel(@NotNull final List<ResourceChange> changes) throws IOException {
+        boolean changesMade = false;
+        final ExecutorService pool = provider.commitPool;
+        if (pool == null || changes.size() == 1) {
+            for (ResourceChange change : changes) {
+                changesMade = change.commit(this) || changesMade;
+            }
+        } else {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (ResourceChange change : changes) {
+                tasks.add(() -> change.commit(this));
+            }
+            try {
+                for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                    changesMade = result.get() || changesMade;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("commit interrupted");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw (IOException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+        }
+        return changesMade;
+    }
+
     //
     // resource operations via remote Sling POST servlet
     //
@@ -309,7 +425,7 @@ public class RemoteWriter {
         protected boolean commit(RemoteWriter writer, Parameters parameters)
                 throws IOException {
             Map<String, ContentBody> parts = new LinkedHashMap<>();
-            writer.buildForm(resource, parts, parameters);
+            writer.buildForm(resource, "", parts, parameters);
             if (LOG.isDebugEnabled()) {
                 LOG.debug(getChangeType() + "({}): parts:{}, parameters:{}", resource.getPath(), parts.size(), parameters);
             } else if (LOG.isInfoEnabled()) {
@@ -360,22 +476,32 @@ public class RemoteWriter {
         return changesMade;
     }
 
-    public void postEntity(@NotNull final ResourceChange change, @Nullable final String path,
-                           @NotNull final HttpEntity httpEntity) {
+    public int postEntity(@NotNull final ResourceChange change, @Nullable final String path,
+                          @NotNull final HttpEntity httpEntity) {
+        int statusCode = -1;
         try {
             String url = provider.remoteClient.getHttpUrl(path != null ? path : change.resource.path);
             HttpPost httpPost = provider.remoteClient.buildHttpPost(url);
             httpPost.setEntity(httpEntity);
             HttpResponse response = provider.remoteClient.execute(httpPost);
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode == 200) {
+            EntityUtils.consumeQuietly(response.getEntity()); // release the connection
+            statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == 200 || statusCode == 201) {
                 LOG.debug(change.getChangeType() + ".POST({}): {}", httpPost.getURI(), statusCode);
             } else {
                 LOG.warn(change.getChangeType() + ".POST({}): {}", httpPost.getURI(), statusCode);
             }
         } catch (IOException ex) {
             LOG.error(ex.getMessage(), ex);
+        } finally {
+            // drop the cached data of the changed resources (also the source of a move or copy)
+            provider.remoteCache.invalidate(change.resource.getPath());
+            if (path != null) {
+                provider.remoteCache.invalidate(path);
+            }
+            change.status = statusCode;
         }
+        return statusCode;
     }
 
     //
@@ -391,7 +517,10 @@ public class RemoteWriter {
             PropertyType.TYPENAME_LONG
     ));
 
-    protected void buildForm(@NotNull final RemoteResource resource,
+    /**
+     * @param prefix the relative path of the resource prepended to the property names ('' for the resource itself)
+     */
+    protected void buildForm(@NotNull final RemoteResource resource, @NotNull final String prefix,
                              @NotNull final Map<String, ContentBody> parts, @NotNull final Parameters parameters) {
         ModifiableValueMap modified = resource.modifiedValues;
         if (modified != null) {
@@ -403,11 +532,11 @@ public class RemoteWriter {
                 Object read = origin.get(key);
                 if (value != null) {
                     if (!value.equals(read)) {
-                        addFormValue(parts, parameters, key, value);
+                        addFormValue(parts, parameters, prefix + key, value);
                     }
                 } else {
                     if (read != null) {
-                        parameters.add(key + SlingPostConstants.SUFFIX_DELETE, "null");
+                        parameters.add(prefix + key + SlingPostConstants.SUFFIX_DELETE, "null");
                     }
                 }
                 scanned.add(key);
@@ -415,7 +544,7 @@ public class RemoteWriter {
             for (Map.Entry<String, Object> entry : origin.entrySet()) {
                 String key = entry.getKey();
                 if (!scanned.contains(key)) {
-                    parameters.add(key + SlingPostConstants.SUFFIX_DELETE, "removed");
+                    parameters.add(prefix + key + SlingPostConstants.SUFFIX_DELETE, "removed");
                 }
             }
         }
@@ -20,6 +20,8 @@ public class ExportCfg extends ConfigItem {
     public static final String PROP_FILTER = "filter";
     public static final String PROP_SEPARATOR = "separator";
     public static final String PROP_PROPERTIES = "properties";
+    public static final String PROP_FORMAT = "format";
+    public static final String PROP_BACKGROUND = "background";
 
     public ExportCfg(BeanContext context, Resource resource) {
         super(context, resource);
@@ -62,6 +64,21 @@ public class ExportCfg extends ConfigItem {
                 getProperty("character", "")));
     }
 
+    /**
+     * @return the format of the native streaming export ('csv', 'tsv' or 'jsonl'); if empty the export is
+     * rendered by the script of the export type
+     */
+    public String getFormat() {
+        return getProperty(PROP_FORMAT, RequestUtil.getParameter(getRequest(), PROP_FORMAT, ""));
+    }
+
+    /**
+     * @return 'true' if the export should be written by a background job into a downloadable file
+     */
+    public boolean isBackground() {
+        return getProperty(PROP_BACKGROUND, RequestUtil.getParameter(getRequest(), PROP_BACKGROUND, Boolean.FALSE));
+    }
+
     public String getProperties() {
         String[] properties = getProperty(PROP_PROPERTIES, String[].class);
         if (properties == null) {
@@ -0,0 +1,267 @@
+package com.composum.sling.nodes.query;
+
+import com.composum.sling.core.filter.ResourceFilter;
+import com.composum.sling.core.mapping.MappingRules;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes the resources of a query result as CSV, TSV or JSON lines without rendering the result through the
+ * script layer. The properties of the items are extracted in batches of a bounded size, each batch is written
+ * and flushed to the client before the next one is extracted, so that the memory used is independent of the
+ * size of the result.
+ */
+public class QueryExporter {
+
+    public enum Format {
+
+        csv("text/csv;charset=UTF-8;header=present", true),
+        tsv("text/tab-separated-values;charset=UTF-8", true),
+        jsonl("application/x-ndjson;charset=UTF-8", false);
+
+        public final String contentType;
+        public final boolean header;
+
+        Format(String contentType, boolean header) {
+            this.contentType = contentType;
+            this.header = header;
+        }
+
+        @Nullable
+        public static Format of(@Nullable final String name) {
+            if (StringUtils.isNotBlank(name)) {
+                for (Format format : values()) {
+                    if (format.name().equalsIgnoreCase(name.trim())) {
+                        return format;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /** the number of items extracted before the extracted values are written and flushed */
+    public static final int BATCH_SIZE = 500;
+
+    public static final String KEY_NAME = "name";
+    public static final String KEY_PATH = "path";
+
+    public static final String[] DEFAULT_PROPERTIES = new String[]{
+            "name;Name",
+            "path;Path",
+            "jcr:title;Title",
+            "jcr:primaryType;Primary Type",
+            "sling:resourceType;Resource Type"
+    };
+
+    public static final String DEFAULT_CSV_SEPARATOR = ";";
+    public static final String DEFAULT_FILENAME = "query-export";
+
+    protected final Format format;
+    protected final String separator;
+    protected final String[] keys;
+    protected final String[] labels;
+
+    protected final SimpleDateFormat dateFormat = new SimpleDateFormat(MappingRules.MAP_DATE_FORMAT);
+
+    /**
+     * @param format     the output format
+     * @param separator  the CSV value separator (';' if empty); ignored for the other formats
+     * @param properties the exported properties as 'key;label' pairs (the label is optional); the keys 'name'
+     *                   and 'path' are addressing the name and the path of the resource
+     */
+    public QueryExporter(@NotNull final Format format, @Nullable final String separator,
+                         @Nullable String[] properties) {
+        this.format = format;
+        switch (format) {
+            case tsv:
+                this.separator = "\t";
+                break;
+            case csv:
+                this.separator = StringUtils.isNotEmpty(separator) ? separator : DEFAULT_CSV_SEPARATOR;
+                break;
+            default:
+                this.separator = "";
+                break;
+        }
+        if (properties == null || properties.length == 0) {
+            properties = DEFAULT_PROPERTIES;
+        }
+        keys = new String[properties.length];
+        labels = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            String[] keyLabel = StringUtils.split(properties[i], ";", 2);
+            keys[i] = keyLabel.length > 0 ? keyLabel[0].trim() : "";
+            labels[i] = keyLabel.length < 2 ? keys[i] : keyLabel[1];
+        }
+    }
+
+    @NotNull
+    public Format getFormat() {
+        return format;
+    }
+
+    @NotNull
+    public String getContentType() {
+        return format.contentType;
+    }
+
+    /**
+     * @return the filename without leading slashes or the default name for the format
+     */
+    @NotNull
+    public String getFilename(@Nullable String filename) {
+        filename = StringUtils.stripStart(filename, "/");
+        return StringUtils.isNotBlank(filename) ? filename : DEFAULT_FILENAME + "." + format.name();
+    }
+
+    /**
+     * Writes the header (if appropriate for the format) and all items accepted by the filter.
+     *
+     * @return the number of exported items
+     * @throws InterruptedIOException if the thread is interrupted (e.g. a cancelled export job)
+     */
+    public long export(@NotNull final Writer writer, @NotNull final Iterator<Resource> items,
+                       @Nullable final ResourceFilter filter)
+            throws IOException {
+        if (format.header) {
+            writeRow(writer, labels);
+        }
+        long count = 0;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        while (items.hasNext()) {
+            Resource item = items.next();
+            if (item != null && (filter == null || filter.accept(item))) {
+                batch.add(extract(item));
+                if (batch.size() >= BATCH_SIZE) {
+                    count += writeBatch(writer, batch);
+                }
+            }
+        }
+        count += writeBatch(writer, batch);
+        return count;
+    }
+
+    protected int writeBatch(@NotNull final Writer writer, @NotNull final List<Object[]> batch)
+            throws IOException {
+        int size = batch.size();
+        for (Object[] values : batch) {
+            writeRow(writer, values);
+        }
+        batch.clear();
+        writer.flush();
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("export interrupted");
+        }
+        return size;
+    }
+
+    /**
+     * @return the values of the exported properties; binary properties are not exported
+     */
+    @NotNull
+    protected Object[] extract(@NotNull final Resource item) {
+        ValueMap valueMap = item.getValueMap();
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            switch (keys[i]) {
+                case KEY_NAME:
+                    values[i] = item.getName();
+                    break;
+                case KEY_PATH:
+                    values[i] = item.getPath();
+                    break;
+                default:
+                    values[i] = convert(valueMap.get(keys[i]));
+                    break;
+            }
+        }
+        return values;
+    }
+
+    @Nullable
+    protected Object convert(@Nullable final Object value) {
+        if (value instanceof InputStream) {
+            IOUtils.closeQuietly((InputStream) value);
+            return null;
+        } else if (value instanceof Calendar) {
+            return dateFormat.format(((Calendar) value).getTime());
+        } else if (value instanceof Date) {
+            return dateFormat.format((Date) value);
+        } else if (value instanceof Calendar[] || value instanceof Date[]) {
+            Object[] array = (Object[]) value;
+            Object[] converted = new Object[array.length];
+            for (int i = 0; i < array.length; i++) {
+                converted[i] = convert(array[i]);
+            }
+            return converted;
+        }
+        return value;
+    }
+
+    protected void writeRow(@NotNull final Writer writer, @NotNull final Object[] values) throws IOException {
+        if (format == Format.jsonl) {
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            jsonWriter.beginObject();
+            for (int i = 0; i < keys.length; i++) {
+                jsonWriter.name(keys[i]);
+                writeJsonValue(jsonWriter, values[i]);
+            }
+            jsonWriter.endObject();
+            jsonWriter.flush();
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(separator);
+                }
+                writeValue(writer, values[i]);
+            }
+        }
+        writer.write('\n');
+    }
+
+    protected void writeValue(@NotNull final Writer writer, @Nullable final Object value) throws IOException {
+        String string = value instanceof Object[]
+                ? StringUtils.join((Object[]) value, ',')
+                : value != null ? value.toString() : "";
+        if (format == Format.tsv) {
+            writer.write(StringUtils.replaceChars(string, "\t\r\n", "   "));
+        } else {
+            writer.append('"').append(StringUtils.replace(string, "\"", "\"\"")).append('"');
+        }
+    }
+
+    protected void writeJsonValue(@NotNull final JsonWriter writer, @Nullable final Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof Object[]) {
+            writer.beginArray();
+            for (Object item : (Object[]) value) {
+                writeJsonValue(writer, item);
+            }
+            writer.endArray();
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
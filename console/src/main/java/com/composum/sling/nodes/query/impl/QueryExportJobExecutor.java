@@ -0,0 +1,183 @@
+package com.composum.sling.nodes.query.impl;
+
+import com.composum.sling.core.concurrent.AbstractJobExecutor;
+import com.composum.sling.core.concurrent.SequencerService;
+import com.composum.sling.core.filter.ResourceFilter;
+import com.composum.sling.core.mapping.jcr.ResourceFilterMapping;
+import com.composum.sling.core.resource.ResourceNodeIterator;
+import com.composum.sling.nodes.query.QueryExporter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.jetbrains.annotations.NotNull;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Executes query exports in the background; the export is written into the output file of the job which is
+ * available for download via the job control servlet (and stored in the job audit after completion).
+ * The query is executed in the context of the user who has requested the export.
+ */
+@Component(
+        service = {JobExecutor.class, EventHandler.class},
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Query Export Job Executor Service",
+                JobExecutor.PROPERTY_TOPICS + "=" + QueryExportJobExecutor.TOPIC,
+                EventConstants.EVENT_TOPIC + "=" + "org/apache/sling/event/notification/job/*"
+        },
+        immediate = true
+)
+@Designate(ocd = QueryExportJobExecutor.Configuration.class)
+public class QueryExportJobExecutor extends AbstractJobExecutor<String> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryExportJobExecutor.class);
+
+    @ObjectClassDefinition(name = "Composum Nodes Query Export Job Executor Service",
+            description = "Writes the export of large query results in the background.")
+    public @interface Configuration {
+
+        @AttributeDefinition(name = "Parallel Exports",
+                description = "the maximum number of exports running in parallel; further exports are queued")
+        int parallel_exports() default 2;
+    }
+
+    public static final String TOPIC = "com/composum/sling/nodes/query/QueryExportJobExecutor";
+
+    public static final String AUDIT_BASE_PATH = AUDIT_ROOT_PATH + QueryExportJobExecutor.class.getName();
+
+    public static final String JOB_PROPERTY_QUERY = "query";
+    public static final String JOB_PROPERTY_LANGUAGE = "language";
+    public static final String JOB_PROPERTY_FORMAT = "format";
+    public static final String JOB_PROPERTY_SEPARATOR = "separator";
+    public static final String JOB_PROPERTY_PROPERTIES = "properties";
+    public static final String JOB_PROPERTY_FILTER = "filter";
+
+    @Reference
+    private ResourceResolverFactory resolverFactory;
+
+    @Reference
+    private SequencerService<SequencerService.Token> sequencer;
+
+    @Reference
+    private DynamicClassLoaderManager dynamicClassLoaderManager;
+
+    private volatile int parallelExports = 2;
+
+    @NotNull
+    protected ResourceResolverFactory getResolverFactory() {
+        return resolverFactory;
+    }
+
+    @NotNull
+    protected SequencerService<SequencerService.Token> getSequencer() {
+        return sequencer;
+    }
+
+    @NotNull
+    protected DynamicClassLoaderManager getDynamicClassLoaderManager() {
+        return dynamicClassLoaderManager;
+    }
+
+    @Activate
+    @Modified
+    protected void activate(Configuration configuration) {
+        parallelExports = configuration.parallel_exports();
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        shutdownJobPool();
+    }
+
+    @Override
+    protected int getJobPoolSize() {
+        return parallelExports;
+    }
+
+    @NotNull
+    @Override
+    protected String getJobTopic() {
+        return TOPIC;
+    }
+
+    @Override
+    protected String getAuditBasePath() {
+        return AUDIT_BASE_PATH;
+    }
+
+    @Override
+    protected boolean jobExecutionEnabled(Job job) {
+        return !Boolean.getBoolean("composum.never.start.queryexport");
+    }
+
+    @Override
+    protected Callable<String> createCallable(final Job job, final JobExecutionContext context,
+                                              final ResourceResolver serviceResolver, final PrintWriter out)
+            throws Exception {
+        return new ExportCallable(job, context, serviceResolver, out);
+    }
+
+    protected class ExportCallable extends UserContextCallable {
+
+        ExportCallable(final Job job, final JobExecutionContext context,
+                       final ResourceResolver serviceResolver, final PrintWriter out)
+                throws RepositoryException, LoginException {
+            super(job, context, serviceResolver, out);
+        }
+
+        @Override
+        public String call() throws Exception {
+            Map<String, Object> authInfo = new HashMap<>();
+            authInfo.put("user.jcr.session", session);
+            try (ResourceResolver resolver = resolverFactory.getResourceResolver(authInfo)) {
+                QueryExporter.Format format = QueryExporter.Format.of(job.getProperty(JOB_PROPERTY_FORMAT, String.class));
+                QueryExporter exporter = new QueryExporter(format != null ? format : QueryExporter.Format.csv,
+                        job.getProperty(JOB_PROPERTY_SEPARATOR, String.class), getProperties());
+                String filterRule = job.getProperty(JOB_PROPERTY_FILTER, String.class);
+                ResourceFilter filter = StringUtils.isNotBlank(filterRule)
+                        ? ResourceFilterMapping.fromString(filterRule) : ResourceFilter.ALL;
+                Query query = session.getWorkspace().getQueryManager().createQuery(
+                        job.getProperty(JOB_PROPERTY_QUERY, String.class),
+                        job.getProperty(JOB_PROPERTY_LANGUAGE, String.class));
+                QueryResult result = query.execute();
+                long count = exporter.export(out, new ResourceNodeIterator(resolver, result.getNodes()), filter);
+                LOG.info("query export '{}': {} items exported", job.getProperty(JOB_REFRENCE_PROPERTY), count);
+                return count + " items exported";
+            } finally {
+                close();
+            }
+        }
+
+        protected String[] getProperties() {
+            Object value = job.getProperty(JOB_PROPERTY_PROPERTIES);
+            if (value instanceof String[]) {
+                return (String[]) value;
+            }
+            return value != null ? StringUtils.split(value.toString(), ',') : null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.composum.sling.nodes.service;
+
+import org.apache.sling.api.resource.Resource;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Searches the children of a resource by name using a cached snapshot of the sorted child names
+ * (e.g. for the path typeahead of folders with a lot of children).
+ */
+public interface ChildNameIndex {
+
+    /**
+     * Finds the children of a resource by a name pattern; the result is ordered by relevance: the exact
+     * match first, then the names starting with the pattern, then the names containing the pattern
+     * (earlier matches first); the names of each group are sorted by length and alphabetically.
+     *
+     * @param parent  the resource to search in
+     * @param pattern the (case sensitive) text to search in the child names; an empty pattern matches all names
+     * @param limit   the maximum number of names returned
+     * @return the names of the matching children
+     */
+    @NotNull
+    List<String> findChildNames(@NotNull Resource parent, @NotNull String pattern, int limit);
+}
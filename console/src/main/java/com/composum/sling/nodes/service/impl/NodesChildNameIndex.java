@@ -0,0 +1,193 @@
+package com.composum.sling.nodes.service.impl;
+
+import com.composum.sling.core.util.ResourceUtil;
+import com.composum.sling.nodes.service.ChildNameIndex;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The child name index keeps the sorted names of the children of the recently searched resources. The snapshots
+ * are bound to the user (the visible children are depending on the permissions). The snapshots of a resource are
+ * dropped if children are added or removed; the snapshots are looked up by the path of the parent of each
+ * changed resource, so an event costs a map lookup only. A snapshot is also reloaded if the pattern is the name
+ * of an existing child not contained in the snapshot and after its (short) time to live.
+ */
+@Component(
+        service = {ChildNameIndex.class, ResourceChangeListener.class},
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Child Name Index",
+                ResourceChangeListener.PATHS + "=/",
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        }
+)
+public class NodesChildNameIndex implements ChildNameIndex, ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NodesChildNameIndex.class);
+
+    /** the maximum number of cached snapshots (of all resources and users) */
+    public static final int MAX_SNAPSHOTS = 200;
+
+    /** the time a snapshot is used (a safety net for changes not observed) */
+    public static final long SNAPSHOT_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    protected static class Snapshot {
+
+        protected final String path;
+        protected final String[] names;
+        protected final long created = System.currentTimeMillis();
+
+        protected Snapshot(@NotNull final Resource parent) {
+            List<String> names = new ArrayList<>();
+            for (Resource child : parent.getChildren()) {
+                names.add(child.getName());
+            }
+            this.path = parent.getPath();
+            this.names = names.toArray(new String[0]);
+            Arrays.sort(this.names);
+        }
+
+        protected boolean isValid(@NotNull final Resource parent, @NotNull final String pattern) {
+            return created + SNAPSHOT_TTL > System.currentTimeMillis()
+                    && (pattern.isEmpty() || Arrays.binarySearch(names, pattern) >= 0
+                    || parent.getChild(pattern) == null);
+        }
+    }
+
+    /** the snapshots of the children of a resource for each user (key: user + '\n' + path) */
+    protected final Map<String, Snapshot> snapshots =
+            new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                    if (size() > MAX_SNAPSHOTS) {
+                        unregister(eldest.getKey(), eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /** the keys of the snapshots by the path of their resource */
+    protected final Map<String, Set<String>> keysByPath = new HashMap<>();
+
+    /** the number of the observed changes; a snapshot loaded during a change is not cached */
+    protected long changeCount;
+
+    @Override
+    @NotNull
+    public List<String> findChildNames(@NotNull final Resource parent, @NotNull final String pattern, int limit) {
+        final String[] names = getSnapshot(parent, pattern).names;
+        final List<String> result = new ArrayList<>();
+        if (limit > 0) {
+            // the names starting with the pattern are a contiguous range of the sorted names
+            int start = Arrays.binarySearch(names, pattern);
+            if (start < 0) {
+                start = -start - 1;
+            }
+            int end = start;
+            while (end < names.length && names[end].startsWith(pattern)) {
+                end++;
+            }
+            List<String> prefixed = new ArrayList<>(Arrays.asList(names).subList(start, end));
+            prefixed.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+            result.addAll(prefixed.subList(0, Math.min(prefixed.size(), limit)));
+            if (result.size() < limit && !pattern.isEmpty()) {
+                List<String> containing = new ArrayList<>();
+                for (int i = 0; i < names.length; i++) {
+                    if ((i < start || i >= end) && names[i].contains(pattern)) {
+                        containing.add(names[i]);
+                    }
+                }
+                containing.sort(Comparator.comparingInt((String name) -> name.indexOf(pattern))
+                        .thenComparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+                result.addAll(containing.subList(0, Math.min(containing.size(), limit - result.size())));
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    protected Snapshot getSnapshot(@NotNull final Resource parent, @NotNull final String pattern) {
+        final String path = parent.getPath();
+        final String key = StringUtils.defaultString(parent.getResourceResolver().getUserID()) + "\n" + path;
+        Snapshot snapshot;
+        final long count;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(key);
+            count = changeCount;
+        }
+        if (snapshot == null || !snapshot.isValid(parent, pattern)) {
+            snapshot = new Snapshot(parent);
+            LOG.debug("child names of '{}' loaded: {}", path, snapshot.names.length);
+            synchronized (snapshots) {
+                if (count == changeCount) {
+                    snapshots.put(key, snapshot);
+                    keysByPath.computeIfAbsent(path, k -> new HashSet<>()).add(key);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshots of the parents of the added or removed resources and of the removed resources.
+     */
+    @Override
+    public void onChange(@NotNull final List<ResourceChange> changes) {
+        synchronized (snapshots) {
+            changeCount++;
+            if (!snapshots.isEmpty()) {
+                for (ResourceChange change : changes) {
+                    final String path = change.getPath();
+                    drop(ResourceUtil.getParent(path));
+                    if (change.getType() == ResourceChange.ChangeType.REMOVED) {
+                        drop(path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the snapshots of a resource of all users; must be called in a 'snapshots' synchronized block.
+     */
+    protected void drop(@Nullable final String path) {
+        final Set<String> keys = path != null ? keysByPath.remove(path) : null;
+        if (keys != null) {
+            for (String key : keys) {
+                snapshots.remove(key);
+            }
+            LOG.debug("child names of '{}' dropped", path);
+        }
+    }
+
+    /**
+     * Removes an evicted snapshot from the path lookup; must be called in a 'snapshots' synchronized block.
+     */
+    protected void unregister(@NotNull final String key, @NotNull final Snapshot snapshot) {
+        final Set<String> keys = keysByPath.get(snapshot.path);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByPath.remove(snapshot.path);
+        }
+    }
+}
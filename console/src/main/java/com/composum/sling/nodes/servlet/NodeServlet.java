@@ -4,21 +4,23 @@ import static com.composum.sling.core.mapping.MappingRules.CHARSET;
 import static com.composum.sling.nodes.ai.impl.AIServiceImpl.SERVICE_NAME;
 import static com.composum.sling.nodes.servlet.NodeServlet.SERVICE_KEY;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,17 +40,22 @@ import javax.jcr.Workspace;
 import javax.jcr.lock.Lock;
 import javax.jcr.lock.LockManager;
 import javax.jcr.nodetype.NodeType;
+import javax.jcr.query.InvalidQueryException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
+import javax.jcr.query.RowIterator;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.ReferenceBinary;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.request.RequestDispatcherOptions;
@@ -61,6 +68,8 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.servlets.HttpConstants;
 import org.apache.sling.api.servlets.ServletResolverConstants;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
 import org.apache.sling.servlets.post.SlingPostConstants;
 import org.apache.tika.mime.MimeType;
 import org.jetbrains.annotations.NotNull;
@@ -82,18 +91,24 @@ import com.composum.sling.core.BeanContext;
 import com.composum.sling.core.CoreConfiguration;
 import com.composum.sling.core.ResourceHandle;
 import com.composum.sling.core.Restricted;
+import com.composum.sling.core.concurrent.AbstractJobExecutor;
+import com.composum.sling.core.concurrent.JobUtil;
 import com.composum.sling.core.config.FilterConfiguration;
 import com.composum.sling.core.exception.ParameterValidationException;
 import com.composum.sling.core.filter.ResourceFilter;
 import com.composum.sling.core.filter.StringFilter;
 import com.composum.sling.core.mapping.MappingRules;
+import com.composum.sling.core.mapping.jcr.ResourceFilterMapping;
+import com.composum.sling.core.resource.ResourceNodeIterator;
 import com.composum.sling.core.resource.SyntheticQueryResult;
 import com.composum.sling.core.service.RestrictedService;
 import com.composum.sling.core.service.ServiceRestrictions;
 import com.composum.sling.core.servlet.AbstractServiceServlet;
+import com.composum.sling.core.servlet.JobControlServlet;
 import com.composum.sling.core.servlet.NodeTreeServlet;
 import com.composum.sling.core.servlet.ServletOperation;
 import com.composum.sling.core.servlet.ServletOperationSet;
+import com.composum.sling.core.util.HttpUtil;
 import com.composum.sling.core.util.I18N;
 import com.composum.sling.core.util.JsonUtil;
 import com.composum.sling.core.util.MimeTypeUtil;
@@ -105,6 +120,10 @@ import com.composum.sling.cpnl.CpnlElFunctions;
 import com.composum.sling.nodes.NodesConfiguration;
 import com.composum.sling.nodes.ai.AIService;
 import com.composum.sling.nodes.mount.ExtendedResolver;
+import com.composum.sling.nodes.query.ExportCfg;
+import com.composum.sling.nodes.query.QueryExporter;
+import com.composum.sling.nodes.query.impl.QueryExportJobExecutor;
+import com.composum.sling.nodes.service.ChildNameIndex;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
@@ -159,6 +178,12 @@ public class NodeServlet extends NodeTreeServlet {
     @Reference
     protected NodesConfiguration nodesConfig;
 
+    @Reference
+    protected ChildNameIndex childNameIndex;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    protected volatile JobManager jobManager;
+
     protected final Map<String, ResourceFilter> nodeFilters = new LinkedHashMap<>();
 
     /**
@@ -467,10 +492,7 @@ public class NodeServlet extends NodeTreeServlet {
                     QueryManager queryManager = workspace.getQueryManager();
 
                     Query query = queryManager.createQuery(queryString, queryLang);
-                    Long queryLimit = getQueryLimit();
-                    if (queryLimit != null) {
-                        query.setLimit(queryLimit);
-                    }
+                    prepareQuery(request, queryString, query);
                     QueryResult result = query.execute();
 
                     ResourceFilter filter = getNodeFilter(request);
@@ -512,6 +534,18 @@ public class NodeServlet extends NodeTreeServlet {
             return nodesConfig.getQueryResultLimit() + 1;
         }
 
+        /**
+         * Applies the limits of the requested result to the query.
+         */
+        protected void prepareQuery(@NotNull final SlingHttpServletRequest request,
+                                    @NotNull final String queryString, @NotNull final Query query)
+                throws RepositoryException {
+            Long queryLimit = getQueryLimit();
+            if (queryLimit != null) {
+                query.setLimit(queryLimit);
+            }
+        }
+
         /**
          * Writes the query result in the format appropriate to the output. Caution: think of escaping appropriately (XSS etc.).
          */
@@ -527,33 +561,62 @@ public class NodeServlet extends NodeTreeServlet {
         }
     }
 
+    /**
+     * Delivers the query result page by page; the page is addressed by the 'cursor' of the previous page (the
+     * offset in the query result bound to the query) and has the requested 'size' (up to the configured limit).
+     */
     protected class JsonQueryOperation extends AbstractQueryOperation {
 
+        /** the number of written items after which the output is flushed to the client */
+        public static final int FLUSH_INTERVAL = 50;
+
+        @Override
+        protected void prepareQuery(@NotNull final SlingHttpServletRequest request,
+                                    @NotNull final String queryString, @NotNull final Query query)
+                throws RepositoryException {
+            query.setOffset(getOffset(request, queryString));
+            query.setLimit(getPageSize(request) + 1); // one more to detect a following page
+        }
+
         @Override
         protected void writeQueryResult(SlingHttpServletRequest request, SlingHttpServletResponse response,
                                         String queryString, QueryResult result,
                                         ResourceFilter filter, ResourceResolver resolver)
                 throws RepositoryException, IOException {
 
+            final long offset = getOffset(request, queryString);
+            final int size = getPageSize(request);
+
             JsonWriter writer = ResponseUtil.getJsonWriter(response);
             response.setStatus(HttpServletResponse.SC_OK);
 
             TreeNodeStrategy nodeStrategy = new DefaultTreeNodeStrategy(getNodeFilter(request));
-            NodeIterator iterator = result.getNodes();
+            // the rows are providing the paths without loading the nodes (not possible for joins)
+            RowIterator rows = result.getSelectorNames().length == 1 ? result.getRows() : null;
+            NodeIterator nodes = rows == null ? result.getNodes() : null;
 
-            writer.beginArray();
+            writer.beginObject();
 
             writer.name("result").beginArray();
             int count = 0;
-            while (iterator.hasNext()) {
-                Node node = iterator.nextNode();
-                ResourceHandle resource = ResourceHandle.use(resolver.getResource(node.getPath()));
+            long position = offset;
+            boolean more = false;
+            while (rows != null ? rows.hasNext() : nodes.hasNext()) {
+                if (position - offset >= size) {
+                    more = true;
+                    break;
+                }
+                String path = rows != null ? rows.nextRow().getPath() : nodes.nextNode().getPath();
+                position++;
+                ResourceHandle resource = ResourceHandle.use(resolver.getResource(path));
                 if (resource.isValid() && accept(filter, resource)) {
                     writer.beginObject();
-                    String type = writeNodeIdentifiers(writer, nodeStrategy, resource, LabelType.name, false);
+                    writeNodeIdentifiers(writer, nodeStrategy, resource, LabelType.name, false);
                     writeNodeJcrState(writer, resource);
                     writer.endObject();
-                    count++;
+                    if (++count % FLUSH_INTERVAL == 0) {
+                        writer.flush();
+                    }
                 }
             }
             writer.endArray();
@@ -561,11 +624,60 @@ public class NodeServlet extends NodeTreeServlet {
             writer.name("summary").beginObject();
             writer.name("query").value(CpnlElFunctions.script(queryString)); // XSS? - checked (2019-05-04)
             writer.name("count").value(count);
+            writer.name("offset").value(offset);
+            writer.name("size").value(size);
             writer.name("limit").value(nodesConfig.getQueryResultLimit());
+            // the total is known on the last page; otherwise there is at least one more item
+            writer.name("total").value(more ? position + 1 : position);
+            writer.name("exact").value(!more);
+            if (more) {
+                writer.name("cursor").value(getCursor(position, queryString));
+            }
             writer.endObject();
 
             writer.endObject();
         }
+
+        protected int getPageSize(@NotNull final SlingHttpServletRequest request) {
+            long limit = nodesConfig.getQueryResultLimit();
+            Integer size = RequestUtil.getParameter(request, PARAM_SIZE, (int) limit);
+            return (int) Math.max(1L, Math.min(size != null ? size : limit, limit));
+        }
+
+        /**
+         * @return the offset of the requested page in the query result
+         * @throws InvalidQueryException if the cursor is not valid for the query
+         */
+        protected long getOffset(@NotNull final SlingHttpServletRequest request, @NotNull final String queryString)
+                throws InvalidQueryException {
+            String cursor = request.getParameter(PARAM_CURSOR);
+            if (StringUtils.isNotBlank(cursor)) {
+                try {
+                    String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                            .split(":");
+                    if (values.length == 2 && values[1].equals(getQueryHash(queryString))) {
+                        long offset = Long.parseLong(values[0]);
+                        if (offset >= 0L) {
+                            return offset;
+                        }
+                    }
+                } catch (IllegalArgumentException ignore) {
+                }
+                throw new InvalidQueryException("invalid cursor");
+            }
+            return 0L;
+        }
+
+        @NotNull
+        protected String getCursor(long offset, @NotNull final String queryString) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (offset + ":" + getQueryHash(queryString)).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @NotNull
+        protected String getQueryHash(@NotNull final String queryString) {
+            return Integer.toHexString(queryString.hashCode());
+        }
     }
 
     protected class HtmlQueryOperation extends AbstractQueryOperation {
@@ -665,6 +777,11 @@ public class NodeServlet extends NodeTreeServlet {
         }
     }
 
+    /**
+     * Exports the complete query result; if a 'format' is requested the result is streamed by the native
+     * {@link QueryExporter} (or written by a background job if requested), otherwise the result is rendered
+     * by the script of the requested 'export' type.
+     */
     protected class ExportQueryOperation extends AbstractQueryOperation {
 
         @Override
@@ -678,7 +795,26 @@ public class NodeServlet extends NodeTreeServlet {
                                         @NotNull final SlingHttpServletResponse response,
                                         @NotNull final String queryString, @NotNull final QueryResult result,
                                         @NotNull final ResourceFilter filter, @NotNull final ResourceResolver resolver)
-                throws ServletException, IOException {
+                throws RepositoryException, ServletException, IOException {
+
+            QueryExporter.Format format = QueryExporter.Format.of(request.getParameter(ExportCfg.PROP_FORMAT));
+            if (format != null) {
+                String[] properties = StringUtils.split(XSS.filter(request.getParameter(ExportCfg.PROP_PROPERTIES)), ',');
+                QueryExporter exporter = new QueryExporter(format,
+                        XSS.filter(request.getParameter(ExportCfg.PROP_SEPARATOR)), properties);
+                String filename = exporter.getFilename(XSS.filter(request.getParameter(ExportCfg.PROP_FILENAME)));
+                JobManager jobManager = NodeServlet.this.jobManager;
+                if (jobManager != null && RequestUtil.getParameter(request, ExportCfg.PROP_BACKGROUND, Boolean.FALSE)) {
+                    startExportJob(request, response, jobManager, queryString, format, properties, filename, filter);
+                } else {
+                    response.setContentType(exporter.getContentType());
+                    response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+                    long count = exporter.export(response.getWriter(),
+                            new ResourceNodeIterator(resolver, result.getNodes()), filter);
+                    LOG.debug("query export '{}': {} items", filename, count);
+                }
+                return;
+            }
 
             String rendererType = XSS.filter(request.getParameter("export"));
 
@@ -710,6 +846,50 @@ public class NodeServlet extends NodeTreeServlet {
                 dispatcher.forward(request, response);
             }
         }
+
+        /**
+         * Starts the export as background job and responds with the job and the URL of the output file.
+         */
+        protected void startExportJob(@NotNull final SlingHttpServletRequest request,
+                                      @NotNull final SlingHttpServletResponse response,
+                                      @NotNull final JobManager jobManager, @NotNull final String queryString,
+                                      @NotNull final QueryExporter.Format format, @Nullable final String[] properties,
+                                      @NotNull final String filename, @NotNull final ResourceFilter filter)
+                throws IOException {
+            Map<String, Object> jobProperties = new HashMap<>();
+            jobProperties.put(AbstractJobExecutor.JOB_REFRENCE_PROPERTY, "/" + filename);
+            jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_QUERY, queryString);
+            jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_LANGUAGE,
+                    SQL2_QUERY.matcher(queryString).matches() ? Query.JCR_SQL2 : Query.XPATH);
+            jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_FORMAT, format.name());
+            String separator = XSS.filter(request.getParameter(ExportCfg.PROP_SEPARATOR));
+            if (StringUtils.isNotEmpty(separator)) {
+                jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_SEPARATOR, separator);
+            }
+            if (properties != null && properties.length > 0) {
+                jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_PROPERTIES, properties);
+            }
+            jobProperties.put(QueryExportJobExecutor.JOB_PROPERTY_FILTER, ResourceFilterMapping.toString(filter));
+            Session session = request.getResourceResolver().adaptTo(Session.class);
+            if (session != null) {
+                jobProperties.put(AbstractJobExecutor.JOB_USERID_PROPERTY, session.getUserID());
+            }
+            jobProperties.put("outfileprefix", "queryexport");
+            JobUtil.buildOutfileName(jobProperties);
+            Job job = jobManager.addJob(QueryExportJobExecutor.TOPIC, jobProperties);
+            if (job != null) {
+                response.setStatus(HttpServletResponse.SC_ACCEPTED);
+                try (JsonWriter writer = ResponseUtil.getJsonWriter(response)) {
+                    writer.beginObject();
+                    writer.name("job").value(job.getId());
+                    writer.name("filename").value(filename);
+                    writer.name("outfile").value(JobControlServlet.SERVLET_PATH + ".outfile.txt/" + job.getId());
+                    writer.endObject();
+                }
+            } else {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "export job not started");
+            }
+        }
     }
 
     protected class QuerySuggestOperation implements ServletOperation {
@@ -794,6 +974,14 @@ public class NodeServlet extends NodeTreeServlet {
         return items;
     }
 
+    /**
+     * the children of orderable nodes are delivered in their order - directly from the iterator
+     */
+    @Override
+    protected boolean isNaturalOrder(ResourceHandle resource) {
+        return nodesConfig.getOrderableNodesFilter().accept(resource);
+    }
+
     /**
      * similar to the 'tree' operation creates this operation a JSON object for the requested
      * node; but this node is requested by its id (UUID) in the suffix or as parameter; this
@@ -904,6 +1092,14 @@ public class NodeServlet extends NodeTreeServlet {
         }
     }
 
+    /** the default number of names delivered by the typeahead */
+    public static final int TYPEAHEAD_LIMIT = 50;
+    public static final int TYPEAHEAD_MAX_LIMIT = 500;
+
+    /**
+     * Delivers the paths of the children matching the name pattern of the requested path using the
+     * child name index (the names starting with the pattern first), up to the requested 'size'.
+     */
     protected class TypeaheadOperation implements ServletOperation {
 
         @Override
@@ -927,16 +1123,19 @@ public class NodeServlet extends NodeTreeServlet {
 
             if (resource.isValid()) {
 
-                ResourceFilter filter = new ResourceFilter.FilterSet(
-                        ResourceFilter.FilterSet.Rule.and,
-                        new ResourceFilter.NameFilter(
-                                new StringFilter.WhiteList(".*" + query + ".*")),
-                        getNodeFilter(request));
+                ResourceFilter filter = getNodeFilter(request);
+                int limit = Math.max(1, Math.min(RequestUtil.getParameter(request, PARAM_SIZE, TYPEAHEAD_LIMIT),
+                        TYPEAHEAD_MAX_LIMIT));
 
+                // more candidates than requested since the node filter can drop some of them
                 List<Resource> matchingChilds = new ArrayList<>();
-                for (Resource child : resource.getChildren()) {
-                    if (filter.accept(child)) {
+                for (String name : childNameIndex.findChildNames(resource, query, limit * 4)) {
+                    Resource child = resource.getChild(name);
+                    if (child != null && filter.accept(child)) {
                         matchingChilds.add(child);
+                        if (matchingChilds.size() >= limit) {
+                            break;
+                        }
                     }
                 }
 
@@ -993,8 +1192,32 @@ public class NodeServlet extends NodeTreeServlet {
         }
     }
 
+    /**
+     * Delivers the binary content of a resource; supports conditional requests (an 'ETag' is built from the
+     * content identity of the binary or from its modification date and size) and requests of byte ranges
+     * (single ranges and 'multipart/byteranges' responses) to resume downloads and to stream media.
+     */
     protected class LoadBinaryOperation implements ServletOperation {
 
+        public static final int BUFFER_SIZE = 65536;
+
+        /** the source of the content streams; a stream is opened for each requested range */
+        protected class ContentSource {
+
+            protected final Binary binary;
+            protected final FileHandle file;
+
+            public ContentSource(@Nullable final Binary binary, @NotNull final FileHandle file) {
+                this.binary = binary;
+                this.file = file;
+            }
+
+            @Nullable
+            public InputStream getStream() throws RepositoryException {
+                return binary != null ? binary.getStream() : file.getStream();
+            }
+        }
+
         @Override
         public void doIt(@NotNull final SlingHttpServletRequest request,
                          @NotNull final SlingHttpServletResponse response,
@@ -1005,15 +1228,12 @@ public class NodeServlet extends NodeTreeServlet {
             if (binary != null) {
 
                 try {
+                    FileHandle fileHandle = new FileHandle(resource);
+                    Calendar lastModified = fileHandle.getLastModified();
+                    long size = binary.getSize();
                     prepareResponse(request, response, resource);
-
-                    response.setContentLength((int) binary.getSize());
-                    response.setStatus(HttpServletResponse.SC_OK);
-
-                    try (InputStream input = binary.getStream();
-                         BufferedInputStream buffered = new BufferedInputStream(input)) {
-                        IOUtils.copy(buffered, response.getOutputStream());
-                    }
+                    deliver(request, response, new ContentSource(binary, fileHandle),
+                            size, lastModified, getETag(binary, size, lastModified));
 
                 } catch (RepositoryException ex) {
                     LOG.error(ex.getMessage(), ex);
@@ -1027,12 +1247,15 @@ public class NodeServlet extends NodeTreeServlet {
                 FileHandle fileHandle = new FileHandle(resource);
                 if (fileHandle.isValid()) {
 
-                    prepareResponse(request, response, Objects.requireNonNull(resource));
-                    response.setStatus(HttpServletResponse.SC_OK);
+                    try {
+                        Calendar lastModified = fileHandle.getLastModified();
+                        prepareResponse(request, response, Objects.requireNonNull(resource));
+                        deliver(request, response, new ContentSource(null, fileHandle),
+                                null, lastModified, null);
 
-                    try (InputStream input = fileHandle.getStream();
-                         BufferedInputStream buffered = new BufferedInputStream(input)) {
-                        IOUtils.copy(buffered, response.getOutputStream());
+                    } catch (RepositoryException ex) {
+                        LOG.error(ex.getMessage(), ex);
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
                     }
 
                 } else {
@@ -1041,6 +1264,119 @@ public class NodeServlet extends NodeTreeServlet {
             }
         }
 
+        /**
+         * @return a strong entity tag built from the content identity of the binary if available,
+         * otherwise a weak tag built from the modification date and the size
+         */
+        @Nullable
+        protected String getETag(@NotNull final Binary binary, long size, @Nullable final Calendar lastModified) {
+            if (binary instanceof ReferenceBinary) {
+                String reference = ((ReferenceBinary) binary).getReference();
+                if (StringUtils.isNotBlank(reference)) {
+                    return "\"" + DigestUtils.sha1Hex(reference) + "\"";
+                }
+            }
+            return lastModified != null
+                    ? "W/\"" + Long.toHexString(lastModified.getTimeInMillis()) + "-" + Long.toHexString(size) + "\""
+                    : null;
+        }
+
+        /**
+         * Sends the requested content, a '304' if the client has the current version or the requested ranges.
+         *
+         * @param size the size of the content; ranges are not supported if the size is unknown ('null')
+         */
+        protected void deliver(@NotNull final SlingHttpServletRequest request,
+                               @NotNull final SlingHttpServletResponse response,
+                               @NotNull final ContentSource source, @Nullable final Long size,
+                               @Nullable final Calendar lastModified, @Nullable final String eTag)
+                throws IOException, RepositoryException {
+            if (eTag != null) {
+                response.setHeader(HttpUtil.HEADER_ETAG, eTag);
+            }
+            if (lastModified != null) {
+                response.setDateHeader(HttpUtil.HEADER_LAST_MODIFIED, lastModified.getTimeInMillis());
+            }
+            String ifNoneMatch = request.getHeader(HttpUtil.HEADER_IF_NONE_MATCH);
+            if (eTag != null && ifNoneMatch != null
+                    ? HttpUtil.matchesETag(ifNoneMatch, eTag)
+                    : HttpUtil.notModifiedSince(request.getDateHeader(HttpUtil.HEADER_IF_MODIFIED_SINCE), lastModified)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            List<HttpUtil.ByteRange> ranges = null;
+            if (size != null) {
+                response.setHeader(HttpUtil.HEADER_ACCEPT_RANGES, HttpUtil.VALUE_BYTES);
+                if (isRangeApplicable(request, lastModified, eTag)) {
+                    ranges = HttpUtil.getRanges(request.getHeader(HttpUtil.HEADER_RANGE), size);
+                }
+            }
+            if (ranges == null) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                if (size != null) {
+                    response.setHeader(HttpUtil.HEADER_CONTENT_LENGTH, Long.toString(size));
+                }
+                try (InputStream input = source.getStream()) {
+                    if (input != null) {
+                        IOUtils.copyLarge(input, response.getOutputStream(), new byte[BUFFER_SIZE]);
+                    }
+                }
+            } else if (ranges.isEmpty()) {
+                response.setHeader(HttpUtil.HEADER_CONTENT_RANGE, HttpUtil.VALUE_BYTES + " */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            } else if (ranges.size() == 1) {
+                HttpUtil.ByteRange range = ranges.get(0);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpUtil.HEADER_CONTENT_RANGE, range.getContentRange(size));
+                response.setHeader(HttpUtil.HEADER_CONTENT_LENGTH, Long.toString(range.getLength()));
+                writeRange(source, range, response.getOutputStream(), new byte[BUFFER_SIZE]);
+            } else {
+                String contentType = response.getContentType();
+                String boundary = Long.toHexString(System.nanoTime()) + Long.toHexString(size);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setContentType("multipart/byteranges; boundary=" + boundary);
+                ServletOutputStream output = response.getOutputStream();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (HttpUtil.ByteRange range : ranges) {
+                    output.print("\r\n--" + boundary + "\r\n");
+                    if (contentType != null) {
+                        output.print("Content-Type: " + contentType + "\r\n");
+                    }
+                    output.print(HttpUtil.HEADER_CONTENT_RANGE + ": " + range.getContentRange(size) + "\r\n\r\n");
+                    writeRange(source, range, output, buffer);
+                }
+                output.print("\r\n--" + boundary + "--\r\n");
+            }
+        }
+
+        /**
+         * @return 'true' if the content has not been changed since the version referenced by an 'If-Range' header
+         */
+        protected boolean isRangeApplicable(@NotNull final SlingHttpServletRequest request,
+                                            @Nullable final Calendar lastModified, @Nullable final String eTag) {
+            String ifRange = request.getHeader(HttpUtil.HEADER_IF_RANGE);
+            if (StringUtils.isBlank(ifRange)) {
+                return true;
+            }
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // a weak tag can't be used to combine ranges
+                return eTag != null && !eTag.startsWith("W/") && ifRange.equals(eTag);
+            }
+            long ifRangeDate = request.getDateHeader(HttpUtil.HEADER_IF_RANGE);
+            return lastModified != null && ifRangeDate != -1
+                    && lastModified.getTimeInMillis() / 1000L == ifRangeDate / 1000L;
+        }
+
+        protected void writeRange(@NotNull final ContentSource source, @NotNull final HttpUtil.ByteRange range,
+                                  @NotNull final OutputStream output, @NotNull final byte[] buffer)
+                throws IOException, RepositoryException {
+            try (InputStream input = source.getStream()) {
+                if (input != null) {
+                    IOUtils.copyLarge(input, output, range.first, range.getLength(), buffer);
+                }
+            }
+        }
+
         protected void prepareResponse(@NotNull final SlingHttpServletRequest request,
                                        @NotNull final SlingHttpServletResponse response,
                                        @NotNull ResourceHandle resource) {
@@ -1065,11 +1401,6 @@ public class NodeServlet extends NodeTreeServlet {
                 Disposition disposition = RequestUtil.getSelector(request, Disposition.inline);
                 response.setHeader("Content-Disposition", disposition.name() + "; filename=" + filename);
             }
-
-            Calendar lastModified = resource.getProperty(ResourceUtil.PROP_LAST_MODIFIED, Calendar.class);
-            if (lastModified != null) {
-                response.setDateHeader(HttpConstants.HEADER_LAST_MODIFIED, lastModified.getTimeInMillis());
-            }
         }
     }
 
@@ -0,0 +1,235 @@
+package com.composum.sling.nodes.servlet;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A ZIP stream which decouples the producer of the entries from the compression and the output: the entries and
+ * their content are handed over in chunks to a writer thread which appends them to the ZIP. The producer (which
+ * reads the repository content) and the compression are running in parallel; the memory used is bounded by the
+ * size of the hand over queue. Errors of the writer are thrown by the next call of the producer.
+ * The stream must be closed or aborted to stop the writer thread.
+ */
+public class PipelinedZipOutputStream extends ZipOutputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelinedZipOutputStream.class);
+
+    /** the size of the content chunks handed over to the writer */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /** the maximum number of operations (chunks) waiting for the writer */
+    public static final int QUEUE_SIZE = 64;
+
+    protected static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    @FunctionalInterface
+    protected interface Operation {
+        void apply(@NotNull ZipOutputStream zipStream) throws IOException;
+    }
+
+    protected static final Operation END = zipStream -> {
+    };
+
+    protected final ZipOutputStream target;
+    protected final BlockingQueue<Operation> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    protected final Thread writer;
+    protected volatile IOException failure;
+
+    protected final Set<String> entryNames = new HashSet<>();
+    protected byte[] chunk = new byte[CHUNK_SIZE];
+    protected int chunkLength = 0;
+    protected boolean closed = false;
+
+    public PipelinedZipOutputStream(@NotNull final OutputStream output) {
+        super(output);
+        def.end(); // the deflater of this stream is not used
+        target = new ZipOutputStream(output);
+        writer = new Thread(this::runWriter, "composum-zip-writer-" + THREAD_COUNTER.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    protected void runWriter() {
+        try {
+            Operation operation;
+            while ((operation = queue.take()) != END) {
+                if (failure == null) {
+                    try {
+                        operation.apply(target);
+                    } catch (IOException ex) {
+                        failure = ex;
+                    } catch (RuntimeException ex) {
+                        failure = new IOException(ex);
+                    }
+                }
+                // after a failure the queue is drained to release the producer
+            }
+        } catch (InterruptedException ex) {
+            LOG.warn("ZIP writer interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void submit(@NotNull final Operation operation) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        checkFailure();
+        try {
+            queue.put(operation);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new InterruptedIOException("ZIP output interrupted");
+        }
+    }
+
+    protected void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    protected void submitChunk() throws IOException {
+        if (chunkLength > 0) {
+            final byte[] data = chunk;
+            final int length = chunkLength;
+            chunk = new byte[CHUNK_SIZE];
+            chunkLength = 0;
+            submit(zipStream -> zipStream.write(data, 0, length));
+        }
+    }
+
+    /**
+     * Duplicate entries are detected immediately to report them to the producer like the standard ZIP stream.
+     */
+    @Override
+    public void putNextEntry(@NotNull final ZipEntry entry) throws IOException {
+        submitChunk();
+        if (!entryNames.add(entry.getName())) {
+            throw new ZipException("duplicate entry: " + entry.getName());
+        }
+        submit(zipStream -> zipStream.putNextEntry(entry));
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+        submitChunk();
+        submit(ZipOutputStream::closeEntry);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (chunkLength >= CHUNK_SIZE) {
+            submitChunk();
+        }
+        chunk[chunkLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(@NotNull final byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (chunkLength >= CHUNK_SIZE) {
+                submitChunk();
+            }
+            int count = Math.min(length, CHUNK_SIZE - chunkLength);
+            System.arraycopy(buffer, offset, chunk, chunkLength, count);
+            chunkLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * The compression level is changed for the next entry.
+     */
+    @Override
+    public void setLevel(int level) {
+        try {
+            submit(zipStream -> zipStream.setLevel(level));
+        } catch (IOException ex) {
+            LOG.warn(ex.toString());
+        }
+    }
+
+    @Override
+    public void setMethod(int method) {
+        try {
+            submit(zipStream -> zipStream.setMethod(method));
+        } catch (IOException ex) {
+            LOG.warn(ex.toString());
+        }
+    }
+
+    @Override
+    public void setComment(String comment) {
+        try {
+            submit(zipStream -> zipStream.setComment(comment));
+        } catch (IOException ex) {
+            LOG.warn(ex.toString());
+        }
+    }
+
+    /**
+     * Hands the buffered content over to the writer; the output itself is flushed on finish.
+     */
+    @Override
+    public void flush() throws IOException {
+        submitChunk();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        submitChunk();
+        submit(zipStream -> {
+            zipStream.finish();
+            zipStream.flush();
+        });
+    }
+
+    /**
+     * Finishes the ZIP, waits for the writer and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            submitChunk();
+            submit(ZipOutputStream::close);
+            closed = true;
+            try {
+                queue.put(END);
+                writer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("ZIP output interrupted");
+            }
+            checkFailure();
+        }
+    }
+
+    /**
+     * Stops the writer without finishing the ZIP (e.g. after an error of the producer); no-op if closed.
+     */
+    public void abort() {
+        if (!closed) {
+            closed = true;
+            queue.clear();
+            if (!queue.offer(END)) {
+                writer.interrupt();
+            }
+        }
+    }
+}
@@ -51,6 +51,7 @@ import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -155,6 +156,16 @@ public class SourceModel extends ConsoleSlingBean {
 
     protected static final Pattern PATH_WITHIN_JCR_CONTENT = Pattern.compile(".*/jcr:content/.*$");
 
+    /**
+     * Binaries of these types are already compressed; they are stored without a (useless) second compression.
+     */
+    protected static final Pattern COMPRESSED_MIME_TYPES = Pattern.compile("^(image/(jpeg|png|gif|webp|avif|heic)" +
+            "|video/.*|audio/(mpeg|mp4|aac|ogg|webm)" +
+            "|application/(zip|gzip|x-gzip|x-bzip2|x-xz|x-7z-compressed|x-rar-compressed|java-archive" +
+            "|epub\\+zip|vnd\\.openxmlformats-.*|vnd\\.oasis\\.opendocument\\..*))$");
+    protected static final Pattern COMPRESSED_EXTENSIONS = Pattern.compile("(?i)^.*\\.(jpe?g|png|gif|webp|avif|heic" +
+            "|mp4|m4v|mov|webm|mkv|mp3|m4a|aac|ogg|zip|gz|tgz|bz2|xz|7z|rar|jar|war|docx|xlsx|pptx|odt|ods|odp|epub)$");
+
     protected final NodesConfiguration config;
 
     protected transient List<Property> propertyList;
@@ -384,25 +395,29 @@ public class SourceModel extends ConsoleSlingBean {
             throws IOException, IOErrorOnCloseException, RepositoryException {
 
         String root = "jcr_root";
-        ZipOutputStream zipStream = new ZipOutputStream(output);
-        writePackageProperties(zipStream, group, packageName, version);
-        writeFilterXml(zipStream);
-        if (ResourceUtil.CONTENT_NODE.equals(getName())) {
-            Resource parent = resource.getParent();
-            if (parent != null) {
-                SourceModel parentModel = new SourceModel(config, context, parent);
-                writeParents(zipStream, root, parentModel.getResource().getParent());
-                parentModel.writeIntoZip(zipStream, root, DepthMode.DEEP);
-            }
-        } else {
-            writeParents(zipStream, root, resource.getParent());
-            writeIntoZip(zipStream, root, DepthMode.DEEP);
-        }
-        zipStream.flush();
+        PipelinedZipOutputStream zipStream = new PipelinedZipOutputStream(output);
         try {
-            zipStream.close();
-        } catch (IOException e) {
-            throw new IOErrorOnCloseException(e);
+            writePackageProperties(zipStream, group, packageName, version);
+            writeFilterXml(zipStream);
+            if (ResourceUtil.CONTENT_NODE.equals(getName())) {
+                Resource parent = resource.getParent();
+                if (parent != null) {
+                    SourceModel parentModel = new SourceModel(config, context, parent);
+                    writeParents(zipStream, root, parentModel.getResource().getParent());
+                    parentModel.writeIntoZip(zipStream, root, DepthMode.DEEP);
+                }
+            } else {
+                writeParents(zipStream, root, resource.getParent());
+                writeIntoZip(zipStream, root, DepthMode.DEEP);
+            }
+            zipStream.flush();
+            try {
+                zipStream.close();
+            } catch (IOException e) {
+                throw new IOErrorOnCloseException(e);
+            }
+        } finally {
+            zipStream.abort(); // stops the writer if the content could not be written completely
         }
     }
 
@@ -542,10 +557,14 @@ public class SourceModel extends ConsoleSlingBean {
     public void writeArchive(@NotNull OutputStream output)
             throws IOException, RepositoryException {
 
-        ZipOutputStream zipStream = new ZipOutputStream(output);
-        writeIntoZip(zipStream, resource.getPath(), DepthMode.DEEP);
-        zipStream.flush();
-        zipStream.close();
+        PipelinedZipOutputStream zipStream = new PipelinedZipOutputStream(output);
+        try {
+            writeIntoZip(zipStream, resource.getPath(), DepthMode.DEEP);
+            zipStream.flush();
+            zipStream.close();
+        } finally {
+            zipStream.abort(); // stops the writer if the content could not be written completely
+        }
     }
 
     /**
@@ -631,7 +650,16 @@ public class SourceModel extends ConsoleSlingBean {
                 entry.setLastModifiedTime(lastModified);
             }
             InputStream writeContent = fileContent;
-            putEntry(zipStream, entry, () -> IOUtils.copy(writeContent, zipStream), () -> writeContent.close());
+            boolean compressed = isCompressed(path, file.getContentResource().getProperty(ResourceUtil.PROP_MIME_TYPE, String.class));
+            if (compressed) {
+                zipStream.setLevel(Deflater.NO_COMPRESSION);
+            }
+            putEntry(zipStream, entry, () -> IOUtils.copy(writeContent, zipStream), () -> {
+                writeContent.close();
+                if (compressed) {
+                    zipStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+                }
+            });
         } else {
             LOG.warn("Can't get binary data for {}", path);
         }
@@ -703,9 +731,18 @@ public class SourceModel extends ConsoleSlingBean {
                     if (lastModified != null) {
                         entry.setLastModifiedTime(lastModified);
                     }
+                    Resource parent = propertyResource.getParent();
+                    boolean compressed = isCompressed(binPropPath, parent != null
+                            ? parent.getValueMap().get(ResourceUtil.PROP_MIME_TYPE, String.class) : null);
+                    if (compressed) {
+                        zipStream.setLevel(Deflater.NO_COMPRESSION);
+                    }
                     zipStream.putNextEntry(entry);
                     IOUtils.copy(inputStream, zipStream);
                     zipStream.closeEntry();
+                    if (compressed) {
+                        zipStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+                    }
                 } else {
                     LOG.warn("Can't get binary data for binary property {}", binPropPath);
                 }
@@ -713,6 +750,14 @@ public class SourceModel extends ConsoleSlingBean {
         }
     }
 
+    /**
+     * @return 'true' if the binary is already compressed (by mime type or file extension)
+     */
+    protected static boolean isCompressed(@NotNull String path, @Nullable String mimeType) {
+        return (StringUtils.isNotBlank(mimeType) && COMPRESSED_MIME_TYPES.matcher(mimeType.toLowerCase()).matches())
+                || COMPRESSED_EXTENSIONS.matcher(path).matches();
+    }
+
     /**
      * Turns a resource path into a proper name for a zip file with the appropriate encoding of troublesome chars.
      */
@@ -0,0 +1,557 @@
+package com.composum.sling.nodes.tools;
+
+import com.composum.sling.nodes.tools.RuntimeFileServlet.LogfileFilter;
+import com.composum.sling.nodes.tools.RuntimeFileServlet.LogfileReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * The regex search in a logfile and its rotated files. Each file is split into chunks which are scanned in parallel;
+ * the results are written in the order of the files and chunks as soon as the chunk is done. Only a bounded number
+ * of chunks is scanned ahead of the writer and each chunk collects not more matches than the remaining limit of the
+ * search, so that a search with a limit doesn't scan or hold more than necessary. During the scan a
+ * sparse line offset index is built for each file which is used for paging through the lines of a file.
+ * If a file has grown only since its index was built (the live logfile), the index is extended from its last
+ * line; a search uses the index of a file to align the chunks with indexed lines, so that the lines of these
+ * chunks are not counted again and a chunk stops scanning at the limit of the search.
+ * <p>
+ * Each result line is prefixed with its line number in the file followed by ':' for a matching line and '-' for a
+ * context line; a '----' line separates non adjacent groups and each file starts with a '==== name ====' line.
+ */
+public class LogfileSearch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogfileSearch.class);
+
+    /** the size of the chunks scanned in parallel */
+    public static final long CHUNK_SIZE = 8L * 1024L * 1024L;
+
+    /** the maximum number of chunks submitted ahead of the writer */
+    public static final int MAX_PENDING_CHUNKS = 8;
+
+    /** every INDEX_INTERVAL-th line offset is stored in the line index */
+    public static final int INDEX_INTERVAL = 1024;
+
+    /** the maximum number of cached line indexes */
+    public static final int MAX_INDEX_COUNT = 64;
+
+    /** the size of the head of a file which identifies the file if it grows (isn't replaced by a rotation) */
+    public static final int HEAD_SIZE = 4096;
+
+    /** the suffix of rotated logfiles: a number or a date */
+    public static final Pattern ROTATION_SUFFIX = Pattern.compile("^\\.(?<suffix>[\\d-]+)$");
+
+    protected static final Pattern CONTINUATION = Pattern.compile("^(Caused)?\\s+.*$");
+
+    protected static final Map<String, LineIndex> INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * A sparse index of the line start offsets of a file; valid as long as the file is not changed or rotated,
+     * extendable as long as lines are appended to the file only.
+     */
+    public static class LineIndex {
+
+        protected final long length;
+        protected final long lastModified;
+        /** the checksum of the head of the file */
+        protected final long head;
+        protected final long[] lines;
+        protected final long[] offsets;
+        protected final long lineCount;
+        /** the offset of the last line; the line can be continued if the file grows */
+        protected final long tail;
+
+        public LineIndex(long length, long lastModified, long head, @NotNull final List<long[]> entries,
+                         long lineCount, long tail) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.head = head;
+            this.lines = new long[entries.size() + 1];
+            this.offsets = new long[entries.size() + 1];
+            for (int i = 0; i < entries.size(); i++) {
+                lines[i + 1] = entries.get(i)[0];
+                offsets[i + 1] = entries.get(i)[1];
+            }
+            this.lineCount = lineCount;
+            this.tail = tail;
+        }
+
+        public boolean isValid(@NotNull final File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        /**
+         * @return 'true' if the file has not been replaced and is not shorter than on building the index
+         */
+        public boolean isExtendable(@NotNull final File file) throws IOException {
+            return file.length() >= length && checksum(file, Math.min(length, HEAD_SIZE)) == head;
+        }
+
+        /**
+         * @return the number of the last line (0 based) which is continued on an extension of the index
+         */
+        public long getTailLine() {
+            return Math.max(0L, lineCount - 1L);
+        }
+
+        /**
+         * @return the indexed lines and offsets in front of the tail line
+         */
+        @NotNull
+        public List<long[]> getEntries() {
+            final List<long[]> entries = new ArrayList<>();
+            for (int slot = 1; slot < offsets.length && offsets[slot] < tail; slot++) {
+                entries.add(new long[]{lines[slot], offsets[slot]});
+            }
+            return entries;
+        }
+
+        public long getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * @return the offset and the number of the indexed line nearest before the line (0 based)
+         */
+        @NotNull
+        public long[] getStart(long line) {
+            int slot = Arrays.binarySearch(lines, line);
+            if (slot < 0) {
+                slot = -slot - 2;
+            }
+            return new long[]{offsets[slot], lines[slot]};
+        }
+    }
+
+    /**
+     * The result of the scan of one chunk of a file.
+     */
+    protected static class ChunkResult {
+
+        /** the number of lines starting in the chunk */
+        protected long lineCount;
+        /** the offset of the last line starting in the chunk */
+        protected long tail;
+        /** the relative number and the offset of the lines at the index interval */
+        protected final List<long[]> index = new ArrayList<>();
+        protected final List<Hit> hits = new ArrayList<>();
+    }
+
+    /**
+     * A section [start, end) of a file scanned in one task.
+     */
+    protected static class Chunk {
+
+        protected final File file;
+        protected final long start;
+        protected final long end;
+        /** the number of the first line of the chunk (0 based); -1 if not known from the line index */
+        protected final long firstLine;
+        /** 'true' if the chunk is not covered by the line index; its lines are counted and indexed */
+        protected final boolean counted;
+
+        public Chunk(@NotNull final File file, long start, long end, long firstLine, boolean counted) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+            this.counted = counted;
+        }
+    }
+
+    protected static class Hit {
+
+        protected final long offset;
+        /** the line number relative to the first line of the chunk (negative for preceding context lines) */
+        protected final long line;
+        protected final boolean match;
+        protected final String text;
+
+        public Hit(long offset, long line, boolean match, String text) {
+            this.offset = offset;
+            this.line = line;
+            this.match = match;
+            this.text = text;
+        }
+    }
+
+    protected final ExecutorService executor;
+    protected final Pattern pattern;
+    protected final int prepend;
+    protected final int append;
+
+    public LogfileSearch(@NotNull final ExecutorService executor, @NotNull final LogfileFilter filter) {
+        this.executor = executor;
+        this.pattern = filter.pattern;
+        this.prepend = Math.max(0, filter.prepend);
+        this.append = Math.max(0, filter.append);
+    }
+
+    /**
+     * Searches the files and writes the results in the order of the given files.
+     *
+     * @param limit the maximum number of matches (a matching line and its continuation lines) to write;
+     *              no limit if <= 0
+     */
+    public void search(@NotNull final PrintWriter writer, @NotNull final List<File> files, long limit)
+            throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        final int[] chunkCounts = new int[files.size()];
+        final long[][] states = new long[files.size()][];
+        final LineIndex[] known = new LineIndex[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            final File file = files.get(i);
+            final long length = file.length();
+            states[i] = new long[]{length, file.lastModified()};
+            known[i] = getCachedIndex(file);
+            final int count = chunks.size();
+            long start = 0L;
+            long firstLine = 0L;
+            if (known[i] != null) { // the indexed part is split at indexed lines
+                final LineIndex index = known[i];
+                for (int slot = 1; slot < index.offsets.length && index.offsets[slot] < index.tail; slot++) {
+                    if (index.offsets[slot] - start >= CHUNK_SIZE) {
+                        chunks.add(new Chunk(file, start, index.offsets[slot], firstLine, false));
+                        start = index.offsets[slot];
+                        firstLine = index.lines[slot];
+                    }
+                }
+                if (index.tail > start) {
+                    chunks.add(new Chunk(file, start, index.tail, firstLine, false));
+                }
+                start = index.tail;
+                firstLine = index.getTailLine();
+            }
+            for (long chunk = start; chunk < length || chunk == start; chunk += CHUNK_SIZE) {
+                chunks.add(new Chunk(file, chunk, Math.min(chunk + CHUNK_SIZE, length),
+                        chunk == start ? firstLine : -1L, true));
+            }
+            chunkCounts[i] = chunks.size() - count;
+        }
+        final Deque<Future<ChunkResult>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        int consumed = 0;
+        long matches = 0L;
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                final File file = files.get(i);
+                final List<long[]> index = known[i] != null ? known[i].getEntries() : new ArrayList<>();
+                long lineBase = 0L;
+                long tail = known[i] != null ? known[i].tail : 0L;
+                long lastWritten = -1L;
+                long lastWrittenLine = -1L;
+                boolean lastMatch = false;
+                boolean header = false;
+                for (int c = 0; c < chunkCounts[i]; c++) {
+                    // one more than the remaining limit: the first match can continue a match of the previous chunk
+                    final long maxMatches = limit > 0 ? limit - matches + 1 : 0L;
+                    while (submitted < chunks.size() && pending.size() < MAX_PENDING_CHUNKS) {
+                        final Chunk chunk = chunks.get(submitted);
+                        pending.addLast(executor.submit(() -> scanChunk(chunk, maxMatches)));
+                        submitted++;
+                    }
+                    final Chunk chunk = chunks.get(consumed++);
+                    final ChunkResult result = pending.removeFirst().get();
+                    if (chunk.firstLine >= 0L) {
+                        lineBase = chunk.firstLine;
+                    }
+                    for (final Hit hit : result.hits) {
+                        if (hit.offset > lastWritten) {
+                            final boolean adjacent = lineBase + hit.line == lastWrittenLine + 1;
+                            if (limit > 0 && matches >= limit
+                                    && (hit.match && !(lastMatch && adjacent) || !adjacent)) {
+                                return; // done, only the context of the last match is written
+                            }
+                            if (!header) {
+                                writer.append("==== ").append(file.getName()).append(" ====\n");
+                                header = true;
+                            } else if (!adjacent) {
+                                writer.append("----\n");
+                            }
+                            writer.append(Long.toString(lineBase + hit.line + 1)).append(hit.match ? ":" : "-")
+                                    .append(hit.text).append('\n');
+                            lastWritten = hit.offset;
+                            if (hit.match && !(lastMatch && adjacent)) {
+                                matches++;
+                            }
+                            lastWrittenLine = lineBase + hit.line;
+                            lastMatch = hit.match;
+                        }
+                    }
+                    if (chunk.counted) {
+                        for (final long[] entry : result.index) {
+                            index.add(new long[]{lineBase + entry[0], entry[1]});
+                        }
+                        if (result.lineCount > 0L) {
+                            tail = result.tail;
+                        }
+                    }
+                    lineBase += result.lineCount;
+                    writer.flush();
+                    if (writer.checkError()) { // the client has gone
+                        return;
+                    }
+                }
+                storeIndex(file, new LineIndex(states[i][0], states[i][1],
+                        checksum(file, Math.min(states[i][0], HEAD_SIZE)), index, lineBase, tail));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOG.error(ex.getMessage(), ex);
+            throw new IOException(ex.getCause());
+        } catch (CancellationException ex) {
+            LOG.warn("search cancelled: {}", ex.toString());
+        } finally {
+            for (final Future<ChunkResult> chunk : pending) {
+                chunk.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Scans the lines starting in [start, end) of the file; context lines are read before and behind the chunk.
+     * If the maximum number of matches is reached, the remaining lines are only counted for the line index;
+     * a chunk covered by the line index stops scanning at this point.
+     *
+     * @param maxMatches the maximum number of matches collected; no limit if <= 0
+     */
+    protected ChunkResult scanChunk(@NotNull final Chunk chunk, long maxMatches) throws IOException {
+        final long start = chunk.start;
+        final long end = chunk.end;
+        final ChunkResult result = new ChunkResult();
+        try (final LogfileReader reader = new LogfileReader(chunk.file)) {
+            long chunkStart = 0L;
+            if (start > 0L) { // find the first line starting in the chunk
+                reader.seek(start - 1L);
+                reader.readLine();
+                chunkStart = reader.getFilePointer();
+            }
+            final Deque<Hit> context = new ArrayDeque<>(prepend + 1);
+            if (prepend > 0 && chunkStart > 0L) {
+                reader.seek(reader.findTail(0L, chunkStart, prepend));
+                final List<Hit> preceding = new ArrayList<>();
+                while (reader.getFilePointer() < chunkStart) {
+                    final long offset = reader.getFilePointer();
+                    final String text = reader.readLine();
+                    if (text == null) {
+                        break;
+                    }
+                    preceding.add(new Hit(offset, 0L, false, text));
+                }
+                for (int i = 0; i < preceding.size(); i++) {
+                    final Hit hit = preceding.get(i);
+                    context.addLast(new Hit(hit.offset, i - preceding.size(), false, hit.text));
+                }
+            }
+            reader.seek(chunkStart);
+            long line = 0L;
+            long matchCount = 0L;
+            int more = 0;
+            boolean matched = false;
+            boolean capped = false;
+            String text;
+            long offset;
+            while ((offset = reader.getFilePointer()) < end || (more > 0 || matched) && offset < reader.size()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                if ((text = reader.readLine()) == null) {
+                    break;
+                }
+                final boolean inChunk = offset < end;
+                if (capped) {
+                    if (!inChunk || !chunk.counted) {
+                        break;
+                    }
+                } else {
+                    final boolean found = pattern.matcher(text).find();
+                    if (inChunk && found && !matched && maxMatches > 0 && matchCount >= maxMatches) {
+                        capped = true; // the limit is reached, the remaining lines are counted only
+                    } else if (inChunk && found || matched && CONTINUATION.matcher(text).matches()) {
+                        if (!matched) {
+                            matchCount++;
+                        }
+                        result.hits.addAll(context);
+                        context.clear();
+                        result.hits.add(new Hit(offset, line, true, text));
+                        matched = true;
+                        more = append;
+                    } else if (!inChunk && found) {
+                        break; // the next match is reported by the next chunk
+                    } else {
+                        matched = false;
+                        if (more > 0) {
+                            more--;
+                            result.hits.add(new Hit(offset, line, false, text));
+                        } else if (inChunk && prepend > 0) {
+                            if (context.size() >= prepend) {
+                                context.pollFirst();
+                            }
+                            context.addLast(new Hit(offset, line, false, text));
+                        }
+                    }
+                }
+                if (inChunk) {
+                    if (chunk.counted && offset > 0L && line % INDEX_INTERVAL == 0) {
+                        result.index.add(new long[]{line, offset});
+                    }
+                    result.lineCount++;
+                    result.tail = offset;
+                }
+                line++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes 'count' lines starting with the line 'from' (1 based) of a file using the line index of the file.
+     */
+    public static void lines(@NotNull final PrintWriter writer, @NotNull final File file, long from, long count)
+            throws IOException {
+        final LineIndex index = getIndex(file);
+        final long[] start = index.getStart(Math.max(0L, from - 1L));
+        try (final LogfileReader reader = new LogfileReader(file)) {
+            reader.seek(start[0]);
+            long line = start[1];
+            String text;
+            while ((text = reader.readLine()) != null && (count <= 0 || line < from - 1L + count)) {
+                if (line >= from - 1L) {
+                    writer.append(text).append('\n');
+                }
+                line++;
+            }
+        }
+    }
+
+    /**
+     * @return the cached line index of the file; extended if the file has grown, (re)built if not available or
+     * not valid anymore
+     */
+    @NotNull
+    public static LineIndex getIndex(@NotNull final File file) throws IOException {
+        LineIndex index = INDEXES.get(file.getAbsolutePath());
+        if (index == null || !index.isValid(file)) {
+            index = buildIndex(file, index != null && index.isExtendable(file) ? index : null);
+            storeIndex(file, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the cached line index of the file if it is valid or can be extended; 'null' otherwise
+     */
+    @Nullable
+    protected static LineIndex getCachedIndex(@NotNull final File file) throws IOException {
+        final LineIndex index = INDEXES.get(file.getAbsolutePath());
+        return index != null && (index.isValid(file) || index.isExtendable(file)) ? index : null;
+    }
+
+    /**
+     * Reads the lines of the file behind the tail line of the given index (the whole file if 'null').
+     */
+    @NotNull
+    protected static LineIndex buildIndex(@NotNull final File file, @Nullable final LineIndex base)
+            throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final List<long[]> entries = base != null ? base.getEntries() : new ArrayList<>();
+        long line = base != null ? base.getTailLine() : 0L;
+        long tail = base != null ? base.tail : 0L;
+        try (final LogfileReader reader = new LogfileReader(file)) {
+            reader.seek(tail);
+            long offset;
+            while ((offset = reader.getFilePointer()) < length && reader.readLine() != null) {
+                if (line > 0 && line % INDEX_INTERVAL == 0) {
+                    entries.add(new long[]{line, offset});
+                }
+                tail = offset;
+                line++;
+            }
+        }
+        return new LineIndex(length, lastModified, checksum(file, Math.min(length, HEAD_SIZE)), entries, line, tail);
+    }
+
+    /**
+     * @return the checksum of the first 'length' bytes of the file
+     */
+    protected static long checksum(@NotNull final File file, long length) throws IOException {
+        final byte[] bytes = new byte[(int) length];
+        int read = 0;
+        try (final RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            int count;
+            while (read < bytes.length && (count = access.read(bytes, read, bytes.length - read)) >= 0) {
+                read += count;
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, read);
+        return crc.getValue();
+    }
+
+    protected static void storeIndex(@NotNull final File file, @NotNull final LineIndex index) {
+        if (INDEXES.size() >= MAX_INDEX_COUNT) {
+            INDEXES.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastModified))
+                    .ifPresent(entry -> INDEXES.remove(entry.getKey(), entry.getValue()));
+        }
+        INDEXES.put(file.getAbsolutePath(), index);
+    }
+
+    /**
+     * Determines the logfile and its rotated files in the order of their age (the oldest first); the rotations
+     * are the files in the same folder with the name of the logfile and a number or date suffix.
+     */
+    @NotNull
+    public static List<File> getRotations(@NotNull final File logfile) {
+        final String name = logfile.getName().replaceAll("\\.[\\d-]+$", "");
+        final File folder = logfile.getAbsoluteFile().getParentFile();
+        final File[] candidates = folder != null ? folder.listFiles((dir, fileName) ->
+                fileName.startsWith(name) && ROTATION_SUFFIX.matcher(fileName.substring(name.length())).matches())
+                : null;
+        final List<File> files = new ArrayList<>(Arrays.asList(candidates != null ? candidates : new File[0]));
+        files.sort(Comparator.comparing((File file) -> rotationKey(file.getName().substring(name.length()))));
+        final File current = new File(folder, name);
+        if (current.isFile()) {
+            files.add(current);
+        }
+        return files;
+    }
+
+    /**
+     * Dates are ordered ascending, numbers (e.g. 'error.log.1' is newer than 'error.log.2') descending.
+     */
+    protected static String rotationKey(@NotNull final String suffix) {
+        final Matcher matcher = ROTATION_SUFFIX.matcher(suffix);
+        if (matcher.matches()) {
+            final String value = matcher.group("suffix");
+            if (value.matches("^\\d{1,3}$")) {
+                return "1-" + String.format("%03d", 999 - Integer.parseInt(value));
+            }
+            return "0-" + value;
+        }
+        return "2-" + suffix;
+    }
+}
@@ -28,14 +28,18 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -45,6 +49,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -86,7 +96,7 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
         protected boolean skipped = false;
         protected boolean flushed = false;
         protected boolean flushBuffer = false;
-        protected final List<String> buffer = new ArrayList<>();
+        protected final ArrayDeque<String> buffer = new ArrayDeque<>();
 
         public LogfileFilter(@Nullable final Pattern pattern, int prepend, int append) {
             this.pattern = pattern;
@@ -137,7 +147,7 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
             return pattern != null;
         }
 
-        public @Nullable String readLine(@NotNull final RandomAccessFile fileAccess) throws IOException {
+        public @Nullable String readLine(@NotNull final LogfileReader fileAccess) throws IOException {
             if (isFilter()) {
                 String result = null;
                 String line;
@@ -147,13 +157,13 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
                         buffer.add(line);
                         if (!checkMatch(line)) {
                             if (buffer.size() > prepend) {
-                                buffer.remove(0);
+                                buffer.pollFirst();
                                 skipped = true;
                             }
                         }
                     }
                     if (flushBuffer && flushed && skipped) {
-                        buffer.add(0, "----");
+                        buffer.addFirst("----");
                     }
                 }
                 if (flushBuffer && (buffer.size() > 0 || more > 0)) {
@@ -165,8 +175,7 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
                         checkMatch(line);
                         return line;
                     }
-                    result = buffer.get(0);
-                    buffer.remove(0);
+                    result = buffer.pollFirst();
                 }
                 return result;
             } else {
@@ -189,6 +198,129 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
         }
     }
 
+    /**
+     * A buffered, UTF-8 decoding line reader on a file channel which keeps track of the file position behind the
+     * last line read; lines are terminated by '\n' or '\r\n'.
+     */
+    public static class LogfileReader implements Closeable {
+
+        public static final int BUFFER_SIZE = 64 * 1024;
+
+        protected final FileChannel channel;
+        protected final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        protected byte[] line = new byte[256];
+        protected long position;
+
+        public LogfileReader(@NotNull final File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            buffer.limit(0);
+        }
+
+        /**
+         * Scans the file backwards block by block to find the start of the last 'limit' lines behind 'position'.
+         *
+         * @return the found start position or the given position if there are not enough lines behind
+         */
+        public long findTail(long position, long limit) throws IOException {
+            return findTail(position, channel.size(), limit);
+        }
+
+        /**
+         * Scans the file backwards from 'end' to find the start of the last 'limit' lines in [position, end).
+         */
+        public long findTail(long position, long end, long limit) throws IOException {
+            final ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+            long count = limit + 1; // the line break at the end of the last line is counted also
+            long blockEnd = end;
+            while (blockEnd > position) {
+                final long blockStart = Math.max(position, blockEnd - BUFFER_SIZE);
+                block.clear();
+                block.limit((int) (blockEnd - blockStart));
+                while (block.hasRemaining()) {
+                    if (channel.read(block, blockStart + block.position()) < 0) {
+                        break;
+                    }
+                }
+                final byte[] bytes = block.array();
+                for (int i = block.position(); --i >= 0; ) {
+                    if (bytes[i] == '\n' && --count == 0) {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+            return position;
+        }
+
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        public void seek(long position) throws IOException {
+            channel.position(position);
+            this.position = position;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return the position in the file behind the last line read
+         */
+        public long getFilePointer() {
+            return position;
+        }
+
+        /**
+         * @return the next line (without line terminator), 'null' at the end of the file
+         */
+        @Nullable
+        public String readLine() throws IOException {
+            int length = 0;
+            boolean eof = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    final int read = channel.read(buffer);
+                    buffer.flip();
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                final byte[] bytes = buffer.array();
+                int index = buffer.position();
+                final int limit = buffer.limit();
+                while (index < limit && bytes[index] != '\n') {
+                    index++;
+                }
+                final int chunk = index - buffer.position();
+                if (length + chunk > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+                }
+                System.arraycopy(bytes, buffer.position(), line, length, chunk);
+                length += chunk;
+                position += chunk;
+                if (index < limit) {
+                    buffer.position(index + 1);
+                    position++;
+                    break;
+                }
+                buffer.position(index);
+            }
+            if (eof && length == 0) {
+                return null;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
     public static class RuntimeFile implements Serializable {
 
         private final File file;
@@ -264,7 +396,22 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
     private boolean enabled = false;
     private Pattern fileRestrictions;
 
+    /** the pool for the parallel scan of logfile chunks; bounded to keep the system responsive */
+    private ExecutorService searchPool;
+
     protected void activate() {
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "composum-logfile-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+        final int size = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        searchPool = executor;
         serviceKey = new ServiceRestrictions.Key(SERVICE_KEY);
         permission = restrictions.getPermission(serviceKey);
         enabled = permission != ServiceRestrictions.Permission.none;
@@ -275,6 +422,13 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
         fileRestrictions = StringUtils.isNotBlank(pattern) ? Pattern.compile(pattern) : null;
     }
 
+    protected void deactivate() {
+        if (searchPool != null) {
+            searchPool.shutdownNow();
+            searchPool = null;
+        }
+    }
+
     @Override
     @NotNull
     public ServiceRestrictions.Key getServiceKey() {
@@ -321,6 +475,12 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
                     case "tail":
                         tailLogfile(request, response, selectors, suffix);
                         return;
+                    case "search":
+                        searchLogfiles(request, response, selectors, suffix);
+                        return;
+                    case "lines":
+                        logfileLines(request, response, selectors, suffix);
+                        return;
                     default:
                         break;
                 }
@@ -345,7 +505,7 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
             final LogfileFilter filter;
             if (rtFile.isLog && (filter = new LogfileFilter(request)).isFilter()) {
                 PrintWriter writer = response.getWriter();
-                try (final RandomAccessFile fileAccess = new RandomAccessFile(file, "r")) {
+                try (final LogfileReader fileAccess = new LogfileReader(file)) {
                     String line;
                     while ((line = filter.readLine(fileAccess)) != null) {
                         writer.println(line);
@@ -371,8 +531,15 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
                                @Nullable final String suffix) throws IOException {
         LoggerSession loggerSession = getLoggerSession(request, suffix);
         if (loggerSession != null) {
-            final Long position = selectors.length > 1 ? Long.parseLong(selectors[1]) : null;
-            final Long limit = selectors.length > 2 ? Long.parseLong(selectors[2]) : null;
+            final Long position;
+            final Long limit;
+            try {
+                position = getNumber(selectors, 1, null);
+                limit = getNumber(selectors, 2, null);
+            } catch (NumberFormatException ex) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid selectors");
+                return;
+            }
             final String filter = request.getParameter("filter");
             final String around = request.getParameter("around");
             response.setContentType("text/plain");
@@ -383,6 +550,86 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
         }
     }
 
+    //
+    //  search (logfile and rotations)
+    //
+
+    /**
+     * Searches the pattern of the 'filter' parameter in the logfile and (if not 'rotated=false') in its rotated
+     * files: '.search[.{limit}].txt/{path}?filter={regex}&around={prepend},{append}'.
+     */
+    protected void searchLogfiles(@NotNull final SlingHttpServletRequest request,
+                                  @NotNull final SlingHttpServletResponse response,
+                                  @NotNull final String[] selectors,
+                                  @Nullable final String suffix) throws IOException {
+        final RuntimeFile rtFile = getFile(request, suffix);
+        final LogfileFilter filter = new LogfileFilter(request);
+        if (rtFile != null && rtFile.isLog() && rtFile.getFile().isFile()) {
+            if (filter.isFilter()) {
+                final long limit;
+                try {
+                    limit = getNumber(selectors, 1, 0L);
+                } catch (NumberFormatException ex) {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid limit selector");
+                    return;
+                }
+                final List<File> files = new ArrayList<>();
+                if (RequestUtil.getParameter(request, "rotated", Boolean.TRUE)) {
+                    for (final File file : LogfileSearch.getRotations(rtFile.getFile())) {
+                        final RuntimeFile rotation = getFile(request,
+                                StringUtils.substringBeforeLast(suffix, "/") + "/" + file.getName());
+                        if (rotation != null && rotation.getFile().canRead()) {
+                            files.add(rotation.getFile());
+                        }
+                    }
+                } else {
+                    files.add(rtFile.getFile());
+                }
+                response.setContentType("text/plain");
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                new LogfileSearch(searchPool, filter).search(response.getWriter(), files, limit);
+            } else {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "no search pattern");
+            }
+        } else {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+        }
+    }
+
+    /**
+     * Delivers a page of lines of a logfile using the line index of the file: '.lines.{from}.{count}.txt/{path}'.
+     */
+    protected void logfileLines(@NotNull final SlingHttpServletRequest request,
+                                @NotNull final SlingHttpServletResponse response,
+                                @NotNull final String[] selectors,
+                                @Nullable final String suffix) throws IOException {
+        final RuntimeFile rtFile = getFile(request, suffix);
+        if (rtFile != null && rtFile.isText() && rtFile.getFile().isFile() && rtFile.getFile().canRead()) {
+            final long from;
+            final long count;
+            try {
+                from = getNumber(selectors, 1, 1L);
+                count = getNumber(selectors, 2, 1000L);
+            } catch (NumberFormatException ex) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid selectors");
+                return;
+            }
+            response.setContentType("text/plain");
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            LogfileSearch.lines(response.getWriter(), rtFile.getFile(), from, count);
+        } else {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+        }
+    }
+
+    /**
+     * @return the number of the selector at the index; the default value if there is no such selector
+     * @throws NumberFormatException if the selector is not a number
+     */
+    protected static Long getNumber(@NotNull final String[] selectors, int index, @Nullable final Long defaultValue) {
+        return selectors.length > index ? Long.valueOf(selectors[index]) : defaultValue;
+    }
+
     public static class LoggerSession implements Serializable {
 
         private final RuntimeFile rtFile;
@@ -405,27 +652,10 @@ public class RuntimeFileServlet extends SlingSafeMethodsServlet implements Restr
             final File file = rtFile.getFile();
             final long length = file.length();
             if (position < length) {
-                try (final RandomAccessFile fileAccess = new RandomAccessFile(file, "r")) {
+                try (final LogfileReader fileAccess = new LogfileReader(file)) {
                     if (limit != null && limit > 0) {
                         // retrive the position for the last 'limit' lines...
-                        long count = limit;
-                        long limitStart = length;
-                        while (count > 0 && limitStart > position) {
-                            fileAccess.seek(--limitStart);
-                            if (fileAccess.readByte() == 0xA) {
-                                count--;
-                            }
-                        }
-                        while (limitStart > 0) {
-                            fileAccess.seek(--limitStart);
-                            if (fileAccess.readByte() == 0xA) {
-                                limitStart++;
-                                break;
-                            }
-                        }
-                        if (limitStart > position) {
-                            position = limitStart; // use found position
-                        }
+                        position = fileAccess.findTail(position, limit);
                     }
                     fileAccess.seek(position);
                     String line;
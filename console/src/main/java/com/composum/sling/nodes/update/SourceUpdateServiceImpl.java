@@ -17,14 +17,21 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.nodetype.NodeDefinition;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -51,15 +58,41 @@ import static com.composum.sling.core.util.ResourceUtil.TYPE_SLING_FOLDER;
                 Constants.SERVICE_DESCRIPTION + "=Composum Nodes Source Update Service : service to update content trees from XML"
         }
 )
+@Designate(ocd = SourceUpdateServiceImpl.Configuration.class)
 public class SourceUpdateServiceImpl implements SourceUpdateService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SourceUpdateServiceImpl.class);
 
+    @ObjectClassDefinition(name = "Composum Nodes Source Update Service",
+            description = "Updates content trees from source archives (ZIP in vault format).")
+    public @interface Configuration {
+
+        @AttributeDefinition(name = "Streaming Update",
+                description = "compares the archive entries directly with the content while reading the archive and " +
+                        "writes only the changes; if disabled (default) the archive is imported into a temporary tree first")
+        boolean streaming_update() default false;
+
+        @AttributeDefinition(name = "Save Interval",
+                description = "the number of changes saved in one batch during a streaming update (the update " +
+                        "is not atomic then); 0 (default): all changes are saved at once at the end of the update")
+        int save_interval() default 0;
+    }
+
+    private volatile boolean streamingUpdate = false;
+    private volatile int saveInterval = 0;
+
+    @Activate
+    @Modified
+    protected void activate(Configuration configuration) {
+        streamingUpdate = configuration.streaming_update();
+        saveInterval = configuration.save_interval();
+    }
+
     /**
      * Attributes that are not modified on the target.
      * See result of JCR query {@code /jcr:system/jcr:nodeTypes/*[jcr:isMixin=true]/rep:namedPropertyDefinitions//*[jcr:protected=true]}.
      */
-    private static final Collection<String> ignoredMetadataAttributes = new HashSet<>(Arrays.asList("jcr:uuid", "jcr:lastModified",
+    static final Collection<String> ignoredMetadataAttributes = new HashSet<>(Arrays.asList("jcr:uuid", "jcr:lastModified",
             "jcr:lastModifiedBy", "jcr:created", "jcr:createdBy", "jcr:isCheckedOut", "jcr:baseVersion",
             "jcr:versionHistory", "jcr:predecessors", "jcr:mergeFailed", "jcr:mergeFailed", "jcr:configuration",
             "jcr:activity", "jcr:etag", "rep:hold", "rep:retentionPolicy", "rep:versions",
@@ -71,13 +104,13 @@ public class SourceUpdateServiceImpl implements SourceUpdateService {
      * See result of JCR query {@code /jcr:system/jcr:nodeTypes//element(*,nt:childNodeDefinition)[jcr:name]}
      * and {@code /jcr:system/jcr:nodeTypes//rep:namedChildNodeDefinitions}
      */
-    private static final Collection<String> noRemoveNodeNames = new HashSet<>(Arrays.asList("rep:policy", "oak:index", "rep:repoPolicy"));
+    static final Collection<String> noRemoveNodeNames = new HashSet<>(Arrays.asList("rep:policy", "oak:index", "rep:repoPolicy"));
 
     /**
      * Mixins that should not be removed from the target.
      * See result of JCR query {@code /jcr:system/jcr:nodeTypes/*[jcr:isMixin=true]}
      */
-    private static final Collection<String> noRemoveMixins = new HashSet<>(Arrays.asList(
+    static final Collection<String> noRemoveMixins = new HashSet<>(Arrays.asList(
             // various internal Jackrabbit stuff - we rather not touch that.
             "rep:AccessControllable", "rep:RepoAccessControllable", "rep:Impersonatable", "rep:VersionablePaths", "rep:VersionReference", "rep:RetentionManageable", "mix:indexable"
     ));
@@ -89,10 +122,16 @@ public class SourceUpdateServiceImpl implements SourceUpdateService {
      * creating nonexistent nodes along the way, and make node which nodes were present, and which were changed.
      * In a second pass, we recurse through the JCR tree again, delete nodes that were not present and update the lastModified
      * properties of nodes, below which there were changes.
+     * With the streaming update (if configured) the archive is compared directly with the content instead, see
+     * {@link StreamingSourceUpdate}.
      */
     @Override
     public void updateFromZip(@NotNull ResourceResolver resolver, @NotNull InputStream rawZipInputStream, @NotNull String nodePath)
             throws IOException, RepositoryException {
+        if (streamingUpdate) {
+            updateStreaming(resolver, rawZipInputStream, nodePath);
+            return;
+        }
         Session session = Objects.requireNonNull(resolver.adaptTo(Session.class));
         Resource tmpdir = makeTempdir(resolver);
         final String tmpPath = tmpdir.getPath();
@@ -146,6 +185,30 @@ public class SourceUpdateServiceImpl implements SourceUpdateService {
         }
     }
 
+    /**
+     * Updates the subtree while reading the archive without an import into a temporary tree; only the changes are
+     * written and saved in batches according to the configured save interval.
+     */
+    protected void updateStreaming(@NotNull ResourceResolver resolver, @NotNull InputStream rawZipInputStream,
+                                   @NotNull String nodePath)
+            throws IOException, RepositoryException {
+        Session session = Objects.requireNonNull(resolver.adaptTo(Session.class));
+        if (StringUtils.countMatches(nodePath, "/") < 3) {
+            throw new IllegalArgumentException("Suspicious / short root path: " + nodePath);
+        }
+        if (resolver.getResource(nodePath) == null) {
+            throw new IllegalArgumentException("Node does not exist, so we cannot update it: " + nodePath);
+        }
+        try {
+            new StreamingSourceUpdate(session, nodePath, saveInterval).update(rawZipInputStream);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException(e);
+        } finally {
+            rawZipInputStream.close();
+            session.refresh(false); // discard - if it went OK it's already saved.
+        }
+    }
+
     protected Resource makeTempdir(ResourceResolver resolver) throws RepositoryException {
         String path = "/tmp/composum/nodes/SourceUpdateService/" + UUID.randomUUID().toString();
         return ResourceUtil.getOrCreateResource(resolver, path, TYPE_SLING_FOLDER);
@@ -0,0 +1,583 @@
+package com.composum.sling.nodes.update;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.jackrabbit.vault.util.DocViewProperty;
+import org.apache.jackrabbit.vault.util.PlatformNameFormat;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeType;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.composum.sling.core.util.ResourceUtil.PROP_LAST_MODIFIED;
+import static com.composum.sling.core.util.ResourceUtil.PROP_MIXINTYPES;
+import static com.composum.sling.core.util.ResourceUtil.PROP_PRIMARY_TYPE;
+import static com.composum.sling.core.util.ResourceUtil.TYPE_LAST_MODIFIED;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jackrabbit.JcrConstants.JCR_CONTENT;
+import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
+import static org.apache.jackrabbit.JcrConstants.JCR_MIMETYPE;
+import static org.apache.jackrabbit.JcrConstants.NT_FILE;
+import static org.apache.jackrabbit.JcrConstants.NT_RESOURCE;
+import static org.apache.jackrabbit.JcrConstants.NT_UNSTRUCTURED;
+
+/**
+ * Updates a subtree from a ZIP in vault format while streaming through the archive: the docview XML entries, the
+ * files and the binary properties are compared directly with the live tree, so that only the changed properties
+ * and nodes are written. The nodes not contained in the archive are removed, the ordering of the children is
+ * adjusted and the last modification of the changed nodes is set after the whole archive is read.
+ * Binary properties which precede the entry of their node are kept until the end of the archive.
+ * If a save interval is given, the changes are saved in batches during the update.
+ */
+public class StreamingSourceUpdate {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingSourceUpdate.class);
+
+    public static final String JCR_ROOT = "jcr_root";
+    public static final String CONTENT_XML = ".content.xml";
+    public static final String XML_EXT = ".xml";
+    public static final String DIR_EXT = ".dir";
+    public static final String BINARY_EXT = ".binary";
+
+    /** binaries up to this size are buffered in memory for the comparison, larger ones in a temporary file */
+    public static final int BINARY_BUFFER_THRESHOLD = 1024 * 1024;
+
+    /** the number of bytes inspected to detect a docview XML file */
+    public static final int DOCVIEW_SNIFF_SIZE = 2048;
+
+    protected final Session session;
+    protected final String nodePath;
+    protected final int saveInterval;
+    protected final SAXParserFactory parserFactory;
+
+    /** the paths of all nodes contained in the archive */
+    protected final Set<String> presentNodes = new HashSet<>();
+    /** the order of the children declared in the docview XML */
+    protected final Map<String, List<String>> childOrders = new HashMap<>();
+    /** the paths of the changed nodes, used to adjust the last modification */
+    protected final Set<String> changedNodes = new LinkedHashSet<>();
+    /** the binary properties read before their node was declared */
+    protected final Map<String, DeferredFileOutputStream> pendingBinaries = new LinkedHashMap<>();
+    protected int unsavedChanges = 0;
+
+    /**
+     * @param session      the session to write to
+     * @param nodePath     the root of the subtree to update
+     * @param saveInterval the number of changes saved in one batch; 0: all changes are saved once at the end
+     */
+    public StreamingSourceUpdate(@NotNull final Session session, @NotNull final String nodePath, int saveInterval)
+            throws ParserConfigurationException, SAXException {
+        this.session = session;
+        this.nodePath = nodePath;
+        this.saveInterval = saveInterval;
+        parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(false);
+        parserFactory.setValidating(false);
+        parserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        parserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    }
+
+    /**
+     * Reads the archive and updates the subtree; the session is saved if no error occurs.
+     *
+     * @throws IllegalArgumentException if the archive doesn't contain the root node or is not supported
+     */
+    public void update(@NotNull final InputStream zipInputStream) throws IOException, RepositoryException {
+        try {
+            ZipInputStream zipStream = new ZipInputStream(zipInputStream);
+            ZipEntry entry;
+            while ((entry = zipStream.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.startsWith(JCR_ROOT + "/")) {
+                    String path = PlatformNameFormat.getRepositoryPath(name.substring(JCR_ROOT.length()));
+                    updateFromEntry(path, new CloseShieldInputStream(zipStream));
+                    saveIfRequested();
+                }
+                zipStream.closeEntry();
+            }
+            if (!presentNodes.contains(nodePath)) {
+                throw new IllegalArgumentException("Archive does not contain given root path " + nodePath);
+            }
+            updatePendingBinaries();
+            Node root = session.getNode(nodePath);
+            removeAbsentNodes(root);
+            adjustOrdering();
+            adjustLastModified();
+            LOG.info("update of '{}' done: {} nodes changed", nodePath, changedNodes.size());
+            session.save();
+        } finally {
+            for (DeferredFileOutputStream buffer : pendingBinaries.values()) {
+                discard(buffer);
+            }
+            pendingBinaries.clear();
+        }
+    }
+
+    /**
+     * @return the paths of the nodes changed by the update
+     */
+    @NotNull
+    public Set<String> getChangedNodes() {
+        return Collections.unmodifiableSet(changedNodes);
+    }
+
+    protected void updateFromEntry(@NotNull final String path, @NotNull final InputStream content)
+            throws IOException, RepositoryException {
+        if (path.endsWith("/" + CONTENT_XML)) {
+            String xmlNodePath = StringUtils.removeEnd(path, "/" + CONTENT_XML);
+            if (xmlNodePath.endsWith(DIR_EXT)) { // the additional properties of a file
+                xmlNodePath = StringUtils.removeEnd(xmlNodePath, DIR_EXT);
+            }
+            if (isRelevant(xmlNodePath)) {
+                updateFromXml(StringUtils.defaultIfEmpty(xmlNodePath, "/"), content);
+            }
+        } else if (isInScope(path)) {
+            if (path.endsWith(BINARY_EXT)) {
+                updateBinaryProperty(StringUtils.removeEnd(path, BINARY_EXT), content);
+            } else if (path.endsWith(XML_EXT)) {
+                BufferedInputStream buffered = new BufferedInputStream(content);
+                if (isDocView(buffered)) {
+                    updateFromXml(StringUtils.removeEnd(path, XML_EXT), buffered);
+                } else {
+                    updateFile(path, buffered);
+                }
+            } else {
+                updateFile(path, content);
+            }
+        }
+    }
+
+    // node structure
+
+    /**
+     * @return 'true' if the path is the root of the update or a node inside
+     */
+    protected boolean isInScope(@NotNull final String path) {
+        return path.equals(nodePath) || path.startsWith(nodePath + "/");
+    }
+
+    /**
+     * @return 'true' if the content of the path can contain the root of the update or nodes inside
+     */
+    protected boolean isRelevant(@NotNull final String path) {
+        return isInScope(path) || nodePath.startsWith(path + "/") || path.isEmpty();
+    }
+
+    protected void markPresent(@NotNull String path) {
+        while (isInScope(path) && presentNodes.add(path)) {
+            path = StringUtils.substringBeforeLast(path, "/");
+        }
+    }
+
+    protected void markChanged(@NotNull final String path) {
+        changedNodes.add(path);
+        unsavedChanges++;
+    }
+
+    /**
+     * Saves the changes if the save interval is reached; called between the entries to save consistent states only.
+     */
+    protected void saveIfRequested() throws RepositoryException {
+        if (saveInterval > 0 && unsavedChanges >= saveInterval) {
+            LOG.debug("saving {} changes", unsavedChanges);
+            session.save();
+            unsavedChanges = 0;
+        }
+    }
+
+    @NotNull
+    protected Node getOrCreateNode(@NotNull final String path, @NotNull final String primaryType)
+            throws RepositoryException {
+        if (session.nodeExists(path)) {
+            return session.getNode(path);
+        }
+        String parentPath = StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(path, "/"), "/");
+        Node parent = getOrCreateNode(parentPath, NT_UNSTRUCTURED);
+        Node node = parent.addNode(StringUtils.substringAfterLast(path, "/"), primaryType);
+        markChanged(path);
+        return node;
+    }
+
+    /**
+     * Removes all nodes (except the protected ones) which are not contained in the archive.
+     */
+    protected void removeAbsentNodes(@NotNull final Node node) throws RepositoryException {
+        List<Node> children = new ArrayList<>();
+        for (NodeIterator it = node.getNodes(); it.hasNext(); ) {
+            children.add(it.nextNode());
+        }
+        for (Node child : children) {
+            if (presentNodes.contains(child.getPath())) {
+                removeAbsentNodes(child);
+            } else if (!SourceUpdateServiceImpl.noRemoveNodeNames.contains(child.getName())
+                    && !child.getDefinition().isProtected()) {
+                LOG.debug("removing {}", child.getPath());
+                child.remove();
+                markChanged(node.getPath());
+            }
+        }
+    }
+
+    /**
+     * Orders the children of orderable nodes as declared in the docview XML.
+     */
+    protected void adjustOrdering() throws RepositoryException {
+        for (Map.Entry<String, List<String>> entry : childOrders.entrySet()) {
+            if (entry.getValue().size() > 1 && session.nodeExists(entry.getKey())) {
+                Node node = session.getNode(entry.getKey());
+                if (node.getPrimaryNodeType().hasOrderableChildNodes()) {
+                    List<String> declared = new ArrayList<>();
+                    for (String name : entry.getValue()) {
+                        if (node.hasNode(name)) {
+                            declared.add(name);
+                        }
+                    }
+                    List<String> current = new ArrayList<>();
+                    for (NodeIterator it = node.getNodes(); it.hasNext(); ) {
+                        String name = it.nextNode().getName();
+                        if (declared.contains(name)) {
+                            current.add(name);
+                        }
+                    }
+                    if (!current.equals(declared)) {
+                        for (int i = declared.size() - 2; i >= 0; i--) {
+                            node.orderBefore(declared.get(i), declared.get(i + 1));
+                        }
+                        markChanged(node.getPath());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the last modification at the nearest 'mix:lastModified' node of each changed node.
+     */
+    protected void adjustLastModified() throws RepositoryException {
+        Set<String> touched = new HashSet<>();
+        Calendar now = Calendar.getInstance();
+        for (String path : changedNodes) {
+            while (!session.nodeExists(path) && path.lastIndexOf('/') > 0) {
+                path = StringUtils.substringBeforeLast(path, "/");
+            }
+            Node node = session.nodeExists(path) ? session.getNode(path) : null;
+            while (node != null && !node.isNodeType(TYPE_LAST_MODIFIED)) {
+                node = node.getDepth() > 0 ? node.getParent() : null;
+            }
+            if (node != null && touched.add(node.getPath())) {
+                node.setProperty(PROP_LAST_MODIFIED, now);
+            }
+        }
+    }
+
+    // docview XML
+
+    protected boolean isDocView(@NotNull final BufferedInputStream content) throws IOException {
+        content.mark(DOCVIEW_SNIFF_SIZE);
+        byte[] buffer = new byte[DOCVIEW_SNIFF_SIZE];
+        int length = IOUtils.read(content, buffer);
+        content.reset();
+        return new String(buffer, 0, length, UTF_8).contains("<jcr:root");
+    }
+
+    protected void updateFromXml(@NotNull final String path, @NotNull final InputStream content)
+            throws IOException, RepositoryException {
+        try {
+            SAXParser parser = parserFactory.newSAXParser();
+            parser.parse(content, new DocViewHandler(path));
+        } catch (SAXException ex) {
+            if (ex.getException() instanceof RepositoryException) {
+                throw (RepositoryException) ex.getException();
+            }
+            throw new IOException("invalid docview XML for " + path + ": " + ex.getMessage(), ex);
+        } catch (ParserConfigurationException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    protected class DocViewHandler extends DefaultHandler {
+
+        protected final String basePath;
+        protected final Deque<String> paths = new ArrayDeque<>();
+        protected final Deque<Set<String>> childNames = new ArrayDeque<>();
+
+        protected DocViewHandler(@NotNull final String basePath) {
+            this.basePath = basePath;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            String path;
+            if (paths.isEmpty()) {
+                path = basePath;
+            } else {
+                String name = ISO9075.decode(qName);
+                String parentPath = paths.peek();
+                path = "/".equals(parentPath) ? "/" + name : parentPath + "/" + name;
+                if (!childNames.element().add(name)) {
+                    throw new IllegalArgumentException("Equally named children not supported yet: "
+                            + parentPath + " has two " + name);
+                }
+                if (isInScope(parentPath)) {
+                    childOrders.computeIfAbsent(parentPath, k -> new ArrayList<>()).add(name);
+                }
+            }
+            paths.push(path);
+            childNames.push(new HashSet<>());
+            if (isInScope(path)) {
+                markPresent(path);
+                List<DocViewProperty> properties = new ArrayList<>();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    String name = attributes.getQName(i);
+                    if (!name.startsWith("xmlns")) {
+                        properties.add(DocViewProperty.parse(ISO9075.decode(name), attributes.getValue(i)));
+                    }
+                }
+                if (!properties.isEmpty()) { // an element without properties is declared elsewhere
+                    try {
+                        updateNode(path, properties);
+                    } catch (RepositoryException ex) {
+                        throw new SAXException(ex);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            paths.pop();
+            childNames.pop();
+        }
+    }
+
+    /**
+     * Updates type and properties of the node declared in the docview XML; binary properties are updated by their
+     * own entries.
+     */
+    protected void updateNode(@NotNull final String path, @NotNull final List<DocViewProperty> properties)
+            throws RepositoryException {
+        String primaryType = NT_UNSTRUCTURED;
+        Set<String> mixins = new LinkedHashSet<>();
+        Set<String> names = new HashSet<>();
+        for (DocViewProperty property : properties) {
+            names.add(property.name);
+            if (PROP_PRIMARY_TYPE.equals(property.name) && property.values.length > 0) {
+                primaryType = property.values[0];
+            } else if (PROP_MIXINTYPES.equals(property.name)) {
+                for (String mixin : property.values) {
+                    mixins.add(mixin);
+                }
+            }
+        }
+        boolean exists = session.nodeExists(path);
+        Node node = getOrCreateNode(path, primaryType);
+        boolean changed = false;
+        if (exists && !primaryType.equals(node.getPrimaryNodeType().getName())) {
+            node.setPrimaryType(primaryType);
+            changed = true;
+        }
+        for (NodeType mixin : node.getMixinNodeTypes()) {
+            if (!mixins.remove(mixin.getName())
+                    && !SourceUpdateServiceImpl.noRemoveMixins.contains(mixin.getName())) {
+                node.removeMixin(mixin.getName());
+                changed = true;
+            }
+        }
+        for (String mixin : mixins) {
+            node.addMixin(mixin);
+            changed = true;
+        }
+        for (DocViewProperty property : properties) {
+            if (!SourceUpdateServiceImpl.ignoredMetadataAttributes.contains(property.name)
+                    && !PROP_PRIMARY_TYPE.equals(property.name) && property.type != PropertyType.BINARY) {
+                changed = property.apply(node) || changed;
+            }
+        }
+        List<Property> obsolete = new ArrayList<>();
+        for (PropertyIterator it = node.getProperties(); it.hasNext(); ) {
+            Property property = it.nextProperty();
+            String name = property.getName();
+            if (!names.contains(name) && !SourceUpdateServiceImpl.ignoredMetadataAttributes.contains(name)
+                    && !PROP_PRIMARY_TYPE.equals(name) && !JCR_DATA.equals(name)
+                    && !property.getDefinition().isProtected()) {
+                obsolete.add(property);
+            }
+        }
+        for (Property property : obsolete) {
+            property.remove();
+            changed = true;
+        }
+        if (changed) {
+            markChanged(path);
+        }
+    }
+
+    // binaries
+
+    protected void updateFile(@NotNull final String path, @NotNull final InputStream content)
+            throws IOException, RepositoryException {
+        markPresent(path + "/" + JCR_CONTENT);
+        Node file = getOrCreateNode(path, NT_FILE);
+        Node resource;
+        if (file.hasNode(JCR_CONTENT)) {
+            resource = file.getNode(JCR_CONTENT);
+        } else {
+            resource = file.addNode(JCR_CONTENT, NT_RESOURCE);
+            resource.setProperty(JCR_MIMETYPE, StringUtils.defaultString(
+                    URLConnection.guessContentTypeFromName(file.getName()), "application/octet-stream"));
+        }
+        updateBinary(resource, JCR_DATA, content);
+    }
+
+    /**
+     * Updates a binary property; if the node is not available yet (the docview entry of the node follows the
+     * entry of the property) the content is kept until the end of the archive.
+     */
+    protected void updateBinaryProperty(@NotNull final String path, @NotNull final InputStream content)
+            throws IOException, RepositoryException {
+        String parentPath = StringUtils.substringBeforeLast(path, "/");
+        if (session.nodeExists(parentPath) && presentNodes.contains(parentPath)) {
+            updateBinary(session.getNode(parentPath), StringUtils.substringAfterLast(path, "/"), content);
+        } else {
+            DeferredFileOutputStream previous = pendingBinaries.put(path, buffer(content));
+            if (previous != null) {
+                discard(previous);
+            }
+        }
+    }
+
+    /**
+     * Updates the binary properties kept until the end of the archive.
+     *
+     * @throws IllegalArgumentException if the node of a binary property is not contained in the archive
+     */
+    protected void updatePendingBinaries() throws IOException, RepositoryException {
+        for (Map.Entry<String, DeferredFileOutputStream> entry : pendingBinaries.entrySet()) {
+            String path = entry.getKey();
+            String parentPath = StringUtils.substringBeforeLast(path, "/");
+            if (!presentNodes.contains(parentPath) || !session.nodeExists(parentPath)) {
+                throw new IllegalArgumentException("Archive does not contain the node of binary property " + path);
+            }
+            updateBinary(session.getNode(parentPath), StringUtils.substringAfterLast(path, "/"), entry.getValue());
+        }
+    }
+
+    /**
+     * Sets the binary property if the content differs from the current value.
+     */
+    protected void updateBinary(@NotNull final Node node, @NotNull final String name,
+                                @NotNull final InputStream content)
+            throws IOException, RepositoryException {
+        DeferredFileOutputStream buffer = buffer(content);
+        try {
+            updateBinary(node, name, buffer);
+        } finally {
+            discard(buffer);
+        }
+    }
+
+    /**
+     * Sets the binary property if the buffered content differs from the current value.
+     */
+    protected void updateBinary(@NotNull final Node node, @NotNull final String name,
+                                @NotNull final DeferredFileOutputStream buffer)
+            throws IOException, RepositoryException {
+        boolean equal = false;
+        if (node.hasProperty(name)) {
+            Property property = node.getProperty(name);
+            if (property.getType() == PropertyType.BINARY && !property.isMultiple()) {
+                Binary binary = property.getBinary();
+                try {
+                    if (binary.getSize() == buffer.getByteCount()) {
+                        try (InputStream current = binary.getStream();
+                             InputStream update = open(buffer)) {
+                            equal = IOUtils.contentEquals(current, update);
+                        }
+                    }
+                } finally {
+                    binary.dispose();
+                }
+            }
+        }
+        if (!equal) {
+            try (InputStream update = open(buffer)) {
+                Binary binary = session.getValueFactory().createBinary(update);
+                try {
+                    node.setProperty(name, binary);
+                } finally {
+                    binary.dispose();
+                }
+            }
+            markChanged(node.getPath());
+        }
+    }
+
+    /**
+     * Reads the content into a buffer (in memory up to the threshold, in a temporary file above).
+     */
+    @NotNull
+    protected DeferredFileOutputStream buffer(@NotNull final InputStream content) throws IOException {
+        DeferredFileOutputStream buffer = new DeferredFileOutputStream(
+                BINARY_BUFFER_THRESHOLD, "composum-update-", ".tmp", null);
+        try {
+            IOUtils.copy(content, buffer);
+        } finally {
+            buffer.close();
+        }
+        return buffer;
+    }
+
+    protected void discard(@NotNull final DeferredFileOutputStream buffer) throws IOException {
+        if (!buffer.isInMemory()) {
+            Files.deleteIfExists(buffer.getFile().toPath());
+        }
+    }
+
+    @NotNull
+    protected InputStream open(@NotNull final DeferredFileOutputStream buffer) throws IOException {
+        return buffer.isInMemory()
+                ? new ByteArrayInputStream(buffer.getData())
+                : new FileInputStream(buffer.getFile());
+    }
+}
@@ -599,8 +599,11 @@
                             }
                         },
                         _.bind(function (data, msg, xhr) {
+                            var nextOffset = parseInt(xhr.getResponseHeader('X-Output-Offset'));
                             this.logAppend(data);
-                            this.logOffset += parseInt(xhr.getResponseHeader('Content-Length'));
+                            this.logOffset = isNaN(nextOffset)
+                                ? this.logOffset + parseInt(xhr.getResponseHeader('Content-Length'))
+                                : nextOffset;
                             if (_.isFunction(callback)) {
                                 callback.call(this);
                             }
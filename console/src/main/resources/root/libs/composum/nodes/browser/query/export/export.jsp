@@ -7,6 +7,8 @@
     <form class="query-export-form" method="POST"
           action="/bin/cpm/nodes/node.query${cpn:value(strategy.selectors)}.bin">
         <input type="hidden" name="export" value="${cpn:value(strategy.exportType)}"/>
+        <input type="hidden" name="format" value="${cpn:value(strategy.format)}"/>
+        <input type="hidden" name="background" value="${strategy.background}"/>
         <input type="hidden" name="query" value="${cpn:value(strategy.query)}"/>
         <input type="hidden" name="filter" value="${cpn:value(strategy.filter)}"/>
         <input type="hidden" name="separator" value="${cpn:value(strategy.separator)}"/>
@@ -373,9 +373,11 @@
                             }
                         },
                         _.bind(function (data, msg, xhr) {
-                            var contentLength = parseInt(xhr.getResponseHeader('Content-Length'));
+                            var nextOffset = parseInt(xhr.getResponseHeader('X-Output-Offset'));
                             this.logAppend(data);
-                            this.logOffset += contentLength;
+                            this.logOffset = isNaN(nextOffset)
+                                ? this.logOffset + parseInt(xhr.getResponseHeader('Content-Length'))
+                                : nextOffset;
                             if (_.isFunction(callback)) {
                                 callback.call(this);
                             }
@@ -0,0 +1,186 @@
+package com.composum.sling.nodes.mount.remote;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+/**
+ * Tests the {@link RemoteCache} and its conditional revalidation by the {@link RemoteReader}.
+ */
+public class RemoteCacheTest {
+
+    public static final String PATH = "/content/test";
+
+    public static final String LAST_MODIFIED = "Sat, 29 Feb 2020 12:00:00 GMT";
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    protected RemoteProvider provider;
+    protected RemoteResolver resolver;
+    protected RemoteReader reader;
+
+    protected final List<HttpUriRequest> requests = new ArrayList<>();
+    protected final Deque<HttpResponse> responses = new ArrayDeque<>();
+
+    @Before
+    public void setup() throws Exception {
+        provider = mock(RemoteProvider.class);
+        provider.remoteCache = new RemoteCache(100, 60);
+        provider.remoteClient = mock(RemoteClient.class);
+        provider.prefetchDepth = 1;
+        when(provider.remoteClient.getHttpUrl(anyString()))
+                .thenAnswer(invocation -> "http://remote.example.com" + invocation.getArgument(0));
+        when(provider.remoteClient.buildHttpGet(anyString()))
+                .thenAnswer(invocation -> new HttpGet((String) invocation.getArgument(0)));
+        when(provider.remoteClient.execute(any(), any())).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(1));
+            return responses.removeFirst();
+        });
+        resolver = mock(RemoteResolver.class);
+        reader = new RemoteReader(provider);
+    }
+
+    @Test
+    public void validEntryIsUsedWithoutRequest() {
+        responses.add(ok("{\"title\":\"first\",\"child\":{\"title\":\"child\"}}", "\"v1\"", LAST_MODIFIED));
+        RemoteResource resource = load();
+        ec.checkThat(resource.getValueMap().get("title", String.class), is("first"));
+
+        resource = load();
+        ec.checkThat(requests.size(), is(1));
+        ec.checkThat(resource.getValueMap().get("title", String.class), is("first"));
+        ec.checkThat(resource.children.keySet().toString(), is("[child]"));
+        ec.checkThat(resource.children.get("child").getValueMap().get("title", String.class), is("child"));
+        ec.checkThat(provider.remoteCache.getStatistics().contains("hits: 1, revalidated: 0, misses: 1"), is(true));
+    }
+
+    @Test
+    public void notModifiedReusesTheEntry() {
+        responses.add(ok("{\"title\":\"first\"}", "\"v1\"", LAST_MODIFIED));
+        load();
+        RemoteCache.Entry entry = expire();
+
+        responses.add(new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified"));
+        RemoteResource resource = load();
+        ec.checkThat(requests.size(), is(2));
+        HttpUriRequest conditional = requests.get(1);
+        ec.checkThat(conditional.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(), is("\"v1\""));
+        ec.checkThat(conditional.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE).getValue(), is(LAST_MODIFIED));
+        ec.checkThat(resource.getValueMap().get("title", String.class), is("first"));
+        ec.checkThat(provider.remoteCache.get(PATH) == entry, is(true));
+        ec.checkThat(provider.remoteCache.isValid(entry), is(true));
+        ec.checkThat(provider.remoteCache.getStatistics().contains("revalidated: 1"), is(true));
+
+        load(); // valid again after the revalidation
+        ec.checkThat(requests.size(), is(2));
+    }
+
+    @Test
+    public void modifiedReplacesTheEntry() {
+        responses.add(ok("{\"title\":\"first\"}", "\"v1\"", null));
+        load();
+        expire();
+
+        responses.add(ok("{\"title\":\"second\"}", "\"v2\"", null));
+        RemoteResource resource = load();
+        ec.checkThat(requests.get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(), is("\"v1\""));
+        ec.checkThat(requests.get(1).getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE), nullValue());
+        ec.checkThat(resource.getValueMap().get("title", String.class), is("second"));
+        RemoteCache.Entry entry = provider.remoteCache.get(PATH);
+        assertNotNull(entry);
+        ec.checkThat(entry.getETag(), is("\"v2\""));
+        ec.checkThat(provider.remoteCache.isValid(entry), is(true));
+    }
+
+    @Test
+    public void entryWithoutValidatorsIsLoadedUnconditionally() {
+        responses.add(ok("{\"title\":\"first\"}", null, null));
+        load();
+        RemoteCache.Entry entry = expire();
+        ec.checkThat(entry.isRevalidatable(), is(false));
+
+        responses.add(ok("{\"title\":\"second\"}", null, null));
+        RemoteResource resource = load();
+        ec.checkThat(requests.get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH), nullValue());
+        ec.checkThat(requests.get(1).getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE), nullValue());
+        ec.checkThat(resource.getValueMap().get("title", String.class), is("second"));
+    }
+
+    @Test
+    public void invalidationDropsResourceDescendantsAndParent() {
+        RemoteCache cache = new RemoteCache(100, 60);
+        for (String path : new String[]{"/content", PATH, PATH + "/child", PATH + "/child/grandchild",
+                "/content/testing", "/content/other"}) {
+            cache.put(path, null, null, null);
+        }
+        cache.invalidate(PATH);
+        ec.checkThat(cache.get("/content"), nullValue());
+        ec.checkThat(cache.get(PATH), nullValue());
+        ec.checkThat(cache.get(PATH + "/child"), nullValue());
+        ec.checkThat(cache.get(PATH + "/child/grandchild"), nullValue());
+        ec.checkThat(cache.get("/content/testing"), notNullValue());
+        ec.checkThat(cache.get("/content/other"), notNullValue());
+    }
+
+    @Test
+    public void disabledCacheStoresNothing() {
+        RemoteCache cache = new RemoteCache(100, 0);
+        cache.put(PATH, null, "\"v1\"", null);
+        ec.checkThat(cache.isEnabled(), is(false));
+        ec.checkThat(cache.get(PATH), nullValue());
+    }
+
+    protected RemoteResource load() {
+        RemoteResource resource = reader.loadResource(new RemoteResource(resolver, PATH), false);
+        assertNotNull(resource);
+        return resource;
+    }
+
+    /**
+     * @return the cached entry of the test resource after the end of its time to live
+     */
+    protected RemoteCache.Entry expire() {
+        RemoteCache.Entry entry = provider.remoteCache.get(PATH);
+        assertNotNull(entry);
+        entry.validated = 0L;
+        ec.checkThat(provider.remoteCache.isValid(entry), is(false));
+        return entry;
+    }
+
+    protected HttpResponse ok(String json, String eTag, String lastModified) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new StringEntity(json, ContentType.create("application/json", StandardCharsets.UTF_8)));
+        if (eTag != null) {
+            response.addHeader(HttpHeaders.ETAG, eTag);
+        }
+        if (lastModified != null) {
+            response.addHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+        return response;
+    }
+}
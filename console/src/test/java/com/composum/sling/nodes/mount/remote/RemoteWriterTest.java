@@ -0,0 +1,242 @@
+package com.composum.sling.nodes.mount.remote;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.sling.api.wrappers.ModifiableValueMapDecorator;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+/**
+ * Tests the batching of the modifications and the parallel uploads of the {@link RemoteWriter}.
+ */
+public class RemoteWriterTest {
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    /** a POST request recorded instead of the transfer */
+    protected static class Post {
+
+        public final String path;
+        public final Map<String, List<String>> parameters = new LinkedHashMap<>();
+        public final List<String> parts = new ArrayList<>();
+
+        public Post(@Nullable final String path, @Nullable final Map<String, ContentBody> parts,
+                    @NotNull final List<NameValuePair> parameters) {
+            this.path = path;
+            if (parts != null) {
+                this.parts.addAll(parts.keySet());
+            }
+            for (NameValuePair parameter : parameters) {
+                this.parameters.computeIfAbsent(parameter.getName(), key -> new ArrayList<>())
+                        .add(parameter.getValue());
+            }
+        }
+    }
+
+    protected RemoteProvider provider;
+    protected RemoteResolver resolver;
+    protected RemoteWriter writer;
+
+    protected final List<Post> posts = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setup() {
+        provider = mock(RemoteProvider.class);
+        provider.commitBatchSize = 10;
+        resolver = mock(RemoteResolver.class);
+        writer = new RemoteWriter(provider) {
+
+            @Override
+            public boolean postForm(@NotNull final ResourceChange change, @Nullable final String path,
+                                    @NotNull final Parameters parameters) {
+                posts.add(new Post(path, null, parameters));
+                change.status = 200;
+                return !parameters.isEmpty();
+            }
+
+            @Override
+            public boolean postMultipart(@NotNull final ResourceChange change, @Nullable final String path,
+                                         @NotNull final Map<String, ContentBody> parts,
+                                         @NotNull final Parameters parameters) {
+                posts.add(new Post(path, parts, parameters));
+                change.status = 201;
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void modificationsAreCombinedAtTheCommonParent() throws IOException {
+        RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+        RemoteResource first = modified("/content/site/a", values("title", "old"), values("title", "A"));
+        RemoteResource second = modified("/content/site/b/c", values(), values("title", "C", "count", 3L));
+        changes.addModify(first);
+        changes.addModify(second);
+        List<RemoteWriter.ResourceChange> committed = new ArrayList<>(changes.values());
+
+        ec.checkThat(writer.commitChanges(changes), is(true));
+        assertEquals(1, posts.size());
+        Post post = posts.get(0);
+        ec.checkThat(post.path, is("/content/site"));
+        ec.checkThat(post.parameters.get("./a/title"), is(list("A")));
+        ec.checkThat(post.parameters.get("./b/c/title"), is(list("C")));
+        ec.checkThat(post.parameters.get("./b/c/count"), is(list("3")));
+        ec.checkThat(post.parameters.get("./b/c/count@TypeHint"), is(list("Long")));
+        for (RemoteWriter.ResourceChange change : committed) {
+            ec.checkThat(change.getStatus(), is(200));
+        }
+        ec.checkThat(changes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void theCommonParentCanBeAChangedResource() throws IOException {
+        RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+        changes.addModify(modified("/content/site", values("title", "old"), values("title", "Site")));
+        changes.addModify(modified("/content/site/page", values(), values("title", "Page")));
+        changes.addModify(modified("/content/sitemap", values(), values("title", "Map")));
+        writer.commitChanges(changes);
+        assertEquals(1, posts.size());
+        Post post = posts.get(0);
+        ec.checkThat(post.path, is("/content"));
+        ec.checkThat(post.parameters.get("./site/title"), is(list("Site")));
+        ec.checkThat(post.parameters.get("./site/page/title"), is(list("Page")));
+        ec.checkThat(post.parameters.get("./sitemap/title"), is(list("Map")));
+
+        posts.clear();
+        changes.addModify(modified("/content/site", values("title", "old"), values("title", "Site")));
+        changes.addModify(modified("/content/site/page", values(), values("title", "Page")));
+        writer.commitChanges(changes);
+        assertEquals(1, posts.size());
+        ec.checkThat(posts.get(0).path, is("/content/site"));
+        ec.checkThat(posts.get(0).parameters.get("./title"), is(list("Site")));
+        ec.checkThat(posts.get(0).parameters.get("./page/title"), is(list("Page")));
+    }
+
+    @Test
+    public void theRootCanBeTheCommonParent() throws IOException {
+        RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+        changes.addModify(modified("/apps/x", values(), values("title", "X")));
+        changes.addModify(modified("/content/y", values(), values("title", "Y")));
+        writer.commitChanges(changes);
+        assertEquals(1, posts.size());
+        ec.checkThat(posts.get(0).path, is("/"));
+        ec.checkThat(posts.get(0).parameters.get("./apps/x/title"), is(list("X")));
+        ec.checkThat(posts.get(0).parameters.get("./content/y/title"), is(list("Y")));
+    }
+
+    @Test
+    public void removedPropertiesAndBinariesAreRelative() throws IOException {
+        RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+        Map<String, Object> changed = values("title", null, "tags", new String[]{"a", "b"});
+        changed.put("data", new ByteArrayInputStream("data".getBytes(StandardCharsets.UTF_8)));
+        changes.addModify(modified("/content/site/a", values("title", "old", "removed", "x"), changed));
+        changes.addModify(modified("/content/site/b", values(), values("title", "B")));
+        writer.commitChanges(changes);
+        assertEquals(1, posts.size());
+        Post post = posts.get(0);
+        ec.checkThat(post.path, is("/content/site"));
+        ec.checkThat(post.parts, is(list("./a/data")));
+        ec.checkThat(post.parameters.get("./a/title@Delete"), is(list("null")));
+        ec.checkThat(post.parameters.get("./a/removed@Delete"), is(list("removed")));
+        ec.checkThat(post.parameters.get("./a/tags"), is(list("a", "b")));
+        ec.checkThat(post.parameters.get("./a/tags@TypeHint"), is(list("String[]")));
+        ec.checkThat(post.parameters.get("./b/title"), is(list("B")));
+    }
+
+    @Test
+    public void batchesAreLimitedAndSplitByOtherChanges() throws IOException {
+        provider.commitBatchSize = 2;
+        RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+        changes.addModify(modified("/content/a", values(), values("title", "A")));
+        changes.addModify(modified("/content/b", values(), values("title", "B")));
+        changes.addModify(modified("/content/c", values(), values("title", "C")));
+        changes.addDelete(new RemoteResource(resolver, "/content/d"));
+        changes.addModify(modified("/content/e", values(), values("title", "E")));
+        changes.addModify(modified("/content/f", values(), values("title", "F")));
+        writer.commitChanges(changes);
+
+        assertEquals(4, posts.size());
+        ec.checkThat(posts.get(0).path, is("/content"));
+        ec.checkThat(new ArrayList<>(posts.get(0).parameters.keySet()), is(list("./a/title", "./b/title")));
+        ec.checkThat(posts.get(1).path, is((String) null)); // a single modification is posted to the resource
+        ec.checkThat(new ArrayList<>(posts.get(1).parameters.keySet()), is(list("title")));
+        ec.checkThat(posts.get(2).parameters.get(":operation"), is(list("delete")));
+        ec.checkThat(posts.get(3).path, is("/content"));
+        ec.checkThat(new ArrayList<>(posts.get(3).parameters.keySet()), is(list("./e/title", "./f/title")));
+    }
+
+    @Test
+    public void uploadsAreTransferredInParallel() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        provider.commitPool = pool;
+        try {
+            RemoteWriter.ChangeSet changes = new RemoteWriter.ChangeSet();
+            for (String name : Arrays.asList("a.txt", "b.txt", "c.txt")) {
+                changes.addUpload(new RemoteResource(resolver, "/content/files/" + name),
+                        new ByteArrayInputStream(name.getBytes(StandardCharsets.UTF_8)),
+                        name, "text/plain", "UTF-8");
+            }
+            List<RemoteWriter.ResourceChange> committed = new ArrayList<>(changes.values());
+            ec.checkThat(writer.commitChanges(changes), is(true));
+            assertEquals(3, posts.size());
+            List<String> parts = new ArrayList<>();
+            for (Post post : posts) {
+                ec.checkThat(post.path, is("/content/files"));
+                parts.addAll(post.parts);
+            }
+            Collections.sort(parts);
+            ec.checkThat(parts, is(list("a.txt", "b.txt", "c.txt")));
+            for (RemoteWriter.ResourceChange change : committed) {
+                ec.checkThat(change.getStatus(), is(201));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param origin   the values loaded from the remote system
+     * @param modified the values after the modification (absent keys are removed properties)
+     */
+    protected RemoteResource modified(String path, Map<String, Object> origin, Map<String, Object> modified) {
+        RemoteResource resource = new RemoteResource(resolver, path);
+        resource.values = new ValueMapDecorator(origin);
+        resource.modifiedValues = new ModifiableValueMapDecorator(modified);
+        return resource;
+    }
+
+    protected Map<String, Object> values(Object... keyValues) {
+        Map<String, Object> values = new TreeMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return values;
+    }
+
+    protected List<String> list(String... values) {
+        return Arrays.asList(values);
+    }
+}
@@ -0,0 +1,155 @@
+package com.composum.sling.nodes.query;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+import com.composum.sling.core.filter.ResourceFilter;
+import com.composum.sling.core.mapping.MappingRules;
+
+/**
+ * Tests {@link QueryExporter}.
+ */
+public class QueryExporterTest {
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    @Test
+    public void csvQuotingAndSeparator() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.csv, ",",
+                new String[]{"name;Name", "text;The \"Text\""});
+        String result = export(exporter, item("/content/a", "text", "a, \"quoted\" text"),
+                item("/content/b", "text", "line 1\nline 2"),
+                item("/content/c"));
+        ec.checkThat(result, is("\"Name\",\"The \"\"Text\"\"\"\n"
+                + "\"a\",\"a, \"\"quoted\"\" text\"\n"
+                + "\"b\",\"line 1\nline 2\"\n"
+                + "\"c\",\"\"\n"));
+    }
+
+    @Test
+    public void csvDefaultSeparator() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.csv, "", new String[]{"name", "path"});
+        ec.checkThat(export(exporter, item("/content/a")), is("\"name\";\"path\"\n\"a\";\"/content/a\"\n"));
+    }
+
+    @Test
+    public void tsvReplacesSeparatorsInValues() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.tsv, ",",
+                new String[]{"name;Name", "text;Text"});
+        String result = export(exporter, item("/content/a", "text", "tab\there\r\nnext \"line\""));
+        ec.checkThat(result, is("Name\tText\na\ttab here  next \"line\"\n"));
+    }
+
+    @Test
+    public void multiValueAndDateValues() throws IOException {
+        Calendar date = new GregorianCalendar(2020, Calendar.FEBRUARY, 29, 13, 14, 15);
+        Calendar other = new GregorianCalendar(2021, Calendar.DECEMBER, 31, 23, 59, 59);
+        String formatted = new SimpleDateFormat(MappingRules.MAP_DATE_FORMAT).format(date.getTime());
+        String otherFormatted = new SimpleDateFormat(MappingRules.MAP_DATE_FORMAT).format(other.getTime());
+        Resource item = item("/content/a",
+                "tags", new String[]{"one", "two"},
+                "date", date,
+                "dates", new Calendar[]{date, other},
+                "data", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        String[] properties = new String[]{"tags", "date", "dates", "data"};
+
+        ec.checkThat(export(new QueryExporter(QueryExporter.Format.csv, null, properties), item),
+                is("\"tags\";\"date\";\"dates\";\"data\"\n"
+                        + "\"one,two\";\"" + formatted + "\";\"" + formatted + "," + otherFormatted + "\";\"\"\n"));
+        ec.checkThat(export(new QueryExporter(QueryExporter.Format.jsonl, null, properties), item),
+                is("{\"tags\":[\"one\",\"two\"],\"date\":\"" + formatted + "\",\"dates\":[\""
+                        + formatted + "\",\"" + otherFormatted + "\"],\"data\":null}\n"));
+    }
+
+    @Test
+    public void jsonLinesValueTypes() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.jsonl, null,
+                new String[]{"path;Path", "count", "flag", "missing"});
+        String result = export(exporter, item("/content/a", "count", 42L, "flag", true),
+                item("/content/b", "count", 1.5));
+        ec.checkThat(result, is("{\"path\":\"/content/a\",\"count\":42,\"flag\":true,\"missing\":null}\n"
+                + "{\"path\":\"/content/b\",\"count\":1.5,\"flag\":null,\"missing\":null}\n"));
+    }
+
+    @Test
+    public void defaultProperties() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.tsv, null, null);
+        String result = export(exporter, item("/content/a",
+                "jcr:title", "A", "jcr:primaryType", "nt:unstructured", "sling:resourceType", "test/a"));
+        ec.checkThat(result, is("Name\tPath\tTitle\tPrimary Type\tResource Type\n"
+                + "a\t/content/a\tA\tnt:unstructured\ttest/a\n"));
+        ec.checkThat(new QueryExporter(QueryExporter.Format.csv, null, new String[0]).keys,
+                is(new String[]{"name", "path", "jcr:title", "jcr:primaryType", "sling:resourceType"}));
+    }
+
+    @Test
+    public void keyAndLabelParsing() {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.csv, null,
+                new String[]{"jcr:title", " name ;Name", "text;label;with;separators", "empty;"});
+        ec.checkThat(exporter.keys, is(new String[]{"jcr:title", "name", "text", "empty"}));
+        ec.checkThat(exporter.labels, is(new String[]{"jcr:title", "Name", "label;with;separators", "empty"}));
+    }
+
+    @Test
+    public void filteredItemsInBatches() throws IOException {
+        QueryExporter exporter = new QueryExporter(QueryExporter.Format.tsv, null, new String[]{"name"});
+        List<Resource> items = new ArrayList<>();
+        for (int i = 0; i < 2 * QueryExporter.BATCH_SIZE + 10; i++) {
+            items.add(item("/content/item-" + i));
+        }
+        items.add(null);
+        ResourceFilter filter = mock(ResourceFilter.class);
+        when(filter.accept(any())).thenAnswer(invocation ->
+                !((Resource) invocation.getArgument(0)).getName().endsWith("7"));
+        StringWriter writer = new StringWriter();
+        long count = exporter.export(writer, items.iterator(), filter);
+        String[] lines = writer.toString().split("\n");
+        ec.checkThat(count, is((long) (2 * QueryExporter.BATCH_SIZE + 10) - 101));
+        ec.checkThat(lines.length, is((int) count + 1));
+        ec.checkThat(lines[1], is("item-0"));
+        ec.checkThat(lines[lines.length - 1], is("item-1009"));
+    }
+
+    protected String export(QueryExporter exporter, Resource... items) throws IOException {
+        StringWriter writer = new StringWriter();
+        Iterator<Resource> iterator = Arrays.asList(items).iterator();
+        ec.checkThat(exporter.export(writer, iterator, null), is((long) items.length));
+        return writer.toString();
+    }
+
+    protected Resource item(String path, Object... properties) {
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < properties.length; i += 2) {
+            values.put((String) properties[i], properties[i + 1]);
+        }
+        ValueMap valueMap = new ValueMapDecorator(values);
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(resource.getValueMap()).thenReturn(valueMap);
+        return resource;
+    }
+}
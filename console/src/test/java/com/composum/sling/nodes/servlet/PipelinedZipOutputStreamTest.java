@@ -0,0 +1,191 @@
+package com.composum.sling.nodes.servlet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+/**
+ * Tests {@link PipelinedZipOutputStream}.
+ */
+public class PipelinedZipOutputStreamTest {
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("empty.txt", new byte[0]);
+        entries.put("small.txt", "some text".getBytes(StandardCharsets.UTF_8));
+        entries.put("folder/", null);
+        entries.put("folder/chunked.bin", random(3 * PipelinedZipOutputStream.CHUNK_SIZE + 17, 1));
+        entries.put("folder/large.bin", random(PipelinedZipOutputStream.QUEUE_SIZE
+                * PipelinedZipOutputStream.CHUNK_SIZE + 1, 2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PipelinedZipOutputStream zip = new PipelinedZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                byte[] content = entry.getValue();
+                if (content != null && content.length > 0) {
+                    zip.write(content[0]); // single bytes and arrays are mixed in one entry
+                    zip.write(content, 1, content.length - 1);
+                }
+                zip.closeEntry();
+            }
+        }
+
+        Map<String, byte[]> read = unzip(out.toByteArray());
+        ec.checkThat(new ArrayList<>(read.keySet()), is(new ArrayList<>(entries.keySet())));
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] expected = entry.getValue() != null ? entry.getValue() : new byte[0];
+            ec.checkThat(entry.getKey(), read.get(entry.getKey()), is(expected));
+        }
+    }
+
+    @Test
+    public void duplicateEntry() throws Exception {
+        PipelinedZipOutputStream zip = new PipelinedZipOutputStream(new ByteArrayOutputStream());
+        try {
+            zip.putNextEntry(new ZipEntry("entry.txt"));
+            zip.closeEntry();
+            try {
+                zip.putNextEntry(new ZipEntry("entry.txt"));
+                fail("duplicate entry not detected");
+            } catch (ZipException expected) {
+                ec.checkThat(expected.getMessage(), is("duplicate entry: entry.txt"));
+            }
+            // the stream is still usable after the rejected entry
+            zip.putNextEntry(new ZipEntry("other.txt"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void writerFailureIsThrownByTheNextCall() throws Exception {
+        PipelinedZipOutputStream zip = new PipelinedZipOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("output broken");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("output broken");
+            }
+        });
+        IOException failure = null;
+        byte[] content = random(PipelinedZipOutputStream.CHUNK_SIZE, 3);
+        try {
+            for (int i = 0; i < 10 * PipelinedZipOutputStream.QUEUE_SIZE && failure == null; i++) {
+                zip.putNextEntry(new ZipEntry("entry-" + i));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        } finally {
+            zip.abort();
+        }
+        assertNotNull("writer failure not reported to the producer", failure);
+        ec.checkThat(failure.getMessage(), is("output broken"));
+        zip.writer.join(5000);
+        assertFalse("writer still running", zip.writer.isAlive());
+    }
+
+    @Test
+    public void abortMidEntry() throws Exception {
+        PipelinedZipOutputStream zip = new PipelinedZipOutputStream(new ByteArrayOutputStream());
+        zip.putNextEntry(new ZipEntry("entry.bin"));
+        zip.write(random(2 * PipelinedZipOutputStream.CHUNK_SIZE + 1, 4));
+        zip.abort();
+        zip.writer.join(5000);
+        assertFalse("writer still running", zip.writer.isAlive());
+        try {
+            zip.closeEntry();
+            fail("stream not closed by abort");
+        } catch (IOException expected) {
+            ec.checkThat(expected.getMessage(), is("stream closed"));
+        }
+        zip.close(); // no-op after abort
+    }
+
+    @Test
+    public void levelIsAppliedPerEntry() throws Exception {
+        byte[] content = new byte[4 * PipelinedZipOutputStream.CHUNK_SIZE]; // well compressible
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PipelinedZipOutputStream zip = new PipelinedZipOutputStream(out)) {
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            zip.putNextEntry(new ZipEntry("stored.bin"));
+            zip.write(content);
+            zip.closeEntry();
+            zip.setLevel(Deflater.BEST_COMPRESSION);
+            zip.putNextEntry(new ZipEntry("compressed.bin"));
+            zip.write(content);
+            zip.closeEntry();
+        }
+
+        List<ZipEntry> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            byte[] buffer = new byte[8192];
+            while ((entry = zip.getNextEntry()) != null) {
+                while (zip.read(buffer) >= 0) {
+                    // the sizes are available after reading the content
+                }
+                entries.add(entry);
+            }
+        }
+        assertEquals(2, entries.size());
+        ec.checkThat(entries.get(0).getSize(), is((long) content.length));
+        ec.checkThat(entries.get(0).getCompressedSize() >= content.length, is(true));
+        ec.checkThat(entries.get(1).getSize(), is((long) content.length));
+        ec.checkThat(entries.get(1).getCompressedSize() < content.length / 100, is(true));
+    }
+
+    protected Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            byte[] buffer = new byte[8192];
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                int count;
+                while ((count = zip.read(buffer)) >= 0) {
+                    content.write(buffer, 0, count);
+                }
+                entries.put(entry.getName(), content.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    protected byte[] random(int size, long seed) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,134 @@
+package com.composum.sling.nodes.tools;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+import com.composum.sling.nodes.tools.RuntimeFileServlet.LogfileFilter;
+
+/**
+ * Tests the {@link LogfileSearch} and the extension of its line index for a growing logfile.
+ */
+public class LogfileSearchTest {
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    protected ExecutorService executor;
+    protected File file;
+
+    @Before
+    public void setup() throws IOException {
+        executor = Executors.newFixedThreadPool(4);
+        file = File.createTempFile("logfile", ".log");
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+        LogfileSearch.INDEXES.remove(file.getAbsolutePath());
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    public void grownFileExtendsTheIndex() throws IOException {
+        append(0, 3000, "");
+        append("partial");
+        LogfileSearch.LineIndex index = LogfileSearch.getIndex(file);
+        ec.checkThat(index.getLineCount(), is(3001L));
+        ec.checkThat(lines(3001, 1), is("partial\n"));
+
+        append(" line\n");
+        append(3001, 5000, "");
+        LogfileSearch.LineIndex extended = LogfileSearch.getIndex(file);
+        ec.checkThat(extended, not(sameInstance(index)));
+        ec.checkThat(extended.getLineCount(), is(5000L));
+        ec.checkThat(extended.lines.length > index.lines.length, is(true));
+        ec.checkThat(lines(3001, 2), is("partial line\nline 3001 \n"));
+        ec.checkThat(lines(4500, 1), is("line 4499 \n"));
+        ec.checkThat(LogfileSearch.getIndex(file), sameInstance(extended));
+    }
+
+    @Test
+    public void replacedFileIsIndexedAgain() throws IOException {
+        append(0, 2000, "");
+        LogfileSearch.getIndex(file);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 3000; i++) {
+                writer.write("rotated " + i + "\n");
+            }
+        }
+        ec.checkThat(LogfileSearch.getIndex(file).getLineCount(), is(3000L));
+        ec.checkThat(lines(1500, 1), is("rotated 1499\n"));
+    }
+
+    @Test
+    public void searchWithAndWithoutIndex() throws IOException {
+        // more than two chunks with long lines so that the chunks are aligned with indexed lines
+        final String padding = new String(new char[200]).replace('\0', '.');
+        final int count = (int) (2.5 * LogfileSearch.CHUNK_SIZE / (padding.length() + 12));
+        append(0, count, padding);
+        final LogfileSearch search = new LogfileSearch(executor,
+                new LogfileFilter(Pattern.compile("^line \\d*77777 "), 1, 1));
+
+        final String built = search(search, 0);
+        ec.checkThat(built.startsWith("==== " + file.getName() + " ====\n77777-line 77776 "), is(true));
+        ec.checkThat(built.contains("\n77778:line 77777 "), is(true));
+        ec.checkThat(LogfileSearch.getIndex(file).getLineCount(), is((long) count));
+
+        ec.checkThat(search(search, 0), is(built)); // using the index
+        append(count, count + 1, padding);
+        ec.checkThat(search(search, 0), is(built)); // using the extended index
+        ec.checkThat(LogfileSearch.getIndex(file).getLineCount(), is((long) count + 1));
+
+        final String limited = search(search, 1);
+        ec.checkThat(limited.split("\n").length, is(4));
+        ec.checkThat(built.startsWith(limited), is(true));
+    }
+
+    protected String search(LogfileSearch search, long limit) throws IOException {
+        StringWriter result = new StringWriter();
+        search.search(new PrintWriter(result), Collections.singletonList(file), limit);
+        return result.toString();
+    }
+
+    protected String lines(long from, long count) throws IOException {
+        StringWriter result = new StringWriter();
+        LogfileSearch.lines(new PrintWriter(result), file, from, count);
+        return result.toString();
+    }
+
+    protected void append(int from, int to, String padding) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append("line ").append(i).append(' ').append(padding).append('\n');
+        }
+        append(text.toString());
+    }
+
+    protected void append(String text) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+}
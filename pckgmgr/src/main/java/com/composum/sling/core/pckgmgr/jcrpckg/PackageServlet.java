@@ -10,9 +10,12 @@ import com.composum.sling.core.concurrent.JobMonitor;
 import com.composum.sling.core.concurrent.JobUtil;
 import com.composum.sling.core.pckgmgr.Packages;
 import com.composum.sling.core.pckgmgr.Packages.Mode;
+import com.composum.sling.core.pckgmgr.jcrpckg.service.PackageIndex;
 import com.composum.sling.core.pckgmgr.jcrpckg.service.impl.PackageJobExecutor;
 import com.composum.sling.core.pckgmgr.jcrpckg.tree.JcrPackageItem;
 import com.composum.sling.core.pckgmgr.jcrpckg.tree.TreeNode;
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageCoverage;
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
 import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageProgressTracker;
 import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageUtil;
 import com.composum.sling.core.pckgmgr.regpckg.service.PackageRegistries;
@@ -24,6 +27,7 @@ import com.composum.sling.core.servlet.AbstractServiceServlet;
 import com.composum.sling.core.servlet.ServletOperation;
 import com.composum.sling.core.servlet.ServletOperationSet;
 import com.composum.sling.core.servlet.Status;
+import com.composum.sling.core.util.HttpUtil;
 import com.composum.sling.core.util.JsonUtil;
 import com.composum.sling.core.util.RequestUtil;
 import com.composum.sling.core.util.ResponseUtil;
@@ -52,7 +56,6 @@ import org.apache.jackrabbit.vault.packaging.NoSuchPackageException;
 import org.apache.jackrabbit.vault.packaging.PackageException;
 import org.apache.jackrabbit.vault.packaging.PackageExistsException;
 import org.apache.jackrabbit.vault.packaging.PackageId;
-import org.apache.jackrabbit.vault.packaging.PackageProperties;
 import org.apache.jackrabbit.vault.packaging.Packaging;
 import org.apache.jackrabbit.vault.packaging.VaultPackage;
 import org.apache.jackrabbit.vault.packaging.registry.PackageRegistry;
@@ -72,6 +75,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
@@ -89,29 +93,38 @@ import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
-import javax.jcr.query.Query;
 import javax.servlet.Servlet;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The servlet to provide download and upload of content packages and package definitions.
@@ -146,8 +159,15 @@ public class PackageServlet extends AbstractServiceServlet {
 
     private volatile long jobIdleTimeout;
 
+    private volatile long coverageCacheTime;
+
+    /** the pool for the parallel traversal of the filter roots on coverage requests */
+    private ExecutorService coveragePool;
+
     public static final String ZIP_CONTENT_TYPE = "application/zip";
 
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+
     public static final boolean AUTO_SAVE = true;
 
     // service references
@@ -164,6 +184,9 @@ public class PackageServlet extends AbstractServiceServlet {
     @Reference
     private Packaging packaging;
 
+    @Reference
+    private PackageIndex packageIndex;
+
     @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
     private volatile PackageRegistries packageRegistries;
 
@@ -174,7 +197,7 @@ public class PackageServlet extends AbstractServiceServlet {
     //
 
     public enum Extension {
-        html, json, zip
+        html, json, ndjson, zip
     }
 
     public enum Operation {
@@ -196,6 +219,45 @@ public class PackageServlet extends AbstractServiceServlet {
     protected void activate(BundleContext bundleContext, Configuration configuration) {
         this.bundleContext = bundleContext;
         jobIdleTimeout = configuration.package_job_timeout();
+        coverageCacheTime = configuration.coverage_cache_time() * 1000L;
+        if (coveragePool == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            final ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "composum-package-coverage-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            };
+            final int size = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            coveragePool = executor;
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (coveragePool != null) {
+            coveragePool.shutdownNow();
+            coveragePool = null;
+        }
+    }
+
+    /**
+     * Records the change of a package made by an operation in the package index, so that the next listing
+     * doesn't depend on the (asynchronous) observation of the package root.
+     */
+    protected void packageChanged(@Nullable final String path) {
+        if (path != null) {
+            packageIndex.changed(path);
+        }
+    }
+
+    @Nullable
+    protected String getNodePath(@Nullable final JcrPackage jcrPackage) throws RepositoryException {
+        Node node = jcrPackage != null ? jcrPackage.getNode() : null;
+        return node != null ? node.getPath() : null;
     }
 
     /**
@@ -216,6 +278,8 @@ public class PackageServlet extends AbstractServiceServlet {
                 Operation.filterList, new ListFiltersOperation());
         operations.setOperation(ServletOperationSet.Method.GET, Extension.json,
                 Operation.coverage, new CoverageOperation());
+        operations.setOperation(ServletOperationSet.Method.GET, Extension.ndjson,
+                Operation.coverage, new CoverageOperation());
         operations.setOperation(ServletOperationSet.Method.GET, Extension.zip,
                 Operation.download, new DownloadOperation());
         operations.setOperation(ServletOperationSet.Method.GET, Extension.html,
@@ -459,11 +523,11 @@ public class PackageServlet extends AbstractServiceServlet {
                          ResourceHandle resource)
                 throws RepositoryException, IOException {
             JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
-            List<JcrPackage> jcrPackages = manager.listPackages();
+            List<PackageMetadata> packages = packageIndex.getPackages(manager);
             JsonWriter writer = ResponseUtil.getJsonWriter(response);
             writer.beginArray();
-            for (JcrPackage jcrPackage : jcrPackages) {
-                new JcrPackageItem(jcrPackage).toJson(writer);
+            for (PackageMetadata metadata : packages) {
+                new JcrPackageItem(metadata).toJson(writer);
             }
             writer.endArray();
         }
@@ -478,7 +542,7 @@ public class PackageServlet extends AbstractServiceServlet {
                 throws RepositoryException, IOException {
 
             JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
-            TreeNode treeNode = PackageUtil.getTreeNode(manager, request);
+            TreeNode treeNode = PackageUtil.getTreeNode(packageIndex.getPackages(manager), request);
 
             JsonWriter writer = ResponseUtil.getJsonWriter(response);
             treeNode.sort();
@@ -507,42 +571,30 @@ public class PackageServlet extends AbstractServiceServlet {
 
                 JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
 
-                ResourceResolver resolver = request.getResourceResolver();
-                String rootPath = manager.getPackageRoot().getPath();
-                @SuppressWarnings("deprecation")
-                Iterator<Resource> found = resolver.findResources("/jcr:root" + rootPath
-                                + "//element(*,vlt:PackageDefinition)[jcr:contains(.,'" + suffix + "')]/../..",
-                        Query.XPATH);
-
                 SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
 
-                while (found.hasNext()) {
-                    JcrPackage jcrPckg = PackageUtil.getJcrPackage(manager, found.next());
-                    if (jcrPckg != null) {
-
-                        JcrPackageDefinition pckgDef = jcrPckg.getDefinition();
-                        if (pckgDef != null) {
-                            String group = pckgDef.get(JcrPackageDefinition.PN_GROUP);
-                            if (group != null && !group.endsWith("/.snapshot")) {
-                                String name = pckgDef.get(JcrPackageDefinition.PN_NAME);
-                                String version = pckgDef.get(JcrPackageDefinition.PN_VERSION);
-
-                                writer.beginObject();
-                                writer.name("state").beginObject();
-                                writer.name("installed").value(jcrPckg.isInstalled() ? "on" : "off");
-                                writer.name("sealed").value(jcrPckg.isSealed() ? "on" : "off");
-                                writer.name("valid").value(jcrPckg.isValid() ? "on" : "off");
-                                writer.endObject();
-                                writer.name("group").value(group);
-                                writer.name("name").value(name);
-                                writer.name("version").value(version);
-                                writer.name("lastModified").value(dateFormat.format(PackageUtil.getLastModified(jcrPckg).getTime()));
-                                writer.name("path").value(Packages.getMode(request) == Mode.jcrpckg
-                                        ? PackageUtil.getPackagePath(manager, jcrPckg)
-                                        : RegistryUtil.toPath((String) null, new PackageId(group, name, version)));
-                                writer.endObject();
-                            }
-                        }
+                for (PackageMetadata pckg : packageIndex.findPackages(manager, suffix)) {
+                    String group = pckg.getGroup();
+                    if (group != null && !group.endsWith("/.snapshot")) {
+                        String name = pckg.getName();
+                        String version = pckg.getVersion();
+                        Calendar lastModified = pckg.getContentLastModified();
+
+                        writer.beginObject();
+                        writer.name("state").beginObject();
+                        writer.name("installed").value(pckg.isInstalled() ? "on" : "off");
+                        writer.name("sealed").value(pckg.isSealed() ? "on" : "off");
+                        writer.name("valid").value(pckg.isValid() ? "on" : "off");
+                        writer.endObject();
+                        writer.name("group").value(group);
+                        writer.name("name").value(name);
+                        writer.name("version").value(version);
+                        writer.name("lastModified").value(lastModified != null
+                                ? dateFormat.format(lastModified.getTime()) : null);
+                        writer.name("path").value(Packages.getMode(request) == Mode.jcrpckg
+                                ? pckg.getPackagePath()
+                                : RegistryUtil.toPath((String) null, new PackageId(group, name, version)));
+                        writer.endObject();
                     }
                 }
             }
@@ -564,6 +616,7 @@ public class PackageServlet extends AbstractServiceServlet {
 
             JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
             JcrPackage jcrPackage = manager.create(group, name, version);
+            packageChanged(getNodePath(jcrPackage));
 
             JsonWriter writer = ResponseUtil.getJsonWriter(response);
             jsonAnswer(writer, "create", "successful", manager, jcrPackage);
@@ -617,7 +670,9 @@ public class PackageServlet extends AbstractServiceServlet {
                             (!PackageUtil.isGroup(pckgDef, group) ||
                                     !PackageUtil.isName(pckgDef, name) ||
                                     !PackageUtil.isVersion(pckgDef, version))) {
-                        manager.rename(jcrPackage, group, name, version);
+                        String path = getNodePath(jcrPackage);
+                        packageChanged(getNodePath(manager.rename(jcrPackage, group, name, version)));
+                        packageChanged(path);
                     }
                     Map<String, Object> parameters = getParameters(request);
                     parameters.put("includeVersions", parameters.containsKey("includeVersions"));
@@ -711,7 +766,9 @@ public class PackageServlet extends AbstractServiceServlet {
             JcrPackage jcrPackage = PackageUtil.getJcrPackage(manager, resource);
 
             if (jcrPackage != null) {
+                String path = getNodePath(jcrPackage);
                 manager.remove(jcrPackage);
+                packageChanged(path);
 
                 JsonWriter writer = ResponseUtil.getJsonWriter(response);
                 jsonAnswer(writer, "delete", "successful", manager, jcrPackage);
@@ -725,10 +782,48 @@ public class PackageServlet extends AbstractServiceServlet {
 
     /**
      * Enables downloading packages. If the path is a JCR path to a package, we deliver it from there, otherwise we try to
-     * find it in the PackageRegistries.
+     * find it in the PackageRegistries. Conditional requests ('ETag', 'Last-Modified') and single byte ranges are
+     * supported to resume interrupted downloads of large packages.
      */
     protected class DownloadOperation implements ServletOperation {
 
+        public static final int BUFFER_SIZE = 65536;
+
+        /** writes a range of the package content */
+        protected class ContentSource {
+
+            protected final Binary binary;
+            protected final File file;
+
+            public ContentSource(@Nullable final Binary binary, @Nullable final File file) {
+                this.binary = binary;
+                this.file = file;
+            }
+
+            public void write(@Nonnull final OutputStream output, long first, long length)
+                    throws IOException, RepositoryException {
+                if (file != null) {
+                    // the file channel transfers the content without copying it through a stream buffer
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        WritableByteChannel target = Channels.newChannel(output);
+                        long position = first;
+                        long end = first + length;
+                        while (position < end) {
+                            long count = channel.transferTo(position, end - position, target);
+                            if (count <= 0) {
+                                throw new EOFException("unexpected end of file: " + file.getName());
+                            }
+                            position += count;
+                        }
+                    }
+                } else if (binary != null) {
+                    try (InputStream input = binary.getStream()) {
+                        IOUtils.copyLarge(input, output, first, length, new byte[BUFFER_SIZE]);
+                    }
+                }
+            }
+        }
+
         @Override
         public void doIt(@Nonnull final SlingHttpServletRequest request,
                          @Nonnull final SlingHttpServletResponse response,
@@ -740,7 +835,7 @@ public class PackageServlet extends AbstractServiceServlet {
 
             boolean delivered;
             if (jcrPackage != null) {
-                delivered = deliverJcrPackage(response, jcrPackage);
+                delivered = deliverJcrPackage(request, response, jcrPackage);
             } else {
                 delivered = deliverRegistryPackage(request, response, manager);
             }
@@ -752,35 +847,31 @@ public class PackageServlet extends AbstractServiceServlet {
 
         }
 
-        protected boolean deliverJcrPackage(@Nonnull SlingHttpServletResponse response, @Nonnull JcrPackage jcrPackage) throws RepositoryException, IOException {
+        protected boolean deliverJcrPackage(@Nonnull SlingHttpServletRequest request, @Nonnull SlingHttpServletResponse response, @Nonnull JcrPackage jcrPackage) throws RepositoryException, IOException {
             Property data;
             Binary binary = null;
-            InputStream stream = null;
             boolean delivered = false;
 
             try {
                 if ((data = jcrPackage.getData()) != null &&
-                        (binary = data.getBinary()) != null &&
-                        (stream = binary.getStream()) != null) {
+                        (binary = data.getBinary()) != null) {
 
                     JcrPackageItem item = new JcrPackageItem(jcrPackage);
+                    long size = binary.getSize();
 
-                    response.setHeader("Content-Disposition", "inline; filename=" + item.getFilename());
-                    Calendar lastModified = item.getLastModified();
-                    if (lastModified != null) {
-                        response.setDateHeader(HttpConstants.HEADER_LAST_MODIFIED, lastModified.getTimeInMillis());
-                    }
+                    // the modification of the package file changes on each build, the definition may not
+                    Node content = data.getParent();
+                    Calendar contentModified = content.hasProperty(Property.JCR_LAST_MODIFIED)
+                            ? content.getProperty(Property.JCR_LAST_MODIFIED).getDate()
+                            : item.getLastModified();
 
+                    response.setHeader("Content-Disposition", "inline; filename=" + item.getFilename());
                     response.setContentType(ZIP_CONTENT_TYPE);
-                    if (jcrPackage.getSize() > 0) {
-                        response.setContentLength((int) jcrPackage.getSize());
-                    }
-                    OutputStream output = response.getOutputStream();
-                    IOUtils.copy(stream, output);
+                    deliver(request, response, new ContentSource(binary, null), size,
+                            contentModified, getETag(contentModified, size));
                     delivered = true;
                 }
             } finally {
-                if (stream != null) stream.close();
                 if (binary != null) binary.dispose();
                 jcrPackage.close();
             }
@@ -802,25 +893,19 @@ public class PackageServlet extends AbstractServiceServlet {
 
                     response.setHeader("Content-Disposition", "inline; filename=" + RegistryUtil.getFilename(location.getRight()));
                     response.setContentType(ZIP_CONTENT_TYPE);
-                    Calendar lastModified = RegistryUtil.readPackagePropertyDate(vaultPckg.getProperties().getLastModified(), vaultPckg.getProperties().getProperty(PackageProperties.NAME_LAST_MODIFIED));
-                    if (lastModified == null) {
-                        lastModified = RegistryUtil.readPackagePropertyDate(vaultPckg.getProperties().getCreated(), vaultPckg.getProperties().getProperty(PackageProperties.NAME_CREATED));
-                    }
-                    if (lastModified != null) {
-                        response.setDateHeader(HttpConstants.HEADER_LAST_MODIFIED, lastModified.getTimeInMillis());
-                    }
-                    response.setContentLength((int) file.length());
-                    OutputStream output = response.getOutputStream();
-                    try (FileInputStream stream = new FileInputStream(file)) {
-                        IOUtils.copy(stream, output);
-                    }
+                    // the validators are taken from the file, the declared dates may not change on a rebuild
+                    long size = file.length();
+                    Calendar fileModified = Calendar.getInstance();
+                    fileModified.setTimeInMillis(file.lastModified());
+                    deliver(request, response, new ContentSource(null, file), size,
+                            fileModified, getETag(fileModified, size));
                     delivered = true;
 
                 } else { // no file -> probably a Jcr package
                     String pathNoNs = RegistryUtil.pathWithoutNamespace(path);
                     JcrPackage jcrPackage = manager.open(pckg.getId());
                     if (jcrPackage != null) {
-                        delivered = deliverJcrPackage(response, jcrPackage);
+                        delivered = deliverJcrPackage(request, response, jcrPackage);
                     } else { // shouln't happen - unknown registry type? No idea what to do here.
                         LOG.warn("Bug: Could not download package at {}", path);
                         delivered = false;
@@ -829,6 +914,76 @@ public class PackageServlet extends AbstractServiceServlet {
             }
             return delivered;
         }
+
+        /**
+         * @return a strong entity tag built from the modification date and the size of the package file; the file
+         * is replaced as a whole on each change of the package, so the tag identifies the content
+         */
+        @Nullable
+        protected String getETag(@Nullable final Calendar lastModified, long size) {
+            return lastModified != null
+                    ? "\"" + Long.toHexString(lastModified.getTimeInMillis()) + "-" + Long.toHexString(size) + "\""
+                    : null;
+        }
+
+        /**
+         * Sends the package content, a '304' if the client has the current version or the requested range;
+         * requests of multiple ranges are answered with the complete content.
+         */
+        protected void deliver(@Nonnull final SlingHttpServletRequest request,
+                               @Nonnull final SlingHttpServletResponse response,
+                               @Nonnull final ContentSource source, long size,
+                               @Nullable final Calendar lastModified, @Nullable final String eTag)
+                throws IOException, RepositoryException {
+            if (eTag != null) {
+                response.setHeader(HttpUtil.HEADER_ETAG, eTag);
+            }
+            if (lastModified != null) {
+                response.setDateHeader(HttpUtil.HEADER_LAST_MODIFIED, lastModified.getTimeInMillis());
+            }
+            String ifNoneMatch = request.getHeader(HttpUtil.HEADER_IF_NONE_MATCH);
+            if (eTag != null && ifNoneMatch != null
+                    ? HttpUtil.matchesETag(ifNoneMatch, eTag)
+                    : HttpUtil.notModifiedSince(request.getDateHeader(HttpUtil.HEADER_IF_MODIFIED_SINCE), lastModified)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setHeader(HttpUtil.HEADER_ACCEPT_RANGES, HttpUtil.VALUE_BYTES);
+            List<HttpUtil.ByteRange> ranges = isRangeApplicable(request, lastModified, eTag)
+                    ? HttpUtil.getRanges(request.getHeader(HttpUtil.HEADER_RANGE), size) : null;
+            if (ranges != null && ranges.isEmpty()) {
+                response.setHeader(HttpUtil.HEADER_CONTENT_RANGE, HttpUtil.VALUE_BYTES + " */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            } else if (ranges != null && ranges.size() == 1) {
+                HttpUtil.ByteRange range = ranges.get(0);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpUtil.HEADER_CONTENT_RANGE, range.getContentRange(size));
+                response.setHeader(HttpUtil.HEADER_CONTENT_LENGTH, Long.toString(range.getLength()));
+                source.write(response.getOutputStream(), range.first, range.getLength());
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setHeader(HttpUtil.HEADER_CONTENT_LENGTH, Long.toString(size));
+                source.write(response.getOutputStream(), 0L, size);
+            }
+        }
+
+        /**
+         * @return 'true' if the package has not been changed since the version referenced by an 'If-Range' header
+         */
+        protected boolean isRangeApplicable(@Nonnull final SlingHttpServletRequest request,
+                                            @Nullable final Calendar lastModified, @Nullable final String eTag) {
+            String ifRange = request.getHeader(HttpUtil.HEADER_IF_RANGE);
+            if (StringUtils.isBlank(ifRange)) {
+                return true;
+            }
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // strong comparison (RFC 7233), a weak tag never matches
+                return eTag != null && !eTag.startsWith("W/") && ifRange.trim().equals(eTag);
+            }
+            long ifRangeDate = request.getDateHeader(HttpUtil.HEADER_IF_RANGE);
+            return lastModified != null && ifRangeDate != -1
+                    && lastModified.getTimeInMillis() / 1000L == ifRangeDate / 1000L;
+        }
     }
 
     protected class UploadOperation implements ServletOperation {
@@ -849,6 +1004,7 @@ public class PackageServlet extends AbstractServiceServlet {
                     if (StringUtils.isBlank(namespace)) {
                         JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
                         JcrPackage jcrPackage = manager.upload(input, force);
+                        packageChanged(getNodePath(jcrPackage));
 
                         jsonAnswer(writer, "upload", "successful", manager, jcrPackage);
                     } else {
@@ -950,6 +1106,7 @@ public class PackageServlet extends AbstractServiceServlet {
             Job job = jobManager.addJob(PackageJobExecutor.TOPIC, jobProperties);
             final JobMonitor.IsDone isDone = new JobMonitor.IsDone(jobManager, resolver, job.getId(), jobIdleTimeout);
             if (isDone.call()) {
+                packageChanged(getNodePath(jcrPackage));
 
                 installationDone(request, response, manager, jcrPackage, isDone);
 
@@ -1010,6 +1167,7 @@ public class PackageServlet extends AbstractServiceServlet {
             Job job = jobManager.addJob(PackageJobExecutor.TOPIC, jobProperties);
             final JobMonitor.IsDone isDone = new JobMonitor.IsDone(jobManager, resolver, job.getId(), jobIdleTimeout);
             if (isDone.call()) {
+                packageChanged(getNodePath(jcrPackage));
                 uninstallationDone(request, response, manager, jcrPackage, isDone);
             } else {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Package uninstall not started!");
@@ -1093,7 +1251,7 @@ public class PackageServlet extends AbstractServiceServlet {
             @Override
             void doCommand(SlingHttpServletRequest request, SlingHttpServletResponse response, RequestParameterMap parameters) throws RepositoryException, IOException {
                 JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
-                final List<JcrPackage> jcrPackages = manager.listPackages();
+                final List<PackageMetadata> packages = packageIndex.getPackages(manager);
                 response.setStatus(HttpServletResponse.SC_OK);
                 try (Writer writer = response.getWriter()) {
                     writer.append("<repo>");
@@ -1101,8 +1259,8 @@ public class PackageServlet extends AbstractServiceServlet {
                     writer.append("<response>");
                     writer.append("<data>");
                     writer.append("<packages>");
-                    for (JcrPackage jcrPackage : jcrPackages) {
-                        writer.append(PackageUtil.packageToXMLResponse(jcrPackage));
+                    for (PackageMetadata metadata : packages) {
+                        writer.append(PackageUtil.packageToXMLResponse(metadata));
                     }
                     writer.append("</packages>");
                     writer.append("</data>");
@@ -1126,12 +1284,11 @@ public class PackageServlet extends AbstractServiceServlet {
                     String packageName = jcrPackage.getDefinition().get(JcrPackageDefinition.PN_NAME);
                     String packageGroup = jcrPackage.getDefinition().get(JcrPackageDefinition.PN_GROUP);
                     if (!StringUtils.isBlank(packageName) && packageName.equals(name)) {
-                        if (!StringUtils.isBlank(group) && group.equals(packageGroup)) {
-                            manager.remove(jcrPackage);
-                            found = true;
-                            break;
-                        } else if (StringUtils.isBlank(group) && StringUtils.isBlank(packageGroup)) {
+                        if ((!StringUtils.isBlank(group) && group.equals(packageGroup))
+                                || (StringUtils.isBlank(group) && StringUtils.isBlank(packageGroup))) {
+                            String path = getNodePath(jcrPackage);
                             manager.remove(jcrPackage);
+                            packageChanged(path);
                             found = true;
                             break;
                         }
@@ -1279,6 +1436,7 @@ public class PackageServlet extends AbstractServiceServlet {
 
                     JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
                     JcrPackage jcrPackage = manager.upload(input, force);
+                    packageChanged(getNodePath(jcrPackage));
 
                     installPackage(request, response, manager, jcrPackage);
 
@@ -1340,6 +1498,12 @@ public class PackageServlet extends AbstractServiceServlet {
 
     }
 
+    /**
+     * Delivers the paths covered by the filter of a package; the filter roots are traversed in parallel
+     * ({@link PackageCoverage}). The 'json' extension delivers the paths as table rows (actions 'A' and 'E'),
+     * the 'ndjson' extension streams a JSON object per line: '{root,path}' for each covered path, a summary
+     * '{root,nodes,size,time,error}' after the paths of each root and a final total '{roots,nodes,size}'.
+     */
     protected class CoverageOperation implements ServletOperation {
 
         @Override
@@ -1350,28 +1514,138 @@ public class PackageServlet extends AbstractServiceServlet {
 
             JcrPackageManager manager = PackageUtil.getPackageManager(packaging, request);
             JcrPackage jcrPackage = PackageUtil.getJcrPackage(manager, resource);
-            Session session = RequestUtil.getSession(request);
-            PackageProgressTracker tracker = new PackageProgressTracker.JsonTracking(response, null);
-            tracker.writePrologue();
-            if (jcrPackage != null) {
-                PackageUtil.getCoverage(jcrPackage.getDefinition(), session, tracker);
-            } else {
-                PackageRegistries.Registries registries = packageRegistries.getRegistries(request.getResourceResolver());
-                String path = RegistryUtil.requestPath(request);
-                Pair<String, PackageId> location = registries.resolve(path);
-                Pair<String, RegisteredPackage> pckgEntry = location != null ? registries.open(location.getRight()) : null;
-                if (pckgEntry != null) {
-                    WorkspaceFilter filter = pckgEntry.getRight().getWorkspaceFilter();
-                    try {
-                        filter.dumpCoverage(session, tracker, false);
-                    } catch (RepositoryException rex) {
-                        LOG.error(rex.getMessage(), rex);
-                        tracker.onError(ProgressTrackerListener.Mode.TEXT, "exception thrown", rex);
+            boolean ndjson = Extension.ndjson.name().equals(request.getRequestPathInfo().getExtension());
+            RegisteredPackage registeredPckg = null;
+            try {
+                WorkspaceFilter filter = null;
+                String error = null;
+                try {
+                    if (jcrPackage != null) {
+                        filter = PackageUtil.getFilter(jcrPackage.getDefinition());
+                    } else {
+                        PackageRegistries.Registries registries = packageRegistries.getRegistries(request.getResourceResolver());
+                        String path = RegistryUtil.requestPath(request);
+                        Pair<String, PackageId> location = registries.resolve(path);
+                        Pair<String, RegisteredPackage> pckgEntry = location != null ? registries.open(location.getRight()) : null;
+                        if (pckgEntry != null) {
+                            registeredPckg = pckgEntry.getRight();
+                            filter = registeredPckg.getWorkspaceFilter();
+                        }
                     }
+                } catch (RepositoryException | IOException ex) {
+                    LOG.error(ex.getMessage(), ex);
+                    error = ex.toString();
                 }
+                PackageCoverage coverage = filter != null
+                        ? new PackageCoverage(coveragePool, filter, ndjson, coverageCacheTime) : null;
+                if (ndjson) {
+                    writeLines(request, response, coverage, error);
+                } else {
+                    writeTable(request, response, coverage, error);
+                }
+            } finally {
+                if (jcrPackage != null) {
+                    jcrPackage.close();
+                }
+                if (registeredPckg != null) {
+                    registeredPckg.close();
+                }
+            }
+        }
+
+        protected void writeTable(@Nonnull final SlingHttpServletRequest request,
+                                  @Nonnull final SlingHttpServletResponse response,
+                                  @Nullable final PackageCoverage coverage, @Nullable final String error)
+                throws IOException {
+            final PackageProgressTracker tracker = new PackageProgressTracker.JsonTracking(response, null);
+            tracker.writePrologue();
+            if (error != null) {
+                tracker.onError(ProgressTrackerListener.Mode.TEXT, "exception thrown", new RepositoryException(error));
+            }
+            if (coverage != null) {
+                coverage.analyze(request.getResourceResolver(), new PackageCoverage.Listener() {
+
+                    @Override
+                    public void onPath(@Nonnull PackageCoverage.RootResult root, @Nonnull String path) {
+                        tracker.onMessage(ProgressTrackerListener.Mode.PATHS, "A", path);
+                    }
+
+                    @Override
+                    public void onRoot(@Nonnull PackageCoverage.RootResult root) {
+                        if (root.getError() != null) {
+                            tracker.onError(ProgressTrackerListener.Mode.PATHS, root.getRoot(),
+                                    new RepositoryException(root.getError()));
+                        }
+                    }
+                });
             }
             tracker.writeEpilogue();
         }
+
+        protected void writeLines(@Nonnull final SlingHttpServletRequest request,
+                                  @Nonnull final SlingHttpServletResponse response,
+                                  @Nullable final PackageCoverage coverage, @Nullable final String error)
+                throws IOException {
+            response.setContentType(NDJSON_CONTENT_TYPE);
+            final PrintWriter writer = response.getWriter();
+            final long[] total = new long[3];
+            if (error != null) {
+                JsonWriter line = new JsonWriter(writer);
+                line.beginObject().name("error").value(error).endObject().flush();
+                writer.write('\n');
+            }
+            if (coverage != null) {
+                coverage.analyze(request.getResourceResolver(), new PackageCoverage.Listener() {
+
+                    @Override
+                    public void onPath(@Nonnull PackageCoverage.RootResult root, @Nonnull String path)
+                            throws IOException {
+                        JsonWriter line = new JsonWriter(writer);
+                        line.beginObject().name("root").value(root.getRoot()).name("path").value(path).endObject();
+                        line.flush();
+                        writer.write('\n');
+                        if (++total[2] % PackageCoverage.QUEUE_SIZE == 0) {
+                            checkClient(writer);
+                        }
+                    }
+
+                    @Override
+                    public void onRoot(@Nonnull PackageCoverage.RootResult root) throws IOException {
+                        JsonWriter line = new JsonWriter(writer);
+                        line.beginObject();
+                        line.name("root").value(root.getRoot());
+                        line.name("nodes").value(root.getNodes());
+                        line.name("size").value(root.getSize());
+                        line.name("time").value(root.getTime());
+                        if (root.getError() != null) {
+                            line.name("error").value(root.getError());
+                        }
+                        line.endObject().flush();
+                        writer.write('\n');
+                        total[0]++;
+                        total[1] += root.getSize();
+                        checkClient(writer);
+                    }
+                });
+            }
+            JsonWriter line = new JsonWriter(writer);
+            line.beginObject();
+            line.name("roots").value(total[0]);
+            line.name("nodes").value(total[2]);
+            line.name("size").value(total[1]);
+            line.endObject().flush();
+            writer.write('\n');
+            writer.flush();
+        }
+
+        /**
+         * Stops the analysis if the client has gone.
+         */
+        protected void checkClient(@Nonnull final PrintWriter writer) throws IOException {
+            if (writer.checkError()) {
+                throw new IOException("coverage output closed");
+            }
+        }
     }
 
     protected class ListFiltersOperation implements ServletOperation {
@@ -1724,5 +1998,10 @@ public class PackageServlet extends AbstractServiceServlet {
                 "Time in milliseconds a package job can be idle")
         long package_job_timeout() default 60L * 1000L;
 
+        @AttributeDefinition(name = "coverage cache time", description =
+                "Time in seconds the coverage of a package filter is reused for the same user (only for results up to "
+                        + PackageCoverage.MAX_CACHED_PATHS + " paths per root); '0' disables the cache")
+        long coverage_cache_time() default 0L;
+
     }
 }
@@ -0,0 +1,49 @@
+package com.composum.sling.core.pckgmgr.jcrpckg.service;
+
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
+import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import java.util.List;
+
+/**
+ * An index of the metadata of the JCR packages readable by a user; the index is built once for each user and
+ * refreshed from the observed changes of the package root, so that the package lists and trees are available
+ * without opening all packages on each request.
+ */
+public interface PackageIndex {
+
+    /**
+     * @param manager the package manager of the users session
+     * @return the metadata of all packages ordered by their package ID (group, name, version)
+     */
+    @Nonnull
+    List<PackageMetadata> getPackages(@Nonnull JcrPackageManager manager) throws RepositoryException;
+
+    /**
+     * @param manager the package manager of the users session
+     * @param group   the group of the packages
+     * @return the metadata of all packages of the group
+     */
+    @Nonnull
+    List<PackageMetadata> getPackages(@Nonnull JcrPackageManager manager, @Nonnull String group)
+            throws RepositoryException;
+
+    /**
+     * @param manager the package manager of the users session
+     * @param text    the text to search (case insensitive) in the group, name, version, description and filters
+     * @return the metadata of the matching packages
+     */
+    @Nonnull
+    List<PackageMetadata> findPackages(@Nonnull JcrPackageManager manager, @Nonnull String text)
+            throws RepositoryException;
+
+    /**
+     * Records a change of the packages made by a service operation, so that the next use of the indexes
+     * doesn't depend on the (asynchronous) observation of the package root.
+     *
+     * @param path the path of the changed package node
+     */
+    void changed(@Nonnull String path);
+}
@@ -0,0 +1,335 @@
+package com.composum.sling.core.pckgmgr.jcrpckg.service.impl;
+
+import com.composum.sling.core.pckgmgr.jcrpckg.service.PackageIndex;
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
+import org.apache.jackrabbit.vault.util.JcrConstants;
+import org.apache.sling.api.resource.observation.ExternalResourceChangeListener;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the package metadata of the recently active users; each index is built with the session of the user
+ * (so that the access rights are respected) and refreshed on the next use by reading the packages changed since
+ * then. The changes are collected in a bounded journal from the observation of the package root; an index which
+ * has missed changes (journal overflow) is rebuilt completely. The observation is registered for the package
+ * roots of the package managers used; the changes made by the service operations are recorded directly.
+ */
+@Component(
+        service = PackageIndex.class,
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Package Index"
+        }
+)
+public class PackageIndexImpl implements PackageIndex, ResourceChangeListener, ExternalResourceChangeListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackageIndexImpl.class);
+
+    /** the order of the package lists of the package manager: group, name, version */
+    public static final Comparator<PackageMetadata> PACKAGE_ORDER = Comparator.comparing(PackageMetadata::getId);
+
+    /** the maximum number of users with an index */
+    public static final int MAX_INDEXES = 20;
+
+    /** the time an index is used (a safety net for changes not observed) */
+    public static final long INDEX_TTL = TimeUnit.MINUTES.toMillis(30);
+
+    /** the maximum number of changes kept for the refresh of the indexes */
+    public static final int MAX_JOURNAL_SIZE = 1000;
+
+    protected static class Change {
+
+        protected final long sequence;
+        protected final String path;
+
+        protected Change(long sequence, @Nonnull String path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+
+    protected final Deque<Change> journal = new ArrayDeque<>();
+    protected long sequence = 0;
+
+    /** the observed package roots */
+    protected final Set<String> roots = new TreeSet<>();
+    protected ServiceRegistration<?> observation;
+    protected BundleContext bundleContext;
+
+    protected final Map<String, UserIndex> indexes =
+            new LinkedHashMap<String, UserIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, UserIndex> eldest) {
+                    return size() > MAX_INDEXES;
+                }
+            };
+
+    @Activate
+    protected void activate(final BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        synchronized (roots) {
+            if (observation != null) {
+                observation.unregister();
+                observation = null;
+            }
+            roots.clear();
+        }
+        synchronized (indexes) {
+            indexes.clear();
+        }
+        bundleContext = null;
+    }
+
+    @Override
+    @Nonnull
+    public List<PackageMetadata> getPackages(@Nonnull final JcrPackageManager manager) throws RepositoryException {
+        Node root = manager.getPackageRoot(true);
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        String rootPath = root.getPath();
+        observe(rootPath);
+        String userId = StringUtils.defaultString(root.getSession().getUserID());
+        UserIndex index;
+        synchronized (indexes) {
+            index = indexes.get(userId);
+            if (index == null || !index.isValid() || !rootPath.equals(index.rootPath)) {
+                index = new UserIndex(rootPath);
+                indexes.put(userId, index);
+            }
+        }
+        return index.getPackages(manager, root);
+    }
+
+    @Override
+    @Nonnull
+    public List<PackageMetadata> getPackages(@Nonnull final JcrPackageManager manager, @Nonnull final String group)
+            throws RepositoryException {
+        return getPackages(manager).stream()
+                .filter(metadata -> group.equals(metadata.getGroup()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Nonnull
+    public List<PackageMetadata> findPackages(@Nonnull final JcrPackageManager manager, @Nonnull final String text)
+            throws RepositoryException {
+        return getPackages(manager).stream()
+                .filter(metadata -> metadata.matches(text))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Registers the observation of a package root (if not done already); the observation is registered before
+     * the index of the root is built, so that no change after the build is missed.
+     */
+    protected void observe(@Nonnull final String rootPath) {
+        synchronized (roots) {
+            if (bundleContext != null && roots.add(rootPath)) {
+                Hashtable<String, Object> properties = new Hashtable<>();
+                properties.put(Constants.SERVICE_DESCRIPTION, "Composum Nodes Package Index Observation");
+                properties.put(ResourceChangeListener.PATHS, roots.toArray(new String[0]));
+                properties.put(ResourceChangeListener.CHANGES, new String[]{"ADDED", "CHANGED", "REMOVED"});
+                if (observation == null) {
+                    observation = bundleContext.registerService(new String[]{
+                            ResourceChangeListener.class.getName(),
+                            ExternalResourceChangeListener.class.getName()
+                    }, this, properties);
+                } else {
+                    observation.setProperties(properties);
+                }
+                LOG.info("package index observes {}", roots);
+            }
+        }
+    }
+
+    @Override
+    public void changed(@Nonnull final String path) {
+        record(path);
+    }
+
+    /**
+     * Records the changed packages (the changes in the content of a package are reduced to the package node).
+     */
+    @Override
+    public void onChange(@Nonnull final List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            record(change.getPath());
+        }
+    }
+
+    protected void record(@Nonnull String path) {
+        int content = path.indexOf("/" + JcrConstants.JCR_CONTENT);
+        if (content > 0) {
+            path = path.substring(0, content);
+        }
+        synchronized (journal) {
+            if (journal.isEmpty() || !journal.getLast().path.equals(path)) {
+                journal.addLast(new Change(++sequence, path));
+                while (journal.size() > MAX_JOURNAL_SIZE) {
+                    journal.removeFirst();
+                }
+            }
+        }
+    }
+
+    protected class UserIndex {
+
+        protected final String rootPath;
+        /** the metadata by the path of the package node */
+        protected final Map<String, PackageMetadata> packages = new HashMap<>();
+        /** the metadata in the order of the package manager; 'null' if to sort again */
+        protected List<PackageMetadata> sorted;
+        protected final long created = System.currentTimeMillis();
+        /** the sequence of the last change applied; -1 if the index is not built */
+        protected long seen = -1L;
+
+        protected UserIndex(@Nonnull final String rootPath) {
+            this.rootPath = rootPath;
+        }
+
+        protected boolean isValid() {
+            return created + INDEX_TTL > System.currentTimeMillis();
+        }
+
+        @Nonnull
+        protected synchronized List<PackageMetadata> getPackages(@Nonnull final JcrPackageManager manager,
+                                                                 @Nonnull final Node root)
+                throws RepositoryException {
+            Set<String> changed = new LinkedHashSet<>();
+            boolean rebuild;
+            long current;
+            synchronized (journal) {
+                current = sequence;
+                rebuild = seen < 0 || (seen < current
+                        && (journal.isEmpty() || journal.getFirst().sequence > seen + 1));
+                if (!rebuild) {
+                    for (Change change : journal) {
+                        if (change.sequence > seen) {
+                            changed.add(change.path);
+                        }
+                    }
+                }
+            }
+            if (rebuild || (!changed.isEmpty() && !update(manager, root, changed))) {
+                build(manager, root);
+            }
+            seen = current;
+            if (sorted == null) {
+                sorted = new ArrayList<>(packages.values());
+                sorted.sort(PACKAGE_ORDER);
+            }
+            return new ArrayList<>(sorted);
+        }
+
+        protected void build(@Nonnull final JcrPackageManager manager, @Nonnull final Node root)
+                throws RepositoryException {
+            long start = System.currentTimeMillis();
+            packages.clear();
+            sorted = null;
+            for (JcrPackage jcrPackage : manager.listPackages()) {
+                add(jcrPackage, rootPath);
+            }
+            LOG.info("package index of '{}' built: {} packages ({}ms)", root.getSession().getUserID(),
+                    packages.size(), System.currentTimeMillis() - start);
+        }
+
+        /**
+         * Reads the changed packages again; the changes of other package roots are ignored.
+         *
+         * @return 'false' if the changes are not related to single packages, a rebuild is necessary
+         */
+        protected boolean update(@Nonnull final JcrPackageManager manager, @Nonnull final Node root,
+                                 @Nonnull final Set<String> changed)
+                throws RepositoryException {
+            Session session = root.getSession();
+            Set<String> candidates = new LinkedHashSet<>();
+            for (String path : changed) {
+                if (!path.startsWith(rootPath + "/")) {
+                    if ("/".equals(path) || rootPath.equals(path) || rootPath.startsWith(path + "/")) {
+                        return false;
+                    }
+                    continue;
+                }
+                for (Iterator<String> it = packages.keySet().iterator(); it.hasNext(); ) {
+                    String key = it.next();
+                    if (key.equals(path) || key.startsWith(path + "/") || path.startsWith(key + "/")) {
+                        candidates.add(key);
+                        it.remove();
+                    }
+                }
+                candidates.add(path);
+            }
+            sorted = null;
+            for (String path : candidates) {
+                if (session.nodeExists(path)) {
+                    scan(manager, session.getNode(path), rootPath);
+                }
+            }
+            LOG.debug("package index of '{}' updated: {} changes", session.getUserID(), changed.size());
+            return true;
+        }
+
+        protected void scan(@Nonnull final JcrPackageManager manager, @Nonnull final Node node,
+                            @Nonnull final String rootPath)
+                throws RepositoryException {
+            JcrPackage jcrPackage = manager.open(node, false);
+            if (jcrPackage != null) {
+                add(jcrPackage, rootPath);
+            } else if (node.isNodeType(JcrConstants.NT_FOLDER)) {
+                for (NodeIterator it = node.getNodes(); it.hasNext(); ) {
+                    scan(manager, it.nextNode(), rootPath);
+                }
+            }
+        }
+
+        protected void add(@Nonnull final JcrPackage jcrPackage, @Nonnull final String rootPath) {
+            try {
+                PackageMetadata metadata = PackageMetadata.of(jcrPackage, rootPath);
+                if (metadata.getNodePath() != null) {
+                    packages.put(metadata.getNodePath(), metadata);
+                }
+            } catch (RepositoryException | RuntimeException ex) {
+                LOG.warn("can't index package: {}", ex.toString());
+            } finally {
+                jcrPackage.close();
+            }
+        }
+    }
+}
@@ -117,6 +117,7 @@ public class PackageJobExecutor extends AbstractJobExecutor<String> {
 
     @Deactivate
     protected void deactivate() {
+        shutdownJobPool();
         this.config = null;
     }
 
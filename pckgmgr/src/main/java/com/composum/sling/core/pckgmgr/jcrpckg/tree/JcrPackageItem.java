@@ -1,5 +1,6 @@
 package com.composum.sling.core.pckgmgr.jcrpckg.tree;
 
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
 import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageUtil;
 import com.composum.sling.core.pckgmgr.regpckg.util.RegistryUtil;
 import com.composum.sling.core.pckgmgr.regpckg.util.VersionComparator;
@@ -9,29 +10,27 @@ import com.google.gson.stream.JsonWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.jackrabbit.vault.packaging.JcrPackage;
-import org.apache.jackrabbit.vault.packaging.JcrPackageDefinition;
 import org.apache.jackrabbit.vault.packaging.PackageId;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 
 public class JcrPackageItem implements TreeItem {
 
-    private static final Logger LOG = LoggerFactory.getLogger(JcrPackageItem.class);
-
-    private final JcrPackage jcrPackage;
-    private final JcrPackageDefinition definition;
+    private final PackageMetadata metadata;
 
     private boolean versionAsName;
 
     public JcrPackageItem(JcrPackage jcrPackage) throws RepositoryException {
-        this.jcrPackage = jcrPackage;
-        definition = jcrPackage.getDefinition();
+        this(PackageMetadata.of(jcrPackage.getDefinition()));
+    }
+
+    public JcrPackageItem(PackageMetadata metadata) {
+        this.metadata = metadata;
     }
 
     public JcrPackageItem versionAsName(boolean versionAsName) {
@@ -41,24 +40,16 @@ public class JcrPackageItem implements TreeItem {
 
     @Override
     public String getName() {
-        return definition.get(JcrPackageDefinition.PN_NAME);
+        return metadata.getName();
     }
 
     @Override
     public String getPath() {
-        try {
-            String name = getFilename();
-            String groupPath = PackageUtil.getGroupPath(jcrPackage);
-            String path = groupPath + name;
-            return path;
-        } catch (RepositoryException rex) {
-            LOG.error(rex.getMessage(), rex);
-        }
-        return "";
+        return metadata.getGroupPath() + getFilename();
     }
 
-    public JcrPackageDefinition getDefinition() {
-        return definition;
+    public PackageMetadata getMetadata() {
+        return metadata;
     }
 
     @Override
@@ -70,44 +61,44 @@ public class JcrPackageItem implements TreeItem {
         Map<String, Object> additionalAttributes = new LinkedHashMap<>();
         additionalAttributes.put("id", path);
         additionalAttributes.put("path", path);
-        additionalAttributes.put("parent", ResourceUtil.getParent(path) + '/' + definition.get(JcrPackageDefinition.PN_NAME));
+        additionalAttributes.put("parent", ResourceUtil.getParent(path) + '/' + metadata.getName());
         additionalAttributes.put("name", name);
         additionalAttributes.put("text", versionAsName ?
-                StringUtils.defaultIfBlank(definition.get(JcrPackageDefinition.PN_VERSION), RegistryUtil.NO_VERSION)
+                StringUtils.defaultIfBlank(metadata.getVersion(), RegistryUtil.NO_VERSION)
                 :  name);
         additionalAttributes.put("type", versionAsName ? "version" : "package");
         additionalAttributes.put("state", treeState);
         additionalAttributes.put("file", getFilename());
-        PackageUtil.toJson(writer, jcrPackage, additionalAttributes);
+        PackageUtil.toJson(writer, metadata, additionalAttributes);
     }
 
     public String getFilename() {
-        return PackageUtil.getFilename(jcrPackage);
+        return metadata.getFilename();
     }
 
     public Calendar getLastModified() {
-        Calendar lastModified = PackageUtil.getLastModified(jcrPackage);
+        Calendar lastModified = metadata.getContentLastModified();
         if (lastModified != null) {
             return lastModified;
         }
-        return PackageUtil.getCreated(jcrPackage);
+        return metadata.getCreated();
     }
 
     @Override
     public boolean equals(Object other) {
         return other instanceof JcrPackageItem &&
                 getName().equals(((JcrPackageItem) other).getName()) &&
-                definition.get(JcrPackageDefinition.PN_VERSION).equals(((JcrPackageItem) other).definition.get(JcrPackageDefinition.PN_VERSION));
+                Objects.equals(metadata.getVersion(), ((JcrPackageItem) other).metadata.getVersion());
     }
 
     @Override
     public int hashCode() {
-        return 31 * getName().hashCode() + definition.get(JcrPackageDefinition.PN_VERSION).hashCode();
+        return 31 * getName().hashCode() + Objects.hashCode(metadata.getVersion());
     }
 
     public int compareTo(JcrPackageItem o) {
-        PackageId id1 = definition != null ? definition.getId() : null;
-        PackageId id2 = o.getDefinition() != null ? o.getDefinition().getId() : null;
+        PackageId id1 = metadata.getId();
+        PackageId id2 = o.getMetadata().getId();
         CompareToBuilder builder = new CompareToBuilder();
         builder.append( id1 != null ? id1.getGroup() : id1, id2 != null ? id2.getGroup() : id2);
         builder.append( id1 != null ? id1.getName() : id1, id2 != null ? id2.getName() : id2);
@@ -1,11 +1,10 @@
 package com.composum.sling.core.pckgmgr.jcrpckg.tree;
 
-import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageUtil;
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
 import com.composum.sling.core.util.JsonUtil;
 import com.google.gson.stream.JsonWriter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.vault.packaging.JcrPackage;
-import org.apache.jackrabbit.vault.packaging.JcrPackageDefinition;
 
 import javax.jcr.RepositoryException;
 import java.io.IOException;
@@ -38,15 +37,25 @@ public class TreeNode extends ArrayList<TreeItem> {
      * 3. /the/group/package-version.zip the actual package
      * Each of the cases has the next case as children. */
     public boolean addPackage(JcrPackage jcrPackage) throws RepositoryException {
+        return addPackage(PackageMetadata.of(jcrPackage.getDefinition()));
+    }
+
+    /**
+     * adds a package or the appropriate folder to the nodes children if it is a child of this node
+     *
+     * @param metadata the metadata of the current package in the iteration
+     * @return true, if this package is the nodes target and a leaf - iteration can be stopped
+     */
+    public boolean addPackage(PackageMetadata metadata) {
         String groupUri = path.endsWith("/") ? path : path + "/";
-        String groupPath = PackageUtil.getGroupPath(jcrPackage);
-        String packageName = jcrPackage.getDefinition().get(JcrPackageDefinition.PN_NAME);
+        String groupPath = metadata.getGroupPath();
+        String packageName = metadata.getName();
         String packagePath = groupPath + packageName + "/"; // case 3
         if (packagePath.startsWith(groupUri)) {
             TreeItem item;
             if (packagePath.equals(groupUri)) {
                 // This node is the packages parent - use the package as node child. Case 3.
-                item = new JcrPackageItem(jcrPackage).versionAsName(true);
+                item = new JcrPackageItem(metadata).versionAsName(true);
             } else if (groupPath.equals(groupUri)) { // subfolder that represents all versions of a package
                 item = new FolderItem(StringUtils.removeEnd(packagePath, "/"), packageName, "package");
             } else {
@@ -66,7 +75,7 @@ public class TreeNode extends ArrayList<TreeItem> {
             }
             return false;
         } else {
-            JcrPackageItem item = new JcrPackageItem(jcrPackage);
+            JcrPackageItem item = new JcrPackageItem(metadata);
             if (path.equals(groupPath + item.getFilename())) {
                 // this node (teh path) represents the package itself and is a leaf
                 isLeaf = true;
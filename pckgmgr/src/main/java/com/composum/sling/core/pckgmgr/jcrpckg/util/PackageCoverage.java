@@ -0,0 +1,425 @@
+package com.composum.sling.core.pckgmgr.jcrpckg.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.fs.api.WorkspaceFilter;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The content coverage of a package filter. The filter roots are traversed in parallel, each with its own session
+ * (a clone of the resolver of the request, created in the request thread); the covered paths are reported in the
+ * order of the filter roots as soon as they are found. The traversal of the roots which are not reported yet is
+ * paused if its queue is full, so the memory used is bounded. The paths of each root are found like in the coverage dump of the workspace filter
+ * (the filter as a whole decides which node is covered and which node is traversed).
+ * <p>
+ * The results of small filters can be cached for a short time per user and filter definition.
+ */
+public class PackageCoverage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackageCoverage.class);
+
+    /** the number of paths of a root waiting for the output */
+    public static final int QUEUE_SIZE = 1024;
+
+    /** the maximum number of paths of a cached result */
+    public static final int MAX_CACHED_PATHS = 10000;
+
+    /** the maximum number of cached results */
+    public static final int MAX_CACHED_RESULTS = 16;
+
+    /** receives the results in the order of the filter roots */
+    public interface Listener {
+
+        void onPath(@Nonnull RootResult root, @Nonnull String path) throws IOException;
+
+        /** called after the last path of the root */
+        void onRoot(@Nonnull RootResult root) throws IOException;
+    }
+
+    /**
+     * The summary of the coverage of one filter root.
+     */
+    public static class RootResult {
+
+        protected final String root;
+        protected long nodes;
+        protected long size;
+        protected long time;
+        protected String error;
+
+        public RootResult(@Nonnull final String root) {
+            this.root = root;
+        }
+
+        @Nonnull
+        public String getRoot() {
+            return root;
+        }
+
+        /**
+         * @return the number of covered nodes
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return the length of the binary properties of the covered nodes; 0 if not requested
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the duration of the traversal (ms)
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Nullable
+        public String getError() {
+            return error;
+        }
+    }
+
+    protected static class CachedResult {
+
+        protected final long created = System.currentTimeMillis();
+        protected final List<RootResult> roots;
+        protected final List<List<String>> paths;
+
+        protected CachedResult(@Nonnull final List<RootResult> roots, @Nonnull final List<List<String>> paths) {
+            this.roots = roots;
+            this.paths = paths;
+        }
+    }
+
+    protected static final Map<String, CachedResult> CACHE =
+            new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                    return size() > MAX_CACHED_RESULTS;
+                }
+            };
+
+    /** the end of the paths of a root in its queue */
+    protected static final String END = "";
+
+    protected final ExecutorService executor;
+    protected final WorkspaceFilter filter;
+    protected final boolean sizes;
+    protected final long cacheTime;
+
+    /**
+     * @param sizes     if 'true' the length of the binary properties is summarized for each root
+     * @param cacheTime the time (ms) a result can be reused; results are not cached if <= 0
+     */
+    public PackageCoverage(@Nonnull final ExecutorService executor, @Nonnull final WorkspaceFilter filter,
+                           boolean sizes, long cacheTime) {
+        this.executor = executor;
+        this.filter = filter;
+        this.sizes = sizes;
+        this.cacheTime = cacheTime;
+    }
+
+    /**
+     * @return the filter roots to traverse; roots below another root are traversed with their ancestor
+     */
+    @Nonnull
+    protected List<String> getRoots() {
+        List<String> roots = new ArrayList<>();
+        for (PathFilterSet filterSet : filter.getFilterSets()) {
+            String root = filterSet.getRoot();
+            if (StringUtils.isNotBlank(root) && !roots.contains(root)) {
+                roots.add(root);
+            }
+        }
+        List<String> result = new ArrayList<>();
+        for (String root : roots) {
+            boolean nested = false;
+            for (String other : roots) {
+                if (!other.equals(root) && (other.equals("/") || root.startsWith(other + "/"))) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) {
+                result.add(root);
+            }
+        }
+        return result;
+    }
+
+    public void analyze(@Nonnull final ResourceResolver resolver, @Nonnull final Listener listener)
+            throws IOException {
+        Session session = resolver.adaptTo(Session.class);
+        if (session == null) {
+            throw new IOException("no session available");
+        }
+        List<String> roots = getRoots();
+        String cacheKey = cacheTime > 0 ? (session.getUserID() + "\n" + sizes + "\n" + filter.getSourceAsString()) : null;
+        if (cacheKey != null && deliverCached(cacheKey, listener)) {
+            return;
+        }
+        List<RootResult> results = new ArrayList<>();
+        List<List<String>> cachedPaths = cacheKey != null ? new ArrayList<>() : null;
+        List<ResourceResolver> clones = roots.size() > 1 ? cloneResolvers(resolver, session, roots.size()) : null;
+        if (clones == null) {
+            for (String root : roots) {
+                RootResult result = new RootResult(root);
+                List<String> paths = cachedPaths != null ? new ArrayList<>() : null;
+                traverse(session, result, path -> {
+                    listener.onPath(result, path);
+                    collect(paths, path);
+                });
+                listener.onRoot(result);
+                results.add(result);
+                addPaths(cachedPaths, paths);
+            }
+        } else {
+            List<Traversal> traversals = new ArrayList<>();
+            for (int i = 0; i < roots.size(); i++) {
+                traversals.add(new Traversal(clones.get(i), new RootResult(roots.get(i))));
+            }
+            List<Future<?>> tasks = new ArrayList<>();
+            try {
+                for (Traversal traversal : traversals) {
+                    tasks.add(executor.submit(traversal));
+                }
+                for (Traversal traversal : traversals) {
+                    RootResult result = traversal.result;
+                    BlockingQueue<String> queue = traversal.queue;
+                    List<String> paths = cachedPaths != null ? new ArrayList<>() : null;
+                    String path;
+                    while ((path = queue.take()) != END) {
+                        listener.onPath(result, path);
+                        collect(paths, path);
+                    }
+                    listener.onRoot(result);
+                    results.add(result);
+                    addPaths(cachedPaths, paths);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("coverage analysis interrupted");
+            } finally {
+                for (Future<?> task : tasks) {
+                    task.cancel(true);
+                }
+                for (Traversal traversal : traversals) {
+                    traversal.discard();
+                }
+            }
+        }
+        if (cacheKey != null && !cachedPaths.contains(null)) {
+            synchronized (CACHE) {
+                CACHE.put(cacheKey, new CachedResult(results, cachedPaths));
+            }
+        }
+    }
+
+    /**
+     * Creates the resolvers for the parallel traversals in the request thread (a resolver must not be used
+     * concurrently); each resolver is closed by its traversal.
+     *
+     * @return the resolvers; 'null' if the resolver can't be cloned or the clones are sharing the request session
+     */
+    @Nullable
+    protected List<ResourceResolver> cloneResolvers(@Nonnull final ResourceResolver resolver,
+                                                    @Nonnull final Session session, int count) {
+        List<ResourceResolver> clones = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                ResourceResolver clone = resolver.clone(null);
+                clones.add(clone);
+                if (clone.adaptTo(Session.class) == session) {
+                    LOG.info("the resolver clones are sharing the session, coverage is traversed sequentially");
+                    break;
+                }
+            }
+        } catch (LoginException ex) {
+            LOG.warn("can't clone the resolver, coverage is traversed sequentially: {}", ex.toString());
+        }
+        if (clones.size() < count) {
+            for (ResourceResolver clone : clones) {
+                clone.close();
+            }
+            return null;
+        }
+        return clones;
+    }
+
+    protected boolean deliverCached(@Nonnull final String cacheKey, @Nonnull final Listener listener)
+            throws IOException {
+        CachedResult cached;
+        synchronized (CACHE) {
+            cached = CACHE.get(cacheKey);
+            if (cached != null && cached.created + cacheTime < System.currentTimeMillis()) {
+                CACHE.remove(cacheKey);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            for (int i = 0; i < cached.roots.size(); i++) {
+                RootResult result = cached.roots.get(i);
+                for (String path : cached.paths.get(i)) {
+                    listener.onPath(result, path);
+                }
+                listener.onRoot(result);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    protected void collect(@Nullable List<String> paths, @Nonnull final String path) {
+        if (paths != null && paths.size() <= MAX_CACHED_PATHS) {
+            paths.add(path);
+        }
+    }
+
+    /**
+     * Stores the paths of a root for the cache; a root with too many paths disables the caching of the result.
+     */
+    protected void addPaths(@Nullable List<List<String>> cachedPaths, @Nullable List<String> paths) {
+        if (cachedPaths != null) {
+            cachedPaths.add(paths != null && paths.size() <= MAX_CACHED_PATHS ? paths : null);
+        }
+    }
+
+    @FunctionalInterface
+    protected interface PathConsumer {
+        void accept(@Nonnull String path) throws IOException, InterruptedException;
+    }
+
+    /**
+     * The traversal of one root in a pool thread with its own clone of the request resolver.
+     */
+    protected class Traversal implements Runnable {
+
+        protected final ResourceResolver resolver;
+        protected final RootResult result;
+        protected final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        /** set by the first of 'run' and 'discard'; the resolver is closed by that one */
+        protected final AtomicBoolean claimed = new AtomicBoolean();
+
+        protected Traversal(@Nonnull final ResourceResolver resolver, @Nonnull final RootResult result) {
+            this.resolver = resolver;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    Session session = resolver.adaptTo(Session.class);
+                    if (session != null) {
+                        traverse(session, result, queue::put);
+                    } else {
+                        result.error = "no session available";
+                    }
+                } catch (IOException ex) {
+                    result.error = ex.toString();
+                } finally {
+                    resolver.close();
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt(); // cancelled, nobody is waiting for the result
+                    }
+                }
+            }
+        }
+
+        /**
+         * Closes the resolver if the traversal has not been started (cancelled or rejected).
+         */
+        protected void discard() {
+            if (claimed.compareAndSet(false, true)) {
+                resolver.close();
+            }
+        }
+    }
+
+    protected void traverse(@Nonnull final Session session, @Nonnull final RootResult result,
+                            @Nonnull final PathConsumer consumer)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        try {
+            if (session.nodeExists(result.root)) {
+                traverse(session.getNode(result.root), result, consumer);
+            }
+        } catch (RepositoryException ex) {
+            LOG.error(ex.getMessage(), ex);
+            result.error = ex.toString();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.error = "cancelled";
+        }
+        result.time = System.currentTimeMillis() - start;
+    }
+
+    protected void traverse(@Nonnull final Node node, @Nonnull final RootResult result,
+                            @Nonnull final PathConsumer consumer)
+            throws RepositoryException, IOException, InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        String path = node.getPath();
+        boolean contained = filter.contains(path);
+        if (contained || filter.isAncestor(path)) {
+            if (contained) {
+                result.nodes++;
+                if (sizes) {
+                    result.size += getBinarySize(node);
+                }
+                consumer.accept(path);
+            }
+            for (NodeIterator it = node.getNodes(); it.hasNext(); ) {
+                traverse(it.nextNode(), result, consumer);
+            }
+        }
+    }
+
+    protected long getBinarySize(@Nonnull final Node node) throws RepositoryException {
+        long size = 0L;
+        for (PropertyIterator it = node.getProperties(); it.hasNext(); ) {
+            Property property = it.nextProperty();
+            if (property.getType() == PropertyType.BINARY) {
+                if (property.isMultiple()) {
+                    for (long length : property.getLengths()) {
+                        size += Math.max(0L, length);
+                    }
+                } else {
+                    size += Math.max(0L, property.getLength());
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,237 @@
+package com.composum.sling.core.pckgmgr.jcrpckg.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.vault.fs.api.PathFilterSet;
+import org.apache.jackrabbit.vault.packaging.JcrPackage;
+import org.apache.jackrabbit.vault.packaging.JcrPackageDefinition;
+import org.apache.jackrabbit.vault.packaging.PackageId;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the metadata of a JCR package (definition and state) which can be used without opening the
+ * package again; e.g. for the package lists and trees.
+ */
+public class PackageMetadata {
+
+    protected String nodePath;
+    protected String packagePath;
+
+    protected String group;
+    protected String name;
+    protected String version;
+    protected String description;
+    protected Calendar created;
+    protected String createdBy;
+    protected Calendar lastModified;
+    protected String lastModifiedBy;
+    protected Calendar lastUnpacked;
+    protected String lastUnpackedBy;
+    protected boolean includeVersions;
+
+    protected boolean installed;
+    protected boolean sealed;
+    protected boolean valid;
+    protected long size = -1L;
+    protected Calendar contentLastModified;
+    protected List<String> filterRoots = Collections.emptyList();
+
+    protected transient String searchText;
+
+    protected PackageMetadata() {
+    }
+
+    /**
+     * @return the metadata declared in the package definition
+     */
+    @Nonnull
+    public static PackageMetadata of(@Nonnull final JcrPackageDefinition definition) {
+        PackageMetadata metadata = new PackageMetadata();
+        metadata.group = definition.get(JcrPackageDefinition.PN_GROUP);
+        metadata.name = definition.get(JcrPackageDefinition.PN_NAME);
+        metadata.version = definition.get(JcrPackageDefinition.PN_VERSION);
+        metadata.description = definition.get(JcrPackageDefinition.PN_DESCRIPTION);
+        metadata.lastModified = definition.getCalendar(JcrPackageDefinition.PN_LASTMODIFIED);
+        metadata.lastUnpacked = definition.getCalendar(JcrPackageDefinition.PN_LAST_UNPACKED);
+        metadata.includeVersions = definition.getBoolean(PackageUtil.DEF_INCLUDE_VERSIONS);
+        return metadata;
+    }
+
+    /**
+     * @param jcrPackage the package; must have a definition
+     * @param rootPath   the path of the package root
+     * @return the complete metadata of the package including state, size and filters
+     */
+    @Nonnull
+    public static PackageMetadata of(@Nonnull final JcrPackage jcrPackage, @Nonnull final String rootPath)
+            throws RepositoryException {
+        JcrPackageDefinition definition = jcrPackage.getDefinition();
+        if (definition == null) {
+            throw new RepositoryException("package without definition");
+        }
+        PackageMetadata metadata = of(definition);
+        Node node = jcrPackage.getNode();
+        if (node != null) {
+            metadata.nodePath = node.getPath();
+            metadata.packagePath = StringUtils.removeStart(metadata.nodePath, rootPath);
+        }
+        metadata.created = definition.getCreated();
+        metadata.createdBy = definition.getCreatedBy();
+        metadata.lastModifiedBy = definition.getLastModifiedBy();
+        metadata.lastUnpackedBy = definition.getLastUnpackedBy();
+        metadata.installed = jcrPackage.isInstalled();
+        metadata.sealed = jcrPackage.isSealed();
+        metadata.valid = jcrPackage.isValid();
+        metadata.size = jcrPackage.getSize();
+        metadata.contentLastModified = PackageUtil.getLastModified(jcrPackage);
+        List<String> roots = new ArrayList<>();
+        for (PathFilterSet filterSet : PackageUtil.getFilterList(definition)) {
+            roots.add(filterSet.getRoot());
+        }
+        metadata.filterRoots = Collections.unmodifiableList(roots);
+        return metadata;
+    }
+
+    /**
+     * @return the repository path of the package node; 'null' if not read from the package
+     */
+    @Nullable
+    public String getNodePath() {
+        return nodePath;
+    }
+
+    /**
+     * @return the path of the package relative to the package root
+     */
+    @Nullable
+    public String getPackagePath() {
+        return packagePath;
+    }
+
+    @Nonnull
+    public PackageId getId() {
+        return new PackageId(group, name, version);
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @return the path of the group in the package tree ('/' if no group is set)
+     */
+    @Nonnull
+    public String getGroupPath() {
+        return StringUtils.isNotBlank(group) ? ("/" + group + "/") : "/";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    @Nonnull
+    public String getFilename() {
+        StringBuilder filename = new StringBuilder();
+        filename.append(name);
+        if (StringUtils.isNotBlank(version)) {
+            filename.append('-').append(version);
+        }
+        return filename.append(".zip").toString();
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Calendar getCreated() {
+        return created;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    /**
+     * @return the last modification declared in the definition
+     */
+    public Calendar getLastModified() {
+        return lastModified;
+    }
+
+    public String getLastModifiedBy() {
+        return lastModifiedBy;
+    }
+
+    public Calendar getLastUnpacked() {
+        return lastUnpacked;
+    }
+
+    public String getLastUnpackedBy() {
+        return lastUnpackedBy;
+    }
+
+    public boolean isIncludeVersions() {
+        return includeVersions;
+    }
+
+    public boolean isInstalled() {
+        return installed;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the size of the package file; -1 if not read from the package
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last modification of the definition or (if not declared) of the package file
+     */
+    public Calendar getContentLastModified() {
+        return contentLastModified != null ? contentLastModified : lastModified;
+    }
+
+    @Nonnull
+    public List<String> getFilterRoots() {
+        return filterRoots;
+    }
+
+    /**
+     * @return 'true' if the text is part of the group, name, version, description, filter roots or users
+     */
+    public boolean matches(@Nonnull final String text) {
+        if (searchText == null) {
+            List<String> values = new ArrayList<>();
+            Collections.addAll(values, group, name, version, description, createdBy, lastModifiedBy, lastUnpackedBy);
+            values.addAll(filterRoots);
+            StringBuilder builder = new StringBuilder();
+            for (String value : values) {
+                if (StringUtils.isNotBlank(value)) {
+                    builder.append(value.toLowerCase()).append('\n');
+                }
+            }
+            searchText = builder.toString();
+        }
+        return searchText.contains(text.toLowerCase());
+    }
+}
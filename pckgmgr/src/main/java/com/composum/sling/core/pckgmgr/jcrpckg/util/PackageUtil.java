@@ -47,6 +47,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -484,6 +485,23 @@ public class PackageUtil {
         return treeNode;
     }
 
+    /**
+     * Builds the tree node from the package metadata (e.g. of the package index) without opening the packages.
+     */
+    public static TreeNode getTreeNode(@Nonnull Collection<PackageMetadata> packages, SlingHttpServletRequest request) {
+
+        String path = PackageUtil.getPath(request);
+
+        TreeNode treeNode = new TreeNode(path);
+        for (PackageMetadata metadata : packages) {
+            if (treeNode.addPackage(metadata)) {
+                break;
+            }
+        }
+
+        return treeNode;
+    }
+
     //
     // JSON mapping helpers
     //
@@ -491,16 +509,21 @@ public class PackageUtil {
     public static void toJson(@Nonnull JsonWriter writer, @Nonnull JcrPackage jcrPackage,
                               @Nullable Map<String, Object> additionalAttributes)
             throws RepositoryException, IOException {
+        toJson(writer, PackageMetadata.of(jcrPackage.getDefinition()), additionalAttributes);
+    }
+
+    public static void toJson(@Nonnull JsonWriter writer, @Nonnull PackageMetadata metadata,
+                              @Nullable Map<String, Object> additionalAttributes)
+            throws IOException {
         writer.beginObject();
         writer.name("definition");
-        JcrPackageDefinition definition = jcrPackage.getDefinition();
-        toJson(writer, definition);
+        toJson(writer, metadata);
         JsonUtil.jsonMapEntries(writer, additionalAttributes);
         writer.name("packageid");
         writer.beginObject();
-        writer.name("name").value(definition.get("name"));
-        writer.name("group").value(definition.get("group"));
-        writer.name("version").value(definition.get("version"));
+        writer.name("name").value(metadata.getName());
+        writer.name("group").value(metadata.getGroup());
+        writer.name("version").value(metadata.getVersion());
         if (additionalAttributes != null) {
             writer.name("downloadName").value((String) additionalAttributes.get("name"));
         }
@@ -511,15 +534,20 @@ public class PackageUtil {
 
     public static void toJson(JsonWriter writer, JcrPackageDefinition definition)
             throws IOException {
+        toJson(writer, PackageMetadata.of(definition));
+    }
+
+    public static void toJson(JsonWriter writer, PackageMetadata metadata)
+            throws IOException {
         SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-        String version = definition.get(JcrPackageDefinition.PN_VERSION);
-        String description = definition.get(JcrPackageDefinition.PN_DESCRIPTION);
-        Calendar lastModified = definition.getCalendar(JcrPackageDefinition.PN_LASTMODIFIED);
-        Calendar lastUnpacked = definition.getCalendar(JcrPackageDefinition.PN_LAST_UNPACKED);
-        boolean includeVersions = definition.getBoolean("includeVersions");
+        String version = metadata.getVersion();
+        String description = metadata.getDescription();
+        Calendar lastModified = metadata.getLastModified();
+        Calendar lastUnpacked = metadata.getLastUnpacked();
+        boolean includeVersions = metadata.isIncludeVersions();
         writer.beginObject();
-        writer.name(JcrPackageDefinition.PN_GROUP).value(definition.get(JcrPackageDefinition.PN_GROUP));
-        writer.name(JcrPackageDefinition.PN_NAME).value(definition.get(JcrPackageDefinition.PN_NAME));
+        writer.name(JcrPackageDefinition.PN_GROUP).value(metadata.getGroup());
+        writer.name(JcrPackageDefinition.PN_NAME).value(metadata.getName());
         if (StringUtils.isNotBlank(version)) {
             writer.name(JcrPackageDefinition.PN_VERSION).value(version);
         }
@@ -549,6 +577,21 @@ public class PackageUtil {
         final String lastModifiedBy = definition.getLastModifiedBy();
         final Calendar lastUnpacked = definition.getLastUnpacked();
         final String lastUnpackedBy = definition.getLastUnpackedBy();
+        return packageToXMLResponse(group, name, version, filename, size, created, createdBy,
+                lastModified, lastModifiedBy, lastUnpacked, lastUnpackedBy);
+    }
+
+    public static String packageToXMLResponse(PackageMetadata metadata) {
+        return packageToXMLResponse(metadata.getGroup(), metadata.getName(), metadata.getVersion(),
+                metadata.getFilename(), metadata.getSize(), metadata.getCreated(), metadata.getCreatedBy(),
+                metadata.getLastModified(), metadata.getLastModifiedBy(),
+                metadata.getLastUnpacked(), metadata.getLastUnpackedBy());
+    }
+
+    protected static String packageToXMLResponse(String group, String name, String version, String filename,
+                                                 long size, Calendar created, String createdBy,
+                                                 Calendar lastModified, String lastModifiedBy,
+                                                 Calendar lastUnpacked, String lastUnpackedBy) {
         final SimpleDateFormat dateFormat = new SimpleDateFormat();
         String response =
                 "<package>" +
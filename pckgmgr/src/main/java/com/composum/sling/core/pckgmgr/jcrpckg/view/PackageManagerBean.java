@@ -5,6 +5,8 @@ import com.composum.sling.core.filter.StringFilter;
 import com.composum.sling.core.pckgmgr.Packages;
 import com.composum.sling.core.pckgmgr.Packages.Mode;
 import com.composum.sling.core.pckgmgr.jcrpckg.PackageServlet;
+import com.composum.sling.core.pckgmgr.jcrpckg.service.PackageIndex;
+import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageMetadata;
 import com.composum.sling.core.pckgmgr.jcrpckg.util.PackageUtil;
 import com.composum.sling.core.pckgmgr.regpckg.service.PackageRegistries;
 import com.composum.sling.core.pckgmgr.regpckg.util.VersionComparator;
@@ -12,7 +14,6 @@ import com.composum.sling.core.util.ResourceUtil;
 import com.composum.sling.nodes.console.ConsoleSlingBean;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.jackrabbit.vault.packaging.JcrPackage;
 import org.apache.jackrabbit.vault.packaging.JcrPackageManager;
 import org.apache.jackrabbit.vault.packaging.Packaging;
 import org.apache.jackrabbit.vault.packaging.registry.PackageRegistry;
@@ -81,9 +82,9 @@ public class PackageManagerBean extends ConsoleSlingBean {
                 JcrPackageManager manager = PackageUtil.getPackageManager(context.getService(Packaging.class), getRequest());
                 String group = StringUtils.removeStart(ResourceUtil.getParent(getPath()), "/");
                 String name = ResourceUtil.getName(getPath());
-                pathsToVersionsOfThisPackage = manager.listPackages(group, false).stream()
-                        .filter(p -> name.equals(PackageUtil.getPackageId(p).getName()))
-                        .map(p -> PackageUtil.getPackagePath(manager, p))
+                pathsToVersionsOfThisPackage = context.getService(PackageIndex.class).getPackages(manager, group).stream()
+                        .filter(p -> name.equals(p.getName()))
+                        .map(PackageMetadata::getPackagePath)
                         .sorted(Comparator.<String>naturalOrder().reversed())
                         .collect(Collectors.toList());
             } catch (RepositoryException ex) {
@@ -97,23 +98,23 @@ public class PackageManagerBean extends ConsoleSlingBean {
         if (pathsToHighestVersionOfEachPackage == null) {
             try {
                 JcrPackageManager manager = PackageUtil.getPackageManager(context.getService(Packaging.class), getRequest());
-                Map<Pair<String, String>, List<JcrPackage>> packageGrouped = manager.listPackages().stream()
-                        .filter(p -> PackageUtil.getPackagePath(manager, p).startsWith(getPath() + "/"))
+                Map<Pair<String, String>, List<PackageMetadata>> packageGrouped = context.getService(PackageIndex.class)
+                        .getPackages(manager).stream()
+                        .filter(p -> p.getPackagePath() != null && p.getPackagePath().startsWith(getPath() + "/"))
                         .collect(Collectors.groupingBy(
-                                pckg -> Pair.of(PackageUtil.getPackageId(pckg).getGroup(), PackageUtil.getPackageId(pckg).getName())
+                                pckg -> Pair.of(pckg.getGroup(), pckg.getName())
                         ));
-                List<List<JcrPackage>> packageGroupList = packageGrouped.entrySet().stream()
+                List<List<PackageMetadata>> packageGroupList = packageGrouped.entrySet().stream()
                         .sorted(Comparator.comparing(Map.Entry::getKey))
                         .map(Map.Entry::getValue)
                         .map(l -> l.stream()
-                                .filter(p -> PackageUtil.getPackageId(p) != null)
                                 .sorted(
-                                        Comparator.comparing(PackageUtil::getPackageId, new VersionComparator.PackageIdComparator(true))
+                                        Comparator.comparing(PackageMetadata::getId, new VersionComparator.PackageIdComparator(true))
                                 ).collect(Collectors.toList()))
                         .collect(Collectors.toList());
                 pathsToHighestVersionOfEachPackage = packageGroupList.stream()
                         .map(l -> l.get(0))
-                        .map(p -> PackageUtil.getPackagePath(manager, p))
+                        .map(PackageMetadata::getPackagePath)
                         .collect(Collectors.toList());
             } catch (RepositoryException ex) {
                 LOG.error(ex.getMessage(), ex);
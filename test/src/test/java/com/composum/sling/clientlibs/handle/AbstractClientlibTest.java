@@ -165,11 +165,26 @@ public class AbstractClientlibTest {
                 return true;
             }
 
+            @Override
+            public boolean clientlibs_fragment_cache() {
+                return true;
+            }
+
+            @Override
+            public int clientlibs_fragment_cache_time() {
+                return 3600;
+            }
+
             @Override
             public int clientlibs_resolver_cache_time() {
                 return 60;
             }
 
+            @Override
+            public int clientlibs_resolver_cache_size() {
+                return 100;
+            }
+
             @Override
             public int clientlibs_threadpool_min() {
                 return 10;
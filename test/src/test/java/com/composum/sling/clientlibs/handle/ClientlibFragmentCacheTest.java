@@ -0,0 +1,195 @@
+package com.composum.sling.clientlibs.handle;
+
+import com.composum.sling.clientlibs.processor.ClientlibFragmentCache;
+import com.composum.sling.clientlibs.processor.CssUrlMapper;
+import com.composum.sling.clientlibs.processor.DefaultJavascriptProcessor;
+import com.composum.sling.clientlibs.processor.ProcessingVisitor;
+import com.composum.sling.clientlibs.processor.ProcessorContext;
+import com.composum.sling.clientlibs.processor.ProcessorPipeline;
+import com.composum.sling.clientlibs.service.ClientlibProcessor;
+import com.composum.sling.core.util.ResourceUtil;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Objects;
+
+import static com.composum.sling.clientlibs.handle.Clientlib.PROP_CATEGORY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the cache of the processed files of client libraries.
+ */
+public class ClientlibFragmentCacheTest extends AbstractClientlibTest {
+
+    public static final String FRAGMENTS_ROOT = DEFAULT_CACHE_ROOT + "/" + ClientlibFragmentCache.FRAGMENTS_FOLDER;
+
+    private Clientlib css;
+    private ClientlibProcessor processor;
+
+    @Before
+    public void setupClientlibs() throws Exception {
+        context.build()
+                .resource("/apps/fragments", ResourceUtil.PROP_PRIMARY_TYPE, ResourceUtil.TYPE_SLING_FOLDER,
+                        ResourceUtil.PROP_RESOURCE_TYPE, Clientlib.RESOURCE_TYPE,
+                        PROP_CATEGORY, array("fragmentscat"))
+                .resource("css", ResourceUtil.PROP_PRIMARY_TYPE, ResourceUtil.TYPE_SLING_ORDERED_FOLDER)
+                .siblingsMode()
+                .file("a.css", content(".a { background: url(images/a.png); }"))
+                .file("b.css", content(".b { color: red; }"));
+        context.build().commit();
+        css = new Clientlib(Clientlib.Type.css, context.resourceResolver().getResource("/apps/fragments"));
+        assertTrue(css.isValid());
+        processor = new ProcessorPipeline(new CssUrlMapper());
+    }
+
+    @Test
+    public void storesProcessedFiles() throws Exception {
+        String result = process(processorContext(true));
+        assertTrue(result, result.contains(".a { background: url("));
+        assertTrue(result, result.contains(".b { color: red; }"));
+        assertEquals(2, countFragments());
+    }
+
+    @Test
+    public void usesCachedFragmentOfUnchangedFile() throws Exception {
+        String original = process(processorContext(true));
+        String fragment = getFragmentPath("a.css", processorContext(true));
+        assertNotNull(context.resourceResolver().getResource(fragment));
+        setFragmentContent(fragment, "/* cached a */");
+
+        String result = process(processorContext(true));
+        assertTrue(result, result.contains("/* cached a */"));
+        assertTrue(result, result.contains(".b { color: red; }"));
+        assertNotEquals(original, result);
+        assertEquals(2, countFragments());
+    }
+
+    @Test
+    public void processesChangedFile() throws Exception {
+        process(processorContext(true));
+        String fragment = getFragmentPath("a.css", processorContext(true));
+        setFragmentContent(fragment, "/* cached a */");
+        ModifiableValueMap values = Objects.requireNonNull(context.resourceResolver()
+                .getResource("/apps/fragments/css/b.css/" + ResourceUtil.CONTENT_NODE))
+                .adaptTo(ModifiableValueMap.class);
+        values.put(ResourceUtil.PROP_DATA, content(".b { color: blue; }"));
+        context.resourceResolver().commit();
+
+        String result = process(processorContext(true));
+        assertTrue(result, result.contains("/* cached a */"));
+        assertTrue(result, result.contains(".b { color: blue; }"));
+        assertEquals(3, countFragments());
+    }
+
+    @Test
+    public void processingParametersArePartOfTheKey() throws Exception {
+        assertEquals(getFragmentPath("a.css", processorContext(true)),
+                getFragmentPath("a.css", processorContext(true)));
+        assertNotEquals(getFragmentPath("a.css", processorContext(true)),
+                getFragmentPath("a.css", processorContext(false)));
+        assertNotEquals(getFragmentPath("a.css", processorContext(true)),
+                getFragmentPath("b.css", processorContext(true)));
+    }
+
+    @Test
+    public void noFragmentsOfUnchangedContent() throws Exception {
+        FileHandle file = new FileHandle(context.resourceResolver().getResource("/apps/fragments/css/a.css"));
+        try (ClientlibFragmentCache cache = createCache()) {
+            assertNull(cache.fingerprint(file, new DefaultJavascriptProcessor(), processorContext(true)));
+            assertNull(cache.fingerprint(file, new ProcessorPipeline(new DefaultJavascriptProcessor()),
+                    processorContext(true)));
+        }
+        processor = new DefaultJavascriptProcessor();
+        process(processorContext(true));
+        assertEquals(0, countFragments());
+    }
+
+    @Test
+    public void evictsOutdatedFragments() throws Exception {
+        process(processorContext(true));
+        String outdated = getFragmentPath("a.css", processorContext(true));
+        String current = getFragmentPath("b.css", processorContext(true));
+        Calendar stored = Calendar.getInstance();
+        stored.add(Calendar.HOUR, -2);
+        ModifiableValueMap values = Objects.requireNonNull(context.resourceResolver()
+                .getResource(outdated + "/" + ResourceUtil.CONTENT_NODE)).adaptTo(ModifiableValueMap.class);
+        values.put(ResourceUtil.PROP_LAST_MODIFIED, stored);
+        context.resourceResolver().commit();
+
+        try (ClientlibFragmentCache cache = createCache()) {
+            assertEquals(1, cache.evict());
+        }
+        context.resourceResolver().refresh();
+        assertNull(context.resourceResolver().getResource(outdated));
+        assertNotNull(context.resourceResolver().getResource(current));
+    }
+
+    protected ProcessorContext processorContext(boolean mapClientlibURLs) {
+        return new ProcessorContext(context.request(), context.resourceResolver(), executorService,
+                mapClientlibURLs, false);
+    }
+
+    protected String process(ProcessorContext processorContext) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ClientlibFragmentCache cache = createCache()) {
+            processorContext.setFragmentCache(cache);
+            new ProcessingVisitor(css, clientlib2Service, out, processor, processorContext).execute();
+        } finally {
+            processorContext.setFragmentCache(null);
+        }
+        context.resourceResolver().refresh();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("deprecation")
+    protected ClientlibFragmentCache createCache() throws Exception {
+        ResourceResolver resolver = context.getService(ResourceResolverFactory.class)
+                .getAdministrativeResourceResolver(null);
+        return new ClientlibFragmentCache(resolver, DEFAULT_CACHE_ROOT, configurationService.getConfig());
+    }
+
+    protected String getFragmentPath(String name, ProcessorContext processorContext) throws Exception {
+        FileHandle file = new FileHandle(context.resourceResolver().getResource("/apps/fragments/css/" + name));
+        try (ClientlibFragmentCache cache = createCache()) {
+            String fingerprint = cache.fingerprint(file, processor, processorContext);
+            assertNotNull(fingerprint);
+            return FRAGMENTS_ROOT + "/" + fingerprint.substring(0, 2) + "/" + fingerprint;
+        }
+    }
+
+    protected void setFragmentContent(String path, String content) throws Exception {
+        ModifiableValueMap values = Objects.requireNonNull(context.resourceResolver()
+                .getResource(path + "/" + ResourceUtil.CONTENT_NODE)).adaptTo(ModifiableValueMap.class);
+        values.put(ResourceUtil.PROP_DATA, content(content));
+        context.resourceResolver().commit();
+    }
+
+    protected int countFragments() {
+        int count = 0;
+        Resource root = context.resourceResolver().getResource(FRAGMENTS_ROOT);
+        if (root != null) {
+            for (Resource bucket : root.getChildren()) {
+                for (Resource ignored : bucket.getChildren()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    protected ByteArrayInputStream content(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
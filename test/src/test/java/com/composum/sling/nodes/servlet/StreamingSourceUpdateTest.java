@@ -0,0 +1,279 @@
+package com.composum.sling.nodes.servlet;
+
+import com.composum.sling.core.BeanContext;
+import com.composum.sling.nodes.NodesConfigImpl;
+import com.composum.sling.nodes.update.SourceUpdateService;
+import com.composum.sling.nodes.update.SourceUpdateServiceImpl;
+import com.composum.sling.nodes.update.StreamingSourceUpdate;
+import com.composum.sling.test.util.JcrTestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.testing.mock.sling.ResourceResolverType;
+import org.apache.sling.testing.mock.sling.junit.SlingContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+import org.osgi.service.component.ComponentContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Session;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Round trip tests for the {@link StreamingSourceUpdate}: the packages written by the {@link SourceModel} are
+ * applied to the (changed) content again.
+ */
+public class StreamingSourceUpdateTest {
+
+    public static final String PATH = "/content/composum/nodes/console/test/sourcemodel";
+    public static final String CONTENT_PATH = PATH + "/ntunstructuredwithjcrcontent/jcr:content";
+
+    @Rule
+    public final SlingContext context = new SlingContext(ResourceResolverType.JCR_OAK);
+
+    @Rule
+    public final ErrorCollector ec = new ErrorCollector();
+
+    protected ResourceResolver resolver;
+    protected Session session;
+    protected byte[] archive;
+
+    @Before
+    public void setup() throws Exception {
+        JcrTestUtils.importCnd("/nodes/testingNodetypes.cnd", context.resourceResolver());
+        JcrTestUtils.importTestPackage("/jcr_root/content/composum/nodes/console/test/sourcemodel",
+                context.resourceResolver());
+        resolver = context.resourceResolver();
+        session = resolver.adaptTo(Session.class);
+        Resource resource = resolver.getResource(PATH);
+        BeanContext.Service beanContext = new BeanContext.Service(context.request(), context.response(), resource,
+                resolver);
+        NodesConfigImpl config = new NodesConfigImpl();
+        config.activate(mock(ComponentContext.class),
+                SourceModelTest.DefaultsForAnnotations.of(NodesConfigImpl.Configuration.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SourceModel(config, beanContext, resource).writePackage(out, "test", "sourcemodel", "1.0");
+        archive = out.toByteArray();
+    }
+
+    @Test
+    public void roundTripWithoutChanges() throws Exception {
+        Set<String> changed = update(archive);
+        ec.checkThat(changed.toString(), changed.isEmpty(), is(true));
+        ec.checkThat(session.hasPendingChanges(), is(false));
+    }
+
+    @Test
+    public void removedAndAddedProperties() throws Exception {
+        Node node = session.getNode(CONTENT_PATH);
+        node.setProperty("added", "value");
+        node.getProperty("something").remove();
+        node.setProperty("bar", "changed");
+        session.save();
+
+        Set<String> changed = update(archive);
+        ec.checkThat(node.hasProperty("added"), is(false));
+        ec.checkThat(node.getProperty("something").getString(), is("foo"));
+        ec.checkThat(node.getProperty("bar").getString(), is("baz"));
+        ec.checkThat(changed, hasItem(CONTENT_PATH));
+        ec.checkThat(changed, not(hasItem(PATH + "/subfolder")));
+    }
+
+    @Test
+    public void removedNodes() throws Exception {
+        session.getNode(PATH).addNode("obsolete", "nt:unstructured").addNode("child", "nt:unstructured");
+        session.getNode(PATH + "/i18n").remove();
+        session.save();
+
+        Set<String> changed = update(archive);
+        ec.checkThat(session.nodeExists(PATH + "/obsolete"), is(false));
+        ec.checkThat(session.nodeExists(PATH + "/i18n"), is(true));
+        ec.checkThat(session.nodeExists(PATH + "/i18n/de"), is(true));
+        ec.checkThat(session.getNode(PATH + "/i18n/de").getProperty("jcr:language").getString(), is("de"));
+        ec.checkThat(changed, hasItem(PATH));
+    }
+
+    @Test
+    public void childOrdering() throws Exception {
+        List<String> expected = getChildNames(PATH);
+        ec.checkThat(expected, is(Arrays.asList("i18n", "assetsfolder", "ntunstructuredwithjcrcontent",
+                "subfolder")));
+        Node root = session.getNode(PATH);
+        root.orderBefore("subfolder", "i18n");
+        root.orderBefore("ntunstructuredwithjcrcontent", "assetsfolder");
+        session.save();
+        ec.checkThat(getChildNames(PATH), not(is(expected)));
+
+        Set<String> changed = update(archive);
+        ec.checkThat(getChildNames(PATH), is(expected));
+        ec.checkThat(changed, hasItem(PATH));
+    }
+
+    @Test
+    public void binaryChangedAndUnchanged() throws Exception {
+        byte[] original = getBinary(CONTENT_PATH, "binprop");
+        byte[] folderProperty = getBinary(PATH + "/ntunstructuredwithjcrcontent", "folderbinprop");
+        setBinary(CONTENT_PATH, "binprop", "changed content".getBytes(StandardCharsets.UTF_8));
+        session.save();
+
+        Set<String> changed = update(archive);
+        ec.checkThat(getBinary(CONTENT_PATH, "binprop"), is(original));
+        ec.checkThat(getBinary(PATH + "/ntunstructuredwithjcrcontent", "folderbinprop"), is(folderProperty));
+        ec.checkThat(changed, hasItem(CONTENT_PATH));
+        ec.checkThat(changed, not(hasItem(PATH + "/ntunstructuredwithjcrcontent")));
+        ec.checkThat(changed, not(hasItem(PATH + "/subfolder/jcr:content/propertytest")));
+    }
+
+    /**
+     * A binary property entry can precede the docview entry which declares its node.
+     */
+    @Test
+    public void binaryBeforeItsNode() throws Exception {
+        byte[] original = getBinary(CONTENT_PATH, "binprop");
+        session.getNode(PATH + "/ntunstructuredwithjcrcontent").remove();
+        session.save();
+
+        update(rewrite(archive, Comparator.comparing((String name) -> !name.endsWith(".binary")), null, null));
+        ec.checkThat(session.nodeExists(CONTENT_PATH), is(true));
+        ec.checkThat(getBinary(CONTENT_PATH, "binprop"), is(original));
+        ec.checkThat(session.getNode(CONTENT_PATH).getProperty("something").getString(), is("foo"));
+    }
+
+    @Test
+    public void binaryWithoutItsNode() throws Exception {
+        byte[] broken = rewrite(archive, null,
+                "jcr_root" + PATH + "/missing/binprop.binary", "content".getBytes(StandardCharsets.UTF_8));
+        try {
+            update(broken);
+            fail("binary property without its node not detected");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        } finally {
+            session.refresh(false);
+        }
+        ec.checkThat(session.nodeExists(PATH + "/missing"), is(false));
+    }
+
+    /**
+     * A malformed entry fails the update and nothing of the update is saved.
+     */
+    @Test
+    public void malformedEntry() throws Exception {
+        SourceUpdateService service = context.registerInjectActivateService(new SourceUpdateServiceImpl(),
+                "streaming_update", true);
+        Node node = session.getNode(CONTENT_PATH);
+        node.setProperty("added", "value");
+        session.save();
+
+        byte[] broken = rewrite(archive, null, "jcr_root" + PATH + "/subfolder/.content.xml",
+                ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<jcr:root xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" jcr:primaryType=\"sling:Folder\">\n"
+                        + "    <broken\n"
+                        + "</jcr:root>\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            service.updateFromZip(resolver, new ByteArrayInputStream(broken), PATH);
+            fail("malformed entry not detected");
+        } catch (IOException expected) {
+            // ok
+        }
+        ec.checkThat(session.hasPendingChanges(), is(false));
+        ec.checkThat(session.getNode(CONTENT_PATH).hasProperty("added"), is(true));
+
+        service.updateFromZip(resolver, new ByteArrayInputStream(archive), PATH);
+        ec.checkThat(session.getNode(CONTENT_PATH).hasProperty("added"), is(false));
+    }
+
+    @Nonnull
+    protected Set<String> update(@Nonnull final byte[] archive) throws Exception {
+        StreamingSourceUpdate update = new StreamingSourceUpdate(session, PATH, 0);
+        update.update(new ByteArrayInputStream(archive));
+        return update.getChangedNodes();
+    }
+
+    /**
+     * @return the archive with the entries in the given order and with an additional or replaced entry
+     */
+    @Nonnull
+    protected byte[] rewrite(@Nonnull final byte[] archive, @Nullable final Comparator<String> order,
+                             @Nullable final String name, @Nullable final byte[] content) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toByteArray(zip));
+                zip.closeEntry();
+            }
+        }
+        if (name != null) {
+            entries.put(name, content);
+        }
+        List<String> names = new ArrayList<>(entries.keySet());
+        if (order != null) {
+            names.sort(order);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String entryName : names) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(entries.get(entryName));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Nonnull
+    protected List<String> getChildNames(@Nonnull final String path) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (NodeIterator it = session.getNode(path).getNodes(); it.hasNext(); ) {
+            names.add(it.nextNode().getName());
+        }
+        return names;
+    }
+
+    @Nonnull
+    protected byte[] getBinary(@Nonnull final String path, @Nonnull final String name) throws Exception {
+        Binary binary = session.getNode(path).getProperty(name).getBinary();
+        try (InputStream stream = binary.getStream()) {
+            return IOUtils.toByteArray(stream);
+        } finally {
+            binary.dispose();
+        }
+    }
+
+    protected void setBinary(@Nonnull final String path, @Nonnull final String name, @Nonnull final byte[] content)
+            throws Exception {
+        Binary binary = session.getValueFactory().createBinary(new ByteArrayInputStream(content));
+        try {
+            session.getNode(path).setProperty(name, binary);
+        } finally {
+            binary.dispose();
+        }
+    }
+}
@@ -2,7 +2,7 @@ package com.composum.sling.core.usermanagement.model;
 
 import com.composum.sling.core.usermanagement.service.AuthorizableWrapper;
 import com.composum.sling.core.usermanagement.service.Authorizables;
-import com.composum.sling.core.usermanagement.service.GroupWrapper;
+import com.composum.sling.core.usermanagement.service.MembershipIndex;
 import com.google.gson.stream.JsonWriter;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
@@ -12,7 +12,6 @@ import org.jetbrains.annotations.Nullable;
 import javax.jcr.RepositoryException;
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 public abstract class AuthorizablesMap extends AuthorizablesView {
@@ -90,30 +89,28 @@ public abstract class AuthorizablesMap extends AuthorizablesView {
         }
     }
 
+    /**
+     * Adds the relations of the declared members of the target; the members are taken from the membership index.
+     */
     protected void addSourceRelations(@Nullable final Class<? extends AuthorizableWrapper> selector,
                                       @Nullable final Authorizables.Filter filter,
                                       @NotNull final AuthorizableModel target, @NotNull final Set<String> done)
             throws RepositoryException {
-        Set<? extends AuthorizableWrapper> sources = context.getService().findAuthorizables(
-                context, selector, null, authorizable
-                        -> (filter == null || filter.accept(authorizable))
-                        && isSourceOfTarget(authorizable, target.getId()));
-        for (AuthorizableWrapper source : sources) {
-            if (done.add(source.getID())) {
-                sourceRelations.add(new AuthorizablesGraph.Relation(addNode(source), target));
+        MembershipIndex index = context.getService().getMembershipIndex(context);
+        for (String sourceId : index.getDeclaredMembers(target.getId())) {
+            AuthorizableWrapper source = context.getService().getAuthorizable(context, sourceId);
+            if (source != null && (selector == null || selector.isInstance(source))
+                    && (filter == null || filter.accept(source))) {
+                if (done.add(source.getID())) {
+                    sourceRelations.add(new AuthorizablesGraph.Relation(addNode(source), target));
+                }
             }
         }
     }
 
     protected boolean isSourceOfTarget(AuthorizableWrapper source, String targetId)
             throws RepositoryException {
-        Iterator<GroupWrapper> targets = source.declaredMemberOf();
-        while (targets.hasNext()) {
-            if (targetId.equals(targets.next().getID())) {
-                return true;
-            }
-        }
-        return false;
+        return context.getService().getMembershipIndex(context).isDeclaredMember(source.getID(), targetId);
     }
 
     public void toJson(@NotNull final JsonWriter writer) throws IOException {
@@ -82,6 +82,9 @@ public interface Authorizables {
         // the map to cache authorizables during requst execution
         protected final Map<String, AuthorizableWrapper> authorizables = new HashMap<>();
 
+        // the membership index used during request execution
+        private transient MembershipIndex membershipIndex;
+
         public Context(@NotNull final Authorizables service,
                        @NotNull final SlingHttpServletRequest request,
                        @NotNull final SlingHttpServletResponse response) {
@@ -132,6 +135,14 @@ public interface Authorizables {
         public Map<String, AuthorizableWrapper> getAuthorizables() {
             return authorizables;
         }
+
+        public @Nullable MembershipIndex getMembershipIndex() {
+            return membershipIndex;
+        }
+
+        public void setMembershipIndex(@Nullable final MembershipIndex membershipIndex) {
+            this.membershipIndex = membershipIndex;
+        }
     }
 
     @Nullable AuthorizableWrapper getAuthorizable(@NotNull final Context context, @NotNull final String id)
@@ -143,6 +154,21 @@ public interface Authorizables {
                                                                   @Nullable Filter filter)
             throws RepositoryException;
 
+    /**
+     * @return the index of the declared memberships of all authorizables visible in the context; built once
+     * per request or reused from a cache which is dropped on changes of the authorizables; by default built from
+     * the {@link #findAuthorizables(Context, Class, String, Filter)} result once per request
+     */
+    default @NotNull MembershipIndex getMembershipIndex(@NotNull Context context)
+            throws RepositoryException {
+        MembershipIndex index = context.getMembershipIndex();
+        if (index == null) {
+            index = new MembershipIndex(findAuthorizables(context, null, null, null).iterator());
+            context.setMembershipIndex(index);
+        }
+        return index;
+    }
+
     @NotNull <T extends AuthorizableWrapper> Collection<T> loadAuthorizables(@NotNull Context context,
                                                                              @NotNull Class<T> selector,
                                                                              @NotNull Set<String> idSet)
@@ -0,0 +1,65 @@
+package com.composum.sling.core.usermanagement.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.jcr.RepositoryException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The snapshot of the declared group memberships of all authorizables visible for a user in both directions;
+ * answers 'members of' and 'member of' without scanning the authorizables. The snapshot is built once by
+ * iterating over all authorizables (including the service users and their mapped principals).
+ */
+public class MembershipIndex {
+
+    protected final Map<String, Set<String>> declaredMembers = new HashMap<>();
+    protected final Map<String, Set<String>> declaredMemberOf = new HashMap<>();
+    protected final long created;
+
+    public MembershipIndex(@NotNull final Iterator<? extends AuthorizableWrapper> authorizables)
+            throws RepositoryException {
+        while (authorizables.hasNext()) {
+            AuthorizableWrapper authorizable = authorizables.next();
+            String id = authorizable.getID();
+            Iterator<GroupWrapper> groups = authorizable.declaredMemberOf();
+            while (groups.hasNext()) {
+                String groupId = groups.next().getID();
+                declaredMemberOf.computeIfAbsent(id, k -> new LinkedHashSet<>()).add(groupId);
+                declaredMembers.computeIfAbsent(groupId, k -> new LinkedHashSet<>()).add(id);
+            }
+        }
+        created = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the IDs of the declared members of the group
+     */
+    @NotNull
+    public Set<String> getDeclaredMembers(@NotNull final String groupId) {
+        Set<String> members = declaredMembers.get(groupId);
+        return members != null ? Collections.unmodifiableSet(members) : Collections.emptySet();
+    }
+
+    /**
+     * @return the IDs of the groups the authorizable is declared member of
+     */
+    @NotNull
+    public Set<String> getDeclaredMemberOf(@NotNull final String id) {
+        Set<String> groups = declaredMemberOf.get(id);
+        return groups != null ? Collections.unmodifiableSet(groups) : Collections.emptySet();
+    }
+
+    public boolean isDeclaredMember(@NotNull final String id, @NotNull final String groupId) {
+        Set<String> groups = declaredMemberOf.get(id);
+        return groups != null && groups.contains(groupId);
+    }
+
+    public long getCreated() {
+        return created;
+    }
+}
@@ -1,5 +1,6 @@
 package com.composum.sling.core.usermanagement.service.impl;
 
+import com.composum.sling.core.service.MembershipService;
 import com.composum.sling.core.usermanagement.service.*;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.api.security.user.*;
@@ -7,6 +8,7 @@ import org.apache.sling.serviceusermapping.Mapping;
 import org.apache.sling.serviceusermapping.ServiceUserMapper;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
@@ -15,21 +17,98 @@ import org.slf4j.LoggerFactory;
 
 import javax.jcr.RepositoryException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
-@Component
+/**
+ * The authorizables service; the membership index of each user is cached and dropped if the change count
+ * of the authorizables observed by the {@link MembershipService} is changed.
+ */
+@Component(
+        service = {Authorizables.class},
+        property = {
+                Constants.SERVICE_DESCRIPTION + "=Composum Nodes Authorizables Service"
+        }
+)
 public class AuthorizablesImpl implements Authorizables {
 
     private static final Logger LOG = LoggerFactory.getLogger(AuthorizablesImpl.class);
 
+    /** the maximum number of users with a cached membership index */
+    public static final int MAX_MEMBERSHIP_INDEXES = 20;
+
+    /** the time a membership index is used (a safety net for changes not observed, e.g. service user mappings) */
+    public static final long MEMBERSHIP_INDEX_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    /** the membership index for each user */
+    protected final Map<String, MembershipIndex> membershipIndexes =
+            new LinkedHashMap<String, MembershipIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MembershipIndex> eldest) {
+                    return size() > MAX_MEMBERSHIP_INDEXES;
+                }
+            };
+
+    /** the change count of the authorizables the cached indexes are built for */
+    protected long changeCount = -1L;
+
     @Reference
     protected ServiceUserMapper serviceUserMapper;
 
+    @Reference
+    protected MembershipService membershipService;
+
     private boolean incompatibleServiceMapper = false;
 
     @Activate
     protected void activate() {
         incompatibleServiceMapper = false;
+        synchronized (membershipIndexes) {
+            membershipIndexes.clear();
+        }
+    }
+
+    @Override
+    @NotNull
+    public MembershipIndex getMembershipIndex(@NotNull final Context context) throws RepositoryException {
+        MembershipIndex index = context.getMembershipIndex();
+        if (index == null) {
+            final String userId = context.getSession() != null ? context.getSession().getUserID() : null;
+            final long changes = membershipService.getChangeCount();
+            synchronized (membershipIndexes) {
+                if (changes != changeCount) {
+                    if (!membershipIndexes.isEmpty()) {
+                        LOG.debug("authorizables changed, membership indexes dropped");
+                        membershipIndexes.clear();
+                    }
+                    changeCount = changes;
+                }
+                if (userId != null) {
+                    index = membershipIndexes.get(userId);
+                }
+            }
+            if (index == null || index.getCreated() + MEMBERSHIP_INDEX_TTL < System.currentTimeMillis()) {
+                final long start = System.currentTimeMillis();
+                List<AuthorizableWrapper> authorizables = new ArrayList<>();
+                findAuthorizables(context, null, null).forEachRemaining(authorizables::add);
+                authorizables.addAll(findServiceUsers(context, null, null));
+                index = new MembershipIndex(authorizables.iterator());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("membership index of '{}' built ({} authorizables, {}ms)", userId,
+                            authorizables.size(), System.currentTimeMillis() - start);
+                }
+                if (userId != null) {
+                    synchronized (membershipIndexes) {
+                        // an index built during a change is not cached
+                        if (changes == changeCount && changes == membershipService.getChangeCount()) {
+                            membershipIndexes.put(userId, index);
+                        }
+                    }
+                }
+            }
+            context.setMembershipIndex(index);
+        }
+        return index;
     }
 
     @Nullable
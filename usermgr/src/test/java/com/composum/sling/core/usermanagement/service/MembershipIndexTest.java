@@ -0,0 +1,111 @@
+package com.composum.sling.core.usermanagement.service;
+
+import org.junit.Test;
+
+import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link MembershipIndex}.
+ */
+public class MembershipIndexTest {
+
+    protected final GroupWrapper editors = group("editors");
+    protected final GroupWrapper authors = group("authors");
+    protected final GroupWrapper everyone = group("everyone");
+
+    protected List<AuthorizableWrapper> authorizables() throws RepositoryException {
+        return Arrays.asList(
+                authorizable("alice", editors, authors),
+                authorizable("bob", authors),
+                authorizable("charlie"),
+                member(editors, authors),
+                member(authors, everyone),
+                member(everyone),
+                authorizable("service-user", everyone));
+    }
+
+    @Test
+    public void declaredMembersOfGroups() throws RepositoryException {
+        MembershipIndex index = new MembershipIndex(authorizables().iterator());
+        assertEquals(Arrays.asList("alice", "bob", "editors"), new ArrayList<>(index.getDeclaredMembers("authors")));
+        assertEquals(Collections.singletonList("alice"), new ArrayList<>(index.getDeclaredMembers("editors")));
+        assertEquals(Arrays.asList("authors", "service-user"), new ArrayList<>(index.getDeclaredMembers("everyone")));
+        assertTrue(index.getDeclaredMembers("unknown").isEmpty());
+        assertTrue(index.getDeclaredMembers("alice").isEmpty());
+    }
+
+    @Test
+    public void declaredMembershipsOfAuthorizables() throws RepositoryException {
+        MembershipIndex index = new MembershipIndex(authorizables().iterator());
+        assertEquals(Arrays.asList("editors", "authors"), new ArrayList<>(index.getDeclaredMemberOf("alice")));
+        assertEquals(Collections.singletonList("everyone"), new ArrayList<>(index.getDeclaredMemberOf("authors")));
+        assertTrue(index.getDeclaredMemberOf("charlie").isEmpty());
+        assertTrue(index.getDeclaredMemberOf("everyone").isEmpty());
+        assertTrue(index.getDeclaredMemberOf("unknown").isEmpty());
+    }
+
+    @Test
+    public void declaredMembershipIsNotTransitive() throws RepositoryException {
+        MembershipIndex index = new MembershipIndex(authorizables().iterator());
+        assertTrue(index.isDeclaredMember("alice", "editors"));
+        assertTrue(index.isDeclaredMember("editors", "authors"));
+        assertFalse(index.isDeclaredMember("alice", "everyone"));
+        assertFalse(index.isDeclaredMember("authors", "editors"));
+        assertFalse(index.isDeclaredMember("unknown", "authors"));
+    }
+
+    @Test
+    public void resultsAreUnmodifiable() throws RepositoryException {
+        MembershipIndex index = new MembershipIndex(authorizables().iterator());
+        Set<String> members = index.getDeclaredMembers("authors");
+        try {
+            members.add("mallory");
+            fail("members are modifiable");
+        } catch (UnsupportedOperationException expected) {
+            // ok
+        }
+        assertFalse(index.getDeclaredMembers("authors").contains("mallory"));
+    }
+
+    @Test
+    public void emptyIndex() throws RepositoryException {
+        long before = System.currentTimeMillis();
+        MembershipIndex index = new MembershipIndex(Collections.<AuthorizableWrapper>emptyIterator());
+        assertTrue(index.getDeclaredMembers("authors").isEmpty());
+        assertTrue(index.getCreated() >= before && index.getCreated() <= System.currentTimeMillis());
+    }
+
+    protected GroupWrapper group(String id) {
+        GroupWrapper group = mock(GroupWrapper.class);
+        try {
+            when(group.getID()).thenReturn(id);
+        } catch (RepositoryException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return group;
+    }
+
+    protected AuthorizableWrapper authorizable(String id, GroupWrapper... memberOf) throws RepositoryException {
+        AuthorizableWrapper authorizable = mock(AuthorizableWrapper.class);
+        when(authorizable.getID()).thenReturn(id);
+        when(authorizable.declaredMemberOf()).thenReturn(Arrays.asList(memberOf).iterator());
+        return authorizable;
+    }
+
+    protected AuthorizableWrapper member(GroupWrapper group, GroupWrapper... memberOf) throws RepositoryException {
+        when(group.declaredMemberOf()).thenReturn(Arrays.asList(memberOf).iterator());
+        return group;
+    }
+}
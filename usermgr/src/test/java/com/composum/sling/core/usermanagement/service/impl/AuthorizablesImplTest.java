@@ -0,0 +1,122 @@
+package com.composum.sling.core.usermanagement.service.impl;
+
+import com.composum.sling.core.service.MembershipService;
+import com.composum.sling.core.usermanagement.service.AuthorizableWrapper;
+import com.composum.sling.core.usermanagement.service.Authorizables;
+import com.composum.sling.core.usermanagement.service.MembershipIndex;
+import com.composum.sling.core.usermanagement.service.ServiceUserWrapper;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jcr.Session;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the caching of the membership indexes by the {@link AuthorizablesImpl}.
+ */
+public class AuthorizablesImplTest {
+
+    protected long changeCount;
+    protected int builds;
+    protected Runnable duringBuild;
+
+    protected AuthorizablesImpl service;
+
+    @Before
+    public void setup() {
+        service = new AuthorizablesImpl() {
+
+            @Override
+            @NotNull
+            protected Iterator<AuthorizableWrapper> findAuthorizables(@NotNull final Context context,
+                                                                      @Nullable final Class<? extends AuthorizableWrapper> selector,
+                                                                      @Nullable final String nameQueryPattern) {
+                builds++;
+                if (duringBuild != null) {
+                    duringBuild.run();
+                }
+                return Collections.emptyIterator();
+            }
+
+            @Override
+            @NotNull
+            protected List<ServiceUserWrapper> findServiceUsers(@NotNull final Context context,
+                                                                @Nullable final Class<? extends AuthorizableWrapper> selector,
+                                                                @Nullable final String nameQueryPattern) {
+                return Collections.emptyList();
+            }
+        };
+        service.membershipService = mock(MembershipService.class);
+        when(service.membershipService.getChangeCount()).thenAnswer(invocation -> changeCount);
+        service.activate();
+    }
+
+    @Test
+    public void indexIsCachedPerUser() throws Exception {
+        MembershipIndex index = service.getMembershipIndex(context("alice"));
+        assertSame(index, service.getMembershipIndex(context("alice")));
+        assertEquals(1, builds);
+
+        MembershipIndex other = service.getMembershipIndex(context("bob"));
+        assertNotSame(index, other);
+        assertEquals(2, builds);
+        assertSame(index, service.getMembershipIndex(context("alice")));
+        assertEquals(2, builds);
+    }
+
+    @Test
+    public void indexIsKeptInTheRequestContext() throws Exception {
+        Authorizables.Context context = context("alice");
+        MembershipIndex index = service.getMembershipIndex(context);
+        changeCount++;
+        assertSame(index, service.getMembershipIndex(context));
+        assertEquals(1, builds);
+    }
+
+    @Test
+    public void changedAuthorizablesDropTheIndexes() throws Exception {
+        MembershipIndex index = service.getMembershipIndex(context("alice"));
+        service.getMembershipIndex(context("bob"));
+        changeCount++;
+        MembershipIndex rebuilt = service.getMembershipIndex(context("alice"));
+        assertNotSame(index, rebuilt);
+        assertEquals(3, builds);
+        assertSame(rebuilt, service.getMembershipIndex(context("alice")));
+        service.getMembershipIndex(context("bob"));
+        assertEquals(4, builds);
+    }
+
+    @Test
+    public void indexBuiltDuringAChangeIsNotCached() throws Exception {
+        duringBuild = () -> changeCount++;
+        service.getMembershipIndex(context("alice"));
+        duringBuild = null;
+        MembershipIndex index = service.getMembershipIndex(context("alice"));
+        assertEquals(2, builds);
+        assertSame(index, service.getMembershipIndex(context("alice")));
+        assertEquals(2, builds);
+    }
+
+    protected Authorizables.Context context(String userId) {
+        Session session = mock(Session.class);
+        when(session.getUserID()).thenReturn(userId);
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.adaptTo(Session.class)).thenReturn(session);
+        SlingHttpServletRequest request = mock(SlingHttpServletRequest.class);
+        when(request.getResourceResolver()).thenReturn(resolver);
+        return new Authorizables.Context(service, request, mock(SlingHttpServletResponse.class));
+    }
+}